@@ -0,0 +1,77 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * State of the analysis of one app, shared by the processors building its model.
+ * Each analysis has its own context, so that several apps can be analysed concurrently.
+ */
+public class AnalysisContext {
+    private final PaprikaApp paprikaApp;
+    private final ClassLoader classLoader;
+    private ComponentClassifier componentClassifier;
+    private Set<String> contextFiles;
+
+    /**
+     * @param paprikaApp The analysed app.
+     * @param classpath  Libraries used to resolve the superclasses of the app classes.
+     */
+    public AnalysisContext(PaprikaApp paprikaApp, URL[] classpath) {
+        this.paprikaApp = paprikaApp;
+        this.classLoader = new URLClassLoader(classpath);
+        this.componentClassifier = new ComponentClassifier(classLoader);
+        this.contextFiles = Collections.emptySet();
+    }
+
+    public PaprikaApp getPaprikaApp() {
+        return paprikaApp;
+    }
+
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    public ComponentClassifier getComponentClassifier() {
+        return componentClassifier;
+    }
+
+    /**
+     * @param componentClassifier Classifier shared with the other analyses of the run.
+     */
+    public void setComponentClassifier(ComponentClassifier componentClassifier) {
+        this.componentClassifier = componentClassifier;
+    }
+
+    /**
+     * @return Absolute paths of the files of the model only used to resolve references, whose types are not processed.
+     */
+    public Set<String> getContextFiles() {
+        return contextFiles;
+    }
+
+    public void setContextFiles(Set<String> contextFiles) {
+        this.contextFiles = contextFiles;
+    }
+}
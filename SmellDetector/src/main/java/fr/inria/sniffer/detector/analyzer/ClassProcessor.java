@@ -30,8 +30,6 @@ import spoon.reflect.declaration.ModifierKind;
 import spoon.reflect.reference.CtTypeReference;
 import spoon.support.reflect.declaration.CtInterfaceImpl;
 
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.util.List;
 
 
@@ -40,30 +38,25 @@ import java.util.List;
  */
 public class ClassProcessor extends TypeProcessor<CtClass> {
     private static final Logger logger = LoggerFactory.getLogger(ClassProcessor.class.getName());
-    private static final URLClassLoader classloader;
+
+    public ClassProcessor(AnalysisContext context) {
+        super(context);
+    }
 
     @Override
     public void process(CtClass ctType) {
         super.process(ctType);
     }
 
-    static {
-        if (MainProcessor.paths == null) {
-            classloader = new URLClassLoader(new URL[0]);
-        } else {
-            classloader = new URLClassLoader(MainProcessor.paths.toArray(new URL[MainProcessor.paths.size()]));
-        }
-    }
-
     @Override
     public boolean isToBeProcessed(CtClass candidate) {
         return super.isToBeProcessed(candidate) && !(candidate instanceof CtInterfaceImpl);
     }
 
     @Override
-    public void processMethods(CtClass ctClass) {
-        MethodProcessor methodProcessor = new MethodProcessor();
-        ConstructorProcessor constructorProcessor = new ConstructorProcessor();
+    public void processMethods(CtClass ctClass, PaprikaClass paprikaClass) {
+        MethodProcessor methodProcessor = new MethodProcessor(paprikaClass);
+        ConstructorProcessor constructorProcessor = new ConstructorProcessor(paprikaClass);
         for (Object o : ctClass.getMethods()) {
             methodProcessor.process((CtMethod) o);
         }
@@ -109,13 +102,6 @@ public class ClassProcessor extends TypeProcessor<CtClass> {
     @Override
     public void handleProperties(CtClass ctClass, PaprikaClass paprikaClass) {
         Integer doi = 0;
-        boolean isApplication = false;
-        boolean isContentProvider = false;
-        boolean isAsyncTask = false;
-        boolean isService = false;
-        boolean isView = false;
-        boolean isActivity = false;
-        boolean isBroadcastReceiver = false;
         boolean isInterface = ctClass.isInterface();
         boolean isStatic = false;
         for (ModifierKind modifierKind : ctClass.getModifiers()) {
@@ -126,67 +112,11 @@ public class ClassProcessor extends TypeProcessor<CtClass> {
         }
 
         CtTypeReference reference = findSuperClass(ctClass, doi);
-
-        if (reference != null) {
-            try {
-                Class myRealClass = classloader.loadClass(reference.getQualifiedName());
-                while (myRealClass.getSuperclass() != null) {
-                    doi++;
-                    if (myRealClass.getSimpleName().endsWith("Activity")) {
-                        isActivity = true;
-                        break;
-                    } else if (myRealClass.getSimpleName().endsWith("ContentProvider")) {
-                        isContentProvider = true;
-                        break;
-                    } else if (myRealClass.getSimpleName().endsWith("AsyncTask")) {
-                        isAsyncTask = true;
-                        break;
-                    } else if (myRealClass.getSimpleName().endsWith("View")) {
-                        isView = true;
-                        break;
-                    } else if (myRealClass.getSimpleName().endsWith("BroadcastReceiver")) {
-                        isBroadcastReceiver = true;
-                        break;
-                    } else if (myRealClass.getSimpleName().endsWith("Service")) {
-                        isService = true;
-                        break;
-                    } else if (myRealClass.getSimpleName().endsWith("Application")) {
-                        isApplication = true;
-                        break;
-                    }
-                    myRealClass = myRealClass.getSuperclass();
-                }
-            } catch (ClassNotFoundException | NoClassDefFoundError e) {
-                logger.warn("Class Not Found or Definition Not Found ; message : " + e.getLocalizedMessage());
-                logger.debug("switching to heuristic mode");
-                if (ctClass.getSimpleName().endsWith("Activity")||ctClass.getSuperclass().getQualifiedName().endsWith("Activity")) {
-                    isActivity = true;
-                } else if (ctClass.getSimpleName().endsWith("ContentProvider")||ctClass.getSuperclass().getQualifiedName().endsWith("ContentProvider")) {
-                    isContentProvider = true;
-                } else if (ctClass.getSimpleName().endsWith("AsyncTask")||ctClass.getSuperclass().getQualifiedName().endsWith("AsyncTask")) {
-                    isAsyncTask = true;
-                } else if (ctClass.getSimpleName().endsWith("View")||ctClass.getSuperclass().getQualifiedName().endsWith("View")) {
-                    isView = true;
-                } else if (ctClass.getSimpleName().endsWith("BroadcastReceiver")||ctClass.getSuperclass().getQualifiedName().endsWith("BroadcastReceiver")) {
-                    isBroadcastReceiver = true;
-                } else if (ctClass.getSimpleName().endsWith("Service")||ctClass.getSuperclass().getQualifiedName().endsWith("Service")) {
-                    isService = true;
-                } else if (ctClass.getSimpleName().endsWith("Application")||ctClass.getSuperclass().getQualifiedName().endsWith("Application")) {
-                    isApplication = true;
-                }
-            }
-        }
+        context.getComponentClassifier().classify(paprikaClass, reference == null ? null : reference.getQualifiedName(),
+                reference == null ? null : ctClass.getSuperclass().getQualifiedName());
 
         paprikaClass.setInterface(isInterface);
-        paprikaClass.setActivity(isActivity);
         paprikaClass.setStatic(isStatic);
-        paprikaClass.setAsyncTask(isAsyncTask);
-        paprikaClass.setContentProvider(isContentProvider);
-        paprikaClass.setBroadcastReceiver(isBroadcastReceiver);
-        paprikaClass.setService(isService);
-        paprikaClass.setView(isView);
-        paprikaClass.setApplication(isApplication);
-        paprikaClass.setDepthOfInheritance(doi);
     }
 
 
@@ -0,0 +1,315 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.entities.PaprikaArgument;
+import fr.inria.sniffer.detector.entities.PaprikaClass;
+import fr.inria.sniffer.detector.entities.PaprikaMethod;
+import fr.inria.sniffer.detector.entities.PaprikaModifiers;
+import fr.inria.sniffer.detector.entities.PaprikaVariable;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Snapshot of a class as built by the type processors, before it is linked to the rest of the app.
+ * <p>
+ * Summaries of the files left untouched by a commit are reused to rebuild the classes
+ * of the next commit without parsing these files again.
+ */
+public class ClassSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final String simpleName;
+    private final PaprikaModifiers modifier;
+    private final String path;
+    private final String parentName;
+    private final List<String> interfacesNames;
+    private final boolean isInterface;
+    private final boolean isStatic;
+    private final boolean isInnerClass;
+    private final List<VariableSummary> variables;
+    private final List<MethodSummary> methods;
+    private String superClassRoot;
+    private boolean isActivity;
+    private boolean isBroadcastReceiver;
+    private boolean isService;
+    private boolean isContentProvider;
+    private boolean isView;
+    private boolean isAsyncTask;
+    private boolean isApplication;
+    private int depthOfInheritance;
+
+    private ClassSummary(PaprikaClass paprikaClass, String path) {
+        this.name = paprikaClass.getName();
+        this.simpleName = paprikaClass.getSimpleName();
+        this.modifier = paprikaClass.getModifier();
+        this.path = path;
+        this.parentName = paprikaClass.getParentName();
+        this.interfacesNames = new ArrayList<>(paprikaClass.getInterfacesNames());
+        this.isInterface = paprikaClass.isInterface();
+        this.isStatic = paprikaClass.isStatic();
+        this.isInnerClass = paprikaClass.isInnerClass();
+        this.variables = new ArrayList<>();
+        for (PaprikaVariable paprikaVariable : paprikaClass.getPaprikaVariables()) {
+            variables.add(new VariableSummary(paprikaVariable));
+        }
+        this.methods = new ArrayList<>();
+        for (PaprikaMethod paprikaMethod : paprikaClass.getPaprikaMethods()) {
+            methods.add(new MethodSummary(paprikaMethod));
+        }
+        setClassification(paprikaClass);
+    }
+
+    private ClassSummary(ClassSummary classSummary, String path) {
+        this.name = classSummary.name;
+        this.simpleName = classSummary.simpleName;
+        this.modifier = classSummary.modifier;
+        this.path = path;
+        this.parentName = classSummary.parentName;
+        this.interfacesNames = classSummary.interfacesNames;
+        this.isInterface = classSummary.isInterface;
+        this.isStatic = classSummary.isStatic;
+        this.isInnerClass = classSummary.isInnerClass;
+        this.variables = classSummary.variables;
+        this.methods = classSummary.methods;
+        this.superClassRoot = classSummary.superClassRoot;
+        this.isActivity = classSummary.isActivity;
+        this.isBroadcastReceiver = classSummary.isBroadcastReceiver;
+        this.isService = classSummary.isService;
+        this.isContentProvider = classSummary.isContentProvider;
+        this.isView = classSummary.isView;
+        this.isAsyncTask = classSummary.isAsyncTask;
+        this.isApplication = classSummary.isApplication;
+        this.depthOfInheritance = classSummary.depthOfInheritance;
+    }
+
+    /**
+     * Take a snapshot of a class freshly built by the type processors.
+     *
+     * @param paprikaClass The class, not yet linked by the {@link GraphCreator}.
+     * @return The summary of the class.
+     */
+    public static ClassSummary createClassSummary(PaprikaClass paprikaClass) {
+        return new ClassSummary(paprikaClass, paprikaClass.getPath());
+    }
+
+    /**
+     * Copy of the summary for a file moved to another path without being modified.
+     *
+     * @param path The new path of the class file.
+     * @return A summary of the same class located at the given path.
+     */
+    public ClassSummary moveTo(String path) {
+        return new ClassSummary(this, path);
+    }
+
+    /**
+     * Rebuild the class in the given app.
+     *
+     * @param paprikaApp The app of the analysed commit.
+     * @return The class, with its methods, arguments and variables.
+     */
+    public PaprikaClass toPaprikaClass(PaprikaApp paprikaApp) {
+        PaprikaClass paprikaClass = PaprikaClass.createPaprikaClass(name, paprikaApp, modifier, path);
+        paprikaClass.setSimpleName(simpleName);
+        paprikaClass.setParentName(parentName);
+        paprikaClass.getInterfacesNames().addAll(interfacesNames);
+        paprikaClass.setInterface(isInterface);
+        paprikaClass.setStatic(isStatic);
+        paprikaClass.setInnerClass(isInnerClass);
+        paprikaClass.setActivity(isActivity);
+        paprikaClass.setBroadcastReceiver(isBroadcastReceiver);
+        paprikaClass.setService(isService);
+        paprikaClass.setContentProvider(isContentProvider);
+        paprikaClass.setView(isView);
+        paprikaClass.setAsyncTask(isAsyncTask);
+        paprikaClass.setApplication(isApplication);
+        paprikaClass.setDepthOfInheritance(depthOfInheritance);
+        for (VariableSummary variable : variables) {
+            variable.toPaprikaVariable(paprikaClass);
+        }
+        for (MethodSummary method : methods) {
+            method.toPaprikaMethod(paprikaClass);
+        }
+        return paprikaClass;
+    }
+
+    /**
+     * Record the component classification of the class.
+     *
+     * @param paprikaClass The class, classified by the {@link ComponentClassifier}.
+     */
+    public void setClassification(PaprikaClass paprikaClass) {
+        this.isActivity = paprikaClass.isActivity();
+        this.isBroadcastReceiver = paprikaClass.isBroadcastReceiver();
+        this.isService = paprikaClass.isService();
+        this.isContentProvider = paprikaClass.isContentProvider();
+        this.isView = paprikaClass.isView();
+        this.isAsyncTask = paprikaClass.isAsyncTask();
+        this.isApplication = paprikaClass.isApplication();
+        this.depthOfInheritance = paprikaClass.getDepthOfInheritance();
+    }
+
+    /**
+     * @return The declarations of the class that references from other classes are resolved against:
+     * its names, kind, supertypes, fields and method signatures.
+     */
+    public String getSignature() {
+        List<String> members = new ArrayList<>();
+        for (VariableSummary variable : variables) {
+            members.add(variable.modifier + " " + variable.isStatic + " " + variable.type + " " + variable.name);
+        }
+        for (MethodSummary method : methods) {
+            members.add(method.modifier + " " + method.isStatic + " " + method.returnType + " " + method.name + method.arguments);
+        }
+        Collections.sort(members);
+        return name + " " + simpleName + " " + modifier + " " + isInterface + " " + isStatic + " " + parentName + " "
+                + interfacesNames + " " + members;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSimpleName() {
+        return simpleName;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getParentName() {
+        return parentName;
+    }
+
+    /**
+     * @return The types of the fields of the class and the return types of its methods.
+     */
+    public Set<String> getMemberTypes() {
+        Set<String> memberTypes = new HashSet<>();
+        for (VariableSummary variable : variables) {
+            memberTypes.add(variable.type);
+        }
+        for (MethodSummary method : methods) {
+            memberTypes.add(method.returnType);
+        }
+        return memberTypes;
+    }
+
+    public List<String> getInterfacesNames() {
+        return interfacesNames;
+    }
+
+    public boolean isInterface() {
+        return isInterface;
+    }
+
+    /**
+     * @return The root of the superclass chain the classification was computed from,
+     * null if the class has not been classified from its chain yet.
+     */
+    public String getSuperClassRoot() {
+        return superClassRoot;
+    }
+
+    public void setSuperClassRoot(String superClassRoot) {
+        this.superClassRoot = superClassRoot;
+    }
+
+    private static class VariableSummary implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final String type;
+        private final PaprikaModifiers modifier;
+        private final boolean isStatic;
+
+        VariableSummary(PaprikaVariable paprikaVariable) {
+            this.name = paprikaVariable.getName();
+            this.type = paprikaVariable.getType();
+            this.modifier = paprikaVariable.getModifier();
+            this.isStatic = paprikaVariable.isStatic();
+        }
+
+        void toPaprikaVariable(PaprikaClass paprikaClass) {
+            PaprikaVariable paprikaVariable = PaprikaVariable.createPaprikaVariable(name, type, modifier, paprikaClass);
+            paprikaVariable.setStatic(isStatic);
+        }
+    }
+
+    private static class MethodSummary implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final PaprikaModifiers modifier;
+        private final String returnType;
+        private final List<String> arguments;
+        private final int numberOfLines;
+        private final int complexity;
+        private final int numberOfDeclaredLocals;
+        private final boolean isConstructor;
+        private final boolean isGetter;
+        private final boolean isSetter;
+        private final boolean isStatic;
+        private final ArrayList<InvocationData> invocationData;
+        private final ArrayList<VariableData> usedVariablesData;
+
+        MethodSummary(PaprikaMethod paprikaMethod) {
+            this.name = paprikaMethod.getName();
+            this.modifier = paprikaMethod.getModifier();
+            this.returnType = paprikaMethod.getReturnType();
+            this.arguments = new ArrayList<>();
+            for (PaprikaArgument paprikaArgument : paprikaMethod.getArguments()) {
+                arguments.add(paprikaArgument.getName());
+            }
+            this.numberOfLines = paprikaMethod.getNumberOfLines();
+            this.complexity = paprikaMethod.getComplexity();
+            this.numberOfDeclaredLocals = paprikaMethod.getNumberOfDeclaredLocals();
+            this.isConstructor = paprikaMethod.isConstructor();
+            this.isGetter = paprikaMethod.isGetter();
+            this.isSetter = paprikaMethod.isSetter();
+            this.isStatic = paprikaMethod.isStatic();
+            this.invocationData = new ArrayList<>(paprikaMethod.getInvocationData());
+            this.usedVariablesData = new ArrayList<>(paprikaMethod.getUsedVariablesData());
+        }
+
+        void toPaprikaMethod(PaprikaClass paprikaClass) {
+            PaprikaMethod paprikaMethod = PaprikaMethod.createPaprikaMethod(name, modifier, returnType, paprikaClass);
+            for (int i = 0; i < arguments.size(); i++) {
+                PaprikaArgument.createPaprikaArgument(arguments.get(i), i, paprikaMethod);
+            }
+            paprikaMethod.setNumberOfLines(numberOfLines);
+            paprikaMethod.setComplexity(complexity);
+            paprikaMethod.setNumberOfDeclaredLocals(numberOfDeclaredLocals);
+            paprikaMethod.setConstructor(isConstructor);
+            paprikaMethod.setGetter(isGetter);
+            paprikaMethod.setSetter(isSetter);
+            paprikaMethod.setStatic(isStatic);
+            paprikaMethod.setInvocationData(new ArrayList<>(invocationData));
+            paprikaMethod.setUsedVariablesData(new ArrayList<>(usedVariablesData));
+        }
+    }
+}
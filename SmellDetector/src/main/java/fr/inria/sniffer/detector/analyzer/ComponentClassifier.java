@@ -0,0 +1,244 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import fr.inria.sniffer.detector.entities.PaprikaClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Set the Android component flags and the depth of inheritance of a class
+ * from the root of its superclass chain, i.e. the last superclass found in the analysed sources.
+ * <p>
+ * The classification of each root is memoized, so that a classifier can be shared by all the commits of an analysis.
+ * The classes of the platform jar, when given, are classified from its index instead of being loaded.
+ */
+public class ComponentClassifier {
+    private static final Logger logger = LoggerFactory.getLogger(ComponentClassifier.class.getName());
+    private final ClassLoader classloader;
+    private final FrameworkIndex frameworkIndex;
+    private final ConcurrentMap<String, Classification> classifications = new ConcurrentHashMap<>();
+
+    /**
+     * @param classloader Loader of the libraries the superclasses are looked for in.
+     */
+    public ComponentClassifier(ClassLoader classloader) {
+        this(classloader, null);
+    }
+
+    /**
+     * @param classloader    Loader of the libraries the superclasses are looked for in.
+     * @param frameworkIndex Index of the platform jar, searched before the classloader, may be null.
+     */
+    public ComponentClassifier(ClassLoader classloader, FrameworkIndex frameworkIndex) {
+        this.classloader = classloader;
+        this.frameworkIndex = frameworkIndex;
+        if (frameworkIndex != null) {
+            for (String name : frameworkIndex.getTypeNames()) {
+                classifications.put(name, classifyRoot(name));
+            }
+        }
+    }
+
+    /**
+     * Create a classifier to share between the analyses of a run.
+     *
+     * @param androidJar Path to the android platform jar to index, may be null.
+     */
+    public static ComponentClassifier createComponentClassifier(String androidJar) throws IOException {
+        FrameworkIndex frameworkIndex = androidJar == null ? null : FrameworkIndex.createFrameworkIndex(new File(androidJar));
+        return new ComponentClassifier(new URLClassLoader(new URL[0]), frameworkIndex);
+    }
+
+    /**
+     * Identify the classifier created from a platform jar, to key what is computed with it.
+     *
+     * @param androidJar Path to the android platform jar, may be null.
+     * @return "none" without a jar, otherwise a hash of the path and size of the jar.
+     */
+    public static String identity(String androidJar) throws IOException {
+        if (androidJar == null) {
+            return "none";
+        }
+        File jar = new File(androidJar).getCanonicalFile();
+        return Integer.toHexString((jar.getPath() + ":" + jar.length()).hashCode());
+    }
+
+    /**
+     * Find the root of the superclass chain of a class using only class names,
+     * the same way {@link TypeProcessor#findSuperClass} does with the Spoon model.
+     *
+     * @param className   Qualified name of the class.
+     * @param parentNames Qualified name of the superclass of each class of the app, null if it has none.
+     * @return The qualified name of the last superclass of the chain, null if the class has no superclass.
+     */
+    public static String findSuperClassRoot(String className, Map<String, String> parentNames) {
+        String reference = null;
+        String current = className;
+        Set<String> visited = new HashSet<>();
+        while (current != null && visited.add(current)) {
+            String parentName = parentNames.get(current);
+            if (parentName == null) {
+                break;
+            }
+            reference = parentName;
+            current = parentNames.containsKey(parentName) ? parentName : null;
+            if (parentName.equals(parentNames.get(parentName))) {
+                break;
+            }
+        }
+        return reference;
+    }
+
+    /**
+     * Classify a class from the root of its superclass chain.
+     * If the root cannot be loaded, the simple name of the class and the name of its superclass are used instead.
+     *
+     * @param paprikaClass   The class to classify, its simple name must be set.
+     * @param root           Qualified name of the root of its superclass chain, null if the class has no superclass.
+     * @param superClassName Qualified name of the direct superclass of the class.
+     */
+    public void classify(PaprikaClass paprikaClass, String root, String superClassName) {
+        ComponentKind kind = null;
+        int doi = 0;
+        if (root != null) {
+            Classification classification = getClassification(root);
+            kind = classification.kind;
+            doi = classification.depthOfInheritance;
+            if (!classification.found) {
+                logger.debug("switching to heuristic mode");
+                kind = ComponentKind.fromSimpleName(paprikaClass.getSimpleName());
+                ComponentKind superKind = ComponentKind.fromSimpleName(superClassName);
+                if (superKind != null && (kind == null || superKind.ordinal() < kind.ordinal())) {
+                    kind = superKind;
+                }
+            }
+        }
+
+        paprikaClass.setActivity(kind == ComponentKind.ACTIVITY);
+        paprikaClass.setAsyncTask(kind == ComponentKind.ASYNC_TASK);
+        paprikaClass.setContentProvider(kind == ComponentKind.CONTENT_PROVIDER);
+        paprikaClass.setBroadcastReceiver(kind == ComponentKind.BROADCAST_RECEIVER);
+        paprikaClass.setService(kind == ComponentKind.SERVICE);
+        paprikaClass.setView(kind == ComponentKind.VIEW);
+        paprikaClass.setApplication(kind == ComponentKind.APPLICATION);
+        paprikaClass.setDepthOfInheritance(doi);
+    }
+
+    private Classification getClassification(String root) {
+        Classification classification = classifications.get(root);
+        if (classification == null) {
+            classification = classifyRoot(root);
+            Classification previous = classifications.putIfAbsent(root, classification);
+            if (previous != null) {
+                classification = previous;
+            }
+        }
+        return classification;
+    }
+
+    /**
+     * Walk the superclasses of a root, from the framework index and then from the classloader,
+     * until one of them is an Android component.
+     */
+    private Classification classifyRoot(String root) {
+        int doi = 0;
+        String current = root;
+        FrameworkIndex.Type type;
+        while (frameworkIndex != null && (type = frameworkIndex.getType(current)) != null) {
+            if (type.getSuperClassName() == null) {
+                return new Classification(null, doi, true);
+            }
+            doi++;
+            ComponentKind kind = ComponentKind.fromSimpleName(type.getSimpleName());
+            if (kind != null) {
+                return new Classification(kind, doi, true);
+            }
+            current = type.getSuperClassName();
+        }
+        try {
+            Class myRealClass = classloader.loadClass(current);
+            while (myRealClass.getSuperclass() != null) {
+                doi++;
+                ComponentKind kind = ComponentKind.fromSimpleName(myRealClass.getSimpleName());
+                if (kind != null) {
+                    return new Classification(kind, doi, true);
+                }
+                myRealClass = myRealClass.getSuperclass();
+            }
+            return new Classification(null, doi, true);
+        } catch (ClassNotFoundException | NoClassDefFoundError e) {
+            logger.warn("Class Not Found or Definition Not Found ; message : " + e.getLocalizedMessage());
+            return new Classification(null, doi, false);
+        }
+    }
+
+    /**
+     * Android component recognized from the suffix of a class name, in order of precedence.
+     */
+    enum ComponentKind {
+        ACTIVITY("Activity"),
+        CONTENT_PROVIDER("ContentProvider"),
+        ASYNC_TASK("AsyncTask"),
+        VIEW("View"),
+        BROADCAST_RECEIVER("BroadcastReceiver"),
+        SERVICE("Service"),
+        APPLICATION("Application");
+
+        private final String suffix;
+
+        ComponentKind(String suffix) {
+            this.suffix = suffix;
+        }
+
+        static ComponentKind fromSimpleName(String name) {
+            for (ComponentKind kind : values()) {
+                if (name.endsWith(kind.suffix)) {
+                    return kind;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Classification of a root, not found if neither the framework index nor the classloader know it,
+     * the depth of inheritance then only counts the superclasses walked before the missing one.
+     */
+    private static class Classification {
+        private final ComponentKind kind;
+        private final int depthOfInheritance;
+        private final boolean found;
+
+        Classification(ComponentKind kind, int depthOfInheritance, boolean found) {
+            this.kind = kind;
+            this.depthOfInheritance = depthOfInheritance;
+            this.found = found;
+        }
+    }
+}
@@ -17,6 +17,7 @@
  */
 package fr.inria.sniffer.detector.analyzer;
 
+import fr.inria.sniffer.detector.entities.PaprikaClass;
 import fr.inria.sniffer.detector.entities.PaprikaMethod;
 import spoon.reflect.declaration.CtConstructor;
 
@@ -24,6 +25,10 @@ import spoon.reflect.declaration.CtConstructor;
  * Created by sarra on 08/03/17.
  */
 public class ConstructorProcessor extends ExecutableProcessor<CtConstructor> {
+    public ConstructorProcessor(PaprikaClass paprikaClass) {
+        super(paprikaClass);
+    }
+
     @Override
     protected void process(CtConstructor ctExecutable, PaprikaMethod paprikaMethod) {
         paprikaMethod.setConstructor(true);
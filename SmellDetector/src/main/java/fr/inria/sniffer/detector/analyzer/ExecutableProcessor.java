@@ -18,20 +18,26 @@
 package fr.inria.sniffer.detector.analyzer;
 
 import fr.inria.sniffer.detector.entities.PaprikaArgument;
+import fr.inria.sniffer.detector.entities.PaprikaClass;
 import fr.inria.sniffer.detector.entities.PaprikaMethod;
 import fr.inria.sniffer.detector.entities.PaprikaModifiers;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import spoon.reflect.code.*;
-import spoon.reflect.declaration.*;
-import spoon.reflect.visitor.filter.TypeFilter;
-import spoon.support.reflect.code.CtInvocationImpl;
+import spoon.reflect.code.CtBlock;
+import spoon.reflect.cu.SourcePosition;
+import spoon.reflect.declaration.CtExecutable;
+import spoon.reflect.declaration.CtModifiable;
+import spoon.reflect.declaration.CtParameter;
 
-import java.util.Arrays;
 import java.util.List;
 
 public abstract class ExecutableProcessor<T extends CtExecutable> {
-    private static final Logger logger = LoggerFactory.getLogger(ExecutableProcessor.class.getName());
+    private final PaprikaClass paprikaClass;
+
+    /**
+     * @param paprikaClass The class owning the processed executables.
+     */
+    protected ExecutableProcessor(PaprikaClass paprikaClass) {
+        this.paprikaClass = paprikaClass;
+    }
 
     public void process(T ctExecutable) {
         String name = ctExecutable.getSimpleName();
@@ -48,20 +54,18 @@ public abstract class ExecutableProcessor<T extends CtExecutable> {
         }
         int position = 0;
         String qualifiedName;
-        PaprikaMethod paprikaMethod = PaprikaMethod.createPaprikaMethod(name, paprikaModifiers, returnType,
-                MainProcessor.currentClass);
-        MainProcessor.currentMethod = paprikaMethod;
+        PaprikaMethod paprikaMethod = PaprikaMethod.createPaprikaMethod(name, paprikaModifiers, returnType, paprikaClass);
         for (CtParameter<?> ctParameter : (List<CtParameter>) ctExecutable.getParameters()) {
             qualifiedName = ctParameter.getType().getQualifiedName();
             PaprikaArgument.createPaprikaArgument(qualifiedName, position, paprikaMethod);
             position++;
         }
-        int numberOfDeclaredLocals = ctExecutable.getElements(new TypeFilter<CtLocalVariable>(CtLocalVariable.class)).size();
         paprikaMethod.setNumberOfLines(countEffectiveCodeLines(ctExecutable));
-        handleUsedVariables(ctExecutable, paprikaMethod);
-        handleInvocations(ctExecutable, paprikaMethod);
-        paprikaMethod.setComplexity(getComplexity(ctExecutable));
-        paprikaMethod.setNumberOfDeclaredLocals(numberOfDeclaredLocals);
+        ExecutableScanner scanner = ExecutableScanner.scanExecutable(ctExecutable);
+        paprikaMethod.getUsedVariablesData().addAll(scanner.getUsedVariablesData());
+        paprikaMethod.getInvocationData().addAll(scanner.getInvocationData());
+        paprikaMethod.setComplexity(scanner.getComplexity());
+        paprikaMethod.setNumberOfDeclaredLocals(scanner.getNumberOfDeclaredLocals());
 
         process(ctExecutable, paprikaMethod);
     }
@@ -74,77 +78,19 @@ public abstract class ExecutableProcessor<T extends CtExecutable> {
      */
     protected abstract void process(T ctExecutable, PaprikaMethod paprikaMethod);
 
-    private int countEffectiveCodeLines(T ctMethod) {
-        try {
-            return ctMethod.getBody().toString().split("\n").length;
-        } catch (NullPointerException npe) {
-            return ctMethod.getPosition().getEndLine() - ctMethod.getPosition().getLine();
-        }
-    }
-
-    private void handleUsedVariables(T ctExecutable, PaprikaMethod paprikaMethod) {
-        List<CtFieldAccess> elements = ctExecutable.getElements(new TypeFilter<CtFieldAccess>(CtFieldAccess.class));
-        String variableTarget = null;
-        String variableName;
-
-        CtTypeMember member = ctExecutable instanceof CtTypeMember ? (CtTypeMember) ctExecutable : null;
-        for (CtFieldAccess ctFieldAccess : elements) {
-            if (ctFieldAccess.getTarget() != null && ctFieldAccess.getTarget().getType() != null) {
-                if (member != null && ctFieldAccess.getTarget().getType().getDeclaration() == member.getDeclaringType()) {
-                    variableTarget = ctFieldAccess.getTarget().getType().getQualifiedName();
-                    variableName = ctFieldAccess.getVariable().getSimpleName();
-                    paprikaMethod.getUsedVariablesData().add(new VariableData(variableTarget, variableName));
-                }
-            }
-        }
-    }
-
-    private void handleInvocations(T ctConstructor, PaprikaMethod paprikaMethod) {
-        String targetName;
-        String executable;
-        String type = "Unknown";
-        // Thanks to spoon we have to use a CtAbstractInvocation
-        List<CtAbstractInvocation> invocations = ctConstructor.getElements(new TypeFilter<>(CtAbstractInvocation.class));
-        for (CtAbstractInvocation invocation : invocations) {
-            executable = invocation.getExecutable().getSimpleName();
-            targetName = getTarget(invocation);
-            if (invocation.getExecutable().getType() != null) {
-                type = invocation.getExecutable().getType().getQualifiedName();
-            }
-            if (targetName != null) {
-                paprikaMethod.getInvocationData().add(new InvocationData(targetName, executable, type));
-            }
+    /**
+     * Count the lines spanned by the body of an executable from its source position,
+     * the body is only printed when it has no position, e.g. for implicit constructors.
+     */
+    static int countEffectiveCodeLines(CtExecutable<?> ctExecutable) {
+        CtBlock<?> body = ctExecutable.getBody();
+        if (body == null) {
+            return ctExecutable.getPosition().getEndLine() - ctExecutable.getPosition().getLine();
         }
-    }
-
-    private String getTarget(CtAbstractInvocation ctInvocation) {
-        try {
-            return ctInvocation.getExecutable().getDeclaringType().getQualifiedName();
-        } catch (NullPointerException nullPointerException) {
-            logger.warn("Could not find qualified name for method call: " + ctInvocation.toString() + " (" + nullPointerException.getMessage() + ")");
+        SourcePosition position = body.getPosition();
+        if (position.isValidPosition()) {
+            return position.getEndLine() - position.getLine() + 1;
         }
-        return null;
-    }
-
-    private int getComplexity(T ctConstructor) {
-        int numberOfTernaries = ctConstructor.getElements(new TypeFilter<CtConditional>(CtConditional.class)).size();
-        int numberOfIfs = ctConstructor.getElements(new TypeFilter<CtIf>(CtIf.class)).size();
-        int numberOfCases = ctConstructor.getElements(new TypeFilter<CtCase>(CtCase.class)).size();
-        int numberOfReturns = ctConstructor.getElements(new TypeFilter<CtReturn>(CtReturn.class)).size();
-        int numberOfLoops = ctConstructor.getElements(new TypeFilter<CtLoop>(CtLoop.class)).size();
-        int numberOfBinaryOperators = ctConstructor.getElements(new TypeFilter<CtBinaryOperator>(CtBinaryOperator.class) {
-            private final List<BinaryOperatorKind> operators = Arrays.asList(BinaryOperatorKind.AND, BinaryOperatorKind.OR);
-
-            @Override
-            public boolean matches(CtBinaryOperator element) {
-                return super.matches(element) && operators.contains(element.getKind());
-            }
-        }).size();
-        int numberOfCatches = ctConstructor.getElements(new TypeFilter<CtCatch>(CtCatch.class)).size();
-        int numberOfThrows = ctConstructor.getElements(new TypeFilter<CtThrow>(CtThrow.class)).size();
-        int numberOfBreaks = ctConstructor.getElements(new TypeFilter<CtBreak>(CtBreak.class)).size();
-        int numberOfContinues = ctConstructor.getElements(new TypeFilter<CtContinue>(CtContinue.class)).size();
-        return numberOfBreaks + numberOfCases + numberOfCatches + numberOfContinues + numberOfIfs + numberOfLoops +
-                numberOfReturns + numberOfTernaries + numberOfThrows + numberOfBinaryOperators + 1;
+        return body.toString().split("\n").length;
     }
 }
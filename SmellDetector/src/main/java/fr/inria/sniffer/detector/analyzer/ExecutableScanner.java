@@ -0,0 +1,153 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spoon.reflect.code.BinaryOperatorKind;
+import spoon.reflect.code.CtAbstractInvocation;
+import spoon.reflect.code.CtBinaryOperator;
+import spoon.reflect.code.CtBreak;
+import spoon.reflect.code.CtCase;
+import spoon.reflect.code.CtCatch;
+import spoon.reflect.code.CtConditional;
+import spoon.reflect.code.CtContinue;
+import spoon.reflect.code.CtFieldAccess;
+import spoon.reflect.code.CtIf;
+import spoon.reflect.code.CtLocalVariable;
+import spoon.reflect.code.CtLoop;
+import spoon.reflect.code.CtReturn;
+import spoon.reflect.code.CtThrow;
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtExecutable;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.declaration.CtTypeMember;
+import spoon.reflect.visitor.CtScanner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collect the metrics of a method or constructor in a single traversal of its elements:
+ * cyclomatic complexity, declared locals, used fields and invocations.
+ * <p>
+ * Elements are visited in the same order as {@link CtElement#getElements}, so the used fields
+ * and invocations are listed in the same order.
+ */
+public class ExecutableScanner extends CtScanner {
+    private static final Logger logger = LoggerFactory.getLogger(ExecutableScanner.class.getName());
+
+    private final CtType<?> declaringType;
+    private int complexity = 1;
+    private int numberOfDeclaredLocals = 0;
+    private final List<VariableData> usedVariablesData = new ArrayList<>();
+    private final List<InvocationData> invocationData = new ArrayList<>();
+    private String invocationType = "Unknown";
+
+    private ExecutableScanner(CtExecutable<?> ctExecutable) {
+        this.declaringType = ctExecutable instanceof CtTypeMember ? ((CtTypeMember) ctExecutable).getDeclaringType() : null;
+    }
+
+    /**
+     * Scan a method or constructor, including itself.
+     *
+     * @param ctExecutable The executable to scan.
+     * @return The scanner holding the collected metrics.
+     */
+    public static ExecutableScanner scanExecutable(CtExecutable<?> ctExecutable) {
+        ExecutableScanner scanner = new ExecutableScanner(ctExecutable);
+        scanner.scan(ctExecutable);
+        return scanner;
+    }
+
+    @Override
+    public void scan(CtElement element) {
+        if (element != null) {
+            count(element);
+        }
+        super.scan(element);
+    }
+
+    private void count(CtElement element) {
+        if (element instanceof CtConditional || element instanceof CtIf || element instanceof CtCase
+                || element instanceof CtReturn || element instanceof CtLoop || element instanceof CtCatch
+                || element instanceof CtThrow || element instanceof CtBreak || element instanceof CtContinue) {
+            complexity++;
+        } else if (element instanceof CtBinaryOperator) {
+            BinaryOperatorKind kind = ((CtBinaryOperator<?>) element).getKind();
+            if (kind == BinaryOperatorKind.AND || kind == BinaryOperatorKind.OR) {
+                complexity++;
+            }
+        } else if (element instanceof CtLocalVariable) {
+            numberOfDeclaredLocals++;
+        } else if (element instanceof CtFieldAccess) {
+            handleFieldAccess((CtFieldAccess<?>) element);
+        }
+        if (element instanceof CtAbstractInvocation) {
+            handleInvocation((CtAbstractInvocation<?>) element);
+        }
+    }
+
+    private void handleFieldAccess(CtFieldAccess<?> ctFieldAccess) {
+        if (declaringType != null && ctFieldAccess.getTarget() != null && ctFieldAccess.getTarget().getType() != null
+                && ctFieldAccess.getTarget().getType().getDeclaration() == declaringType) {
+            String variableTarget = ctFieldAccess.getTarget().getType().getQualifiedName();
+            String variableName = ctFieldAccess.getVariable().getSimpleName();
+            usedVariablesData.add(new VariableData(variableTarget, variableName));
+        }
+    }
+
+    /**
+     * When the type of an invocation is unknown, the type of the previous invocation is kept.
+     */
+    private void handleInvocation(CtAbstractInvocation<?> invocation) {
+        String executable = invocation.getExecutable().getSimpleName();
+        String targetName = getTarget(invocation);
+        if (invocation.getExecutable().getType() != null) {
+            invocationType = invocation.getExecutable().getType().getQualifiedName();
+        }
+        if (targetName != null) {
+            invocationData.add(new InvocationData(targetName, executable, invocationType));
+        }
+    }
+
+    private String getTarget(CtAbstractInvocation<?> ctInvocation) {
+        try {
+            return ctInvocation.getExecutable().getDeclaringType().getQualifiedName();
+        } catch (NullPointerException nullPointerException) {
+            logger.warn("Could not find qualified name for method call: " + ctInvocation.toString() + " (" + nullPointerException.getMessage() + ")");
+        }
+        return null;
+    }
+
+    public int getComplexity() {
+        return complexity;
+    }
+
+    public int getNumberOfDeclaredLocals() {
+        return numberOfDeclaredLocals;
+    }
+
+    public List<VariableData> getUsedVariablesData() {
+        return usedVariablesData;
+    }
+
+    public List<InvocationData> getInvocationData() {
+        return invocationData;
+    }
+}
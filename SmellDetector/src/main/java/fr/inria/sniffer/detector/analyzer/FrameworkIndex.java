@@ -0,0 +1,196 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Superclass of each class of a platform jar, e.g. android.jar,
+ * read from the headers of the class files without loading them.
+ */
+public class FrameworkIndex {
+    private static final Logger logger = LoggerFactory.getLogger(FrameworkIndex.class.getName());
+    private static final int ACC_INTERFACE = 0x0200;
+
+    private final Map<String, Type> types;
+
+    private FrameworkIndex(Map<String, Type> types) {
+        this.types = types;
+    }
+
+    /**
+     * Index all the classes of a jar.
+     *
+     * @param jar The jar to index.
+     * @return The index of its classes.
+     */
+    public static FrameworkIndex createFrameworkIndex(File jar) throws IOException {
+        long start = System.nanoTime();
+        Map<String, Type> types = new HashMap<>();
+        try (ZipFile zipFile = new ZipFile(jar)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String entryName = entry.getName();
+                if (entry.isDirectory() || !entryName.endsWith(".class") || entryName.endsWith("-info.class")) {
+                    continue;
+                }
+                try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                    String[] names = readNames(inputStream);
+                    types.put(names[0], new Type(simpleName(names[0]), names[1]));
+                }
+            }
+        }
+        logger.info("Indexed " + types.size() + " classes of " + jar + " in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+        return new FrameworkIndex(types);
+    }
+
+    /**
+     * @param name Qualified name of a class.
+     * @return The indexed class, null if it is not part of the jar.
+     */
+    public Type getType(String name) {
+        return types.get(name);
+    }
+
+    /**
+     * @return Qualified names of the indexed classes.
+     */
+    public Set<String> getTypeNames() {
+        return Collections.unmodifiableSet(types.keySet());
+    }
+
+    /**
+     * Read the name of the class and the name of its superclass from a class file,
+     * the superclass of an interface is null, as for {@link Class#getSuperclass()}.
+     *
+     * @return The qualified names of the class and of its superclass.
+     */
+    static String[] readNames(InputStream inputStream) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream));
+        if (input.readInt() != 0xCAFEBABE) {
+            throw new IOException("Not a class file");
+        }
+        input.readUnsignedShort();
+        input.readUnsignedShort();
+        int constantPoolCount = input.readUnsignedShort();
+        String[] utf8 = new String[constantPoolCount];
+        int[] classNames = new int[constantPoolCount];
+        for (int index = 1; index < constantPoolCount; index++) {
+            int tag = input.readUnsignedByte();
+            switch (tag) {
+                case 1:
+                    utf8[index] = input.readUTF();
+                    break;
+                case 7:
+                    classNames[index] = input.readUnsignedShort();
+                    break;
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    input.skipBytes(2);
+                    break;
+                case 15:
+                    input.skipBytes(3);
+                    break;
+                case 3:
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    input.skipBytes(4);
+                    break;
+                case 5:
+                case 6:
+                    input.skipBytes(8);
+                    index++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+        int access = input.readUnsignedShort();
+        int thisClass = input.readUnsignedShort();
+        int superClass = input.readUnsignedShort();
+        String name = utf8[classNames[thisClass]].replace('/', '.');
+        if (superClass == 0 || (access & ACC_INTERFACE) != 0) {
+            return new String[]{name, null};
+        }
+        return new String[]{name, utf8[classNames[superClass]].replace('/', '.')};
+    }
+
+    /**
+     * Simple name of a class from its binary name, as returned by {@link Class#getSimpleName()}.
+     */
+    static String simpleName(String name) {
+        String simpleName = name.substring(name.lastIndexOf('.') + 1);
+        int nested = simpleName.lastIndexOf('$');
+        if (nested < 0) {
+            return simpleName;
+        }
+        simpleName = simpleName.substring(nested + 1);
+        int start = 0;
+        while (start < simpleName.length() && Character.isDigit(simpleName.charAt(start))) {
+            start++;
+        }
+        return simpleName.substring(start);
+    }
+
+    /**
+     * A class of the jar.
+     */
+    public static class Type {
+        private final String simpleName;
+        private final String superClassName;
+
+        Type(String simpleName, String superClassName) {
+            this.simpleName = simpleName;
+            this.superClassName = superClassName;
+        }
+
+        public String getSimpleName() {
+            return simpleName;
+        }
+
+        /**
+         * @return Qualified name of the superclass, null for interfaces and java.lang.Object.
+         */
+        public String getSuperClassName() {
+            return superClassName;
+        }
+    }
+}
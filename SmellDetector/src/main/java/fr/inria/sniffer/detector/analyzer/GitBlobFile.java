@@ -0,0 +1,136 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import spoon.SpoonException;
+import spoon.compiler.Environment;
+import spoon.compiler.SpoonFile;
+import spoon.compiler.SpoonFolder;
+import spoon.support.compiler.VirtualFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Java file read from a blob of the git object database.
+ * <p>
+ * The file is declared as an actual file so that Spoon keeps its path as compilation unit name
+ * (and thus as the position of its types) instead of copying it into a temporary file.
+ * The path is the one the file would have in a checkout of the repository, it does not need to exist.
+ */
+public class GitBlobFile implements SpoonFile {
+    private final Repository repository;
+    private final ObjectId blobId;
+    private final String path;
+
+    public GitBlobFile(Repository repository, ObjectId blobId, String path) {
+        this.repository = repository;
+        this.blobId = blobId;
+        this.path = path;
+    }
+
+    public ObjectId getBlobId() {
+        return blobId;
+    }
+
+    private byte[] getBytes() {
+        try {
+            return repository.open(blobId, Constants.OBJ_BLOB).getBytes();
+        } catch (IOException e) {
+            throw new SpoonException("Could not read blob " + blobId.name() + " (" + path + ")", e);
+        }
+    }
+
+    @Override
+    public InputStream getContent() {
+        return new ByteArrayInputStream(getBytes());
+    }
+
+    @Override
+    public char[] getContentChars(Environment env) {
+        byte[] bytes = getBytes();
+        Charset encoding = env.getEncodingProvider() == null ? env.getEncoding() : env.getEncodingProvider().detectEncoding(this, bytes);
+        return new String(bytes, encoding).toCharArray();
+    }
+
+    @Override
+    public boolean isJava() {
+        return path.endsWith(".java");
+    }
+
+    @Override
+    public boolean isActualFile() {
+        return true;
+    }
+
+    @Override
+    public SpoonFolder getParent() {
+        return new VirtualFolder();
+    }
+
+    @Override
+    public String getName() {
+        return toFile().getName();
+    }
+
+    @Override
+    public boolean isFile() {
+        return true;
+    }
+
+    @Override
+    public boolean isArchive() {
+        return false;
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public File getFileSystemParent() {
+        return toFile().getParentFile();
+    }
+
+    @Override
+    public File toFile() {
+        return new File(path);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof GitBlobFile && path.equals(((GitBlobFile) o).path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
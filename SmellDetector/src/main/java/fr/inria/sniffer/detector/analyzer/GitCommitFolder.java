@@ -0,0 +1,146 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import spoon.support.compiler.FilteringFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Java files of a given commit, read from the git object database without checking out the commit.
+ * <p>
+ * Each file is given the path it would have in a checkout of the commit at the analysed folder,
+ * so that the exclusion patterns and the classes file paths are the same as when analysing the working tree.
+ */
+public class GitCommitFolder extends FilteringFolder {
+
+    private GitCommitFolder() {
+    }
+
+    /**
+     * Open the git repository containing the given folder.
+     *
+     * @param folder Analysed folder, either the repository root or one of its sub folders.
+     * @return The opened repository, to close by the caller.
+     * @throws IOException If no repository could be found.
+     */
+    public static Repository openRepository(String folder) throws IOException {
+        FileRepositoryBuilder builder = new FileRepositoryBuilder().findGitDir(new File(folder));
+        if (builder.getGitDir() == null) {
+            throw new IOException("No git repository found for " + folder);
+        }
+        return builder.build();
+    }
+
+    /**
+     * List the java files of the commit located under the analysed folder.
+     *
+     * @param repository The git repository.
+     * @param commit     Sha (or any revision string) of the commit to read.
+     * @param appPath    Absolute path of the analysed folder, inside the repository working tree.
+     * @return A folder containing one {@link GitBlobFile} per java file.
+     * @throws IOException If the commit could not be read.
+     */
+    public static GitCommitFolder createGitCommitFolder(Repository repository, String commit, String appPath) throws IOException {
+        ObjectId commitId = repository.resolve(commit);
+        if (commitId == null) {
+            throw new IOException("Unknown commit " + commit);
+        }
+        String prefix = relativePrefix(repository, appPath);
+        GitCommitFolder folder = new GitCommitFolder();
+        try (RevWalk revWalk = new RevWalk(repository);
+             TreeWalk treeWalk = new TreeWalk(repository)) {
+            RevCommit revCommit = revWalk.parseCommit(commitId);
+            treeWalk.addTree(revCommit.getTree());
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(javaFilesFilter(prefix));
+            while (treeWalk.next()) {
+                if (!isSourceFile(treeWalk.getFileMode(0))) {
+                    continue;
+                }
+                folder.addFile(new GitBlobFile(repository, treeWalk.getObjectId(0),
+                        checkoutPath(appPath, prefix, treeWalk.getPathString())));
+            }
+        }
+        return folder;
+    }
+
+    /**
+     * Filter keeping the java files located under the analysed folder.
+     *
+     * @param prefix Path of the analysed folder relative to the repository working tree.
+     */
+    static TreeFilter javaFilesFilter(String prefix) {
+        TreeFilter filter = PathSuffixFilter.create(".java");
+        if (!prefix.isEmpty()) {
+            filter = AndTreeFilter.create(PathFilter.create(prefix), filter);
+        }
+        return filter;
+    }
+
+    /**
+     * Only regular files are analysed, symbolic links and submodules are ignored.
+     */
+    static boolean isSourceFile(FileMode fileMode) {
+        return fileMode == FileMode.REGULAR_FILE || fileMode == FileMode.EXECUTABLE_FILE;
+    }
+
+    /**
+     * Path a file of the repository would have in a checkout of the analysed folder.
+     *
+     * @param appPath Absolute path of the analysed folder.
+     * @param prefix  Path of the analysed folder relative to the repository working tree.
+     * @param path    Path of the file in the repository, using '/' separators.
+     */
+    static String checkoutPath(String appPath, String prefix, String path) {
+        if (!prefix.isEmpty()) {
+            path = path.substring(prefix.length() + 1);
+        }
+        return appPath + File.separator + path.replace('/', File.separatorChar);
+    }
+
+    /**
+     * Path of the analysed folder relative to the repository working tree, using '/' separators.
+     */
+    static String relativePrefix(Repository repository, String appPath) throws IOException {
+        if (repository.isBare()) {
+            return "";
+        }
+        String workTree = repository.getWorkTree().getCanonicalPath();
+        String folder = new File(appPath).getCanonicalPath();
+        if (folder.equals(workTree)) {
+            return "";
+        }
+        if (!folder.startsWith(workTree + File.separator)) {
+            throw new IOException(appPath + " is not inside the repository " + workTree);
+        }
+        return folder.substring(workTree.length() + 1).replace(File.separatorChar, '/');
+    }
+}
@@ -0,0 +1,386 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.neo4j.ModelWriter;
+import fr.inria.sniffer.detector.neo4j.PipelinedModelWriter;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Analyse a list of commits of a git repository in a single JVM,
+ * sharing one database connection for the whole history.
+ */
+public class HistoryAnalysis {
+    private static final Logger logger = LoggerFactory.getLogger(HistoryAnalysis.class.getName());
+
+    private final String repositoryPath;
+    private final String name;
+    private final String sdkPath;
+    private final String jarsPath;
+    private final int sdkVersion;
+    private final String module;
+    private final String status;
+    private final String[] libs;
+    private final List<String> exclusions;
+    private final boolean checkout;
+    private final boolean incremental;
+    private int workers = 1;
+    private int pipelineCapacity;
+    private SummaryCache cache;
+    private ComponentClassifier componentClassifier;
+    private long writeTime;
+    private final AtomicLong parseTime = new AtomicLong();
+    private final AtomicLong linkTime = new AtomicLong();
+
+    /**
+     * @param checkout    If true, each commit is checked out in the working tree before its analysis,
+     *                    otherwise its files are read from the git object database.
+     * @param incremental If true, only the files changed since the previous commit are parsed,
+     *                    requires to read the files from the git object database.
+     */
+    public HistoryAnalysis(String repositoryPath, String name, String sdkPath, String jarsPath, int sdkVersion,
+                           String module, String status, String[] libs, List<String> exclusions, boolean checkout,
+                           boolean incremental) {
+        if (checkout && incremental) {
+            throw new IllegalArgumentException("The incremental analysis reads the commits from the git object database, it cannot be used with checkout");
+        }
+        this.repositoryPath = new File(repositoryPath).getAbsolutePath();
+        this.name = name;
+        this.sdkPath = sdkPath;
+        this.jarsPath = jarsPath;
+        this.sdkVersion = sdkVersion;
+        this.module = module;
+        this.status = status;
+        this.libs = libs;
+        this.exclusions = exclusions == null ? Collections.<String>emptyList() : exclusions;
+        this.checkout = checkout;
+        this.incremental = incremental;
+    }
+
+    /**
+     * Set the number of commits analysed concurrently, 1 by default.
+     * Only available when reading the commits from the git object database without the incremental analysis.
+     *
+     * @param workers Size of the pool of threads analysing the commits.
+     */
+    public void setWorkers(int workers) {
+        if (workers > 1 && (checkout || incremental)) {
+            throw new IllegalArgumentException("Commits can only be analysed concurrently from the git object database, without the incremental analysis");
+        }
+        this.workers = Math.max(1, workers);
+    }
+
+    /**
+     * Write the commits on a separate thread, so that the next commit is analysed while the previous one is written.
+     *
+     * @param pipelineCapacity Maximum number of analysed commits waiting for their insertion,
+     *                         0 to insert each commit in the analysis thread.
+     */
+    public void setPipelineCapacity(int pipelineCapacity) {
+        this.pipelineCapacity = Math.max(0, pipelineCapacity);
+    }
+
+    /**
+     * Set the cache of the classes built from each java file, shared between runs.
+     * Only available with the incremental analysis.
+     *
+     * @param cache The cache, null to disable it.
+     */
+    public void setCache(SummaryCache cache) {
+        if (cache != null && !incremental) {
+            throw new IllegalArgumentException("The summary cache is only used by the incremental analysis");
+        }
+        this.cache = cache;
+    }
+
+    /**
+     * Analyse the given commits in order and insert each of them into the database.
+     * The commit number is the position of the commit in the list, starting from 1,
+     * as done by the CommitLooper scripts.
+     *
+     * @param commits        Ordered list of commit sha to analyse.
+     * @param startingCommit If not null, commits before this one are skipped (but still numbered).
+     * @param modelWriter    Opened database, kept for the whole analysis.
+     */
+    public void analyse(List<String> commits, String startingCommit, ModelWriter modelWriter) throws IOException {
+        try (Repository repository = checkout ? null : GitCommitFolder.openRepository(repositoryPath)) {
+            analyse(commits, startingCommit, modelWriter, repository);
+        }
+    }
+
+    private void analyse(List<String> commits, String startingCommit, ModelWriter modelWriter, Repository repository) throws IOException {
+        int first = startingCommit == null ? 0 : commits.indexOf(startingCommit);
+        if (first < 0) {
+            logger.warn("Starting commit " + startingCommit + " not found, nothing to analyse");
+            return;
+        }
+        long start = System.nanoTime();
+        componentClassifier = ComponentClassifier.createComponentClassifier(sdkPath);
+        writeTime = 0;
+        parseTime.set(0);
+        linkTime.set(0);
+        PipelinedModelWriter pipeline = pipelineCapacity > 0 ? new PipelinedModelWriter(modelWriter, pipelineCapacity) : null;
+        int[] results;
+        try {
+            ModelWriter destination = pipeline != null ? pipeline : modelWriter;
+            if (workers > 1) {
+                results = analyseConcurrently(commits, first, destination, repository, start);
+            } else {
+                results = analyseSequentially(commits, first, destination, repository, start);
+            }
+        } finally {
+            if (pipeline != null) {
+                pipeline.finish();
+            }
+        }
+        if (pipeline != null) {
+            // The commits handed over to the writer thread were counted as analysed
+            results[0] -= pipeline.getFailures();
+            results[1] += pipeline.getFailures();
+        }
+        long elapsed = System.nanoTime() - start;
+        logger.info("[" + name + "] " + results[0] + " commits analysed, " + results[1] + " failures, in "
+                + TimeUnit.NANOSECONDS.toSeconds(elapsed) + " s ("
+                + String.format("%.1f", commitsPerHour(results[0] + results[1], elapsed)) + " commits/hour), "
+                + TimeUnit.NANOSECONDS.toSeconds(parseTime.get()) + " s parsing, "
+                + TimeUnit.NANOSECONDS.toSeconds(linkTime.get()) + " s linking and computing the metrics, "
+                + TimeUnit.NANOSECONDS.toSeconds(pipeline != null ? pipeline.getWriteTime() : writeTime) + " s writing the database"
+                + (pipeline != null ? " in the writer thread, " + TimeUnit.NANOSECONDS.toSeconds(writeTime) + " s waiting for it" : ""));
+    }
+
+    /**
+     * @return The number of commits analysed and the number of failures.
+     */
+    private int[] analyseSequentially(List<String> commits, int first, ModelWriter modelWriter, Repository repository,
+                                      long start) throws IOException {
+        IncrementalAnalysis incrementalAnalysis = incremental ? new IncrementalAnalysis(repository, repositoryPath, cache) : null;
+        int analysed = 0;
+        int failed = 0;
+        for (int index = first; index < commits.size(); index++) {
+            String commit = commits.get(index);
+            int commitNumber = index + 1;
+            logger.info("[" + name + "] Analyzing commit " + commit + " (" + commitNumber + "/" + commits.size() + ")");
+            long commitStart = System.nanoTime();
+            try {
+                if (checkout) {
+                    checkout(commit);
+                }
+                PaprikaApp paprikaApp = analyseCommit(commit, commitNumber, repository, incrementalAnalysis);
+                writeApp(modelWriter, paprikaApp);
+                analysed++;
+            } catch (Exception e) {
+                failed++;
+                logger.error("Could not analyse commit " + commit, e);
+            }
+            long now = System.nanoTime();
+            logger.info("Commit " + commit + " done in " + TimeUnit.NANOSECONDS.toMillis(now - commitStart) + " ms ("
+                    + String.format("%.1f", commitsPerHour(analysed + failed, now - start)) + " commits/hour)");
+        }
+        if (cache != null) {
+            cache.logStatistics();
+        }
+        return new int[]{analysed, failed};
+    }
+
+    /**
+     * Analyse the commits with a pool of workers, each commit having its own {@link AnalysisContext}.
+     * The apps are still inserted one at a time in the commits order.
+     * At most two apps per worker are kept in memory waiting for their insertion.
+     *
+     * @return The number of commits analysed and the number of failures.
+     */
+    private int[] analyseConcurrently(final List<String> commits, int first, ModelWriter modelWriter,
+                                      final Repository repository, long start) {
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        Deque<String> pendingCommits = new ArrayDeque<>();
+        Deque<Future<PaprikaApp>> pendingApps = new ArrayDeque<>();
+        int analysed = 0;
+        int failed = 0;
+        try {
+            for (int index = first; index < commits.size() || !pendingApps.isEmpty(); index++) {
+                if (index < commits.size()) {
+                    final String commit = commits.get(index);
+                    final int commitNumber = index + 1;
+                    pendingCommits.add(commit);
+                    pendingApps.add(executor.submit(new Callable<PaprikaApp>() {
+                        @Override
+                        public PaprikaApp call() throws Exception {
+                            logger.info("[" + name + "] Analyzing commit " + commit + " (" + commitNumber + "/" + commits.size() + ")");
+                            return analyseCommit(commit, commitNumber, repository, null);
+                        }
+                    }));
+                    if (pendingApps.size() < 2 * workers) {
+                        continue;
+                    }
+                }
+                String commit = pendingCommits.poll();
+                try {
+                    writeApp(modelWriter, pendingApps.poll().get());
+                    analysed++;
+                } catch (ExecutionException e) {
+                    failed++;
+                    logger.error("Could not analyse commit " + commit, e.getCause());
+                } catch (Exception e) {
+                    failed++;
+                    logger.error("Could not analyse commit " + commit, e);
+                }
+                logger.info("Commit " + commit + " done ("
+                        + String.format("%.1f", commitsPerHour(analysed + failed, System.nanoTime() - start)) + " commits/hour)");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new int[]{analysed, failed};
+    }
+
+    private void writeApp(ModelWriter modelWriter, PaprikaApp paprikaApp) {
+        long start = System.nanoTime();
+        modelWriter.writeApp(paprikaApp);
+        writeTime += System.nanoTime() - start;
+    }
+
+    private PaprikaApp analyseCommit(String commit, int commitNumber, Repository repository,
+                                     IncrementalAnalysis incrementalAnalysis) throws IOException {
+        MainProcessor mainProcessor = new MainProcessor(name, -1, commitNumber, status, commit, repositoryPath,
+                sdkPath, jarsPath, sdkVersion, module, exclusions);
+        mainProcessor.getContext().setComponentClassifier(componentClassifier);
+        long start = System.nanoTime();
+        if (incrementalAnalysis != null) {
+            incrementalAnalysis.process(mainProcessor, commit);
+        } else {
+            if (repository != null) {
+                mainProcessor.setGitSource(repository, commit);
+            }
+            mainProcessor.process();
+        }
+        long parsed = System.nanoTime();
+        PaprikaApp paprikaApp = Main.completeApp(mainProcessor.getPaprikaApp(), libs);
+        long linked = System.nanoTime();
+        parseTime.addAndGet(parsed - start);
+        linkTime.addAndGet(linked - parsed);
+        logger.info("Commit " + commit + " analysed: parsing " + TimeUnit.NANOSECONDS.toMillis(parsed - start)
+                + " ms, linking and metrics " + TimeUnit.NANOSECONDS.toMillis(linked - parsed) + " ms");
+        return paprikaApp;
+    }
+
+    private static double commitsPerHour(int commits, long elapsedNanos) {
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return commits * (double) TimeUnit.HOURS.toNanos(1) / elapsedNanos;
+    }
+
+    private void checkout(String commit) throws IOException, InterruptedException {
+        git("checkout", "-q", commit);
+    }
+
+    /**
+     * List the repository commits the same way CommitLooper does,
+     * i.e. git log --topo-order --reverse.
+     *
+     * @return The ordered list of commit sha.
+     */
+    public List<String> listCommits() throws IOException, InterruptedException {
+        return git("log", "--topo-order", "--reverse", "--format=%H");
+    }
+
+    /**
+     * Read a list of commits from a file containing one sha per line.
+     * Empty lines and lines starting with '#' are ignored.
+     *
+     * @param commitsFile Path to the file.
+     * @return The ordered list of commit sha.
+     */
+    public static List<String> readCommits(String commitsFile) throws IOException {
+        List<String> commits = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(commitsFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    commits.add(line);
+                }
+            }
+        }
+        return commits;
+    }
+
+    private List<String> git(String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        Collections.addAll(command, args);
+        // Keep stderr apart from the parsed output, so that warnings are not read as commits
+        File errors = File.createTempFile("git-", ".err");
+        try {
+            Process process = new ProcessBuilder(command)
+                    .directory(new File(repositoryPath))
+                    .redirectError(errors)
+                    .start();
+            List<String> output = readLines(process.getInputStream());
+            int exitCode = process.waitFor();
+            List<String> errorOutput = readLines(new FileInputStream(errors));
+            if (exitCode != 0) {
+                throw new IOException("git " + args[0] + " exited with code " + exitCode + ": " + errorOutput);
+            }
+            for (String line : errorOutput) {
+                logger.warn("git " + args[0] + ": " + line);
+            }
+            return output;
+        } finally {
+            if (!errors.delete()) {
+                errors.deleteOnExit();
+            }
+        }
+    }
+
+    private static List<String> readLines(InputStream stream) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    lines.add(line.trim());
+                }
+            }
+        }
+        return lines;
+    }
+}
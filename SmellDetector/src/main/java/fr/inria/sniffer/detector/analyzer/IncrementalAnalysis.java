@@ -0,0 +1,626 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.entities.PaprikaClass;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spoon.support.compiler.FilteringFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Build the classes of successive commits of a repository, only parsing the java files
+ * changed since the previously analysed commit.
+ * <p>
+ * The classes of the other files are rebuilt from the {@link ClassSummary} kept for the previous commit,
+ * unless they use a type whose declaration changed: such files are parsed again, since the references
+ * they contain may now be resolved differently.
+ * To resolve the references of the parsed files, the files declaring the types they use are added
+ * to the Spoon model as context files, which are not processed.
+ * <p>
+ * The component classification of a class depends on its superclass chain, which can span other files,
+ * so it is computed again from class names whenever the root of the chain changes.
+ * The resulting app is then linked and measured as a whole, like a complete analysis.
+ * <p>
+ * With a {@link SummaryCache}, the files to parse are first looked up by blob id in the cache.
+ * A cached entry is only kept if the types used by the file have the same signatures as when
+ * the entry was built, otherwise the file is parsed.
+ */
+public class IncrementalAnalysis {
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalAnalysis.class.getName());
+    private static final Pattern IDENTIFIER = Pattern.compile("[\\p{L}_$][\\p{L}\\p{N}_$]*");
+
+    private final Repository repository;
+    private final String appPath;
+    private final String prefix;
+    /**
+     * Summaries of the classes of the last analysed commit, by path of their file in the repository.
+     */
+    private final Map<String, List<ClassSummary>> summaries = new TreeMap<>();
+    /**
+     * Blob id of the java files of the last analysed commit, by path.
+     */
+    private final Map<String, String> blobIds = new HashMap<>();
+    /**
+     * Identifiers used in the java files of the last analysed commit, by path.
+     */
+    private final Map<String, Set<String>> identifiers = new HashMap<>();
+    private final SummaryCache cache;
+    private ObjectId previousTree;
+
+    /**
+     * @param repository The git repository.
+     * @param appPath    Absolute path of the analysed folder, inside the repository working tree.
+     */
+    public IncrementalAnalysis(Repository repository, String appPath) throws IOException {
+        this(repository, appPath, null);
+    }
+
+    /**
+     * @param repository The git repository.
+     * @param appPath    Absolute path of the analysed folder, inside the repository working tree.
+     * @param cache      Cache of the classes built from each blob, may be null.
+     */
+    public IncrementalAnalysis(Repository repository, String appPath, SummaryCache cache) throws IOException {
+        this.repository = repository;
+        this.appPath = appPath;
+        this.prefix = GitCommitFolder.relativePrefix(repository, appPath);
+        this.cache = cache;
+    }
+
+    /**
+     * Build the classes of the given commit into the app of the processor.
+     * The first commit, or any commit following a failure, is parsed completely.
+     *
+     * @param mainProcessor Processor of the commit, its exclusions are applied to the parsed files.
+     * @param commit        Sha of the commit.
+     */
+    public void process(MainProcessor mainProcessor, String commit) throws IOException {
+        try {
+            ObjectId tree = resolveTree(commit);
+            boolean complete = previousTree == null;
+            Map<String, List<ClassSummary>> previousSummaries = new HashMap<>();
+            Map<String, String> toParse = complete ? allFiles(tree) : changedFiles(tree, previousSummaries);
+            Map<ClassSummary, PaprikaClass> classes = new IdentityHashMap<>();
+            Set<String> parsedFiles = new HashSet<>();
+            Map<String, CachedFile> cachedFiles = new HashMap<>();
+            Set<String> uncachedFiles = new HashSet<>();
+            int contextFiles = 0;
+            while (!toParse.isEmpty()) {
+                while (!toParse.isEmpty()) {
+                    for (String file : toParse.keySet()) {
+                        List<ClassSummary> previous = summaries.remove(file);
+                        if (previous != null) {
+                            previousSummaries.put(file, previous);
+                        }
+                    }
+                    Map<String, String> missedFiles = readCache(mainProcessor, toParse, cachedFiles, uncachedFiles);
+                    if (!missedFiles.isEmpty()) {
+                        contextFiles += parse(mainProcessor, missedFiles, classes);
+                    }
+                    parsedFiles.addAll(missedFiles.keySet());
+                    Set<String> builtFiles = new HashSet<>(parsedFiles);
+                    builtFiles.addAll(cachedFiles.keySet());
+                    toParse = complete ? Collections.<String, String>emptyMap()
+                            : dependentFiles(previousSummaries, toParse.keySet(), builtFiles);
+                }
+                toParse = invalidCachedFiles(cachedFiles, uncachedFiles);
+            }
+            PaprikaApp paprikaApp = mainProcessor.getPaprikaApp();
+            Set<ClassSummary> parsed = Collections.newSetFromMap(new IdentityHashMap<ClassSummary, Boolean>());
+            parsed.addAll(classes.keySet());
+            for (Map.Entry<String, List<ClassSummary>> file : summaries.entrySet()) {
+                if (!parsedFiles.contains(file.getKey())) {
+                    for (ClassSummary classSummary : file.getValue()) {
+                        classes.put(classSummary, classSummary.toPaprikaClass(paprikaApp));
+                    }
+                }
+            }
+            classify(mainProcessor.getContext().getComponentClassifier(), classes, parsed);
+            if (cache != null) {
+                writeCache(mainProcessor, parsedFiles);
+                cache.countLookups(cachedFiles.size(), parsedFiles.size());
+            }
+            logger.info(parsedFiles.size() + " java files parsed, " + contextFiles + " used as context, "
+                    + (blobIds.size() - parsedFiles.size()) + " reused, including " + cachedFiles.size()
+                    + " from the cache, for commit " + commit);
+            previousTree = tree;
+        } catch (IOException | RuntimeException e) {
+            previousTree = null;
+            summaries.clear();
+            blobIds.clear();
+            identifiers.clear();
+            throw e;
+        }
+    }
+
+    /**
+     * Parse the given files and record the summaries of their classes.
+     *
+     * @param files   The blob id of the files to parse, by path.
+     * @param classes The parsed classes of the app, by summary.
+     * @return The number of context files added to resolve their references.
+     */
+    private int parse(MainProcessor mainProcessor, Map<String, String> files, Map<ClassSummary, PaprikaClass> classes) throws IOException {
+        PaprikaApp paprikaApp = mainProcessor.getPaprikaApp();
+        FilteringFolder folder = new FilteringFolder();
+        Map<String, String> classPaths = new HashMap<>();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            String path = GitCommitFolder.checkoutPath(appPath, prefix, file.getKey());
+            folder.addFile(new GitBlobFile(repository, ObjectId.fromString(file.getValue()), path));
+            classPaths.put(path.replaceFirst(paprikaApp.getPath(), ""), file.getKey());
+            blobIds.put(file.getKey(), file.getValue());
+            identifiers.put(file.getKey(), readIdentifiers(file.getValue()));
+        }
+        Set<String> contextFiles = new HashSet<>();
+        for (String file : contextFiles(files.keySet())) {
+            String path = GitCommitFolder.checkoutPath(appPath, prefix, file);
+            folder.addFile(new GitBlobFile(repository, ObjectId.fromString(blobIds.get(file)), path));
+            contextFiles.add(path);
+        }
+        int processed = paprikaApp.getPaprikaClasses().size();
+        mainProcessor.process(folder, contextFiles);
+        List<PaprikaClass> paprikaClasses = paprikaApp.getPaprikaClasses();
+        for (PaprikaClass paprikaClass : paprikaClasses.subList(processed, paprikaClasses.size())) {
+            ClassSummary classSummary = ClassSummary.createClassSummary(paprikaClass);
+            String file = classPaths.get(paprikaClass.getPath());
+            if (!summaries.containsKey(file)) {
+                summaries.put(file, new ArrayList<ClassSummary>());
+            }
+            summaries.get(file).add(classSummary);
+            classes.put(classSummary, paprikaClass);
+        }
+        return contextFiles.size();
+    }
+
+    /**
+     * Rebuild the summaries of the given files from the cache, choosing for each blob the entry matching
+     * the types currently known, or the most recent one.
+     *
+     * @param files         The blob id of the files to build, by path.
+     * @param cachedFiles   Filled with the files rebuilt from the cache.
+     * @param uncachedFiles Files that must be parsed, their cached entries being outdated.
+     * @return The blob id of the files missing from the cache, by path.
+     */
+    private Map<String, String> readCache(MainProcessor mainProcessor, Map<String, String> files,
+                                          Map<String, CachedFile> cachedFiles, Set<String> uncachedFiles) {
+        if (cache == null) {
+            return files;
+        }
+        Map<String, String> missedFiles = new TreeMap<>();
+        Map<String, Set<String>> signatures = signaturesBySimpleName();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            List<SummaryCache.Entry> entries = Collections.emptyList();
+            if (!uncachedFiles.contains(file.getKey())
+                    && !mainProcessor.isExcluded(GitCommitFolder.checkoutPath(appPath, prefix, file.getKey()))) {
+                entries = cache.read(file.getValue());
+            }
+            if (entries.isEmpty()) {
+                missedFiles.put(file.getKey(), file.getValue());
+                continue;
+            }
+            identifiers.put(file.getKey(), entries.get(0).getIdentifiers());
+            String fingerprint = fingerprint(file.getKey(), signatures);
+            SummaryCache.Entry entry = entries.get(0);
+            for (SummaryCache.Entry candidate : entries) {
+                if (candidate.getFingerprint().equals(fingerprint)) {
+                    entry = candidate;
+                    break;
+                }
+            }
+            CachedFile cachedFile = new CachedFile(entries);
+            cachedFiles.put(file.getKey(), cachedFile);
+            install(file.getKey(), file.getValue(), cachedFile, entry);
+        }
+        return missedFiles;
+    }
+
+    private void install(String file, String blobId, CachedFile cachedFile, SummaryCache.Entry entry) {
+        cachedFile.entry = entry;
+        blobIds.put(file, blobId);
+        String path = GitCommitFolder.checkoutPath(appPath, prefix, file).replaceFirst(appPath, "");
+        List<ClassSummary> fileSummaries = new ArrayList<>();
+        for (ClassSummary classSummary : entry.getSummaries()) {
+            fileSummaries.add(classSummary.moveTo(path));
+        }
+        if (fileSummaries.isEmpty()) {
+            summaries.remove(file);
+        } else {
+            summaries.put(file, fileSummaries);
+        }
+    }
+
+    /**
+     * Check the files rebuilt from the cache against the types of the commit.
+     * A file whose entry does not match is switched to another entry of its blob matching the types,
+     * at most once per entry, otherwise it has to be parsed.
+     *
+     * @param cachedFiles   The files rebuilt from the cache, the invalid ones are removed.
+     * @param uncachedFiles Filled with the invalid files.
+     * @return The blob id of the files to parse, by path.
+     */
+    private Map<String, String> invalidCachedFiles(Map<String, CachedFile> cachedFiles, Set<String> uncachedFiles) {
+        Map<String, String> invalidFiles = new TreeMap<>();
+        boolean switched = true;
+        while (switched && invalidFiles.isEmpty()) {
+            switched = false;
+            Map<String, Set<String>> signatures = signaturesBySimpleName();
+            Iterator<Map.Entry<String, CachedFile>> iterator = cachedFiles.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, CachedFile> file = iterator.next();
+                CachedFile cachedFile = file.getValue();
+                String fingerprint = fingerprint(file.getKey(), signatures);
+                if (cachedFile.entry.getFingerprint().equals(fingerprint)) {
+                    continue;
+                }
+                SummaryCache.Entry matching = null;
+                for (SummaryCache.Entry candidate : cachedFile.entries) {
+                    if (candidate.getFingerprint().equals(fingerprint)) {
+                        matching = candidate;
+                    }
+                }
+                if (matching != null && cachedFile.switches < cachedFile.entries.size()) {
+                    cachedFile.switches++;
+                    install(file.getKey(), blobIds.get(file.getKey()), cachedFile, matching);
+                    switched = true;
+                } else {
+                    iterator.remove();
+                    uncachedFiles.add(file.getKey());
+                    invalidFiles.put(file.getKey(), blobIds.get(file.getKey()));
+                }
+            }
+        }
+        return invalidFiles;
+    }
+
+    /**
+     * Cache the summaries of the parsed files, along with the fingerprint of the types they use.
+     */
+    private void writeCache(MainProcessor mainProcessor, Set<String> parsedFiles) {
+        Map<String, Set<String>> signatures = signaturesBySimpleName();
+        for (String file : parsedFiles) {
+            if (mainProcessor.isExcluded(GitCommitFolder.checkoutPath(appPath, prefix, file))) {
+                continue;
+            }
+            List<ClassSummary> fileSummaries = summaries.get(file);
+            cache.write(blobIds.get(file), new SummaryCache.Entry(fingerprint(file, signatures), identifiers.get(file),
+                    fileSummaries == null ? new ArrayList<ClassSummary>() : fileSummaries));
+        }
+    }
+
+    private Map<String, Set<String>> signaturesBySimpleName() {
+        Map<String, Set<String>> signatures = new HashMap<>();
+        for (List<ClassSummary> fileSummaries : summaries.values()) {
+            for (ClassSummary classSummary : fileSummaries) {
+                if (!signatures.containsKey(classSummary.getSimpleName())) {
+                    signatures.put(classSummary.getSimpleName(), new TreeSet<String>());
+                }
+                signatures.get(classSummary.getSimpleName()).add(classSummary.getSignature());
+            }
+        }
+        return signatures;
+    }
+
+    /**
+     * @return A hash of the signatures of the known types whose simple name is used in the file.
+     */
+    private String fingerprint(String file, Map<String, Set<String>> signatures) {
+        Set<String> usedSignatures = new TreeSet<>();
+        for (String identifier : identifiers.get(file)) {
+            Set<String> typeSignatures = signatures.get(identifier);
+            if (typeSignatures != null) {
+                usedSignatures.addAll(typeSignatures);
+            }
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (String signature : usedSignatures) {
+            digest.update(signature.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return ObjectId.fromRaw(digest.digest()).name();
+    }
+
+    private Set<String> readIdentifiers(String blobId) throws IOException {
+        String content = new String(repository.open(ObjectId.fromString(blobId)).getBytes(), StandardCharsets.UTF_8);
+        Set<String> fileIdentifiers = new HashSet<>();
+        Matcher matcher = IDENTIFIER.matcher(content);
+        while (matcher.find()) {
+            fileIdentifiers.add(matcher.group());
+        }
+        return fileIdentifiers;
+    }
+
+    /**
+     * Find the files left unparsed which use a type whose declaration changed,
+     * i.e. a type of a parsed or deleted file whose signature is not the same as in the previous commit.
+     *
+     * @param previousSummaries Summaries of the previous commit for the deleted files and the files just parsed.
+     * @param lastParsedFiles   The files just parsed.
+     * @param parsedFiles       All the files already parsed for this commit.
+     * @return The blob id of the files to parse, by path.
+     */
+    private Map<String, String> dependentFiles(Map<String, List<ClassSummary>> previousSummaries,
+                                               Set<String> lastParsedFiles, Set<String> parsedFiles) {
+        Set<String> changedTypes = new HashSet<>();
+        Set<String> files = new HashSet<>(previousSummaries.keySet());
+        files.addAll(lastParsedFiles);
+        for (String file : files) {
+            List<ClassSummary> previous = previousSummaries.get(file);
+            List<ClassSummary> current = lastParsedFiles.contains(file) ? summaries.get(file) : null;
+            if (!signatures(previous).equals(signatures(current))) {
+                changedTypes.addAll(simpleNames(previous));
+                changedTypes.addAll(simpleNames(current));
+            }
+        }
+        previousSummaries.clear();
+        Map<String, String> dependentFiles = new TreeMap<>();
+        if (changedTypes.isEmpty()) {
+            return dependentFiles;
+        }
+        for (Map.Entry<String, Set<String>> file : identifiers.entrySet()) {
+            if (!parsedFiles.contains(file.getKey()) && !Collections.disjoint(file.getValue(), changedTypes)) {
+                dependentFiles.put(file.getKey(), blobIds.get(file.getKey()));
+            }
+        }
+        return dependentFiles;
+    }
+
+    private static Set<String> signatures(List<ClassSummary> classSummaries) {
+        Set<String> signatures = new HashSet<>();
+        if (classSummaries != null) {
+            for (ClassSummary classSummary : classSummaries) {
+                signatures.add(classSummary.getSignature());
+            }
+        }
+        return signatures;
+    }
+
+    private static Set<String> simpleNames(List<ClassSummary> classSummaries) {
+        Set<String> simpleNames = new HashSet<>();
+        if (classSummaries != null) {
+            for (ClassSummary classSummary : classSummaries) {
+                simpleNames.add(classSummary.getSimpleName());
+            }
+        }
+        return simpleNames;
+    }
+
+    /**
+     * Find the unparsed files needed to resolve the references of the parsed files:
+     * the files declaring a type whose simple name is used in a parsed file, the files declaring the types
+     * of their fields and the return types of their methods, and the files declaring the supertypes
+     * of all these types.
+     *
+     * @param parsedFiles The files to parse.
+     * @return The paths of the context files.
+     */
+    private Set<String> contextFiles(Set<String> parsedFiles) {
+        Map<String, List<String>> filesBySimpleName = new HashMap<>();
+        Map<String, String> filesByName = new HashMap<>();
+        for (Map.Entry<String, List<ClassSummary>> file : summaries.entrySet()) {
+            if (parsedFiles.contains(file.getKey())) {
+                continue;
+            }
+            for (ClassSummary classSummary : file.getValue()) {
+                if (!filesBySimpleName.containsKey(classSummary.getSimpleName())) {
+                    filesBySimpleName.put(classSummary.getSimpleName(), new ArrayList<String>());
+                }
+                filesBySimpleName.get(classSummary.getSimpleName()).add(file.getKey());
+                if (!filesByName.containsKey(classSummary.getName())) {
+                    filesByName.put(classSummary.getName(), file.getKey());
+                }
+            }
+        }
+        Set<String> context = new TreeSet<>();
+        for (String file : parsedFiles) {
+            for (String identifier : identifiers.get(file)) {
+                List<String> files = filesBySimpleName.get(identifier);
+                if (files != null) {
+                    context.addAll(files);
+                }
+            }
+        }
+        for (String file : new ArrayList<>(context)) {
+            for (ClassSummary classSummary : summaries.get(file)) {
+                for (String memberType : classSummary.getMemberTypes()) {
+                    String memberFile = filesByName.get(memberType);
+                    if (memberFile != null) {
+                        context.add(memberFile);
+                    }
+                }
+            }
+        }
+        Deque<String> toVisit = new ArrayDeque<>(context);
+        while (!toVisit.isEmpty()) {
+            for (ClassSummary classSummary : summaries.get(toVisit.pop())) {
+                List<String> supertypes = new ArrayList<>(classSummary.getInterfacesNames());
+                supertypes.add(classSummary.getParentName());
+                for (String supertype : supertypes) {
+                    String file = filesByName.get(supertype);
+                    if (file != null && context.add(file)) {
+                        toVisit.push(file);
+                    }
+                }
+            }
+        }
+        return context;
+    }
+
+    /**
+     * Classify the parsed classes, and the other classes whose superclass chain changed,
+     * from the names of the classes of the whole app.
+     */
+    private void classify(ComponentClassifier componentClassifier, Map<ClassSummary, PaprikaClass> classes,
+                          Set<ClassSummary> parsed) {
+        Map<String, String> parentNames = new HashMap<>();
+        for (ClassSummary classSummary : classes.keySet()) {
+            if (!parentNames.containsKey(classSummary.getName())) {
+                parentNames.put(classSummary.getName(), classSummary.getParentName());
+            }
+        }
+        for (Map.Entry<ClassSummary, PaprikaClass> entry : classes.entrySet()) {
+            ClassSummary classSummary = entry.getKey();
+            if (classSummary.isInterface()) {
+                continue;
+            }
+            String root = ComponentClassifier.findSuperClassRoot(classSummary.getName(), parentNames);
+            boolean rootChanged = root == null ? classSummary.getSuperClassRoot() != null : !root.equals(classSummary.getSuperClassRoot());
+            if (rootChanged || parsed.contains(classSummary)) {
+                componentClassifier.classify(entry.getValue(), root, classSummary.getParentName());
+                classSummary.setClassification(entry.getValue());
+                classSummary.setSuperClassRoot(root);
+            }
+        }
+    }
+
+    private ObjectId resolveTree(String commit) throws IOException {
+        ObjectId commitId = repository.resolve(commit);
+        if (commitId == null) {
+            throw new IOException("Unknown commit " + commit);
+        }
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            return revWalk.parseCommit(commitId).getTree().getId();
+        }
+    }
+
+    /**
+     * @return The blob id of every java file of the tree, by path.
+     */
+    private Map<String, String> allFiles(ObjectId tree) throws IOException {
+        summaries.clear();
+        blobIds.clear();
+        identifiers.clear();
+        Map<String, String> files = new TreeMap<>();
+        try (TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.addTree(tree);
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(GitCommitFolder.javaFilesFilter(prefix));
+            while (treeWalk.next()) {
+                if (GitCommitFolder.isSourceFile(treeWalk.getFileMode(0))) {
+                    files.put(treeWalk.getPathString(), treeWalk.getObjectId(0).name());
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Apply the differences between the previous tree and the given one to the kept files:
+     * deleted and modified files are removed, files moved without modification are kept under their new path.
+     *
+     * @param previousSummaries Filled with the summaries of the removed files, by path.
+     * @return The blob id of every java file added or modified, by path.
+     */
+    private Map<String, String> changedFiles(ObjectId tree, Map<String, List<ClassSummary>> previousSummaries) throws IOException {
+        List<DiffEntry> entries;
+        try (TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.addTree(previousTree);
+            treeWalk.addTree(tree);
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(AndTreeFilter.create(GitCommitFolder.javaFilesFilter(prefix), TreeFilter.ANY_DIFF));
+            RenameDetector renameDetector = new RenameDetector(repository);
+            renameDetector.addAll(DiffEntry.scan(treeWalk));
+            entries = renameDetector.compute();
+        }
+        Map<String, List<ClassSummary>> moved = new HashMap<>();
+        Map<String, Set<String>> movedIdentifiers = new HashMap<>();
+        for (DiffEntry entry : entries) {
+            if (entry.getChangeType() == DiffEntry.ChangeType.ADD || entry.getChangeType() == DiffEntry.ChangeType.COPY) {
+                continue;
+            }
+            List<ClassSummary> oldSummaries = summaries.remove(entry.getOldPath());
+            Set<String> oldIdentifiers = identifiers.remove(entry.getOldPath());
+            blobIds.remove(entry.getOldPath());
+            if (entry.getChangeType() == DiffEntry.ChangeType.RENAME && entry.getOldId().equals(entry.getNewId())
+                    && oldIdentifiers != null) {
+                moved.put(entry.getNewPath(), oldSummaries == null ? Collections.<ClassSummary>emptyList() : oldSummaries);
+                movedIdentifiers.put(entry.getNewPath(), oldIdentifiers);
+            } else if (oldSummaries != null) {
+                previousSummaries.put(entry.getOldPath(), oldSummaries);
+            }
+        }
+        Map<String, String> changed = new TreeMap<>();
+        for (DiffEntry entry : entries) {
+            if (entry.getChangeType() == DiffEntry.ChangeType.DELETE || !GitCommitFolder.isSourceFile(entry.getNewMode())) {
+                continue;
+            }
+            String newPath = entry.getNewPath();
+            if (moved.containsKey(newPath)) {
+                String path = GitCommitFolder.checkoutPath(appPath, prefix, newPath).replaceFirst(appPath, "");
+                List<ClassSummary> newSummaries = new ArrayList<>();
+                for (ClassSummary classSummary : moved.get(newPath)) {
+                    newSummaries.add(classSummary.moveTo(path));
+                }
+                if (!newSummaries.isEmpty()) {
+                    summaries.put(newPath, newSummaries);
+                }
+                blobIds.put(newPath, entry.getNewId().name());
+                identifiers.put(newPath, movedIdentifiers.get(newPath));
+            } else {
+                changed.put(newPath, entry.getNewId().name());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * The entries of a blob read from the cache, and the one used to build the file.
+     */
+    private static class CachedFile {
+        private final List<SummaryCache.Entry> entries;
+        private SummaryCache.Entry entry;
+        private int switches = 0;
+
+        CachedFile(List<SummaryCache.Entry> entries) {
+            this.entries = entries;
+        }
+    }
+}
@@ -28,17 +28,13 @@ import spoon.reflect.declaration.CtMethod;
 import spoon.reflect.declaration.ModifierKind;
 import spoon.reflect.reference.CtTypeReference;
 
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.util.List;
 
 public class InterfaceProcessor extends TypeProcessor<CtInterface> {
     private static final Logger logger = LoggerFactory.getLogger(InterfaceProcessor.class.getName());
 
-    private static final URLClassLoader classloader;
-
-    static {
-        classloader = new URLClassLoader(MainProcessor.paths.toArray(new URL[MainProcessor.paths.size()]));
+    public InterfaceProcessor(AnalysisContext context) {
+        super(context);
     }
 
     @Override
@@ -47,8 +43,8 @@ public class InterfaceProcessor extends TypeProcessor<CtInterface> {
     }
 
     @Override
-    public void processMethods(CtInterface ctInterface) {
-        MethodProcessor methodProcessor = new MethodProcessor();
+    public void processMethods(CtInterface ctInterface, PaprikaClass paprikaClass) {
+        MethodProcessor methodProcessor = new MethodProcessor(paprikaClass);
         for (Object o : ctInterface.getMethods()) {
             methodProcessor.process((CtMethod) o);
         }
@@ -90,7 +86,7 @@ public class InterfaceProcessor extends TypeProcessor<CtInterface> {
         if (reference != null) {
             try {
                 Class myRealClass;
-                myRealClass = classloader.loadClass(reference.getQualifiedName());
+                myRealClass = context.getClassLoader().loadClass(reference.getQualifiedName());
                 while (myRealClass.getSuperclass() != null) {
                     doi++;
                     myRealClass = myRealClass.getSuperclass();
@@ -17,17 +17,27 @@
  */
 package fr.inria.sniffer.detector.analyzer;
 
+import fr.inria.sniffer.detector.columnar.ColumnarModelWriter;
+import fr.inria.sniffer.detector.columnar.ColumnarQueries;
+import fr.inria.sniffer.detector.columnar.ColumnarQuery;
+import fr.inria.sniffer.detector.columnar.ColumnarQueryEngine;
+import fr.inria.sniffer.detector.columnar.ModelSmellDetector;
 import fr.inria.sniffer.detector.entities.*;
 import fr.inria.sniffer.detector.metrics.MetricsCalculator;
 
 import fr.inria.sniffer.detector.neo4j.*;
 import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.*;
 
+import org.eclipse.jgit.lib.Repository;
+
 import java.io.File;
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +47,8 @@ import org.slf4j.LoggerFactory;
  */
 public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class.getName());
+    private static final String NEO4J = "neo4j";
+    private static final String COLUMNAR = "columnar";
 
     public static void main(String[] args) {
         //testRun();
@@ -44,8 +56,8 @@ public class Main {
         Subparsers subparsers = parser.addSubparsers().dest("sub_command");
         Subparser analyseParser = subparsers.addParser("analyse").help("Analyse an app");
         analyseParser.addArgument("folder").help("Path of the code source folder");
-        analyseParser.addArgument("-a", "--androidJar").required(false).help("Path to android platform jar");
-        analyseParser.addArgument("-db", "--database").required(true).help("Path to neo4J Database folder");
+        analyseParser.addArgument("-a", "--androidJar").required(false).help("Path to android platform jar, indexed once to classify the Android components");
+        analyseParser.addArgument("-db", "--database").required(false).help("Path to neo4J Database folder, required unless --noPersist");
         analyseParser.addArgument("-n", "--name").required(true).help("Name of the application");
         analyseParser.addArgument("-p", "--package").required(false).help("Application main package");
         analyseParser.addArgument("-k", "--key").required(true).help("sha256 of the apk used as identifier");
@@ -57,19 +69,59 @@ public class Main {
         analyseParser.addArgument("-m", "--module").required(false).help("analyzed module folder");
         analyseParser.addArgument("-sd", "--sdk").required(false).help("Sdk Version");
         analyseParser.addArgument("-e", "--exclude").nargs("+").required(false).help("Exclude folders using java regex patterns");
+        analyseParser.addArgument("-g", "--gitCommit").required(false).help("Analyse this commit from the git object database instead of the folder content");
+        analyseParser.addArgument("-tc", "--txChunk").type(Integer.class).setDefault(0).help("Number of nodes and relationships written per transaction, 0 (default) to write each app in a single transaction");
+        analyseParser.addArgument("-b", "--bulk").action(Arguments.storeTrue()).help("Load the database offline with a batch inserter, faster but unsafe if interrupted, the database must not be in use");
+        analyseParser.addArgument("-dict", "--dictionary").action(Arguments.storeTrue()).help("Store the app key, the paths and the type and method names of the entities as ids of a symbol table, resolved in the query results");
+        analyseParser.addArgument("-be", "--backend").choices(NEO4J, COLUMNAR).setDefault(NEO4J).help("Store the models in a Neo4j database, or in a directory of column files, one per commit, queried without Neo4j");
+        analyseParser.addArgument("-th", "--threads").type(Integer.class).setDefault(1).help("Number of threads processing the classes of the app");
+        addSmellArguments(analyseParser);
+
+        Subparser historyParser = subparsers.addParser("analyse-history").help("Analyse the commits of a git repository in a single run");
+        historyParser.addArgument("folder").help("Path of the git repository");
+        historyParser.addArgument("-a", "--androidJar").required(false).help("Path to android platform jar, indexed once to classify the Android components");
+        historyParser.addArgument("-db", "--database").required(false).help("Path to neo4J Database folder, required unless --noPersist");
+        historyParser.addArgument("-n", "--name").required(true).help("Name of the application");
+        historyParser.addArgument("-cl", "--commits").required(false).help("File listing the commits to analyse, one sha per line (default: git log --topo-order --reverse)");
+        historyParser.addArgument("-sc", "--startCommit").required(false).help("Skip the commits preceding this sha");
+        historyParser.addArgument("-d", "--dependencies").required(false).help("Path to dependencies");
+        historyParser.addArgument("-l", "--libs").required(false).help("List of the external libs used by the apps (separated by :)");
+        historyParser.addArgument("-s", "--status").required(false).help("Commit status");
+        historyParser.addArgument("-m", "--module").required(false).help("analyzed module folder");
+        historyParser.addArgument("-sd", "--sdk").required(false).help("Sdk Version");
+        historyParser.addArgument("-e", "--exclude").nargs("+").required(false).help("Exclude folders using java regex patterns");
+        historyParser.addArgument("-co", "--checkout").action(Arguments.storeTrue()).help("Checkout each commit in the working tree instead of reading it from the git object database");
+        historyParser.addArgument("-w", "--workers").type(Integer.class).setDefault(1).help("Number of commits analysed concurrently");
+        historyParser.addArgument("-pl", "--pipeline").type(Integer.class).setDefault(0).help("Write the commits on a separate thread, with at most N analysed commits waiting for their insertion, 0 to write them in the analysis thread");
+        historyParser.addArgument("-inc", "--incremental").action(Arguments.storeTrue()).help("Only parse the java files changed since the previous commit, reusing the classes of the other files");
+        historyParser.addArgument("-ca", "--cache").required(false).help("Directory caching the classes built from each java file between runs, requires --incremental");
+        historyParser.addArgument("-cs", "--cacheSize").type(Integer.class).setDefault(1024).help("Maximum size of the cache in MB");
+        historyParser.addArgument("-tc", "--txChunk").type(Integer.class).setDefault(0).help("Number of nodes and relationships written per transaction, 0 (default) to write each app in a single transaction");
+        historyParser.addArgument("-b", "--bulk").action(Arguments.storeTrue()).help("Load the database offline with a batch inserter, faster but unsafe if interrupted, the database must not be in use");
+        historyParser.addArgument("-dict", "--dictionary").action(Arguments.storeTrue()).help("Store the app key, the paths and the type and method names of the entities as ids of a symbol table, resolved in the query results");
+        historyParser.addArgument("-be", "--backend").choices(NEO4J, COLUMNAR).setDefault(NEO4J).help("Store the models in a Neo4j database, or in a directory of column files, one per commit, queried without Neo4j");
+        historyParser.addArgument("-vs", "--versioned").action(Arguments.storeTrue()).help("Store each version of an entity once with the range of commits it is present in, instead of a copy per commit");
+        addSmellArguments(historyParser);
 
         Subparser queryParser = subparsers.addParser("query").help("Query the database");
         queryParser.addArgument("-db", "--database").required(true).help("Path to neo4J Database folder");
         queryParser.addArgument("-r", "--request").help("Request to execute");
         queryParser.addArgument("-c", "--csv").help("path to register csv files").setDefault("");
-        queryParser.addArgument("-dk", "--delKey").help("key to delete");
+        queryParser.addArgument("-dk", "--delKey").nargs("+").help("Keys of the apps to delete");
         queryParser.addArgument("-dp", "--delPackage").help("Package of the applications to delete");
+        queryParser.addArgument("-be", "--backend").choices(NEO4J, COLUMNAR).setDefault(NEO4J).help("Backend of the database, the columnar one only runs the smell queries");
         queryParser.addArgument("-d", "--details").type(Boolean.class).setDefault(false).help("Show the concerned entity in the results");
+        queryParser.addArgument("-cy", "--cypher").action(Arguments.storeTrue()).help("Run one Cypher query per smell instead of scanning each app once for all the smells of ALLAP, NONFUZZY, FUZZY, FORCENOFUZZY and ALLHEAVY");
+        queryParser.addArgument("-gz", "--gzip").action(Arguments.storeTrue()).help("Compress the CSV files with gzip");
+        queryParser.addArgument("-inc", "--incremental").action(Arguments.storeTrue()).help("Only query the commits added since the previous incremental run of ALLAP, NONFUZZY, FUZZY, FORCENOFUZZY or ALLHEAVY with the same --csv path, appending to its csv files");
+        queryParser.addArgument("-pa", "--parallelism").type(Integer.class).setDefault(1).help("Number of queries of ALLAP, NONFUZZY, FUZZY, FORCENOFUZZY and ALLHEAVY running concurrently, each in its own transaction, when they are not scanned");
 
         try {
             Namespace res = parser.parseArgs(args);
             if (res.getString("sub_command").equals("analyse")) {
                 runAnalysis(res);
+            } else if (res.getString("sub_command").equals("analyse-history")) {
+                runHistoryAnalysis(res);
             } else if (res.getString("sub_command").equals("query")) {
                 queryMode(res);
             }
@@ -104,35 +156,233 @@ public class Main {
         }
         List<String> exclusions = arg.get("exclude");
         MainProcessor mainProcessor = new MainProcessor(name, version, commitNumber, status, key, path, sdkPath, jarsPath, sdkVersion, module, exclusions);
+        mainProcessor.setThreads(arg.getInt("threads"));
+        if (sdkPath != null) {
+            mainProcessor.getContext().setComponentClassifier(ComponentClassifier.createComponentClassifier(sdkPath));
+        }
+        PaprikaApp paprikaApp;
+        if (arg.getString("gitCommit") != null) {
+            try (Repository repository = GitCommitFolder.openRepository(path)) {
+                mainProcessor.setGitSource(repository, arg.getString("gitCommit"));
+                paprikaApp = analyseApp(mainProcessor, libs);
+            }
+        } else {
+            paprikaApp = analyseApp(mainProcessor, libs);
+        }
+        ModelWriter modelWriter = null;
+        if (!arg.getBoolean("noPersist")) {
+            if (COLUMNAR.equals(arg.getString("backend"))) {
+                modelWriter = new ColumnarModelWriter(database(arg));
+            } else {
+                modelWriter = createModelWriter(database(arg), arg.getBoolean("bulk"), arg.getInt("txChunk"),
+                        arg.getBoolean("dictionary"));
+            }
+        }
+        modelWriter = detectSmells(arg, modelWriter);
+        try {
+            modelWriter.writeApp(paprikaApp);
+        } finally {
+            modelWriter.shutDown();
+        }
+        if (!arg.getBoolean("noPersist")) {
+            logger.info("Saving into database " + arg.getString("database"));
+        }
+        logger.info("Done");
+    }
+
+    /**
+     * Build the Paprika model of an app: source processing, class hierarchy,
+     * call graph, libraries and metrics.
+     *
+     * @param mainProcessor Processor configured for the app to analyse.
+     * @param libs          External libraries used by the app.
+     * @return The complete model, ready to be inserted in the database.
+     */
+    public static PaprikaApp analyseApp(MainProcessor mainProcessor, String[] libs) throws IOException {
         mainProcessor.process();
-        GraphCreator graphCreator = new GraphCreator(MainProcessor.currentApp);
+        return completeApp(mainProcessor.getPaprikaApp(), libs);
+    }
+
+    /**
+     * Complete the model of an app whose classes have been built:
+     * class hierarchy, call graph, libraries and metrics.
+     *
+     * @param paprikaApp The app, containing its classes not yet linked.
+     * @param libs       External libraries used by the app.
+     * @return The complete model, ready to be inserted in the database.
+     */
+    public static PaprikaApp completeApp(PaprikaApp paprikaApp, String[] libs) {
+        GraphCreator graphCreator = new GraphCreator(paprikaApp);
         graphCreator.createClassHierarchy();
         graphCreator.createCallGraph();
         if (libs != null) {
             for (String lib : libs) {
                 if (lib != "") {
-                    addLibrary(MainProcessor.currentApp, lib);
+                    addLibrary(paprikaApp, lib);
                 }
             }
         }
 
-        MetricsCalculator.calculateAppMetrics(MainProcessor.currentApp);
-        ModelToGraph modelToGraph = new ModelToGraph(arg.getString("database"));
-        modelToGraph.insertApp(MainProcessor.currentApp);
-        logger.info("Saving into database " + arg.getString("database"));
+        MetricsCalculator.calculateAppMetrics(paprikaApp);
+        return paprikaApp;
+    }
+
+    /**
+     * @param bulk            If true, the database is loaded offline with a batch inserter instead of transactions.
+     * @param transactionSize Number of nodes and relationships per transaction, when not loading in bulk.
+     * @param dictionary      If true, the repeated strings are stored as ids of a symbol table.
+     */
+    private static ModelWriter createModelWriter(String database, boolean bulk, int transactionSize,
+                                                 boolean dictionary) throws IOException {
+        if (bulk) {
+            return new BatchModelToGraph(database, dictionary);
+        }
+        ModelToGraph modelToGraph = new ModelToGraph(database);
+        modelToGraph.setTransactionSize(transactionSize);
+        try {
+            modelToGraph.setDictionaryEncoding(dictionary);
+        } catch (IllegalStateException e) {
+            modelToGraph.shutDown();
+            throw e;
+        }
+        return modelToGraph;
+    }
+
+    private static void addSmellArguments(Subparser parser) {
+        parser.addArgument("-sm", "--smells").required(false).help("Detect the smells of this request of the query command (a smell, ALLAP, NONFUZZY, FUZZY, FORCENOFUZZY, ALLHEAVY or SIZE) on the model of each app, writing the CSV files of the query, the fuzzy smells evaluated with their FCL files unless the request is FORCENOFUZZY");
+        parser.addArgument("-de", "--details").type(Boolean.class).setDefault(false).help("Show the concerned entity in the smells detected with --smells");
+        parser.addArgument("-c", "--csv").setDefault("").help("path to register the csv files of --smells");
+        parser.addArgument("-np", "--noPersist").action(Arguments.storeTrue()).help("Only detect the smells of --smells, without writing the models to the database");
+    }
+
+    /**
+     * @return The database of the models, required when they are persisted.
+     */
+    private static String database(Namespace arg) {
+        String database = arg.getString("database");
+        if (database == null) {
+            throw new IllegalArgumentException("A database is required to persist the models, see --noPersist");
+        }
+        return database;
+    }
+
+    /**
+     * Detect the smells of the --smells request on the models of the analysed apps, see {@link ModelSmellDetector}.
+     *
+     * @param modelWriter Writer persisting the models, null if they are not persisted.
+     * @return The writer to give the analysed apps to.
+     */
+    private static ModelWriter detectSmells(Namespace arg, ModelWriter modelWriter) throws IOException {
+        String request = arg.getString("smells");
+        if (request == null) {
+            if (modelWriter == null) {
+                throw new IllegalArgumentException("--noPersist requires the smells to detect with --smells");
+            }
+            return modelWriter;
+        }
+        List<ColumnarQuery> queries = ColumnarQueries.forRequest(request);
+        if (queries == null) {
+            throw new IllegalArgumentException("Request " + request + " cannot be detected on the models");
+        }
+        String csvPrefix = arg.getString("csv") + csvDate();
+        logger.info("Detecting the smells of " + request + " on the models, in the csv files starting with " + csvPrefix);
+        return new ModelSmellDetector(queries, arg.getBoolean("details"), csvPrefix, modelWriter);
+    }
+
+    public static void runHistoryAnalysis(Namespace arg) throws Exception {
+        logger.info("Analysing repository history");
+        String name = arg.getString("name");
+        String status = arg.getString("status") != null ? arg.getString("status") : "NO_STATUS";
+        int sdkVersion = arg.getString("sdk") != null ? Integer.valueOf(arg.getString("sdk")) : -1;
+        String module = arg.getString("module") != null ? arg.getString("module") : "NO_MODULE";
+        String[] libs = {};
+        if (arg.getString("libs") != null) {
+            libs = arg.getString("libs").split(":");
+        }
+        List<String> exclusions = arg.get("exclude");
+        HistoryAnalysis historyAnalysis = new HistoryAnalysis(arg.getString("folder"), name, arg.getString("androidJar"),
+                arg.getString("dependencies"), sdkVersion, module, status, libs, exclusions, arg.getBoolean("checkout"),
+                arg.getBoolean("incremental"));
+        historyAnalysis.setWorkers(arg.getInt("workers"));
+        historyAnalysis.setPipelineCapacity(arg.getInt("pipeline"));
+        if (arg.getString("cache") != null) {
+            historyAnalysis.setCache(new SummaryCache(new File(arg.getString("cache")), arg.getInt("cacheSize") * 1024L * 1024L,
+                    ComponentClassifier.identity(arg.getString("androidJar"))));
+        }
+        List<String> commits;
+        if (arg.getString("commits") != null) {
+            commits = HistoryAnalysis.readCommits(arg.getString("commits"));
+        } else {
+            commits = historyAnalysis.listCommits();
+        }
+        ModelWriter modelWriter;
+        if (arg.getBoolean("noPersist")) {
+            modelWriter = null;
+        } else if (COLUMNAR.equals(arg.getString("backend"))) {
+            if (arg.getBoolean("versioned") || arg.getBoolean("bulk") || arg.getBoolean("dictionary")) {
+                logger.warn("The columnar backend writes a file per commit, --versioned, --bulk and --dictionary are ignored");
+            }
+            modelWriter = new ColumnarModelWriter(database(arg));
+        } else if (arg.getBoolean("versioned")) {
+            if (arg.getBoolean("bulk")) {
+                logger.warn("The versioned storage is written in transactions, --bulk is ignored");
+            }
+            if (arg.getBoolean("dictionary")) {
+                logger.warn("The versioned storage does not encode the strings, --dictionary is ignored");
+            }
+            modelWriter = new VersionedModelToGraph(database(arg));
+        } else {
+            modelWriter = createModelWriter(database(arg), arg.getBoolean("bulk"), arg.getInt("txChunk"),
+                    arg.getBoolean("dictionary"));
+        }
+        modelWriter = detectSmells(arg, modelWriter);
+        try {
+            historyAnalysis.analyse(commits, arg.getString("startCommit"), modelWriter);
+        } finally {
+            modelWriter.shutDown();
+        }
         logger.info("Done");
     }
 
     public static void queryMode(Namespace arg) throws Exception {
         logger.info("Executing Queries");
+        if (COLUMNAR.equals(arg.getString("backend"))) {
+            columnarQueryMode(arg);
+            return;
+        }
         QueryEngine queryEngine = new QueryEngine(arg.getString("database"));
         String request = arg.get("request");
         Boolean details = arg.get("details");
-        Calendar cal = new GregorianCalendar();
-        String csvDate = String.valueOf(cal.get(Calendar.YEAR)) + "_" + String.valueOf(cal.get(Calendar.MONTH) + 1) + "_" + String.valueOf(cal.get(Calendar.DAY_OF_MONTH)) + "_" + String.valueOf(cal.get(Calendar.HOUR_OF_DAY)) + "_" + String.valueOf(cal.get(Calendar.MINUTE));
-        String csvPrefix = arg.getString("csv") + csvDate;
+        boolean incremental = arg.getBoolean("incremental");
+        // The files of an incremental run are appended to by the next one, so their names do not change.
+        String csvPrefix = arg.getString("csv") + (incremental ? "" : csvDate());
         logger.debug("Resulting csv file name will start with prefix " + csvPrefix);
         queryEngine.setCsvPrefix(csvPrefix);
+        queryEngine.setCompressCsv(arg.getBoolean("gzip"));
+        if (incremental) {
+            try {
+                queryIncrementally(queryEngine, request, details, arg.getInt("parallelism"));
+            } finally {
+                queryEngine.shutDown();
+            }
+            logger.info("Done");
+            return;
+        }
+        if (!arg.getBoolean("cypher") && scanSmells(queryEngine, request, details)) {
+            queryEngine.shutDown();
+            logger.info("Done");
+            return;
+        }
+        ParallelQueryExecutor executor = ParallelQueryExecutor.forRequest(queryEngine, request, arg.getInt("parallelism"));
+        if (executor != null) {
+            try {
+                executor.execute(details);
+            } finally {
+                queryEngine.shutDown();
+            }
+            logger.info("Done");
+            return;
+        }
         switch (request) {
             case "ARGB8888":
                 ARGB8888Query.createARGB8888Query(queryEngine).execute(details);
@@ -175,20 +425,16 @@ public class Main {
             case "THI":
                 TrackingHardwareIdQuery.createTrackingHardwareIdQuery(queryEngine).execute(details);
                 break;
-            case "ALLHEAVY":
-                HeavyServiceStartQuery.createHeavyServiceStartQuery(queryEngine).executeFuzzy(details);
-                HeavyBroadcastReceiverQuery.createHeavyBroadcastReceiverQuery(queryEngine).executeFuzzy(details);
-                HeavyAsyncTaskStepsQuery.createHeavyAsyncTaskStepsQuery(queryEngine).executeFuzzy(details);
-                break;
             case "ANALYZED":
                 queryEngine.AnalyzedAppQuery();
                 break;
-            case "DELETE":
-                queryEngine.deleteQuery(arg.getString("delKey"));
+            case "INDEXES":
+                queryEngine.indexesQuery();
                 break;
+            case "DELETE":
             case "DELETEAPP":
                 if (arg.get("delKey") != null) {
-                    queryEngine.deleteEntireApp(arg.getString("delKey"));
+                    queryEngine.deleteApps(arg.<String>getList("delKey"));
                 } else {
                     queryEngine.deleteEntireAppFromPackage(arg.getString("delPackage"));
                 }
@@ -231,62 +477,9 @@ public class Main {
             case "COUNTVIEWS":
                 queryEngine.countViews();
                 break;
-            case "NONFUZZY":
-                //ARGB8888Query.createARGB8888Query(queryEngine).execute(details);
-                IGSQuery.createIGSQuery(queryEngine).execute(details);
-                MIMQuery.createMIMQuery(queryEngine).execute(details);
-                LICQuery.createLICQuery(queryEngine).execute(details);
-                NLMRQuery.createNLMRQuery(queryEngine).execute(details);
-                OverdrawQuery.createOverdrawQuery(queryEngine).execute(details);
-                UnsuitedLRUCacheSizeQuery.createUnsuitedLRUCacheSizeQuery(queryEngine).execute(details);
-                InitOnDrawQuery.createInitOnDrawQuery(queryEngine).execute(details);
-                UnsupportedHardwareAccelerationQuery.createUnsupportedHardwareAccelerationQuery(queryEngine).execute(details);
-                HashMapUsageQuery.createHashMapUsageQuery(queryEngine).execute(details);
-                InvalidateWithoutRectQuery.createInvalidateWithoutRectQuery(queryEngine).execute(details);
-                CommitSizeQuery.createCommitSize(queryEngine).execute(details);
-                break;
             case "SIZE":
                 CommitSizeQuery.createCommitSize(queryEngine).execute(details);
                 break;
-            case "FUZZY":
-                CCQuery.createCCQuery(queryEngine).executeFuzzy(details);
-                LMQuery.createLMQuery(queryEngine).executeFuzzy(details);
-                SAKQuery.createSAKQuery(queryEngine).executeFuzzy(details);
-                BLOBQuery.createBLOBQuery(queryEngine).executeFuzzy(details);
-                HeavyServiceStartQuery.createHeavyServiceStartQuery(queryEngine).executeFuzzy(details);
-                HeavyBroadcastReceiverQuery.createHeavyBroadcastReceiverQuery(queryEngine).executeFuzzy(details);
-                HeavyAsyncTaskStepsQuery.createHeavyAsyncTaskStepsQuery(queryEngine).executeFuzzy(details);
-                break;
-            case "ALLAP":
-                ARGB8888Query.createARGB8888Query(queryEngine).execute(details);
-                CCQuery.createCCQuery(queryEngine).executeFuzzy(details);
-                LMQuery.createLMQuery(queryEngine).executeFuzzy(details);
-                SAKQuery.createSAKQuery(queryEngine).executeFuzzy(details);
-                BLOBQuery.createBLOBQuery(queryEngine).executeFuzzy(details);
-                MIMQuery.createMIMQuery(queryEngine).execute(details);
-                IGSQuery.createIGSQuery(queryEngine).execute(details);
-                LICQuery.createLICQuery(queryEngine).execute(details);
-                NLMRQuery.createNLMRQuery(queryEngine).execute(details);
-                OverdrawQuery.createOverdrawQuery(queryEngine).execute(details);
-                HeavyServiceStartQuery.createHeavyServiceStartQuery(queryEngine).executeFuzzy(details);
-                HeavyBroadcastReceiverQuery.createHeavyBroadcastReceiverQuery(queryEngine).executeFuzzy(details);
-                HeavyAsyncTaskStepsQuery.createHeavyAsyncTaskStepsQuery(queryEngine).executeFuzzy(details);
-                UnsuitedLRUCacheSizeQuery.createUnsuitedLRUCacheSizeQuery(queryEngine).execute(details);
-                InitOnDrawQuery.createInitOnDrawQuery(queryEngine).execute(details);
-                UnsupportedHardwareAccelerationQuery.createUnsupportedHardwareAccelerationQuery(queryEngine).execute(details);
-                HashMapUsageQuery.createHashMapUsageQuery(queryEngine).execute(details);
-                InvalidateWithoutRectQuery.createInvalidateWithoutRectQuery(queryEngine).execute(details);
-                TrackingHardwareIdQuery.createTrackingHardwareIdQuery(queryEngine).execute(details);
-                break;
-            case "FORCENOFUZZY":
-                CCQuery.createCCQuery(queryEngine).execute(details);
-                LMQuery.createLMQuery(queryEngine).execute(details);
-                SAKQuery.createSAKQuery(queryEngine).execute(details);
-                BLOBQuery.createBLOBQuery(queryEngine).execute(details);
-                HeavyServiceStartQuery.createHeavyServiceStartQuery(queryEngine).execute(details);
-                HeavyBroadcastReceiverQuery.createHeavyBroadcastReceiverQuery(queryEngine).execute(details);
-                HeavyAsyncTaskStepsQuery.createHeavyAsyncTaskStepsQuery(queryEngine).execute(details);
-                break;
             default:
                 logger.info("Executing custom request");
                 queryEngine.executeRequest(request);
@@ -296,6 +489,73 @@ public class Main {
     }
 
 
+    /**
+     * Detect the smells of a group in a single pass over the apps, see {@link SmellScanner}.
+     *
+     * @return False if the request is not a group of smells or if the database cannot be scanned.
+     */
+    private static boolean scanSmells(QueryEngine queryEngine, String request, boolean details) throws Exception {
+        SmellScanner scanner = SmellScanner.forRequest(queryEngine, request);
+        if (scanner == null) {
+            return false;
+        }
+        if (!SmellScanner.canScan(queryEngine)) {
+            logger.info("The database is versioned or dictionary encoded, running one query per smell");
+            return false;
+        }
+        if ("ALLAP".equals(request)) {
+            ARGB8888Query.createARGB8888Query(queryEngine).execute(details);
+        }
+        scanner.execute(details);
+        return true;
+    }
+
+    /**
+     * Run the queries of a group on the commits added since the previous incremental run, see {@link QueryWatermarks}.
+     * The apps of these commits are found with the index on their commit number, created if missing.
+     */
+    private static void queryIncrementally(QueryEngine queryEngine, String request, boolean details, int parallelism)
+            throws Exception {
+        ParallelQueryExecutor executor = ParallelQueryExecutor.forRequest(queryEngine, request, parallelism);
+        if (executor == null) {
+            throw new IllegalArgumentException("--incremental only runs the groups ALLAP, NONFUZZY, FUZZY, FORCENOFUZZY and ALLHEAVY");
+        }
+        new IndexManager(queryEngine.getGraphDatabaseService()).createIndex();
+        Map<String, int[]> commitRanges = queryEngine.getCommitRanges();
+        if (commitRanges.isEmpty()) {
+            logger.info("No commit in the database");
+            return;
+        }
+        File watermarksFile = new File(queryEngine.getCsvPrefix() + "_watermarks.properties");
+        executor.setWatermarks(QueryWatermarks.load(watermarksFile), commitRanges);
+        executor.execute(details);
+    }
+
+    /**
+     * @return The date of the query run, appended to the prefix of the CSV files.
+     */
+    private static String csvDate() {
+        Calendar cal = new GregorianCalendar();
+        return String.valueOf(cal.get(Calendar.YEAR)) + "_" + String.valueOf(cal.get(Calendar.MONTH) + 1) + "_" + String.valueOf(cal.get(Calendar.DAY_OF_MONTH)) + "_" + String.valueOf(cal.get(Calendar.HOUR_OF_DAY)) + "_" + String.valueOf(cal.get(Calendar.MINUTE));
+    }
+
+    /**
+     * Run the smell queries on the models written by the columnar backend.
+     */
+    private static void columnarQueryMode(Namespace arg) throws Exception {
+        String request = arg.get("request");
+        List<ColumnarQuery> queries = ColumnarQueries.forRequest(request);
+        if (queries == null) {
+            logger.error("Request " + request + " is not supported by the columnar backend");
+            return;
+        }
+        ColumnarQueryEngine queryEngine = new ColumnarQueryEngine(arg.getString("database"));
+        queryEngine.setCsvPrefix(arg.getString("csv") + csvDate());
+        queryEngine.setCompressCsv(arg.getBoolean("gzip"));
+        queryEngine.execute(queries, arg.getBoolean("details"));
+        logger.info("Done");
+    }
+
     public static void addLibrary(PaprikaApp paprikaApp, String libraryString) {
         PaprikaLibrary.createPaprikaLibrary(libraryString, paprikaApp);
     }
@@ -18,33 +18,30 @@
 package fr.inria.sniffer.detector.analyzer;
 
 import fr.inria.sniffer.detector.entities.PaprikaApp;
-import fr.inria.sniffer.detector.entities.PaprikaClass;
-import fr.inria.sniffer.detector.entities.PaprikaMethod;
+import org.eclipse.jgit.lib.Repository;
 import spoon.Launcher;
-import spoon.processing.AbstractProcessor;
-import spoon.reflect.declaration.CtClass;
-import spoon.reflect.declaration.CtInterface;
 import spoon.support.compiler.FileSystemFolder;
 import spoon.support.compiler.FilteringFolder;
 
+import java.io.IOException;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Created by sarra on 21/02/17.
  */
 public class MainProcessor {
 
-    static PaprikaApp currentApp;
-    static PaprikaClass currentClass;
-    static PaprikaMethod currentMethod;
-    static ArrayList<URL> paths = new ArrayList<>();
+    private final AnalysisContext context;
     String appPath;
     private String jarsPath;
     private String sdkPath;
     private List<String> excluded;
+    private Repository repository;
+    private String commit;
+    private int threads = 1;
 
     public MainProcessor(String appName, int appVersion, int commitNumber, String status, String appKey, String appPath, String sdkPath, String jarsPath, int sdkVersion, String module, List<String> excluded) {
         if (excluded == null) {
@@ -52,19 +49,89 @@ public class MainProcessor {
         } else {
             this.excluded = excluded;
         }
-        this.currentApp = PaprikaApp.createPaprikaApp(appName, appVersion, commitNumber, status, appKey, appPath, sdkVersion, module);
-        currentClass = null;
-        currentMethod = null;
+        PaprikaApp paprikaApp = PaprikaApp.createPaprikaApp(appName, appVersion, commitNumber, status, appKey, appPath, sdkVersion, module);
+        this.context = new AnalysisContext(paprikaApp, new URL[0]);
         this.appPath = appPath;
         this.jarsPath = jarsPath;
         this.sdkPath = sdkPath;
     }
 
-    public void process() {
-        Launcher launcher = new Launcher();
+    /**
+     * @return The app whose classes are built by this processor.
+     */
+    public PaprikaApp getPaprikaApp() {
+        return context.getPaprikaApp();
+    }
+
+    public AnalysisContext getContext() {
+        return context;
+    }
+
+    /**
+     * Read the sources of the given commit from the git object database
+     * instead of the working tree found at the app path.
+     *
+     * @param repository The git repository containing the app path.
+     * @param commit     The commit to analyse.
+     */
+    public void setGitSource(Repository repository, String commit) {
+        this.repository = repository;
+        this.commit = commit;
+    }
+
+    /**
+     * Set the number of threads building the classes once the model is built, 1 by default.
+     *
+     * @param threads Size of the fork/join pool processing the types.
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @param path Absolute path of a source file.
+     * @return True if the file matches one of the exclusion patterns.
+     */
+    public boolean isExcluded(String path) {
+        for (String exclusionPattern : excluded) {
+            if (path.matches(exclusionPattern)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void process() throws IOException {
+        FilteringFolder filteredPath;
+        if (commit != null) {
+            filteredPath = GitCommitFolder.createGitCommitFolder(repository, commit, appPath);
+        } else {
+            filteredPath = new FilteringFolder();
+            filteredPath.addFolder(new FileSystemFolder(appPath));
+        }
+        process(filteredPath);
+    }
+
+    /**
+     * Build the model of the given sources, minus the excluded ones, and add their classes to the current app.
+     *
+     * @param filteredPath The source files to process.
+     */
+    public void process(FilteringFolder filteredPath) {
+        process(filteredPath, Collections.<String>emptySet());
+    }
 
-        FilteringFolder filteredPath = new FilteringFolder();
-        filteredPath.addFolder(new FileSystemFolder(appPath));
+    /**
+     * Build the model of the given sources, minus the excluded ones, and add their classes to the current app.
+     * The classes of the context files are part of the model, so that references to them are resolved,
+     * but they are not added to the app.
+     *
+     * @param filteredPath The source files to process, including the context files.
+     * @param contextFiles Absolute paths of the files only used to resolve references.
+     */
+    public void process(FilteringFolder filteredPath, Set<String> contextFiles) {
+        context.setContextFiles(contextFiles);
+        Launcher launcher = new Launcher();
         for (String exclusionPattern : excluded) {
             filteredPath.removeAllThatMatch(exclusionPattern);
         }
@@ -73,8 +140,13 @@ public class MainProcessor {
         launcher.getEnvironment().setNoClasspath(true);
         launcher.buildModel();
 
-        AbstractProcessor<CtClass> classProcessor = new ClassProcessor();
-        AbstractProcessor<CtInterface> interfaceProcessor = new InterfaceProcessor();
+        ClassProcessor classProcessor = new ClassProcessor(context);
+        InterfaceProcessor interfaceProcessor = new InterfaceProcessor(context);
+        if (threads > 1) {
+            new ParallelTypeProcessing(threads).process(launcher.getFactory().Package().getRootPackage(),
+                    classProcessor, interfaceProcessor, context.getPaprikaApp());
+            return;
+        }
         launcher.addProcessor(classProcessor);
         launcher.addProcessor(interfaceProcessor);
         launcher.process();
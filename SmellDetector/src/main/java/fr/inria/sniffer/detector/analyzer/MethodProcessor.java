@@ -17,6 +17,7 @@
  */
 package fr.inria.sniffer.detector.analyzer;
 
+import fr.inria.sniffer.detector.entities.PaprikaClass;
 import fr.inria.sniffer.detector.entities.PaprikaMethod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +32,10 @@ import spoon.reflect.declaration.ModifierKind;
 public class MethodProcessor extends ExecutableProcessor<CtMethod> {
     private static final Logger logger = LoggerFactory.getLogger(MethodProcessor.class.getName());
 
+    public MethodProcessor(PaprikaClass paprikaClass) {
+        super(paprikaClass);
+    }
+
     @Override
     protected void process(CtMethod ctMethod, PaprikaMethod paprikaMethod) {
         paprikaMethod.setSetter(checkSetter(ctMethod));
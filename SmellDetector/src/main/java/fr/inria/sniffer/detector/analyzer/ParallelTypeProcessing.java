@@ -0,0 +1,142 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.entities.PaprikaClass;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtInterface;
+import spoon.reflect.declaration.CtPackage;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.visitor.CtScanner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Build the classes of a spoon model on a fork/join pool.
+ * <p>
+ * The types are listed in the order used by the spoon processing, all the classes then all the interfaces,
+ * and their classes are added to the app in this order once built, so that the app does not depend
+ * on the number of threads.
+ */
+public class ParallelTypeProcessing {
+    private final int threads;
+    private final List<TypeBuild<?>> builds = new ArrayList<>();
+
+    /**
+     * @param threads Size of the fork/join pool.
+     */
+    public ParallelTypeProcessing(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Build the classes and interfaces of the model and add them to the app.
+     *
+     * @param rootPackage        Root package of the model.
+     * @param classProcessor     Processor of the classes.
+     * @param interfaceProcessor Processor of the interfaces.
+     * @param paprikaApp         The app receiving the classes.
+     */
+    public void process(CtPackage rootPackage, ClassProcessor classProcessor, InterfaceProcessor interfaceProcessor,
+                        PaprikaApp paprikaApp) {
+        new TypeCollector<>(CtClass.class, classProcessor).scan(rootPackage);
+        new TypeCollector<>(CtInterface.class, interfaceProcessor).scan(rootPackage);
+        PaprikaClass[] paprikaClasses = new PaprikaClass[builds.size()];
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new BuildTask(paprikaClasses, 0, paprikaClasses.length));
+        } finally {
+            pool.shutdown();
+        }
+        for (PaprikaClass paprikaClass : paprikaClasses) {
+            paprikaApp.addPaprikaClass(paprikaClass);
+        }
+    }
+
+    /**
+     * List the types to process in the same order as the spoon processing, i.e. post-order.
+     */
+    private class TypeCollector<T extends CtType<?>> extends CtScanner {
+        private final Class<T> typeClass;
+        private final TypeProcessor<T> processor;
+
+        TypeCollector(Class<T> typeClass, TypeProcessor<T> processor) {
+            this.typeClass = typeClass;
+            this.processor = processor;
+        }
+
+        @Override
+        public void scan(CtElement element) {
+            super.scan(element);
+            if (typeClass.isInstance(element)) {
+                T type = typeClass.cast(element);
+                if (processor.isToBeProcessed(type)) {
+                    builds.add(new TypeBuild<>(type, processor));
+                }
+            }
+        }
+    }
+
+    /**
+     * A type with the processor building its class.
+     */
+    private static final class TypeBuild<T extends CtType<?>> {
+        private final T type;
+        private final TypeProcessor<T> processor;
+
+        TypeBuild(T type, TypeProcessor<T> processor) {
+            this.type = type;
+            this.processor = processor;
+        }
+
+        PaprikaClass build() {
+            return processor.buildPaprikaClass(type);
+        }
+    }
+
+    /**
+     * Build the classes of the types in [from, to), splitting the range until a single type is left.
+     */
+    private class BuildTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final PaprikaClass[] paprikaClasses;
+        private final int from;
+        private final int to;
+
+        BuildTask(PaprikaClass[] paprikaClasses, int from, int to) {
+            this.paprikaClasses = paprikaClasses;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                paprikaClasses[from] = builds.get(from).build();
+            } else if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BuildTask(paprikaClasses, from, middle), new BuildTask(paprikaClasses, middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * On-disk cache of the classes built from a java file, keyed by the git blob id of the file.
+ * <p>
+ * The classes built from a file also depend on the types it uses, so a blob can have several entries,
+ * each one with the fingerprint of the types it was built against.
+ * The cache is bounded in size, the least recently used blobs are evicted first.
+ */
+public class SummaryCache {
+    private static final Logger logger = LoggerFactory.getLogger(SummaryCache.class.getName());
+    /**
+     * Version of the cached content, to increase whenever the output of the processors changes.
+     */
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_ENTRIES_PER_BLOB = 16;
+
+    private final File directory;
+    private final long maxSize;
+    private final Map<String, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+    private int hits = 0;
+    private int misses = 0;
+    private int evictions = 0;
+
+    /**
+     * @param root       Directory of the cache, shared by all the detector versions.
+     * @param maxSize    Maximum size of the cache for the current version, in bytes.
+     * @param classifier Identity of the component classifier, as the cached classifications depend on it.
+     */
+    public SummaryCache(File root, long maxSize, String classifier) throws IOException {
+        this.directory = new File(root, "v" + FORMAT_VERSION + "-" + detectorVersion() + "-" + classifier);
+        this.maxSize = maxSize;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create the cache directory " + directory);
+        }
+        List<File> files = new ArrayList<>();
+        File[] folders = directory.listFiles();
+        for (File folder : folders == null ? new File[0] : folders) {
+            File[] blobs = folder.listFiles();
+            if (blobs != null) {
+                files.addAll(Arrays.asList(blobs));
+            }
+        }
+        Collections.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                return Long.compare(first.lastModified(), second.lastModified());
+            }
+        });
+        for (File file : files) {
+            sizes.put(file.getName(), file.length());
+            size += file.length();
+        }
+        evict();
+        logger.info("Summary cache " + directory + ": " + sizes.size() + " blobs, " + size / 1024 + " KB");
+    }
+
+    /**
+     * @return The version of the detector, as found in the jar manifest, including the hash of its sources.
+     */
+    public static String detectorVersion() {
+        String version = SummaryCache.class.getPackage().getImplementationVersion();
+        return version == null ? "dev" : version;
+    }
+
+    /**
+     * Read the entries of a blob, the most recent first.
+     *
+     * @param blobId Id of the blob.
+     * @return The entries, empty if the blob is not cached or could not be read.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Entry> read(String blobId) {
+        if (!sizes.containsKey(blobId)) {
+            return Collections.emptyList();
+        }
+        File file = file(blobId);
+        try (ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            List<Entry> entries = (List<Entry>) input.readObject();
+            file.setLastModified(System.currentTimeMillis());
+            return entries;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            logger.warn("Could not read cached blob " + blobId + ", removing it (" + e.getMessage() + ")");
+            remove(blobId);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Add an entry to a blob, replacing the entry with the same fingerprint if any.
+     *
+     * @param blobId Id of the blob.
+     * @param entry  The classes built from the blob.
+     */
+    public void write(String blobId, Entry entry) {
+        List<Entry> entries = new ArrayList<>();
+        entries.add(entry);
+        for (Entry previous : read(blobId)) {
+            if (entries.size() < MAX_ENTRIES_PER_BLOB && !previous.getFingerprint().equals(entry.getFingerprint())) {
+                entries.add(previous);
+            }
+        }
+        File file = file(blobId);
+        File temporary = new File(file.getPath() + ".tmp");
+        try {
+            if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+                throw new IOException("Could not create " + file.getParent());
+            }
+            try (ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+                output.writeObject(entries);
+            }
+            if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+                throw new IOException("Could not move " + temporary + " to " + file);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not cache blob " + blobId + " (" + e.getMessage() + ")");
+            temporary.delete();
+            return;
+        }
+        Long previousSize = sizes.put(blobId, file.length());
+        size += file.length() - (previousSize == null ? 0 : previousSize);
+        evict();
+    }
+
+    /**
+     * Count the files rebuilt from the cache and the files parsed despite the cache.
+     */
+    public void countLookups(int hits, int misses) {
+        this.hits += hits;
+        this.misses += misses;
+    }
+
+    public void logStatistics() {
+        logger.info("Summary cache: " + hits + " hits, " + misses + " misses, " + evictions + " blobs evicted, "
+                + sizes.size() + " blobs cached (" + size / 1024 + " KB)");
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = sizes.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> blob = iterator.next();
+            iterator.remove();
+            size -= blob.getValue();
+            file(blob.getKey()).delete();
+            evictions++;
+        }
+    }
+
+    private void remove(String blobId) {
+        Long blobSize = sizes.remove(blobId);
+        if (blobSize != null) {
+            size -= blobSize;
+        }
+        file(blobId).delete();
+    }
+
+    private File file(String blobId) {
+        return new File(new File(directory, blobId.substring(0, 2)), blobId);
+    }
+
+    /**
+     * Classes built from a blob, along with what they depend on.
+     */
+    public static class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String fingerprint;
+        private final Set<String> identifiers;
+        private final List<ClassSummary> summaries;
+
+        /**
+         * @param fingerprint Fingerprint of the types used by the blob when its classes were built.
+         * @param identifiers Identifiers found in the blob.
+         * @param summaries   Summaries of the classes built from the blob.
+         */
+        public Entry(String fingerprint, Set<String> identifiers, List<ClassSummary> summaries) {
+            this.fingerprint = fingerprint;
+            this.identifiers = identifiers;
+            this.summaries = summaries;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public Set<String> getIdentifiers() {
+            return identifiers;
+        }
+
+        public List<ClassSummary> getSummaries() {
+            return summaries;
+        }
+    }
+}
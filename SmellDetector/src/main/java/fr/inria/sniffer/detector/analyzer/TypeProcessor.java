@@ -17,29 +17,54 @@
  */
 package fr.inria.sniffer.detector.analyzer;
 
+import fr.inria.sniffer.detector.entities.PaprikaApp;
 import fr.inria.sniffer.detector.entities.PaprikaClass;
 import fr.inria.sniffer.detector.entities.PaprikaModifiers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spoon.processing.AbstractProcessor;
 import spoon.reflect.code.CtNewClass;
+import spoon.reflect.cu.SourcePosition;
 import spoon.reflect.declaration.CtType;
 import spoon.reflect.reference.CtTypeReference;
 
 public abstract class TypeProcessor<T extends CtType> extends AbstractProcessor<T> {
     private static final Logger logger = LoggerFactory.getLogger(TypeProcessor.class.getName());
+    protected final AnalysisContext context;
+
+    protected TypeProcessor(AnalysisContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public boolean isToBeProcessed(T candidate) {
+        SourcePosition position = candidate.getPosition();
+        return !(position.getFile() != null && context.getContextFiles().contains(position.getFile().getAbsolutePath()));
+    }
 
     @Override
     public void process(T ctType) {
+        context.getPaprikaApp().addPaprikaClass(buildPaprikaClass(ctType));
+    }
+
+    /**
+     * Build the class of the given type without adding it to the app.
+     * Different types can be built concurrently, as long as the model is not modified meanwhile.
+     *
+     * @param ctType The type to build.
+     * @return The class, its fields and its methods.
+     */
+    public PaprikaClass buildPaprikaClass(T ctType) {
         String qualifiedName = parseQualifiedName(ctType);
         PaprikaModifiers paprikaModifiers = parseModifiers(ctType);
 
         String absolutePath = ctType.getPosition().getFile().getAbsolutePath();
-        String relativePath = absolutePath.replaceFirst(MainProcessor.currentApp.getPath(), "");
+        PaprikaApp paprikaApp = context.getPaprikaApp();
+        String relativePath = absolutePath.replaceFirst(paprikaApp.getPath(), "");
 
-        PaprikaClass paprikaClass = PaprikaClass.createPaprikaClass(qualifiedName, MainProcessor.currentApp, paprikaModifiers, relativePath);
+        PaprikaClass paprikaClass = PaprikaClass.createDetachedPaprikaClass(qualifiedName, paprikaApp, paprikaModifiers, relativePath);
 
-        MainProcessor.currentClass = paprikaClass;
+        paprikaClass.setSimpleName(ctType.getSimpleName());
         logger.debug("Type in process: " + ctType.getSimpleName());
         logger.debug("Processor: " + this.getClass().getSimpleName());
         logger.debug("Type location: " + ctType.getPosition().toString());
@@ -50,7 +75,8 @@ public abstract class TypeProcessor<T extends CtType> extends AbstractProcessor<
         if (ctType.getQualifiedName().contains("$")) {
             paprikaClass.setInnerClass(true);
         }
-        processMethods(ctType);
+        processMethods(ctType, paprikaClass);
+        return paprikaClass;
     }
 
     /**
@@ -84,7 +110,7 @@ public abstract class TypeProcessor<T extends CtType> extends AbstractProcessor<
         return qualifiedName;
     }
 
-    protected abstract void processMethods(T ctType);
+    protected abstract void processMethods(T ctType, PaprikaClass paprikaClass);
 
     protected abstract void handleAttachments(T ctType, PaprikaClass paprikaClass);
 
@@ -17,10 +17,14 @@
  */
 package fr.inria.sniffer.detector.analyzer;
 
+import java.io.Serializable;
+
 /**
  * Created by sarra on 21/02/17.
  */
-public class VariableData {
+public class VariableData implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private String className;
     private String variableName;
 
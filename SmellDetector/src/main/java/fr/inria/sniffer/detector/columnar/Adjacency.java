@@ -0,0 +1,102 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.columnar;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Relationships from the rows of a table to the rows of another one, in compressed sparse rows:
+ * the targets of the row r are {@code targets[offsets[r]]} to {@code targets[offsets[r + 1] - 1]}.
+ * The relationships are added row after row, in increasing order of the source rows.
+ */
+public class Adjacency {
+    private int[] offsets;
+    private int[] targets;
+    private int rows;
+    private int size;
+
+    Adjacency(int capacity) {
+        offsets = new int[capacity + 1];
+        targets = new int[Math.max(capacity, 16)];
+    }
+
+    /**
+     * Add a relationship from the last source row or a following one.
+     */
+    void add(int source, int target) {
+        if (source < rows - 1) {
+            throw new IllegalArgumentException("The relationships must be added in increasing order of the source rows");
+        }
+        while (rows <= source) {
+            offsets[++rows] = size;
+        }
+        if (size == targets.length) {
+            targets = Arrays.copyOf(targets, size * 2);
+        }
+        targets[size++] = target;
+        offsets[rows] = size;
+    }
+
+    /**
+     * Close the rows without any relationship up to the number of rows of the source table.
+     */
+    void complete(int sourceRows) {
+        while (rows < sourceRows) {
+            offsets[++rows] = size;
+        }
+        offsets = Arrays.copyOf(offsets, rows + 1);
+        targets = Arrays.copyOf(targets, size);
+    }
+
+    public int start(int source) {
+        return offsets[source];
+    }
+
+    public int end(int source) {
+        return offsets[source + 1];
+    }
+
+    public int target(int index) {
+        return targets[index];
+    }
+
+    public boolean isEmpty(int source) {
+        return offsets[source] == offsets[source + 1];
+    }
+
+    void write(DataOutputStream output) throws IOException {
+        output.writeInt(rows);
+        output.writeInt(size);
+        EntityTable.writeInts(output, offsets, rows + 1);
+        EntityTable.writeInts(output, targets, size);
+    }
+
+    static Adjacency read(DataInputStream input) throws IOException {
+        Adjacency adjacency = new Adjacency(0);
+        adjacency.rows = input.readInt();
+        adjacency.size = input.readInt();
+        adjacency.offsets = new int[adjacency.rows + 1];
+        adjacency.targets = new int[adjacency.size];
+        EntityTable.readInts(input, adjacency.offsets);
+        EntityTable.readInts(input, adjacency.targets);
+        return adjacency;
+    }
+}
@@ -0,0 +1,480 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.columnar;
+
+import fr.inria.sniffer.detector.entities.Entity;
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.entities.PaprikaArgument;
+import fr.inria.sniffer.detector.entities.PaprikaClass;
+import fr.inria.sniffer.detector.entities.PaprikaExternalArgument;
+import fr.inria.sniffer.detector.entities.PaprikaExternalClass;
+import fr.inria.sniffer.detector.entities.PaprikaExternalMethod;
+import fr.inria.sniffer.detector.entities.PaprikaLibrary;
+import fr.inria.sniffer.detector.entities.PaprikaMethod;
+import fr.inria.sniffer.detector.entities.PaprikaVariable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Model of an app at one commit, stored in columns instead of graph nodes.
+ * <p>
+ * Each kind of entity is an {@link EntityTable}, the strings are ids of a dictionary local to the model,
+ * ownership is a column holding the row of the owner, and the calls, uses and implements
+ * relationships are {@link Adjacency} lists.
+ * A model is written in a single file and read back as a whole, one commit at a time.
+ */
+public class ColumnarModel {
+    private static final int MAGIC = 0x534e4643;
+    private static final int FORMAT_VERSION = 1;
+
+    public static final String NAME = "name";
+    public static final String MODIFIER = "modifier";
+    public static final String FILE_PATH = "file_path";
+    public static final String PARENT_NAME = "parent_name";
+    public static final String FULL_NAME = "full_name";
+    public static final String RETURN_TYPE = "return_type";
+    public static final String TYPE = "type";
+    public static final String POSITION = "position";
+    /**
+     * Row of the class extended by a class, -1 if it does not extend an internal class.
+     */
+    public static final String PARENT = "parent";
+    /**
+     * Row of the owner of a method, variable or argument, the owned rows are sorted by owner.
+     */
+    public static final String OWNER = "owner";
+
+    String appName;
+    String key;
+    int commitNumber;
+    String[] strings;
+    Map<String, Integer> ids;
+    EntityTable app;
+    EntityTable classes;
+    EntityTable methods;
+    EntityTable variables;
+    EntityTable arguments;
+    EntityTable externalClasses;
+    EntityTable externalMethods;
+    EntityTable externalArguments;
+    EntityTable libraries;
+    Adjacency calls;
+    Adjacency externalCalls;
+    Adjacency uses;
+    Adjacency implementations;
+
+    ColumnarModel() {
+    }
+
+    /**
+     * Convert the complete model of an app.
+     */
+    public static ColumnarModel createColumnarModel(PaprikaApp paprikaApp) {
+        return new Builder(paprikaApp).build();
+    }
+
+    public String getAppName() {
+        return appName;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public int getCommitNumber() {
+        return commitNumber;
+    }
+
+    /**
+     * @return The string of an id of the dictionary, null for -1.
+     */
+    public String string(int id) {
+        return id < 0 ? null : strings[id];
+    }
+
+    /**
+     * @return The id of a string in the dictionary, -1 if the model does not contain it.
+     */
+    public int idOf(String value) {
+        if (ids == null) {
+            ids = new HashMap<>(strings.length * 2);
+            for (int id = 0; id < strings.length; id++) {
+                ids.put(strings[id], id);
+            }
+        }
+        Integer id = ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return The rows of a table owned by a row of another one, from the first one to the last one excluded.
+     */
+    public int[] ownedRows(EntityTable table, int owner) {
+        return new int[]{table.firstOwnedBy(OWNER, owner), table.firstOwnedBy(OWNER, owner + 1)};
+    }
+
+    /**
+     * @return The string of a column holding dictionary ids.
+     */
+    public String string(EntityTable table, String column, int row) {
+        return string(table.get(column, row));
+    }
+
+    /**
+     * @return The table of the app, with a single row.
+     */
+    public EntityTable getApp() {
+        return app;
+    }
+
+    public EntityTable getClasses() {
+        return classes;
+    }
+
+    public EntityTable getMethods() {
+        return methods;
+    }
+
+    public EntityTable getVariables() {
+        return variables;
+    }
+
+    public EntityTable getArguments() {
+        return arguments;
+    }
+
+    public EntityTable getExternalClasses() {
+        return externalClasses;
+    }
+
+    public EntityTable getExternalMethods() {
+        return externalMethods;
+    }
+
+    public EntityTable getExternalArguments() {
+        return externalArguments;
+    }
+
+    public EntityTable getLibraries() {
+        return libraries;
+    }
+
+    /**
+     * @return The calls from the methods to the methods of the app.
+     */
+    public Adjacency getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return The calls from the methods to the external methods.
+     */
+    public Adjacency getExternalCalls() {
+        return externalCalls;
+    }
+
+    /**
+     * @return The variables used by the methods.
+     */
+    public Adjacency getUses() {
+        return uses;
+    }
+
+    /**
+     * @return The interfaces implemented by the classes.
+     */
+    public Adjacency getImplementations() {
+        return implementations;
+    }
+
+    /**
+     * @return The name of the file of a model, ordered by commit number.
+     */
+    public static String fileName(int commitNumber, String key) {
+        return String.format("%08d_%s.cols", commitNumber, key.replaceAll("[^A-Za-z0-9._-]", "_"));
+    }
+
+    public void write(File file) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeUTF(appName);
+            output.writeUTF(key);
+            output.writeInt(commitNumber);
+            output.writeInt(strings.length);
+            for (String string : strings) {
+                output.writeUTF(string);
+            }
+            for (EntityTable table : tables()) {
+                table.write(output);
+            }
+            for (Adjacency adjacency : adjacencies()) {
+                adjacency.write(output);
+            }
+        }
+    }
+
+    public static ColumnarModel read(File file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a model file of this version: " + file);
+            }
+            ColumnarModel model = new ColumnarModel();
+            model.appName = input.readUTF();
+            model.key = input.readUTF();
+            model.commitNumber = input.readInt();
+            model.strings = new String[input.readInt()];
+            for (int id = 0; id < model.strings.length; id++) {
+                model.strings[id] = input.readUTF();
+            }
+            model.app = EntityTable.read(input);
+            model.classes = EntityTable.read(input);
+            model.methods = EntityTable.read(input);
+            model.variables = EntityTable.read(input);
+            model.arguments = EntityTable.read(input);
+            model.externalClasses = EntityTable.read(input);
+            model.externalMethods = EntityTable.read(input);
+            model.externalArguments = EntityTable.read(input);
+            model.libraries = EntityTable.read(input);
+            model.calls = Adjacency.read(input);
+            model.externalCalls = Adjacency.read(input);
+            model.uses = Adjacency.read(input);
+            model.implementations = Adjacency.read(input);
+            return model;
+        }
+    }
+
+    EntityTable[] tables() {
+        return new EntityTable[]{app, classes, methods, variables, arguments,
+                externalClasses, externalMethods, externalArguments, libraries};
+    }
+
+    private Adjacency[] adjacencies() {
+        return new Adjacency[]{calls, externalCalls, uses, implementations};
+    }
+
+    /**
+     * Fill the columns from the entities, numbering the entities of each kind in the order of the app.
+     */
+    private static class Builder {
+        private final PaprikaApp paprikaApp;
+        private final ColumnarModel model = new ColumnarModel();
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final Map<Entity, Integer> rows = new IdentityHashMap<>();
+        private final List<PaprikaMethod> methods = new ArrayList<>();
+
+        Builder(PaprikaApp paprikaApp) {
+            this.paprikaApp = paprikaApp;
+        }
+
+        ColumnarModel build() {
+            model.appName = paprikaApp.getName();
+            model.key = paprikaApp.getKey();
+            model.commitNumber = paprikaApp.getCommitNumber();
+            int classCount = paprikaApp.getPaprikaClasses().size();
+            int methodCount = 0;
+            int variableCount = 0;
+            int argumentCount = 0;
+            for (PaprikaClass paprikaClass : paprikaApp.getPaprikaClasses()) {
+                methodCount += paprikaClass.getPaprikaMethods().size();
+                variableCount += paprikaClass.getPaprikaVariables().size();
+                for (PaprikaMethod paprikaMethod : paprikaClass.getPaprikaMethods()) {
+                    argumentCount += paprikaMethod.getArguments().size();
+                }
+            }
+            int externalMethodCount = 0;
+            int externalArgumentCount = 0;
+            for (PaprikaExternalClass externalClass : paprikaApp.getPaprikaExternalClasses()) {
+                externalMethodCount += externalClass.getPaprikaExternalMethods().size();
+                for (PaprikaExternalMethod externalMethod : externalClass.getPaprikaExternalMethods()) {
+                    externalArgumentCount += externalMethod.getPaprikaExternalArguments().size();
+                }
+            }
+            model.app = new EntityTable(1);
+            model.classes = new EntityTable(classCount);
+            model.methods = new EntityTable(methodCount);
+            model.variables = new EntityTable(variableCount);
+            model.arguments = new EntityTable(argumentCount);
+            model.externalClasses = new EntityTable(paprikaApp.getPaprikaExternalClasses().size());
+            model.externalMethods = new EntityTable(externalMethodCount);
+            model.externalArguments = new EntityTable(externalArgumentCount);
+            model.libraries = new EntityTable(paprikaApp.getPaprikaLibraries().size());
+            model.calls = new Adjacency(methodCount);
+            model.externalCalls = new Adjacency(methodCount);
+            model.uses = new Adjacency(methodCount);
+            model.implementations = new Adjacency(classCount);
+
+            model.app.add(paprikaApp);
+            for (PaprikaLibrary paprikaLibrary : paprikaApp.getPaprikaLibraries()) {
+                int row = model.libraries.add(paprikaLibrary);
+                model.libraries.set(NAME, row, intern(paprikaLibrary.getName()));
+            }
+            for (PaprikaExternalClass externalClass : paprikaApp.getPaprikaExternalClasses()) {
+                addExternalClass(externalClass);
+            }
+            for (PaprikaClass paprikaClass : paprikaApp.getPaprikaClasses()) {
+                addClass(paprikaClass);
+            }
+            for (PaprikaClass paprikaClass : paprikaApp.getPaprikaClasses()) {
+                for (PaprikaVariable paprikaVariable : paprikaClass.getPaprikaVariables()) {
+                    addVariable(paprikaVariable, rows.get(paprikaClass));
+                }
+            }
+            for (PaprikaClass paprikaClass : paprikaApp.getPaprikaClasses()) {
+                for (PaprikaMethod paprikaMethod : paprikaClass.getPaprikaMethods()) {
+                    addMethod(paprikaMethod, rows.get(paprikaClass));
+                }
+            }
+            linkClasses();
+            linkMethods();
+            model.strings = strings.toArray(new String[strings.size()]);
+            model.ids = ids;
+            for (EntityTable table : model.tables()) {
+                table.trim();
+            }
+            return model;
+        }
+
+        private int intern(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = strings.size();
+                strings.add(value);
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        private void addExternalClass(PaprikaExternalClass externalClass) {
+            EntityTable table = model.externalClasses;
+            int row = table.add(externalClass);
+            table.set(NAME, row, intern(externalClass.getName()));
+            table.set(PARENT_NAME, row, intern(externalClass.getParentName()));
+            for (PaprikaExternalMethod externalMethod : externalClass.getPaprikaExternalMethods()) {
+                int methodRow = model.externalMethods.add(externalMethod);
+                rows.put(externalMethod, methodRow);
+                model.externalMethods.set(OWNER, methodRow, row);
+                model.externalMethods.set(NAME, methodRow, intern(externalMethod.getName()));
+                model.externalMethods.set(FULL_NAME, methodRow, intern(externalMethod.toString()));
+                model.externalMethods.set(RETURN_TYPE, methodRow, intern(externalMethod.getReturnType()));
+                for (PaprikaExternalArgument argument : externalMethod.getPaprikaExternalArguments()) {
+                    int argumentRow = model.externalArguments.add(argument);
+                    model.externalArguments.set(OWNER, argumentRow, methodRow);
+                    model.externalArguments.set(NAME, argumentRow, intern(argument.getName()));
+                    model.externalArguments.set(POSITION, argumentRow, argument.getPosition());
+                }
+            }
+        }
+
+        private void addClass(PaprikaClass paprikaClass) {
+            EntityTable table = model.classes;
+            int row = table.add(paprikaClass);
+            rows.put(paprikaClass, row);
+            table.set(NAME, row, intern(paprikaClass.getName()));
+            table.set(MODIFIER, row, intern(paprikaClass.getModifier().toString().toLowerCase()));
+            table.set(FILE_PATH, row, intern(paprikaClass.getPath()));
+            table.set(PARENT_NAME, row, intern(paprikaClass.getParentName()));
+        }
+
+        private void addVariable(PaprikaVariable paprikaVariable, int classRow) {
+            EntityTable table = model.variables;
+            int row = table.add(paprikaVariable);
+            rows.put(paprikaVariable, row);
+            table.set(OWNER, row, classRow);
+            table.set(NAME, row, intern(paprikaVariable.getName()));
+            table.set(MODIFIER, row, intern(paprikaVariable.getModifier().toString().toLowerCase()));
+            table.set(TYPE, row, intern(paprikaVariable.getType()));
+        }
+
+        private void addMethod(PaprikaMethod paprikaMethod, int classRow) {
+            EntityTable table = model.methods;
+            int row = table.add(paprikaMethod);
+            rows.put(paprikaMethod, row);
+            methods.add(paprikaMethod);
+            table.set(OWNER, row, classRow);
+            table.set(NAME, row, intern(paprikaMethod.getName()));
+            table.set(MODIFIER, row, intern(paprikaMethod.getModifier().toString().toLowerCase()));
+            table.set(FULL_NAME, row, intern(paprikaMethod.toString()));
+            table.set(RETURN_TYPE, row, intern(paprikaMethod.getReturnType()));
+            for (PaprikaArgument argument : paprikaMethod.getArguments()) {
+                int argumentRow = model.arguments.add(argument);
+                model.arguments.set(OWNER, argumentRow, row);
+                model.arguments.set(NAME, argumentRow, intern(argument.getName()));
+                model.arguments.set(POSITION, argumentRow, argument.getPosition());
+            }
+        }
+
+        private void linkClasses() {
+            List<PaprikaClass> paprikaClasses = paprikaApp.getPaprikaClasses();
+            for (int row = 0; row < paprikaClasses.size(); row++) {
+                PaprikaClass paprikaClass = paprikaClasses.get(row);
+                Integer parent = paprikaClass.getParent() == null ? null : rows.get(paprikaClass.getParent());
+                model.classes.set(PARENT, row, parent == null ? -1 : parent);
+                for (PaprikaClass paprikaInterface : paprikaClass.getInterfaces()) {
+                    Integer target = rows.get(paprikaInterface);
+                    if (target != null) {
+                        model.implementations.add(row, target);
+                    }
+                }
+            }
+            model.implementations.complete(paprikaClasses.size());
+        }
+
+        private void linkMethods() {
+            for (int row = 0; row < methods.size(); row++) {
+                PaprikaMethod paprikaMethod = methods.get(row);
+                for (Entity calledMethod : paprikaMethod.getCalledMethods()) {
+                    Integer target = rows.get(calledMethod);
+                    if (target == null) {
+                        continue;
+                    }
+                    if (calledMethod instanceof PaprikaMethod) {
+                        model.calls.add(row, target);
+                    } else {
+                        model.externalCalls.add(row, target);
+                    }
+                }
+                for (PaprikaVariable paprikaVariable : paprikaMethod.getUsedVariables()) {
+                    Integer target = rows.get(paprikaVariable);
+                    if (target != null) {
+                        model.uses.add(row, target);
+                    }
+                }
+            }
+            model.calls.complete(methods.size());
+            model.externalCalls.complete(methods.size());
+            model.uses.complete(methods.size());
+        }
+    }
+}
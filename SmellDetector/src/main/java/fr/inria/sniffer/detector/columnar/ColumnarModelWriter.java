@@ -0,0 +1,59 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.columnar;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.neo4j.ModelWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Write the models in a directory of {@link ColumnarModel} files, one per commit, instead of a Neo4j database.
+ */
+public class ColumnarModelWriter implements ModelWriter {
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarModelWriter.class.getName());
+
+    private final File directory;
+    private long writtenBytes;
+
+    public ColumnarModelWriter(String directory) throws IOException {
+        this.directory = new File(directory);
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new IOException("Could not create the model directory " + directory);
+        }
+    }
+
+    @Override
+    public void writeApp(PaprikaApp paprikaApp) {
+        File file = new File(directory, ColumnarModel.fileName(paprikaApp.getCommitNumber(), paprikaApp.getKey()));
+        try {
+            ColumnarModel.createColumnarModel(paprikaApp).write(file);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write the model of " + paprikaApp.getKey(), e);
+        }
+        writtenBytes += file.length();
+    }
+
+    @Override
+    public void shutDown() {
+        logger.info("Columnar models written in " + directory + ": " + writtenBytes / 1024 + " KB");
+    }
+}
@@ -0,0 +1,844 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.columnar;
+
+import fr.inria.sniffer.detector.metrics.MetricKey;
+import fr.inria.sniffer.detector.neo4j.FuzzyEvaluator;
+import fr.inria.sniffer.detector.neo4j.FuzzyQuery;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static fr.inria.sniffer.detector.columnar.ColumnarModel.FULL_NAME;
+import static fr.inria.sniffer.detector.columnar.ColumnarModel.NAME;
+import static fr.inria.sniffer.detector.columnar.ColumnarModel.OWNER;
+import static fr.inria.sniffer.detector.columnar.ColumnarModel.PARENT;
+import static fr.inria.sniffer.detector.columnar.ColumnarModel.POSITION;
+
+/**
+ * The built-in smells of the Cypher queries of {@link fr.inria.sniffer.detector.neo4j}, on a {@link ColumnarModel}.
+ * The {@code create} queries use the very high thresholds of the crisp queries, as with {@code FORCENOFUZZY}.
+ * The {@code createFuzzy} queries return the candidates of the fuzzy evaluation with their metrics,
+ * as the {@code executeFuzzy} Cypher queries, and {@link #forRequest(String)} adds their fuzzy value
+ * with the FCL file of the smell, as {@link FuzzyQuery#writeFuzzyResult} does.
+ */
+public class ColumnarQueries {
+    private static final String[] UHA_METHODS = {
+            "drawPicture#android.graphics.Canvas",
+            "drawVertices#android.graphics.Canvas",
+            "drawPosText#android.graphics.Canvas",
+            "drawTextOnPath#android.graphics.Canvas",
+            "drawPath#android.graphics.Canvas",
+            "setLinearText#android.graphics.Paint",
+            "setMaskFilter#android.graphics.Paint",
+            "setPathEffect#android.graphics.Paint",
+            "setRasterizer#android.graphics.Paint",
+            "setSubpixelText#android.graphics.Paint"
+    };
+    private static final String NUMBER_OF_INSTRUCTIONS = "number_of_instructions";
+    private static final double HIGH_HEAVY_CC = 3.5;
+    private static final double VERY_HIGH_HEAVY_CC = 5;
+    private static final double HIGH_HEAVY_NOI = 17;
+    private static final double VERY_HIGH_HEAVY_NOI = 26;
+
+    private ColumnarQueries() {
+    }
+
+    /**
+     * @param request A smell, or one of the groups ALLAP, NONFUZZY, FUZZY, FORCENOFUZZY, ALLHEAVY and SIZE.
+     * @return The queries of the request, writing the same files as the Cypher queries of the request,
+     * null if the request is not supported by the columnar backend.
+     * @throws IOException If the FCL file of a fuzzy smell cannot be loaded.
+     */
+    public static List<ColumnarQuery> forRequest(String request) throws IOException {
+        return forRequest(request, !"FORCENOFUZZY".equals(request));
+    }
+
+    /**
+     * @param fuzzy If false, the fuzzy smells are detected with the thresholds of their crisp query,
+     *              as with {@code FORCENOFUZZY}.
+     * @return The queries of the request, null if the request is not supported by the columnar backend.
+     * @throws IOException If the FCL file of a fuzzy smell cannot be loaded.
+     */
+    public static List<ColumnarQuery> forRequest(String request, boolean fuzzy) throws IOException {
+        List<ColumnarQuery> queries = crispQueries(request);
+        if (queries == null || !fuzzy) {
+            return queries;
+        }
+        List<ColumnarQuery> evaluated = new ArrayList<>(queries.size());
+        for (ColumnarQuery query : queries) {
+            ColumnarQuery fuzzyQuery = createFuzzyEvaluation(query.getSmellName());
+            evaluated.add(fuzzyQuery == null ? query : fuzzyQuery);
+        }
+        return evaluated;
+    }
+
+    private static List<ColumnarQuery> crispQueries(String request) {
+        switch (request) {
+            case "ARGB8888":
+                return Arrays.asList(createARGB8888Query());
+            case "MIM":
+                return Arrays.asList(createMIMQuery());
+            case "IGS":
+                return Arrays.asList(createIGSQuery());
+            case "LIC":
+                return Arrays.asList(createLICQuery());
+            case "NLMR":
+                return Arrays.asList(createNLMRQuery());
+            case "CC":
+                return Arrays.asList(createCCQuery());
+            case "LM":
+                return Arrays.asList(createLMQuery());
+            case "SAK":
+                return Arrays.asList(createSAKQuery());
+            case "BLOB":
+                return Arrays.asList(createBLOBQuery());
+            case "OVERDRAW":
+                return Arrays.asList(createOverdrawQuery());
+            case "HSS":
+                return Arrays.asList(createHeavyServiceStartQuery());
+            case "HBR":
+                return Arrays.asList(createHeavyBroadcastReceiverQuery());
+            case "HAS":
+                return Arrays.asList(createHeavyAsyncTaskStepsQuery());
+            case "THI":
+                return Arrays.asList(createTrackingHardwareIdQuery());
+            case "ALLHEAVY":
+                return Arrays.asList(createHeavyServiceStartQuery(), createHeavyBroadcastReceiverQuery(),
+                        createHeavyAsyncTaskStepsQuery());
+            case "NONFUZZY":
+                return Arrays.asList(createIGSQuery(), createMIMQuery(), createLICQuery(), createNLMRQuery(),
+                        createOverdrawQuery(), createUnsuitedLRUCacheSizeQuery(), createInitOnDrawQuery(),
+                        createUnsupportedHardwareAccelerationQuery(), createHashMapUsageQuery(),
+                        createInvalidateWithoutRectQuery(), createCommitSizeQuery());
+            case "SIZE":
+                return Arrays.asList(createCommitSizeQuery());
+            case "FUZZY":
+            case "FORCENOFUZZY":
+                return Arrays.asList(createCCQuery(), createLMQuery(), createSAKQuery(), createBLOBQuery(),
+                        createHeavyServiceStartQuery(), createHeavyBroadcastReceiverQuery(),
+                        createHeavyAsyncTaskStepsQuery());
+            case "ALLAP":
+                return Arrays.asList(createARGB8888Query(), createCCQuery(), createLMQuery(), createSAKQuery(),
+                        createBLOBQuery(), createMIMQuery(), createIGSQuery(), createLICQuery(), createNLMRQuery(),
+                        createOverdrawQuery(), createHeavyServiceStartQuery(), createHeavyBroadcastReceiverQuery(),
+                        createHeavyAsyncTaskStepsQuery(), createUnsuitedLRUCacheSizeQuery(), createInitOnDrawQuery(),
+                        createUnsupportedHardwareAccelerationQuery(), createHashMapUsageQuery(),
+                        createInvalidateWithoutRectQuery(), createTrackingHardwareIdQuery());
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Smell matched on classes, returning the name of the class as instance.
+     */
+    private abstract static class ClassQuery extends ColumnarQuery {
+        ClassQuery(String smellName) {
+            super(smellName);
+        }
+
+        protected abstract boolean matches(ColumnarModel model, EntityTable classes, int row);
+
+        @Override
+        public List<String> getColumns(boolean details) {
+            return fileColumns(details);
+        }
+
+        @Override
+        public List<Map<String, Object>> fetchResult(ColumnarModel model, boolean details) {
+            EntityTable classes = model.getClasses();
+            FileMatches matches = new FileMatches(model, details);
+            for (int row = 0; row < classes.size(); row++) {
+                if (matches(model, classes, row)) {
+                    matches.add(row, model.string(classes, NAME, row));
+                }
+            }
+            return matches.rows();
+        }
+    }
+
+    /**
+     * Smell matched on the methods of the app, returning the full name of the method as instance.
+     */
+    private abstract static class MethodQuery extends ColumnarQuery {
+        MethodQuery(String smellName) {
+            super(smellName);
+        }
+
+        /**
+         * @return The number of matches of the method, e.g. the number of matching calls.
+         */
+        protected abstract int matches(ColumnarModel model, EntityTable methods, int row);
+
+        @Override
+        public List<String> getColumns(boolean details) {
+            return fileColumns(details);
+        }
+
+        @Override
+        public List<Map<String, Object>> fetchResult(ColumnarModel model, boolean details) {
+            EntityTable methods = model.getMethods();
+            FileMatches matches = new FileMatches(model, details);
+            for (int row = 0; row < methods.size(); row++) {
+                int count = matches(model, methods, row);
+                for (int i = 0; i < count; i++) {
+                    matches.add(methods.get(OWNER, row), model.string(methods, FULL_NAME, row));
+                }
+            }
+            return matches.rows();
+        }
+    }
+
+    /**
+     * Heavy method of a component, returned per app.
+     * The fuzzy variant returns the metrics of the candidates instead of a count.
+     */
+    private static class HeavyQuery extends ColumnarQuery {
+        private final boolean fuzzy;
+        private final double cc;
+        private final double noi;
+        private final MetricKey component;
+        private final List<String> methodNames;
+
+        HeavyQuery(String smellName, String countColumn, boolean fuzzy, MetricKey component, String... methodNames) {
+            super(smellName, countColumn);
+            this.fuzzy = fuzzy;
+            this.cc = fuzzy ? HIGH_HEAVY_CC : VERY_HIGH_HEAVY_CC;
+            this.noi = fuzzy ? HIGH_HEAVY_NOI : VERY_HIGH_HEAVY_NOI;
+            this.component = component;
+            this.methodNames = Arrays.asList(methodNames);
+        }
+
+        @Override
+        public List<String> getColumns(boolean details) {
+            if (!fuzzy) {
+                return appColumns(details);
+            }
+            List<String> columns = new ArrayList<>(Arrays.asList("app_key", "cyclomatic_complexity", NUMBER_OF_INSTRUCTIONS));
+            if (details) {
+                columns.add("full_name");
+            }
+            return columns;
+        }
+
+        @Override
+        public String getCountColumn(boolean details) {
+            return fuzzy ? null : super.getCountColumn(details);
+        }
+
+        @Override
+        public boolean isDistinct() {
+            return false;
+        }
+
+        @Override
+        public List<Map<String, Object>> fetchResult(ColumnarModel model, boolean details) {
+            EntityTable classes = model.getClasses();
+            EntityTable methods = model.getMethods();
+            AppMatches matches = new AppMatches(model, details);
+            for (int row = 0; row < methods.size(); row++) {
+                if (classes.isTrue(component, methods.get(OWNER, row))
+                        && methodNames.contains(model.string(methods, NAME, row))
+                        && methods.get(NUMBER_OF_INSTRUCTIONS, row) > noi
+                        && methods.greaterThan(MetricKey.CYCLOMATIC_COMPLEXITY, row, cc)) {
+                    if (fuzzy) {
+                        matches.add(row, methods.getInt(MetricKey.CYCLOMATIC_COMPLEXITY, row),
+                                methods.get(NUMBER_OF_INSTRUCTIONS, row));
+                    } else {
+                        matches.add(row);
+                    }
+                }
+            }
+            return matches.rows();
+        }
+    }
+
+    /**
+     * Candidates of a fuzzy smell matched on classes, returned with the metrics of the fuzzy evaluation:
+     * the classes whose metrics are all greater than the high thresholds.
+     */
+    private static class FuzzyClassQuery extends ColumnarQuery {
+        private final MetricKey[] metrics;
+        private final double[] highs;
+
+        FuzzyClassQuery(String smellName, MetricKey[] metrics, double... highs) {
+            super(smellName, null);
+            this.metrics = metrics;
+            this.highs = highs;
+        }
+
+        protected boolean matches(EntityTable classes, int row) {
+            for (int i = 0; i < metrics.length; i++) {
+                if (!classes.greaterThan(metrics[i], row, highs[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public List<String> getColumns(boolean details) {
+            List<String> columns = new ArrayList<>(Arrays.asList("commit_number", "key"));
+            for (MetricKey metric : metrics) {
+                columns.add(metric.getName());
+            }
+            columns.add("file_path");
+            if (details) {
+                columns.add("instance");
+            }
+            return columns;
+        }
+
+        @Override
+        public List<Map<String, Object>> fetchResult(ColumnarModel model, boolean details) {
+            EntityTable classes = model.getClasses();
+            FileMatches matches = new FileMatches(model, details);
+            for (int row = 0; row < classes.size(); row++) {
+                if (!matches(classes, row)) {
+                    continue;
+                }
+                List<Object> values = new ArrayList<>();
+                for (MetricKey metric : metrics) {
+                    values.add(classes.getInt(metric, row));
+                }
+                values.add(model.string(classes, ColumnarModel.FILE_PATH, row));
+                if (details) {
+                    values.add(model.string(classes, NAME, row));
+                }
+                matches.add(values.toArray());
+            }
+            return matches.rows();
+        }
+    }
+
+    /**
+     * Fuzzy smell: the candidates of a {@code createFuzzy} query followed by their fuzzy value.
+     */
+    private static class FuzzyEvaluationQuery extends ColumnarQuery {
+        private final ColumnarQuery candidates;
+        private final Map<String, Double> veryHighValues;
+        private final FuzzyEvaluator evaluator;
+
+        /**
+         * @param veryHighValues The very high value of each metric of the FCL file, over which the smell is certain.
+         */
+        FuzzyEvaluationQuery(ColumnarQuery candidates, String fclFile, Map<String, Double> veryHighValues)
+                throws IOException {
+            super(candidates.getSmellName(), null);
+            this.candidates = candidates;
+            this.veryHighValues = veryHighValues;
+            this.evaluator = FuzzyEvaluator.forFile(fclFile, new ArrayList<>(veryHighValues.keySet()));
+        }
+
+        @Override
+        public List<String> getColumns(boolean details) {
+            List<String> columns = new ArrayList<>(candidates.getColumns(details));
+            columns.add(FuzzyEvaluator.FUZZY_VALUE);
+            return columns;
+        }
+
+        @Override
+        public boolean isDistinct() {
+            return candidates.isDistinct();
+        }
+
+        @Override
+        public List<Map<String, Object>> fetchResult(ColumnarModel model, boolean details) {
+            List<Map<String, Object>> rows = candidates.fetchResult(model, details);
+            for (Map<String, Object> row : rows) {
+                row.put(FuzzyEvaluator.FUZZY_VALUE, evaluator.fuzzyValue(row, veryHighValues));
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * @param smellName Name of a smell in the crisp queries.
+     * @return The fuzzy evaluation of the smell, with the FCL file of its Cypher query, null if it is not fuzzy.
+     */
+    private static ColumnarQuery createFuzzyEvaluation(String smellName) throws IOException {
+        Map<String, Double> veryHighValues = new LinkedHashMap<>();
+        switch (smellName) {
+            case "CC":
+                veryHighValues.put(MetricKey.CLASS_COMPLEXITY.getName(), 43.0);
+                return new FuzzyEvaluationQuery(createFuzzyCCQuery(), "/ComplexClass.fcl", veryHighValues);
+            case "LM":
+                veryHighValues.put(NUMBER_OF_INSTRUCTIONS, 26.0);
+                return new FuzzyEvaluationQuery(createFuzzyLMQuery(), "/LongMethod.fcl", veryHighValues);
+            case "SAK":
+                veryHighValues.put(MetricKey.NUMBER_OF_METHODS.getName(), 13.0);
+                return new FuzzyEvaluationQuery(createFuzzySAKQuery(), "/SwissArmyKnife.fcl", veryHighValues);
+            case "BLOB":
+                veryHighValues.put(MetricKey.LACK_OF_COHESION_IN_METHODS.getName(), 40.0);
+                veryHighValues.put(MetricKey.NUMBER_OF_ATTRIBUTES.getName(), 13.0);
+                veryHighValues.put(MetricKey.NUMBER_OF_METHODS.getName(), 22.0);
+                return new FuzzyEvaluationQuery(createFuzzyBLOBQuery(), "/Blob.fcl", veryHighValues);
+            case "HSS_NO_FUZZY":
+                return new FuzzyEvaluationQuery(createFuzzyHeavyServiceStartQuery(), "/HeavySomething.fcl",
+                        heavyVeryHighValues());
+            case "HBR_NO_FUZZY":
+                return new FuzzyEvaluationQuery(createFuzzyHeavyBroadcastReceiverQuery(), "/HeavySomething.fcl",
+                        heavyVeryHighValues());
+            case "HAS_NO_FUZZY":
+                return new FuzzyEvaluationQuery(createFuzzyHeavyAsyncTaskStepsQuery(), "/HeavySomething.fcl",
+                        heavyVeryHighValues());
+            default:
+                return null;
+        }
+    }
+
+    private static Map<String, Double> heavyVeryHighValues() {
+        Map<String, Double> veryHighValues = new LinkedHashMap<>();
+        veryHighValues.put(MetricKey.CYCLOMATIC_COMPLEXITY.getName(), VERY_HIGH_HEAVY_CC);
+        veryHighValues.put(NUMBER_OF_INSTRUCTIONS, VERY_HIGH_HEAVY_NOI);
+        return veryHighValues;
+    }
+
+    /**
+     * @return The number of calls of a method to the external methods with one of the given full names.
+     */
+    private static int countExternalCalls(ColumnarModel model, int method, int... fullNames) {
+        Adjacency calls = model.getExternalCalls();
+        int count = 0;
+        for (int i = calls.start(method); i < calls.end(method); i++) {
+            int fullName = model.getExternalMethods().get(FULL_NAME, calls.target(i));
+            for (int id : fullNames) {
+                if (fullName == id) {
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The dictionary ids of the strings present in the model.
+     */
+    private static int[] idsOf(ColumnarModel model, String... values) {
+        int[] ids = new int[values.length];
+        int count = 0;
+        for (String value : values) {
+            int id = model.idOf(value);
+            if (id >= 0) {
+                ids[count++] = id;
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private static boolean isViewOnDraw(ColumnarModel model, EntityTable methods, int row) {
+        return model.getClasses().isTrue(MetricKey.IS_VIEW, methods.get(OWNER, row))
+                && "onDraw".equals(model.string(methods, NAME, row));
+    }
+
+    public static ColumnarQuery createCCQuery() {
+        return new ClassQuery("CC") {
+            @Override
+            protected boolean matches(ColumnarModel model, EntityTable classes, int row) {
+                return classes.greaterThan(MetricKey.CLASS_COMPLEXITY, row, 43);
+            }
+        };
+    }
+
+    public static ColumnarQuery createSAKQuery() {
+        return new ClassQuery("SAK") {
+            @Override
+            protected boolean matches(ColumnarModel model, EntityTable classes, int row) {
+                return classes.has(MetricKey.IS_INTERFACE, row)
+                        && classes.greaterThan(MetricKey.NUMBER_OF_METHODS, row, 13);
+            }
+        };
+    }
+
+    public static ColumnarQuery createBLOBQuery() {
+        return new ClassQuery("BLOB") {
+            @Override
+            protected boolean matches(ColumnarModel model, EntityTable classes, int row) {
+                return classes.greaterThan(MetricKey.LACK_OF_COHESION_IN_METHODS, row, 40)
+                        && classes.greaterThan(MetricKey.NUMBER_OF_METHODS, row, 22)
+                        && classes.greaterThan(MetricKey.NUMBER_OF_ATTRIBUTES, row, 13);
+            }
+        };
+    }
+
+    public static ColumnarQuery createFuzzyCCQuery() {
+        return new FuzzyClassQuery("CC", new MetricKey[]{MetricKey.CLASS_COMPLEXITY}, 28);
+    }
+
+    public static ColumnarQuery createFuzzySAKQuery() {
+        return new FuzzyClassQuery("SAK", new MetricKey[]{MetricKey.NUMBER_OF_METHODS}, 8.5) {
+            @Override
+            protected boolean matches(EntityTable classes, int row) {
+                return classes.has(MetricKey.IS_INTERFACE, row) && super.matches(classes, row);
+            }
+        };
+    }
+
+    public static ColumnarQuery createFuzzyBLOBQuery() {
+        return new FuzzyClassQuery("BLOB", new MetricKey[]{MetricKey.LACK_OF_COHESION_IN_METHODS,
+                MetricKey.NUMBER_OF_METHODS, MetricKey.NUMBER_OF_ATTRIBUTES}, 25, 14.5, 8.5);
+    }
+
+    public static ColumnarQuery createLICQuery() {
+        return new ClassQuery("LIC") {
+            @Override
+            protected boolean matches(ColumnarModel model, EntityTable classes, int row) {
+                return classes.has(MetricKey.IS_INNER_CLASS, row) && !classes.has(MetricKey.IS_STATIC, row);
+            }
+        };
+    }
+
+    public static ColumnarQuery createNLMRQuery() {
+        return new ClassQuery("NLMR") {
+            @Override
+            protected boolean matches(ColumnarModel model, EntityTable classes, int row) {
+                if (!classes.has(MetricKey.IS_ACTIVITY, row) || classes.get(PARENT, row) >= 0) {
+                    return false;
+                }
+                EntityTable methods = model.getMethods();
+                int onLowMemory = model.idOf("onLowMemory");
+                int[] owned = model.ownedRows(methods, row);
+                for (int method = owned[0]; method < owned[1]; method++) {
+                    if (onLowMemory >= 0 && methods.get(NAME, method) == onLowMemory) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    public static ColumnarQuery createLMQuery() {
+        return new MethodQuery("LM") {
+            @Override
+            protected int matches(ColumnarModel model, EntityTable methods, int row) {
+                return methods.get(NUMBER_OF_INSTRUCTIONS, row) > 26 ? 1 : 0;
+            }
+        };
+    }
+
+    public static ColumnarQuery createFuzzyLMQuery() {
+        return new ColumnarQuery("LM", null) {
+            @Override
+            public List<String> getColumns(boolean details) {
+                List<String> columns = new ArrayList<>(Arrays.asList("commit_number", "key", NUMBER_OF_INSTRUCTIONS, "file_path"));
+                if (details) {
+                    columns.add("instance");
+                }
+                return columns;
+            }
+
+            @Override
+            public List<Map<String, Object>> fetchResult(ColumnarModel model, boolean details) {
+                EntityTable methods = model.getMethods();
+                FileMatches matches = new FileMatches(model, details);
+                for (int row = 0; row < methods.size(); row++) {
+                    int noi = methods.get(NUMBER_OF_INSTRUCTIONS, row);
+                    if (noi <= 17) {
+                        continue;
+                    }
+                    String filePath = model.string(model.getClasses(), ColumnarModel.FILE_PATH, methods.get(OWNER, row));
+                    if (details) {
+                        matches.add(noi, filePath, model.string(methods, FULL_NAME, row));
+                    } else {
+                        matches.add(noi, filePath);
+                    }
+                }
+                return matches.rows();
+            }
+        };
+    }
+
+    public static ColumnarQuery createMIMQuery() {
+        return new MethodQuery("MIM") {
+            @Override
+            protected int matches(ColumnarModel model, EntityTable methods, int row) {
+                return methods.greaterThan(MetricKey.NUMBER_OF_CALLERS, row, 0)
+                        && !methods.has(MetricKey.IS_STATIC, row)
+                        && !methods.has(MetricKey.IS_OVERRIDE, row)
+                        && model.getUses().isEmpty(row)
+                        && model.getExternalCalls().isEmpty(row)
+                        && model.getCalls().isEmpty(row)
+                        && !methods.has(MetricKey.IS_INIT, row)
+                        && !model.getClasses().has(MetricKey.IS_INTERFACE, methods.get(OWNER, row)) ? 1 : 0;
+            }
+        };
+    }
+
+    public static ColumnarQuery createIGSQuery() {
+        return new ColumnarQuery("IGS") {
+            @Override
+            public List<String> getColumns(boolean details) {
+                List<String> columns = new ArrayList<>(fileColumns(details));
+                if (details) {
+                    columns.add("commit_status");
+                }
+                return columns;
+            }
+
+            @Override
+            public List<Map<String, Object>> fetchResult(ColumnarModel model, boolean details) {
+                EntityTable methods = model.getMethods();
+                Adjacency calls = model.getCalls();
+                FileMatches matches = new FileMatches(model, details);
+                for (int row = 0; row < methods.size(); row++) {
+                    int owner = methods.get(OWNER, row);
+                    for (int i = calls.start(row); i < calls.end(row); i++) {
+                        int called = calls.target(i);
+                        if ((methods.isTrue(MetricKey.IS_SETTER, called) || methods.isTrue(MetricKey.IS_GETTER, called))
+                                && methods.get(OWNER, called) == owner) {
+                            matches.add(owner, model.string(methods, FULL_NAME, row)
+                                    + model.string(methods, FULL_NAME, called));
+                        }
+                    }
+                }
+                return matches.rows();
+            }
+        };
+    }
+
+    public static ColumnarQuery createOverdrawQuery() {
+        return new MethodQuery("UIO") {
+            @Override
+            protected int matches(ColumnarModel model, EntityTable methods, int row) {
+                if (!isViewOnDraw(model, methods, row)
+                        || countExternalCalls(model, row, idsOf(model, "clipRect#android.graphics.Canvas",
+                        "quickReject#android.graphics.Canvas")) > 0) {
+                    return 0;
+                }
+                EntityTable arguments = model.getArguments();
+                int[] owned = model.ownedRows(arguments, row);
+                int count = 0;
+                for (int argument = owned[0]; argument < owned[1]; argument++) {
+                    if (arguments.get(POSITION, argument) == 0
+                            && "android.graphics.Canvas".equals(model.string(arguments, NAME, argument))) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+        };
+    }
+
+    public static ColumnarQuery createInitOnDrawQuery() {
+        return new MethodQuery("IOD") {
+            @Override
+            protected int matches(ColumnarModel model, EntityTable methods, int row) {
+                if (!isViewOnDraw(model, methods, row)) {
+                    return 0;
+                }
+                int count = 0;
+                Adjacency calls = model.getCalls();
+                for (int i = calls.start(row); i < calls.end(row); i++) {
+                    if ("<init>".equals(model.string(methods, NAME, calls.target(i)))) {
+                        count++;
+                    }
+                }
+                Adjacency externalCalls = model.getExternalCalls();
+                for (int i = externalCalls.start(row); i < externalCalls.end(row); i++) {
+                    if ("<init>".equals(model.string(model.getExternalMethods(), NAME, externalCalls.target(i)))) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+        };
+    }
+
+    public static ColumnarQuery createInvalidateWithoutRectQuery() {
+        return new MethodQuery("IWR") {
+            @Override
+            protected int matches(ColumnarModel model, EntityTable methods, int row) {
+                if (!isViewOnDraw(model, methods, row)) {
+                    return 0;
+                }
+                EntityTable externalMethods = model.getExternalMethods();
+                EntityTable externalArguments = model.getExternalArguments();
+                int count = 0;
+                Adjacency calls = model.getExternalCalls();
+                for (int i = calls.start(row); i < calls.end(row); i++) {
+                    int called = calls.target(i);
+                    if (!"invalidate".equals(model.string(externalMethods, NAME, called))) {
+                        continue;
+                    }
+                    int[] owned = model.ownedRows(externalArguments, called);
+                    if (owned[0] == owned[1]) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+        };
+    }
+
+    public static ColumnarQuery createUnsuitedLRUCacheSizeQuery() {
+        return new MethodQuery("UCS") {
+            @Override
+            protected int matches(ColumnarModel model, EntityTable methods, int row) {
+                int count = countExternalCalls(model, row, idsOf(model, "<init>#android.util.LruCache"));
+                if (count > 0 && countExternalCalls(model, row, idsOf(model, "getMemoryClass#android.app.ActivityManager")) > 0) {
+                    return 0;
+                }
+                return count;
+            }
+        };
+    }
+
+    public static ColumnarQuery createHashMapUsageQuery() {
+        return new MethodQuery("HMU") {
+            @Override
+            protected int matches(ColumnarModel model, EntityTable methods, int row) {
+                return countExternalCalls(model, row, idsOf(model, "<init>#java.util.HashMap"));
+            }
+        };
+    }
+
+    public static ColumnarQuery createUnsupportedHardwareAccelerationQuery() {
+        return new MethodQuery("UHA") {
+            @Override
+            protected int matches(ColumnarModel model, EntityTable methods, int row) {
+                return countExternalCalls(model, row, idsOf(model, UHA_METHODS));
+            }
+        };
+    }
+
+    public static ColumnarQuery createTrackingHardwareIdQuery() {
+        return new ColumnarQuery("THI") {
+            @Override
+            public List<String> getColumns(boolean details) {
+                return appColumns(details);
+            }
+
+            @Override
+            public boolean isDistinct() {
+                return false;
+            }
+
+            @Override
+            public List<Map<String, Object>> fetchResult(ColumnarModel model, boolean details) {
+                int[] getDeviceId = idsOf(model, "getDeviceId#android.telephony.TelephonyManager");
+                AppMatches matches = new AppMatches(model, details);
+                for (int row = 0; row < model.getMethods().size(); row++) {
+                    for (int i = countExternalCalls(model, row, getDeviceId); i > 0; i--) {
+                        matches.add(row);
+                    }
+                }
+                return matches.rows();
+            }
+        };
+    }
+
+    public static ColumnarQuery createHeavyServiceStartQuery() {
+        return new HeavyQuery("HSS_NO_FUZZY", "HSS", false, MetricKey.IS_SERVICE, "onStartCommand");
+    }
+
+    public static ColumnarQuery createFuzzyHeavyServiceStartQuery() {
+        return new HeavyQuery("HSS", null, true, MetricKey.IS_SERVICE, "onStartCommand");
+    }
+
+    public static ColumnarQuery createHeavyBroadcastReceiverQuery() {
+        return new HeavyQuery("HBR_NO_FUZZY", "HBR", false, MetricKey.IS_BROADCAST_RECEIVER, "onReceive");
+    }
+
+    public static ColumnarQuery createFuzzyHeavyBroadcastReceiverQuery() {
+        return new HeavyQuery("HBR", null, true, MetricKey.IS_BROADCAST_RECEIVER, "onReceive");
+    }
+
+    public static ColumnarQuery createHeavyAsyncTaskStepsQuery() {
+        return new HeavyQuery("HAS_NO_FUZZY", "HAS", false, MetricKey.IS_ASYNC_TASK,
+                "onPreExecute", "onProgressUpdate", "onPostExecute");
+    }
+
+    public static ColumnarQuery createFuzzyHeavyAsyncTaskStepsQuery() {
+        return new HeavyQuery("HAS", null, true, MetricKey.IS_ASYNC_TASK,
+                "onPreExecute", "onProgressUpdate", "onPostExecute");
+    }
+
+    public static ColumnarQuery createARGB8888Query() {
+        return new ColumnarQuery("ARGB8888") {
+            @Override
+            public List<String> getColumns(boolean details) {
+                // As in the Cypher query, the count follows the argument only with the details
+                return details ? Arrays.asList("e", smellName) : Arrays.asList("e");
+            }
+
+            @Override
+            public List<Map<String, Object>> fetchResult(ColumnarModel model, boolean details) {
+                EntityTable arguments = model.getExternalArguments();
+                List<Map<String, Object>> rows = new ArrayList<>();
+                for (int row = 0; row < arguments.size(); row++) {
+                    if (arguments.has(MetricKey.IS_ARGB_8888, row)) {
+                        Map<String, Object> result = new LinkedHashMap<>();
+                        result.put("e", model.string(arguments, NAME, row));
+                        if (details) {
+                            result.put(smellName, 1L);
+                        }
+                        rows.add(result);
+                    }
+                }
+                return rows;
+            }
+        };
+    }
+
+    public static ColumnarQuery createCommitSizeQuery() {
+        return new ColumnarQuery("CommitSizeQuery") {
+            @Override
+            public List<String> getColumns(boolean details) {
+                return Arrays.asList("sha1", "number_of_classes", "number_of_methods", "number_of_views", "number_of_lines");
+            }
+
+            @Override
+            public String getCountColumn(boolean details) {
+                return null;
+            }
+
+            @Override
+            public boolean isDistinct() {
+                return false;
+            }
+
+            @Override
+            public List<Map<String, Object>> fetchResult(ColumnarModel model, boolean details) {
+                EntityTable app = model.getApp();
+                EntityTable methods = model.getMethods();
+                List<Map<String, Object>> rows = new ArrayList<>(methods.size());
+                for (int row = 0; row < methods.size(); row++) {
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("sha1", model.getKey());
+                    result.put("number_of_classes", intMetric(app, MetricKey.NUMBER_OF_CLASSES, 0));
+                    result.put("number_of_methods", intMetric(app, MetricKey.NUMBER_OF_METHODS, 0));
+                    result.put("number_of_views", intMetric(app, MetricKey.NUMBER_OF_VIEWS, 0));
+                    result.put("number_of_lines", intMetric(methods, MetricKey.NUMBER_OF_LINES, row));
+                    rows.add(result);
+                }
+                return rows;
+            }
+
+            private Integer intMetric(EntityTable table, MetricKey key, int row) {
+                return table.has(key, row) ? table.getInt(key, row) : null;
+            }
+        };
+    }
+}
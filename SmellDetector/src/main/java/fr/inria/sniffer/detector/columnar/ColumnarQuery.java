@@ -0,0 +1,200 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.columnar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detection of a smell on the models of a {@link ColumnarModel} store.
+ * The rows have the columns of the Cypher query of the smell, so that both backends write the same CSV files.
+ */
+public abstract class ColumnarQuery {
+    protected final String smellName;
+    private final String countColumn;
+
+    protected ColumnarQuery(String smellName) {
+        this(smellName, smellName);
+    }
+
+    /**
+     * @param countColumn The column of the number of matches when the details are not returned.
+     */
+    protected ColumnarQuery(String smellName, String countColumn) {
+        this.smellName = smellName;
+        this.countColumn = countColumn;
+    }
+
+    public String getSmellName() {
+        return smellName;
+    }
+
+    /**
+     * @return The columns of the rows returned by {@link #fetchResult(ColumnarModel, boolean)}.
+     */
+    public abstract List<String> getColumns(boolean details);
+
+    /**
+     * @return The last column if it counts the matches of the other ones, null if the rows are not aggregated.
+     */
+    public String getCountColumn(boolean details) {
+        return details ? null : countColumn;
+    }
+
+    /**
+     * @return True if the rows are distinct, as with {@code RETURN DISTINCT}.
+     */
+    public boolean isDistinct() {
+        return true;
+    }
+
+    /**
+     * @param model   The model of an app at one commit.
+     * @param details If true, return each smell instance, otherwise their number.
+     */
+    public abstract List<Map<String, Object>> fetchResult(ColumnarModel model, boolean details);
+
+    /**
+     * Columns of the queries returning the files of each commit containing the smell:
+     * {@code RETURN DISTINCT a.commit_number as commit_number, a.app_key as key, cl.file_path as file_path},
+     * followed by the instance or by the number of matches per file.
+     */
+    protected List<String> fileColumns(boolean details) {
+        return Arrays.asList("commit_number", "key", "file_path", details ? "instance" : countColumn);
+    }
+
+    /**
+     * Columns of the queries returning the apps containing the smell: the key, followed by the full name of
+     * each matching method or by their number per app.
+     */
+    protected List<String> appColumns(boolean details) {
+        return details ? Arrays.asList("app_key", "full_name") : Arrays.asList("app_key", countColumn);
+    }
+
+    /**
+     * Collect the matches of a query returning the commit number and the key of the app, followed by other values.
+     * The rows are distinct, or counted per distinct values when the query has a count column,
+     * in the order of their first match.
+     */
+    protected class FileMatches {
+        private final ColumnarModel model;
+        private final List<String> columns;
+        private final boolean counted;
+        private final Map<List<Object>, Long> rows = new LinkedHashMap<>();
+
+        protected FileMatches(ColumnarModel model, boolean details) {
+            this.model = model;
+            this.columns = getColumns(details);
+            this.counted = getCountColumn(details) != null;
+        }
+
+        /**
+         * Add a match in the file of a class, with the instance if the details are returned.
+         */
+        public void add(int classRow, String instance) {
+            String filePath = model.string(model.getClasses(), ColumnarModel.FILE_PATH, classRow);
+            if (counted) {
+                add(filePath);
+            } else {
+                add(filePath, instance);
+            }
+        }
+
+        /**
+         * Add a match with the values of the columns following the commit number and the key,
+         * the count excluded.
+         */
+        public void add(Object... values) {
+            List<Object> row = Arrays.asList(values);
+            Long count = rows.get(row);
+            rows.put(row, count == null ? 1L : count + 1);
+        }
+
+        public List<Map<String, Object>> rows() {
+            List<Map<String, Object>> result = new ArrayList<>(rows.size());
+            for (Map.Entry<List<Object>, Long> entry : rows.entrySet()) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put(columns.get(0), model.getCommitNumber());
+                row.put(columns.get(1), model.getKey());
+                for (int i = 0; i < entry.getKey().size(); i++) {
+                    row.put(columns.get(i + 2), entry.getKey().get(i));
+                }
+                if (counted) {
+                    row.put(columns.get(columns.size() - 1), entry.getValue());
+                }
+                result.add(row);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Collect the matching methods of a query returning its results per app, as in {@link #appColumns(boolean)}
+     * followed by other values. The matches are not made distinct.
+     */
+    protected class AppMatches {
+        private final ColumnarModel model;
+        private final List<String> columns;
+        private final boolean counted;
+        private final List<List<Object>> rows = new ArrayList<>();
+
+        protected AppMatches(ColumnarModel model, boolean details) {
+            this.model = model;
+            this.columns = getColumns(details);
+            this.counted = getCountColumn(details) != null;
+        }
+
+        /**
+         * Add a matching method, with the values of the columns following the key, the full name excluded.
+         */
+        public void add(int methodRow, Object... values) {
+            List<Object> row = new ArrayList<>(Arrays.asList(values));
+            if (columns.contains("full_name")) {
+                row.add(model.string(model.getMethods(), ColumnarModel.FULL_NAME, methodRow));
+            }
+            rows.add(row);
+        }
+
+        public List<Map<String, Object>> rows() {
+            if (counted) {
+                if (rows.isEmpty()) {
+                    return Collections.emptyList();
+                }
+                return Collections.singletonList(row(Collections.<Object>singletonList((long) rows.size())));
+            }
+            List<Map<String, Object>> result = new ArrayList<>(rows.size());
+            for (List<Object> values : rows) {
+                result.add(row(values));
+            }
+            return result;
+        }
+
+        private Map<String, Object> row(List<Object> values) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put(columns.get(0), model.getKey());
+            for (int i = 0; i < values.size(); i++) {
+                row.put(columns.get(i + 1), values.get(i));
+            }
+            return row;
+        }
+    }
+}
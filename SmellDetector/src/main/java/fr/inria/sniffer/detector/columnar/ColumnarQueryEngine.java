@@ -0,0 +1,131 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.columnar;
+
+import fr.inria.sniffer.detector.neo4j.CSVWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Run {@link ColumnarQuery} on a directory written by {@link ColumnarModelWriter}.
+ * The models are read one at a time in commit order and all the queries are run on each of them,
+ * so that a single model is held in memory whatever the number of commits.
+ */
+public class ColumnarQueryEngine {
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarQueryEngine.class.getName());
+
+    private final File directory;
+    private String csvPrefix = "";
+    private boolean compressCsv;
+
+    public ColumnarQueryEngine(String directory) throws IOException {
+        this.directory = new File(directory);
+        if (!this.directory.isDirectory()) {
+            throw new IOException("No columnar model directory at " + directory);
+        }
+    }
+
+    public void setCsvPrefix(String csvPrefix) {
+        this.csvPrefix = csvPrefix;
+    }
+
+    /**
+     * @param compressCsv Compress the CSV files with gzip, adding ".gz" to their names.
+     */
+    public void setCompressCsv(boolean compressCsv) {
+        this.compressCsv = compressCsv;
+    }
+
+    /**
+     * @return The model files, ordered by commit number.
+     */
+    public List<File> listModels() {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".cols");
+            }
+        });
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    /**
+     * @return The rows of each query on all the models, in the order of the queries.
+     */
+    public List<List<Map<String, Object>>> fetchResults(List<ColumnarQuery> queries, boolean details) throws IOException {
+        List<List<Map<String, Object>>> results = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            results.add(new ArrayList<Map<String, Object>>());
+        }
+        for (File file : listModels()) {
+            ColumnarModel model = ColumnarModel.read(file);
+            for (int i = 0; i < queries.size(); i++) {
+                results.get(i).addAll(queries.get(i).fetchResult(model, details));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Write a CSV file per query, with the suffix of the CSV file of the Cypher query of the smell.
+     * The rows of each model are written as soon as it is queried.
+     */
+    public void execute(List<ColumnarQuery> queries, boolean details) throws IOException {
+        long start = System.currentTimeMillis();
+        List<CSVWriter> writers = new ArrayList<>();
+        try {
+            for (ColumnarQuery query : queries) {
+                String name = csvPrefix + "_" + query.getSmellName() + ".csv" + (compressCsv ? CSVWriter.GZIP_EXTENSION : "");
+                writers.add(CSVWriter.createCSVWriter(name, query.getColumns(details)));
+            }
+            for (File file : listModels()) {
+                ColumnarModel model = ColumnarModel.read(file);
+                for (int i = 0; i < queries.size(); i++) {
+                    for (Map<String, Object> row : queries.get(i).fetchResult(model, details)) {
+                        writers.get(i).writeRow(row);
+                    }
+                }
+            }
+            for (CSVWriter writer : writers) {
+                writer.close();
+            }
+        } finally {
+            for (CSVWriter writer : writers) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    logger.error("Could not close a CSV file of the smells", e);
+                }
+            }
+        }
+        logger.info(queries.size() + " queries executed on " + directory + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+}
@@ -0,0 +1,297 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.columnar;
+
+import fr.inria.sniffer.detector.entities.Entity;
+import fr.inria.sniffer.detector.metrics.Metric;
+import fr.inria.sniffer.detector.metrics.MetricKey;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Columns of the entities of one kind in a {@link ColumnarModel}, one row per entity.
+ * <p>
+ * The metrics are stored as in {@link Entity}: a bit set of the metrics present on each row,
+ * a bit set of the boolean values, and one primitive column per int or double metric used by at least one row.
+ * The other columns hold ints: string ids of the model dictionary, row numbers of other tables, positions,
+ * and the int metrics without a {@link MetricKey}, 0 on the rows where they are not set.
+ */
+public class EntityTable {
+    private int size;
+    private long[] metricKeys;
+    private long[] booleanMetrics;
+    private final Map<MetricKey, int[]> intMetrics = new LinkedHashMap<>();
+    private final Map<MetricKey, double[]> doubleMetrics = new LinkedHashMap<>();
+    private final Map<String, int[]> columns = new LinkedHashMap<>();
+
+    EntityTable(int capacity) {
+        metricKeys = new long[capacity];
+        booleanMetrics = new long[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add a row with the metrics of an entity, the other columns are set afterwards.
+     *
+     * @return The number of the row.
+     */
+    int add(Entity entity) {
+        int row = size++;
+        for (MetricKey key : MetricKey.getKeys()) {
+            if (entity.hasMetric(key)) {
+                setMetric(key, row, entity.getMetricValue(key));
+            }
+        }
+        for (Metric metric : entity.getOtherMetrics()) {
+            if (metric.getValue() instanceof Integer) {
+                set(metric.getName(), row, (Integer) metric.getValue());
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Add a row with the metrics among the properties of a node, the other columns are set afterwards.
+     *
+     * @return The number of the row.
+     */
+    int add(Map<String, Object> properties) {
+        int row = size++;
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            MetricKey key = MetricKey.fromName(property.getKey());
+            if (key != null && key.accepts(property.getValue())) {
+                setMetric(key, row, property.getValue());
+            } else if (property.getValue() instanceof Integer) {
+                set(property.getKey(), row, (Integer) property.getValue());
+            }
+        }
+        return row;
+    }
+
+    private void setMetric(MetricKey key, int row, Object value) {
+        metricKeys[row] |= key.getMask();
+        switch (key.getType()) {
+            case BOOLEAN:
+                if ((Boolean) value) {
+                    booleanMetrics[row] |= key.getMask();
+                }
+                break;
+            case INT:
+                intColumn(key)[row] = (Integer) value;
+                break;
+            case DOUBLE:
+                doubleColumn(key)[row] = (Double) value;
+                break;
+        }
+    }
+
+    private int[] intColumn(MetricKey key) {
+        int[] column = intMetrics.get(key);
+        if (column == null) {
+            column = new int[metricKeys.length];
+            intMetrics.put(key, column);
+        }
+        return column;
+    }
+
+    private double[] doubleColumn(MetricKey key) {
+        double[] column = doubleMetrics.get(key);
+        if (column == null) {
+            column = new double[metricKeys.length];
+            doubleMetrics.put(key, column);
+        }
+        return column;
+    }
+
+    /**
+     * Set a value of an int column, created on first use.
+     */
+    void set(String column, int row, int value) {
+        int[] values = columns.get(column);
+        if (values == null) {
+            values = new int[metricKeys.length];
+            columns.put(column, values);
+        }
+        values[row] = value;
+    }
+
+    /**
+     * @return A value of an int column, 0 if the column has never been set.
+     */
+    public int get(String column, int row) {
+        int[] values = columns.get(column);
+        return values == null ? 0 : values[row];
+    }
+
+    /**
+     * First row owned by an entity, the rows of the owned entities being sorted by owner.
+     *
+     * @param column The column holding the row of the owner.
+     * @return The first row whose owner is not lower than the given one, {@link #size()} if there is none.
+     */
+    public int firstOwnedBy(String column, int owner) {
+        int[] owners = columns.get(column);
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (owners[middle] < owner) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return True if the metric is set on the row, whatever its value, as {@code exists()} in Cypher.
+     */
+    public boolean has(MetricKey key, int row) {
+        return (metricKeys[row] & key.getMask()) != 0;
+    }
+
+    /**
+     * @return True if the boolean metric is set to true on the row.
+     */
+    public boolean isTrue(MetricKey key, int row) {
+        return (booleanMetrics[row] & key.getMask()) != 0;
+    }
+
+    /**
+     * @return The value of an int metric, 0 if it is not set on the row.
+     */
+    public int getInt(MetricKey key, int row) {
+        int[] column = intMetrics.get(key);
+        return column == null ? 0 : column[row];
+    }
+
+    /**
+     * @return The value of a double metric, 0 if it is not set on the row.
+     */
+    public double getDouble(MetricKey key, int row) {
+        double[] column = doubleMetrics.get(key);
+        return column == null ? 0 : column[row];
+    }
+
+    /**
+     * @return True if the int metric is set on the row and greater than the threshold.
+     */
+    public boolean greaterThan(MetricKey key, int row, double threshold) {
+        return has(key, row) && getInt(key, row) > threshold;
+    }
+
+    void write(DataOutputStream output) throws IOException {
+        output.writeInt(size);
+        writeLongs(output, metricKeys, size);
+        writeLongs(output, booleanMetrics, size);
+        output.writeInt(intMetrics.size());
+        for (Map.Entry<MetricKey, int[]> column : intMetrics.entrySet()) {
+            output.writeUTF(column.getKey().getName());
+            writeInts(output, column.getValue(), size);
+        }
+        output.writeInt(doubleMetrics.size());
+        for (Map.Entry<MetricKey, double[]> column : doubleMetrics.entrySet()) {
+            output.writeUTF(column.getKey().getName());
+            for (int row = 0; row < size; row++) {
+                output.writeDouble(column.getValue()[row]);
+            }
+        }
+        output.writeInt(columns.size());
+        for (Map.Entry<String, int[]> column : columns.entrySet()) {
+            output.writeUTF(column.getKey());
+            writeInts(output, column.getValue(), size);
+        }
+    }
+
+    static EntityTable read(DataInputStream input) throws IOException {
+        int size = input.readInt();
+        EntityTable table = new EntityTable(size);
+        table.size = size;
+        readLongs(input, table.metricKeys);
+        readLongs(input, table.booleanMetrics);
+        for (int count = input.readInt(); count > 0; count--) {
+            int[] column = table.intColumn(MetricKey.fromName(input.readUTF()));
+            readInts(input, column);
+        }
+        for (int count = input.readInt(); count > 0; count--) {
+            double[] column = table.doubleColumn(MetricKey.fromName(input.readUTF()));
+            for (int row = 0; row < size; row++) {
+                column[row] = input.readDouble();
+            }
+        }
+        for (int count = input.readInt(); count > 0; count--) {
+            int[] column = new int[size];
+            table.columns.put(input.readUTF(), column);
+            readInts(input, column);
+        }
+        return table;
+    }
+
+    /**
+     * Release the unused capacity once all the rows are added.
+     */
+    void trim() {
+        if (size == metricKeys.length) {
+            return;
+        }
+        metricKeys = Arrays.copyOf(metricKeys, size);
+        booleanMetrics = Arrays.copyOf(booleanMetrics, size);
+        for (Map.Entry<MetricKey, int[]> column : intMetrics.entrySet()) {
+            column.setValue(Arrays.copyOf(column.getValue(), size));
+        }
+        for (Map.Entry<MetricKey, double[]> column : doubleMetrics.entrySet()) {
+            column.setValue(Arrays.copyOf(column.getValue(), size));
+        }
+        for (Map.Entry<String, int[]> column : columns.entrySet()) {
+            column.setValue(Arrays.copyOf(column.getValue(), size));
+        }
+    }
+
+    static void writeInts(DataOutputStream output, int[] values, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            output.writeInt(values[i]);
+        }
+    }
+
+    static void readInts(DataInputStream input, int[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = input.readInt();
+        }
+    }
+
+    private static void writeLongs(DataOutputStream output, long[] values, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            output.writeLong(values[i]);
+        }
+    }
+
+    private static void readLongs(DataInputStream input, long[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = input.readLong();
+        }
+    }
+}
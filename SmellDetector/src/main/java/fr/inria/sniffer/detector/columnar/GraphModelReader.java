@@ -0,0 +1,287 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.columnar;
+
+import fr.inria.sniffer.detector.neo4j.RelationTypes;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static fr.inria.sniffer.detector.columnar.ColumnarModel.FILE_PATH;
+import static fr.inria.sniffer.detector.columnar.ColumnarModel.FULL_NAME;
+import static fr.inria.sniffer.detector.columnar.ColumnarModel.MODIFIER;
+import static fr.inria.sniffer.detector.columnar.ColumnarModel.NAME;
+import static fr.inria.sniffer.detector.columnar.ColumnarModel.OWNER;
+import static fr.inria.sniffer.detector.columnar.ColumnarModel.PARENT;
+import static fr.inria.sniffer.detector.columnar.ColumnarModel.PARENT_NAME;
+import static fr.inria.sniffer.detector.columnar.ColumnarModel.POSITION;
+import static fr.inria.sniffer.detector.columnar.ColumnarModel.RETURN_TYPE;
+import static fr.inria.sniffer.detector.columnar.ColumnarModel.TYPE;
+
+/**
+ * Read the {@link ColumnarModel} of an app from the nodes of a Neo4j database holding a copy of the graph per commit.
+ * <p>
+ * The entities are numbered in the order of the relationships of their owner, which is the order in which
+ * Cypher expands them: a scan of the model meets the entities in the order of the Cypher queries.
+ * The database must not be dictionary encoded, and the app must be read in a transaction.
+ */
+public class GraphModelReader {
+    private static final Label externalClassLabel = DynamicLabel.label("ExternalClass");
+
+    private final GraphDatabaseService graphDatabaseService;
+
+    public GraphModelReader(GraphDatabaseService graphDatabaseService) {
+        this.graphDatabaseService = graphDatabaseService;
+    }
+
+    public ColumnarModel read(Node appNode) {
+        return new Reader(appNode).read();
+    }
+
+    /**
+     * Collect the nodes of the app, then fill the tables once their sizes are known.
+     */
+    private class Reader {
+        private final Node appNode;
+        private final ColumnarModel model = new ColumnarModel();
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<Node> classes = new ArrayList<>();
+        private final List<Node> methods = new ArrayList<>();
+        private final List<Node> variables = new ArrayList<>();
+        private final List<Integer> methodOwners = new ArrayList<>();
+        private final List<Integer> variableOwners = new ArrayList<>();
+        private final List<Integer> externalMethodOwners = new ArrayList<>();
+        private final List<Node> externalClasses = new ArrayList<>();
+        private final List<Node> externalMethods = new ArrayList<>();
+        private final Map<Long, Integer> classRows = new HashMap<>();
+        private final Map<Long, Integer> methodRows = new HashMap<>();
+        private final Map<Long, Integer> variableRows = new HashMap<>();
+        private final Map<Long, Integer> externalMethodRows = new HashMap<>();
+
+        Reader(Node appNode) {
+            this.appNode = appNode;
+        }
+
+        ColumnarModel read() {
+            model.appName = (String) appNode.getProperty("name", null);
+            model.key = (String) appNode.getProperty("app_key");
+            model.commitNumber = ((Number) appNode.getProperty("commit_number", 0)).intValue();
+            List<Node> libraries = targets(appNode, RelationTypes.APP_USES_LIBRARY);
+            classes.addAll(targets(appNode, RelationTypes.APP_OWNS_CLASS));
+            for (int row = 0; row < classes.size(); row++) {
+                Node classNode = classes.get(row);
+                classRows.put(classNode.getId(), row);
+                for (Node variableNode : targets(classNode, RelationTypes.CLASS_OWNS_VARIABLE)) {
+                    variableRows.put(variableNode.getId(), variables.size());
+                    variables.add(variableNode);
+                    variableOwners.add(row);
+                }
+                for (Node methodNode : targets(classNode, RelationTypes.CLASS_OWNS_METHOD)) {
+                    methodRows.put(methodNode.getId(), methods.size());
+                    methods.add(methodNode);
+                    methodOwners.add(row);
+                }
+            }
+            try (ResourceIterator<Node> nodes = graphDatabaseService.findNodes(externalClassLabel, "app_key", model.key)) {
+                while (nodes.hasNext()) {
+                    Node externalClassNode = nodes.next();
+                    for (Node methodNode : targets(externalClassNode, RelationTypes.CLASS_OWNS_METHOD)) {
+                        externalMethodRows.put(methodNode.getId(), externalMethods.size());
+                        externalMethods.add(methodNode);
+                        externalMethodOwners.add(externalClasses.size());
+                    }
+                    externalClasses.add(externalClassNode);
+                }
+            }
+
+            model.app = new EntityTable(1);
+            model.app.add(appNode.getAllProperties());
+            model.libraries = new EntityTable(libraries.size());
+            for (Node libraryNode : libraries) {
+                int row = model.libraries.add(libraryNode.getAllProperties());
+                model.libraries.set(NAME, row, intern(libraryNode, NAME));
+            }
+            addExternalClasses();
+            addClasses();
+            addMethods();
+            linkMethods();
+            model.strings = strings.toArray(new String[strings.size()]);
+            model.ids = ids;
+            for (EntityTable table : model.tables()) {
+                table.trim();
+            }
+            return model;
+        }
+
+        private int intern(Node node, String property) {
+            String value = (String) node.getProperty(property, null);
+            if (value == null) {
+                return -1;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = strings.size();
+                strings.add(value);
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        private void addExternalClasses() {
+            List<List<Node>> arguments = new ArrayList<>(externalMethods.size());
+            int argumentCount = 0;
+            for (Node methodNode : externalMethods) {
+                List<Node> methodArguments = targets(methodNode, RelationTypes.METHOD_OWNS_ARGUMENT);
+                arguments.add(methodArguments);
+                argumentCount += methodArguments.size();
+            }
+            model.externalClasses = new EntityTable(externalClasses.size());
+            model.externalMethods = new EntityTable(externalMethods.size());
+            model.externalArguments = new EntityTable(argumentCount);
+            for (Node classNode : externalClasses) {
+                int row = model.externalClasses.add(classNode.getAllProperties());
+                model.externalClasses.set(NAME, row, intern(classNode, NAME));
+                model.externalClasses.set(PARENT_NAME, row, intern(classNode, PARENT_NAME));
+            }
+            EntityTable table = model.externalMethods;
+            for (Node methodNode : externalMethods) {
+                int row = table.add(methodNode.getAllProperties());
+                table.set(OWNER, row, externalMethodOwners.get(row));
+                table.set(NAME, row, intern(methodNode, NAME));
+                table.set(FULL_NAME, row, intern(methodNode, FULL_NAME));
+                table.set(RETURN_TYPE, row, intern(methodNode, RETURN_TYPE));
+                addArguments(model.externalArguments, arguments.get(row), row);
+            }
+        }
+
+        private void addArguments(EntityTable table, List<Node> arguments, int methodRow) {
+            for (Node argumentNode : arguments) {
+                int row = table.add(argumentNode.getAllProperties());
+                table.set(OWNER, row, methodRow);
+                table.set(NAME, row, intern(argumentNode, NAME));
+                table.set(POSITION, row, ((Number) argumentNode.getProperty(POSITION, 0)).intValue());
+            }
+        }
+
+        private void addClasses() {
+            EntityTable table = new EntityTable(classes.size());
+            model.classes = table;
+            model.implementations = new Adjacency(classes.size());
+            for (Node classNode : classes) {
+                int row = table.add(classNode.getAllProperties());
+                table.set(NAME, row, intern(classNode, NAME));
+                table.set(MODIFIER, row, intern(classNode, MODIFIER));
+                table.set(FILE_PATH, row, intern(classNode, FILE_PATH));
+                table.set(PARENT_NAME, row, intern(classNode, PARENT_NAME));
+                Integer parent = null;
+                for (Node parentNode : targets(classNode, RelationTypes.EXTENDS)) {
+                    parent = classRows.get(parentNode.getId());
+                }
+                table.set(PARENT, row, parent == null ? -1 : parent);
+                for (Node interfaceNode : targets(classNode, RelationTypes.IMPLEMENTS)) {
+                    Integer target = classRows.get(interfaceNode.getId());
+                    if (target != null) {
+                        model.implementations.add(row, target);
+                    }
+                }
+            }
+            model.implementations.complete(classes.size());
+
+            model.variables = new EntityTable(variables.size());
+            for (Node variableNode : variables) {
+                int row = model.variables.add(variableNode.getAllProperties());
+                model.variables.set(OWNER, row, variableOwners.get(row));
+                model.variables.set(NAME, row, intern(variableNode, NAME));
+                model.variables.set(MODIFIER, row, intern(variableNode, MODIFIER));
+                model.variables.set(TYPE, row, intern(variableNode, TYPE));
+            }
+        }
+
+        private void addMethods() {
+            List<List<Node>> arguments = new ArrayList<>(methods.size());
+            int argumentCount = 0;
+            for (Node methodNode : methods) {
+                List<Node> methodArguments = targets(methodNode, RelationTypes.METHOD_OWNS_ARGUMENT);
+                arguments.add(methodArguments);
+                argumentCount += methodArguments.size();
+            }
+            EntityTable table = new EntityTable(methods.size());
+            model.methods = table;
+            model.arguments = new EntityTable(argumentCount);
+            for (Node methodNode : methods) {
+                int row = table.add(methodNode.getAllProperties());
+                table.set(OWNER, row, methodOwners.get(row));
+                table.set(NAME, row, intern(methodNode, NAME));
+                table.set(MODIFIER, row, intern(methodNode, MODIFIER));
+                table.set(FULL_NAME, row, intern(methodNode, FULL_NAME));
+                table.set(RETURN_TYPE, row, intern(methodNode, RETURN_TYPE));
+                addArguments(model.arguments, arguments.get(row), row);
+            }
+        }
+
+        private void linkMethods() {
+            model.calls = new Adjacency(methods.size());
+            model.externalCalls = new Adjacency(methods.size());
+            model.uses = new Adjacency(methods.size());
+            for (int row = 0; row < methods.size(); row++) {
+                for (Node calledNode : targets(methods.get(row), RelationTypes.CALLS)) {
+                    Integer target = methodRows.get(calledNode.getId());
+                    if (target != null) {
+                        model.calls.add(row, target);
+                    } else {
+                        target = externalMethodRows.get(calledNode.getId());
+                        if (target != null) {
+                            model.externalCalls.add(row, target);
+                        }
+                    }
+                }
+                for (Node variableNode : targets(methods.get(row), RelationTypes.USES)) {
+                    Integer target = variableRows.get(variableNode.getId());
+                    if (target != null) {
+                        model.uses.add(row, target);
+                    }
+                }
+            }
+            model.calls.complete(methods.size());
+            model.externalCalls.complete(methods.size());
+            model.uses.complete(methods.size());
+        }
+    }
+
+    /**
+     * @return The end nodes of the outgoing relationships of a type, in the order Cypher expands them.
+     */
+    private static List<Node> targets(Node node, RelationshipType type) {
+        List<Node> targets = new ArrayList<>();
+        for (Relationship relationship : node.getRelationships(Direction.OUTGOING, type)) {
+            targets.add(relationship.getEndNode());
+        }
+        return targets;
+    }
+}
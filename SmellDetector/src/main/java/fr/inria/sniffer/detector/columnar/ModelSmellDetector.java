@@ -0,0 +1,115 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.columnar;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.neo4j.CSVWriter;
+import fr.inria.sniffer.detector.neo4j.ModelWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detect the smells of the analysed apps on their model in memory, without reading them back from a database.
+ * <p>
+ * Each app is converted to a {@link ColumnarModel} on which the {@link ColumnarQuery} of each smell is run,
+ * and the rows are appended to the CSV file of the smell, with the columns of its Cypher query,
+ * including the fuzzy value of the candidates of the fuzzy smells.
+ * The apps are then handed to the next writer, if any, so that the models can also be persisted.
+ */
+public class ModelSmellDetector implements ModelWriter {
+    private static final Logger logger = LoggerFactory.getLogger(ModelSmellDetector.class.getName());
+
+    private final List<ColumnarQuery> queries;
+    private final boolean details;
+    private final ModelWriter next;
+    private final List<CSVWriter> writers = new ArrayList<>();
+    private long detectionTime;
+
+    /**
+     * Create the CSV file of each smell.
+     *
+     * @param csvPrefix Prefix of the CSV files, followed by the suffix of the CSV file of the Cypher query.
+     * @param next      Writer persisting the models after the detection, null to only detect the smells.
+     */
+    public ModelSmellDetector(List<ColumnarQuery> queries, boolean details, String csvPrefix, ModelWriter next)
+            throws IOException {
+        this.queries = queries;
+        this.details = details;
+        this.next = next;
+        try {
+            for (ColumnarQuery query : queries) {
+                writers.add(CSVWriter.createCSVWriter(csvPrefix + "_" + query.getSmellName() + ".csv",
+                        query.getColumns(details)));
+            }
+        } catch (IOException e) {
+            closeWriters();
+            throw e;
+        }
+    }
+
+    @Override
+    public void writeApp(PaprikaApp paprikaApp) {
+        long start = System.nanoTime();
+        ColumnarModel model = ColumnarModel.createColumnarModel(paprikaApp);
+        try {
+            for (int i = 0; i < queries.size(); i++) {
+                for (Map<String, Object> row : queries.get(i).fetchResult(model, details)) {
+                    writers.get(i).writeRow(row);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write the smells of " + paprikaApp.getKey(), e);
+        }
+        detectionTime += System.nanoTime() - start;
+        if (next != null) {
+            next.writeApp(paprikaApp);
+        }
+    }
+
+    @Override
+    public void shutDown() {
+        try {
+            closeWriters();
+            StringBuilder rows = new StringBuilder();
+            for (int i = 0; i < queries.size(); i++) {
+                rows.append(i == 0 ? "" : ", ").append(queries.get(i).getSmellName()).append(' ')
+                        .append(writers.get(i).getRows());
+            }
+            logger.info("Smells detected on the models in " + detectionTime / 1000000 + " ms: " + rows);
+        } finally {
+            if (next != null) {
+                next.shutDown();
+            }
+        }
+    }
+
+    private void closeWriters() {
+        for (CSVWriter writer : writers) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.error("Could not close a CSV file of the smells", e);
+            }
+        }
+    }
+}
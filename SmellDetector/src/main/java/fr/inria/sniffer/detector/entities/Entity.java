@@ -18,17 +18,29 @@
 package fr.inria.sniffer.detector.entities;
 
 import fr.inria.sniffer.detector.metrics.Metric;
+import fr.inria.sniffer.detector.metrics.MetricKey;
+import fr.inria.sniffer.detector.metrics.StoredMetric;
 import fr.inria.sniffer.detector.metrics.UnaryMetric;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Created by Geoffrey Hecht on 20/05/14.
+ * <p>
+ * The metrics of an entity are kept in primitive slots indexed by {@link MetricKey}:
+ * a bit per key telling if the metric is set, a bit per boolean metric for its value,
+ * and the values of the other metrics packed in key order.
+ * Metrics without a key are kept as objects.
  */
 public abstract class Entity {
     protected String name;
-    protected List<Metric> metrics = new ArrayList<>();
+    private long metricKeys;
+    private long booleanMetrics;
+    private int[] intMetrics;
+    private double[] doubleMetrics;
+    private List<Metric> otherMetrics;
 
     public String getName() {
         return name;
@@ -38,16 +50,168 @@ public abstract class Entity {
         this.name = name;
     }
 
+    /**
+     * @return A view of all the metrics of this entity, the keyed ones first.
+     */
     public List<Metric> getMetrics() {
+        List<Metric> metrics = new ArrayList<>(Long.bitCount(metricKeys) + getOtherMetrics().size());
+        for (MetricKey key : MetricKey.getKeys()) {
+            if (hasMetric(key)) {
+                metrics.add(StoredMetric.createStoredMetric(key, getMetricValue(key)));
+            }
+        }
+        metrics.addAll(getOtherMetrics());
         return metrics;
     }
 
+    /**
+     * Replace all the metrics of this entity.
+     */
     public void setMetrics(List<Metric> metrics) {
-        this.metrics = metrics;
+        metricKeys = 0;
+        booleanMetrics = 0;
+        intMetrics = null;
+        doubleMetrics = null;
+        otherMetrics = null;
+        for (Metric metric : metrics) {
+            addMetric(metric);
+        }
     }
 
     public void addMetric(UnaryMetric unaryMetric){
-        this.metrics.add(unaryMetric);
+        addMetric((Metric) unaryMetric);
+    }
+
+    private void addMetric(Metric metric) {
+        MetricKey key = MetricKey.fromName(metric.getName());
+        Object value = metric.getValue();
+        if (key == null || !key.accepts(value)) {
+            if (otherMetrics == null) {
+                otherMetrics = new ArrayList<>(1);
+            }
+            otherMetrics.add(metric);
+        } else if (value instanceof Boolean) {
+            setMetric(key, (boolean) (Boolean) value);
+        } else if (value instanceof Integer) {
+            setMetric(key, (int) (Integer) value);
+        } else {
+            setMetric(key, (double) (Double) value);
+        }
+    }
+
+    /**
+     * @return The metrics whose name or value type do not match a {@link MetricKey}.
+     */
+    public List<Metric> getOtherMetrics() {
+        return otherMetrics == null ? Collections.<Metric>emptyList() : otherMetrics;
+    }
+
+    public boolean hasMetric(MetricKey key) {
+        return (metricKeys & key.getMask()) != 0;
+    }
+
+    public void setMetric(MetricKey key, boolean value) {
+        checkType(key, MetricKey.Type.BOOLEAN);
+        metricKeys |= key.getMask();
+        if (value) {
+            booleanMetrics |= key.getMask();
+        } else {
+            booleanMetrics &= ~key.getMask();
+        }
+    }
+
+    public void setMetric(MetricKey key, int value) {
+        checkType(key, MetricKey.Type.INT);
+        int index = slot(key);
+        if (!hasMetric(key)) {
+            intMetrics = insertSlot(intMetrics, index);
+            metricKeys |= key.getMask();
+        }
+        intMetrics[index] = value;
+    }
+
+    public void setMetric(MetricKey key, double value) {
+        checkType(key, MetricKey.Type.DOUBLE);
+        int index = slot(key);
+        if (!hasMetric(key)) {
+            doubleMetrics = insertSlot(doubleMetrics, index);
+            metricKeys |= key.getMask();
+        }
+        doubleMetrics[index] = value;
+    }
+
+    /**
+     * @return The value of a boolean metric, false if it is not set.
+     */
+    public boolean getBooleanMetric(MetricKey key) {
+        checkType(key, MetricKey.Type.BOOLEAN);
+        return (booleanMetrics & key.getMask()) != 0;
+    }
+
+    /**
+     * @return The value of an integer metric, 0 if it is not set.
+     */
+    public int getIntMetric(MetricKey key) {
+        checkType(key, MetricKey.Type.INT);
+        return hasMetric(key) ? intMetrics[slot(key)] : 0;
+    }
+
+    /**
+     * @return The value of a floating point metric, 0 if it is not set.
+     */
+    public double getDoubleMetric(MetricKey key) {
+        checkType(key, MetricKey.Type.DOUBLE);
+        return hasMetric(key) ? doubleMetrics[slot(key)] : 0;
+    }
+
+    /**
+     * @return The boxed value of a metric, null if it is not set.
+     */
+    public Object getMetricValue(MetricKey key) {
+        if (!hasMetric(key)) {
+            return null;
+        }
+        switch (key.getType()) {
+            case BOOLEAN:
+                return getBooleanMetric(key);
+            case INT:
+                return getIntMetric(key);
+            default:
+                return getDoubleMetric(key);
+        }
+    }
+
+    /**
+     * @return Position of the value of the key among the values of the set keys of the same type.
+     */
+    private int slot(MetricKey key) {
+        return Long.bitCount(metricKeys & MetricKey.getMask(key.getType()) & (key.getMask() - 1));
+    }
+
+    private static void checkType(MetricKey key, MetricKey.Type type) {
+        if (key.getType() != type) {
+            throw new IllegalArgumentException("Metric " + key.getName() + " is not of type " + type);
+        }
+    }
+
+    private static int[] insertSlot(int[] values, int index) {
+        int length = values == null ? 0 : values.length;
+        int[] inserted = new int[length + 1];
+        if (values != null) {
+            System.arraycopy(values, 0, inserted, 0, index);
+            System.arraycopy(values, index, inserted, index + 1, length - index);
+        }
+        return inserted;
+    }
+
+    private static double[] insertSlot(double[] values, int index) {
+        int length = values == null ? 0 : values.length;
+        double[] inserted = new double[length + 1];
+        if (values != null) {
+            System.arraycopy(values, 0, inserted, 0, index);
+            System.arraycopy(values, index, inserted, index + 1, length - index);
+        }
+        return inserted;
     }
 
     @Override
@@ -18,7 +18,9 @@
 package fr.inria.sniffer.detector.entities;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by Geoffrey Hecht on 20/05/14.
@@ -41,7 +43,9 @@ public class PaprikaApp extends Entity{
     private String targetSdkVersion;
     private String path;
     private List<PaprikaClass> paprikaClasses;
+    private Map<String, PaprikaClass> paprikaClassesByName;
     private List<PaprikaExternalClass> paprikaExternalClasses;
+    private Map<String, PaprikaExternalClass> paprikaExternalClassesByName;
     private ArrayList<PaprikaLibrary> paprikaLibraries;
     private String module;
 
@@ -57,7 +61,9 @@ public class PaprikaApp extends Entity{
         this.rating = rating;
         this.nbDownload = nbDownload;
         this.paprikaClasses = new ArrayList<>();
+        this.paprikaClassesByName = new HashMap<>();
         this.paprikaExternalClasses = new ArrayList<>();
+        this.paprikaExternalClassesByName = new HashMap<>();
         this.versionCode = versionCode;
         this.version = version;
         this.sdkVersion = sdkVersion;
@@ -70,7 +76,9 @@ public class PaprikaApp extends Entity{
         this.key = key;
         this.version = version;
         this.paprikaClasses = new ArrayList<>();
+        this.paprikaClassesByName = new HashMap<>();
         this.paprikaExternalClasses = new ArrayList<>();
+        this.paprikaExternalClassesByName = new HashMap<>();
         this.paprikaLibraries = new ArrayList<>();
         this.path =path;
         this.commitNumber =commitNumber;
@@ -90,6 +98,17 @@ public class PaprikaApp extends Entity{
 
     public void addPaprikaExternalClass(PaprikaExternalClass paprikaExternalClass){
         paprikaExternalClasses.add(paprikaExternalClass);
+        if (!paprikaExternalClassesByName.containsKey(paprikaExternalClass.getName())) {
+            paprikaExternalClassesByName.put(paprikaExternalClass.getName(), paprikaExternalClass);
+        }
+    }
+
+    /**
+     * @param className Qualified name of the external class.
+     * @return The external class of this app with the given name, null if there is none.
+     */
+    public PaprikaExternalClass getPaprikaExternalClass(String className){
+        return paprikaExternalClassesByName.get(className);
     }
 
     public List<PaprikaClass> getPaprikaClasses() {
@@ -99,6 +118,9 @@ public class PaprikaApp extends Entity{
 
     public void addPaprikaClass(PaprikaClass paprikaClass){
         paprikaClasses.add(paprikaClass);
+        if (!paprikaClassesByName.containsKey(paprikaClass.getName())) {
+            paprikaClassesByName.put(paprikaClass.getName(), paprikaClass);
+        }
     }
 
     public static PaprikaApp createPaprikaApp(String name, String key, String pack, String date, int size, String dev, String cat, String price, double rating, String nbDownload, String versionCode,int version,int sdkVersion,String targetSdkVersion) {
@@ -157,37 +179,40 @@ public class PaprikaApp extends Entity{
         return targetSdkVersion;
     }
 
+    /**
+     * @return A snapshot of the methods of all the classes, methods created afterwards are not included.
+     */
     public ArrayList<PaprikaMethod> getMethods(){
-        ArrayList<PaprikaMethod> paprikaMethods = new ArrayList<>();
+        int methodCount = 0;
+        for(PaprikaClass paprikaClass: this.getPaprikaClasses()){
+            methodCount += paprikaClass.getPaprikaMethods().size();
+        }
+        ArrayList<PaprikaMethod> paprikaMethods = new ArrayList<>(methodCount);
         for(PaprikaClass paprikaClass: this.getPaprikaClasses()){
-            for(PaprikaMethod paprikaMethod: paprikaClass.getPaprikaMethods()){
-                paprikaMethods.add(paprikaMethod);
-            }
+            paprikaMethods.addAll(paprikaClass.getPaprikaMethods());
         }
         return paprikaMethods;
     }
 
+    /**
+     * @param className Qualified name of the class.
+     * @return The first class of this app with the given name, or else the external class with this name,
+     * created if needed.
+     */
     public Entity getPaprikaClass( String className){
-        for(PaprikaClass paprikaClass: this.getPaprikaClasses()){
-            if(paprikaClass.getName().equals(className)){
-                return paprikaClass;
-            }
-        }
-        for(PaprikaExternalClass paprikaExternalClass: this.getPaprikaExternalClasses()){
-            if(paprikaExternalClass.getName().equals(className)){
-                return paprikaExternalClass;
-            }
+        PaprikaClass paprikaClass = paprikaClassesByName.get(className);
+        if (paprikaClass != null) {
+            return paprikaClass;
         }
         return PaprikaExternalClass.createPaprikaExternalClass(className,this);
     }
 
+    /**
+     * @param className Qualified name of the class.
+     * @return The first class of this app with the given name, null if there is none.
+     */
     public PaprikaClass getPaprikaInternalClass( String className){
-        for(PaprikaClass paprikaClass: this.getPaprikaClasses()){
-            if(paprikaClass.getName().equals(className)){
-                return paprikaClass;
-            }
-        }
-        return null;
+        return paprikaClassesByName.get(className);
     }
 
 
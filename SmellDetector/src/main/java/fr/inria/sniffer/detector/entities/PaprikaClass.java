@@ -19,34 +19,45 @@
 package fr.inria.sniffer.detector.entities;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * Created by Geoffrey Hecht on 20/05/14.
  */
 public class PaprikaClass extends Entity{
+    private static final int IS_INTERFACE = 1 << 0;
+    private static final int IS_STATIC = 1 << 1;
+    private static final int IS_ACTIVITY = 1 << 2;
+    private static final int IS_BROADCAST_RECEIVER = 1 << 3;
+    private static final int IS_SERVICE = 1 << 4;
+    private static final int IS_CONTENT_PROVIDER = 1 << 5;
+    private static final int IS_VIEW = 1 << 6;
+    private static final int IS_ASYNC_TASK = 1 << 7;
+    private static final int IS_APPLICATION = 1 << 8;
+    private static final int IS_INNER_CLASS = 1 << 9;
     private PaprikaApp paprikaApp;
     private PaprikaClass parent;
     //parent name to cover library case
     private String parentName;
+    private String simpleName;
     private int children;
     private int complexity;
     private Set<PaprikaClass> coupled;
     private Set<PaprikaMethod> paprikaMethods;
+    private Map<String, List<PaprikaMethod>> paprikaMethodsByName;
     private Set<PaprikaVariable> paprikaVariables;
+    private Map<String, PaprikaVariable> paprikaVariablesByName;
     private Set<PaprikaClass> interfaces;
     private PaprikaModifiers modifier;
-    private boolean isInterface;
-    private boolean isStatic;
-    private boolean isActivity;
-    private boolean isBroadcastReceiver;
-    private boolean isService;
-    private boolean isContentProvider;
-    private boolean isView;
-    private boolean isAsyncTask;
-    private boolean isApplication;
-    private boolean isInnerClass;
+    /**
+     * The boolean properties of the class, one bit each.
+     */
+    private int flags;
     private int depthOfInheritance;
     private ArrayList<String> interfacesNames;
     private String path;
@@ -80,25 +91,28 @@ public class PaprikaClass extends Entity{
         this.parentName = parentName;
     }
 
+    /**
+     * Name of the class as written in its declaration, without its package nor its outer classes.
+     */
+    public String getSimpleName() {
+        return simpleName;
+    }
+
+    public void setSimpleName(String simpleName) {
+        this.simpleName = simpleName;
+    }
+
     private PaprikaClass(String name, PaprikaApp paprikaApp, PaprikaModifiers modifier) {
         this.setName(name);
         this.paprikaApp = paprikaApp;
         this.children = 0;
-        this.paprikaMethods  = new HashSet<>();
-        this.paprikaVariables = new HashSet<>();
-        this.coupled = new HashSet<>();
-        this.interfaces = new HashSet<>();
+        this.paprikaMethods  = new LinkedHashSet<>();
+        this.paprikaMethodsByName = new HashMap<>();
+        this.paprikaVariables = new LinkedHashSet<>();
+        this.paprikaVariablesByName = new HashMap<>();
+        this.coupled = new LinkedHashSet<>();
+        this.interfaces = new LinkedHashSet<>();
         this.modifier = modifier;
-        this.isInterface=false;
-        this.isStatic=false;
-        this.isActivity=false;
-        this.isApplication=false;
-        this.isAsyncTask=false;
-        this.isService=false;
-        this.isContentProvider=false;
-        this.isBroadcastReceiver=false;
-        this.isInnerClass=false;
-        this.isView=false;
         this.depthOfInheritance=0;
         this.interfacesNames=new ArrayList<>();
         this.complexity=0;
@@ -110,21 +124,13 @@ public class PaprikaClass extends Entity{
         this.path=path;
         this.paprikaApp = paprikaApp;
         this.children = 0;
-        this.paprikaMethods  = new HashSet<>();
-        this.paprikaVariables = new HashSet<>();
-        this.coupled = new HashSet<>();
-        this.interfaces = new HashSet<>();
+        this.paprikaMethods  = new LinkedHashSet<>();
+        this.paprikaMethodsByName = new HashMap<>();
+        this.paprikaVariables = new LinkedHashSet<>();
+        this.paprikaVariablesByName = new HashMap<>();
+        this.coupled = new LinkedHashSet<>();
+        this.interfaces = new LinkedHashSet<>();
         this.modifier = modifier;
-        this.isInterface=false;
-        this.isStatic=false;
-        this.isActivity=false;
-        this.isApplication=false;
-        this.isAsyncTask=false;
-        this.isService=false;
-        this.isContentProvider=false;
-        this.isBroadcastReceiver=false;
-        this.isInnerClass=false;
-        this.isView=false;
         this.depthOfInheritance=0;
         this.interfacesNames=new ArrayList<>();
         this.complexity=0;
@@ -144,6 +150,14 @@ public class PaprikaClass extends Entity{
         return paprikaClass;
     }
 
+    /**
+     * Create a class of the app without adding it to the app classes,
+     * it is up to the caller to add it with {@link PaprikaApp#addPaprikaClass(PaprikaClass)}.
+     */
+    public static PaprikaClass createDetachedPaprikaClass(String name, PaprikaApp paprikaApp, PaprikaModifiers modifier, String path) {
+        return new PaprikaClass(name, paprikaApp, modifier, path);
+    }
+
     public PaprikaClass getParent() {
         return parent;
     }
@@ -155,7 +169,23 @@ public class PaprikaClass extends Entity{
     }
 
     public void addPaprikaMethod(PaprikaMethod paprikaMethod){
-        paprikaMethods.add(paprikaMethod);
+        if (paprikaMethods.add(paprikaMethod)) {
+            List<PaprikaMethod> overloads = paprikaMethodsByName.get(paprikaMethod.getName());
+            if (overloads == null) {
+                overloads = new ArrayList<>(1);
+                paprikaMethodsByName.put(paprikaMethod.getName(), overloads);
+            }
+            overloads.add(paprikaMethod);
+        }
+    }
+
+    /**
+     * @param methodName Name of the methods.
+     * @return The methods of this class with the given name, in their creation order.
+     */
+    public List<PaprikaMethod> getPaprikaMethods(String methodName) {
+        List<PaprikaMethod> overloads = paprikaMethodsByName.get(methodName);
+        return overloads == null ? Collections.<PaprikaMethod>emptyList() : Collections.unmodifiableList(overloads);
     }
 
     public PaprikaApp getPaprikaApp() {
@@ -192,20 +222,48 @@ public class PaprikaClass extends Entity{
 
     public int getCouplingValue(){ return coupled.size();}
 
+    /**
+     * Lack of cohesion: the number of pairs of methods without any used field in common,
+     * minus the number of pairs sharing at least one, or 0 if negative.
+     * The fields used by each method are represented as a bitset over the fields used in the class.
+     */
     public int computeLCOM(){
-        Object methods[] = paprikaMethods.toArray();
-        int methodCount = methods.length;
+        int methodCount = paprikaMethods.size();
+        Map<PaprikaVariable, Integer> fieldIndexes = new HashMap<>();
+        for (PaprikaMethod paprikaMethod : paprikaMethods) {
+            for (PaprikaVariable paprikaVariable : paprikaMethod.getUsedVariables()) {
+                if (!fieldIndexes.containsKey(paprikaVariable)) {
+                    fieldIndexes.put(paprikaVariable, fieldIndexes.size());
+                }
+            }
+        }
+        int words = (fieldIndexes.size() + 63) >>> 6;
+        List<long[]> usedFields = new ArrayList<>();
+        for (PaprikaMethod paprikaMethod : paprikaMethods) {
+            if (paprikaMethod.getUsedVariables().isEmpty()) {
+                continue;
+            }
+            long[] bitset = new long[words];
+            for (PaprikaVariable paprikaVariable : paprikaMethod.getUsedVariables()) {
+                int index = fieldIndexes.get(paprikaVariable);
+                bitset[index >>> 6] |= 1L << index;
+            }
+            usedFields.add(bitset);
+        }
         int haveFieldInCommon = 0;
-        int noFieldInCommon  = 0;
-        for(int i=0; i< methodCount;i++){
-            for(int j=i+1; j < methodCount; j++){
-                if( ((PaprikaMethod) methods[i]).haveCommonFields((PaprikaMethod) methods[j])){
-                    haveFieldInCommon++;
-                }else{
-                    noFieldInCommon++;
+        for (int i = 0; i < usedFields.size(); i++) {
+            long[] first = usedFields.get(i);
+            for (int j = i + 1; j < usedFields.size(); j++) {
+                long[] second = usedFields.get(j);
+                for (int word = 0; word < words; word++) {
+                    if ((first[word] & second[word]) != 0) {
+                        haveFieldInCommon++;
+                        break;
+                    }
                 }
             }
         }
+        int noFieldInCommon = (int) ((long) methodCount * (methodCount - 1) / 2) - haveFieldInCommon;
         int LCOM =  noFieldInCommon - haveFieldInCommon;
         return LCOM > 0 ? LCOM : 0;
     }
@@ -219,40 +277,41 @@ public class PaprikaClass extends Entity{
     }
 
     public void addPaprikaVariable(PaprikaVariable paprikaVariable) {
-        paprikaVariables.add(paprikaVariable);
+        if (paprikaVariables.add(paprikaVariable) && !paprikaVariablesByName.containsKey(paprikaVariable.getName())) {
+            paprikaVariablesByName.put(paprikaVariable.getName(), paprikaVariable);
+        }
     }
 
+    /**
+     * @param name Name of the field.
+     * @return The first field declared by this class with the given name (any modifiers), null if there is none.
+     */
     public PaprikaVariable findVariable(String name){
-        // First we are looking to the field declared by this class (any modifiers)
-        for (PaprikaVariable paprikaVariable : paprikaVariables){
-            if (paprikaVariable.getName().equals(name)) return paprikaVariable;
-        }
-        //otherwise we return null
-        return null;
+        return paprikaVariablesByName.get(name);
     }
 
     public boolean isInterface() {
-        return isInterface;
+        return (flags & IS_INTERFACE) != 0;
     }
 
     public void setInterface(boolean anInterface) {
-        isInterface = anInterface;
+        flags = anInterface ? flags | IS_INTERFACE : flags & ~IS_INTERFACE;
     }
 
     public boolean isStatic() {
-        return isStatic;
+        return (flags & IS_STATIC) != 0;
     }
 
     public void setStatic(boolean aStatic) {
-        isStatic = aStatic;
+        flags = aStatic ? flags | IS_STATIC : flags & ~IS_STATIC;
     }
 
     public boolean isActivity() {
-        return isActivity;
+        return (flags & IS_ACTIVITY) != 0;
     }
 
     public void setActivity(boolean activity) {
-        isActivity = activity;
+        flags = activity ? flags | IS_ACTIVITY : flags & ~IS_ACTIVITY;
     }
 
     public ArrayList<String> getInterfacesNames() {
@@ -261,10 +320,9 @@ public class PaprikaClass extends Entity{
 
 
     public PaprikaMethod getCalledPaprikaMethod(String methodName){
-        for(PaprikaMethod paprikaMethod: this.getPaprikaMethods()){
-            if(paprikaMethod.getName().equals(methodName)){
-                return paprikaMethod;
-            }
+        List<PaprikaMethod> overloads = paprikaMethodsByName.get(methodName);
+        if (overloads != null) {
+            return overloads.get(0);
         }
         //TODO check the return type and modifier in the super classes
         PaprikaMethod calledMethod=  PaprikaMethod.createPaprikaMethod(methodName,PaprikaModifiers.PUBLIC,"Uknown",this);
@@ -299,10 +357,25 @@ public class PaprikaClass extends Entity{
 
     public void setPaprikaMethods(Set<PaprikaMethod> paprikaMethods) {
         this.paprikaMethods = paprikaMethods;
+        paprikaMethodsByName.clear();
+        for (PaprikaMethod paprikaMethod : paprikaMethods) {
+            List<PaprikaMethod> overloads = paprikaMethodsByName.get(paprikaMethod.getName());
+            if (overloads == null) {
+                overloads = new ArrayList<>(1);
+                paprikaMethodsByName.put(paprikaMethod.getName(), overloads);
+            }
+            overloads.add(paprikaMethod);
+        }
     }
 
     public void setPaprikaVariables(Set<PaprikaVariable> paprikaVariables) {
         this.paprikaVariables = paprikaVariables;
+        paprikaVariablesByName.clear();
+        for (PaprikaVariable paprikaVariable : paprikaVariables) {
+            if (!paprikaVariablesByName.containsKey(paprikaVariable.getName())) {
+                paprikaVariablesByName.put(paprikaVariable.getName(), paprikaVariable);
+            }
+        }
     }
 
     public void setInterfaces(Set<PaprikaClass> interfaces) {
@@ -314,58 +387,58 @@ public class PaprikaClass extends Entity{
     }
 
     public boolean isBroadcastReceiver() {
-        return isBroadcastReceiver;
+        return (flags & IS_BROADCAST_RECEIVER) != 0;
     }
 
     public void setBroadcastReceiver(boolean broadcastReceiver) {
-        isBroadcastReceiver = broadcastReceiver;
+        flags = broadcastReceiver ? flags | IS_BROADCAST_RECEIVER : flags & ~IS_BROADCAST_RECEIVER;
     }
 
     public boolean isService() {
-        return isService;
+        return (flags & IS_SERVICE) != 0;
     }
 
     public void setService(boolean service) {
-        isService = service;
+        flags = service ? flags | IS_SERVICE : flags & ~IS_SERVICE;
     }
 
     public boolean isContentProvider() {
-        return isContentProvider;
+        return (flags & IS_CONTENT_PROVIDER) != 0;
     }
 
     public void setContentProvider(boolean contentProvider) {
-        isContentProvider = contentProvider;
+        flags = contentProvider ? flags | IS_CONTENT_PROVIDER : flags & ~IS_CONTENT_PROVIDER;
     }
 
     public boolean isView() {
-        return isView;
+        return (flags & IS_VIEW) != 0;
     }
 
     public void setView(boolean view) {
-        isView = view;
+        flags = view ? flags | IS_VIEW : flags & ~IS_VIEW;
     }
 
     public boolean isAsyncTask() {
-        return isAsyncTask;
+        return (flags & IS_ASYNC_TASK) != 0;
     }
 
     public void setAsyncTask(boolean asyncTask) {
-        isAsyncTask = asyncTask;
+        flags = asyncTask ? flags | IS_ASYNC_TASK : flags & ~IS_ASYNC_TASK;
     }
 
     public boolean isApplication() {
-        return isApplication;
+        return (flags & IS_APPLICATION) != 0;
     }
 
     public void setApplication(boolean application) {
-        isApplication = application;
+        flags = application ? flags | IS_APPLICATION : flags & ~IS_APPLICATION;
     }
 
     public boolean isInnerClass() {
-        return isInnerClass;
+        return (flags & IS_INNER_CLASS) != 0;
     }
 
     public void setInnerClass(boolean innerClass) {
-        isInnerClass = innerClass;
+        flags = innerClass ? flags | IS_INNER_CLASS : flags & ~IS_INNER_CLASS;
     }
 }
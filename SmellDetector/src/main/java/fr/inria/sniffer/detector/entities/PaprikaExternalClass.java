@@ -19,7 +19,7 @@
 package fr.inria.sniffer.detector.entities;
 
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -30,7 +30,7 @@ public class PaprikaExternalClass extends Entity{
     private PaprikaApp paprikaApp;
     private String parentName;
     private Set<PaprikaExternalMethod> paprikaExternalMethods;
-    private static Map<String,PaprikaExternalClass> externalClasses =new HashMap<>();
+    private Map<String,PaprikaExternalMethod> paprikaExternalMethodsByName;
 
     public Set<PaprikaExternalMethod> getPaprikaExternalMethods() {
         return paprikaExternalMethods;
@@ -47,22 +47,31 @@ public class PaprikaExternalClass extends Entity{
     private PaprikaExternalClass(String name, PaprikaApp paprikaApp) {
         this.setName(name);
         this.paprikaApp = paprikaApp;
-        this.paprikaExternalMethods  = new HashSet<>();
+        this.paprikaExternalMethods  = new LinkedHashSet<>();
+        this.paprikaExternalMethodsByName = new HashMap<>();
     }
 
     public static PaprikaExternalClass createPaprikaExternalClass(String name, PaprikaApp paprikaApp) {
         PaprikaExternalClass paprikaClass;
-        if ((paprikaClass =externalClasses.get(name)) !=null){
+        if ((paprikaClass = paprikaApp.getPaprikaExternalClass(name)) != null){
             return paprikaClass;
         }
         paprikaClass = new PaprikaExternalClass(name, paprikaApp);
-        externalClasses.put(name,paprikaClass);
         paprikaApp.addPaprikaExternalClass(paprikaClass);
         return paprikaClass;
     }
 
     public void addPaprikaExternalMethod(PaprikaExternalMethod paprikaMethod){
         paprikaExternalMethods.add(paprikaMethod);
+        paprikaExternalMethodsByName.put(paprikaMethod.getName(), paprikaMethod);
+    }
+
+    /**
+     * @param methodName Name of the external method.
+     * @return The method of this class with the given name, null if there is none.
+     */
+    public PaprikaExternalMethod getPaprikaExternalMethod(String methodName){
+        return paprikaExternalMethodsByName.get(methodName);
     }
 
     public PaprikaApp getPaprikaApp() {
@@ -19,9 +19,7 @@
 package fr.inria.sniffer.detector.entities;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Created by Geoffrey Hecht on 20/05/14.
@@ -30,7 +28,6 @@ public class PaprikaExternalMethod extends Entity{
     private PaprikaExternalClass paprikaExternalClass;
     private List<PaprikaExternalArgument> paprikaExternalArguments;
     private String returnType;
-    private static Map<String,PaprikaExternalMethod> externalMethods =new HashMap<>();
 
     public String getReturnType() {
         return returnType;
@@ -48,13 +45,11 @@ public class PaprikaExternalMethod extends Entity{
     }
 
     public static PaprikaExternalMethod createPaprikaExternalMethod(String name, String returnType,  PaprikaExternalClass paprikaClass) {
-        String fullName=name + "#" + paprikaClass;
         PaprikaExternalMethod paprikaMethod;
-        if((paprikaMethod =externalMethods.get(fullName))!=null){
+        if((paprikaMethod = paprikaClass.getPaprikaExternalMethod(name)) != null){
             return paprikaMethod;
         }
         paprikaMethod = new PaprikaExternalMethod(name, returnType, paprikaClass);
-        externalMethods.put(fullName,paprikaMethod);
         paprikaClass.addPaprikaExternalMethod(paprikaMethod);
         return  paprikaMethod;
     }
@@ -22,7 +22,7 @@ import fr.inria.sniffer.detector.analyzer.InvocationData;
 import fr.inria.sniffer.detector.analyzer.VariableData;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -30,6 +30,11 @@ import java.util.Set;
  * Created by Geoffrey Hecht on 20/05/14.
  */
 public class PaprikaMethod extends Entity{
+    private static final int IS_CONSTRUCTOR = 1 << 0;
+    private static final int IS_GETTER = 1 << 1;
+    private static final int IS_SETTER = 1 << 2;
+    private static final int IS_STATIC = 1 << 3;
+    private static final int IS_OVERRIDE = 1 << 4;
     private PaprikaClass paprikaClass;
     private String returnType;
     private Set<PaprikaVariable> usedVariables;
@@ -41,18 +46,17 @@ public class PaprikaMethod extends Entity{
     private int complexity;
     private int numberOfDeclaredLocals;
     private List<PaprikaArgument> arguments;
-    private boolean isConstructor;
-    private boolean isGetter;
-    private boolean isSetter;
-    private boolean isStatic;
-    private boolean isOverride;
+    /**
+     * The boolean properties of the method, one bit each.
+     */
+    private int flags;
 
     public boolean isOverride() {
-        return isOverride;
+        return (flags & IS_OVERRIDE) != 0;
     }
 
     public void setOverride(boolean override) {
-        isOverride = override;
+        flags = override ? flags | IS_OVERRIDE : flags & ~IS_OVERRIDE;
     }
 
     public String getReturnType() {
@@ -66,8 +70,8 @@ public class PaprikaMethod extends Entity{
     private PaprikaMethod(String name, PaprikaModifiers modifier, String returnType, PaprikaClass paprikaClass) {
         this.setName(name);
         this.paprikaClass = paprikaClass;
-        this.usedVariables = new HashSet<>();
-        this.calledMethods = new HashSet<>();
+        this.usedVariables = new LinkedHashSet<>();
+        this.calledMethods = new LinkedHashSet<>();
         this.arguments = new ArrayList<>();
         this.modifier = modifier;
         this.returnType = returnType;
@@ -76,11 +80,6 @@ public class PaprikaMethod extends Entity{
         this.invocationData =new ArrayList<>();
         this.complexity =0 ;
         this.numberOfDeclaredLocals=0;
-        this.isConstructor=false;
-        this.isSetter=false;
-        this.isGetter=false;
-        this.isStatic=false;
-        this.isOverride=false;
     }
 
     public static PaprikaMethod createPaprikaMethod(String name, PaprikaModifiers modifier, String returnType,  PaprikaClass paprikaClass) {
@@ -175,34 +174,34 @@ public class PaprikaMethod extends Entity{
     }
 
     public boolean isConstructor() {
-        return isConstructor;
+        return (flags & IS_CONSTRUCTOR) != 0;
     }
 
     public void setConstructor(boolean constructor) {
-        isConstructor = constructor;
+        flags = constructor ? flags | IS_CONSTRUCTOR : flags & ~IS_CONSTRUCTOR;
     }
 
     public boolean isGetter() {
-        return isGetter;
+        return (flags & IS_GETTER) != 0;
     }
 
     public void setGetter(boolean getter) {
-        isGetter = getter;
+        flags = getter ? flags | IS_GETTER : flags & ~IS_GETTER;
     }
 
     public boolean isSetter() {
-        return isSetter;
+        return (flags & IS_SETTER) != 0;
     }
 
     public void setSetter(boolean setter) {
-        isSetter = setter;
+        flags = setter ? flags | IS_SETTER : flags & ~IS_SETTER;
     }
 
     public boolean isStatic() {
-        return isStatic;
+        return (flags & IS_STATIC) != 0;
     }
 
     public void setStatic(boolean aStatic) {
-        isStatic = aStatic;
+        flags = aStatic ? flags | IS_STATIC : flags & ~IS_STATIC;
     }
 }
@@ -0,0 +1,161 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Metrics stored in the primitive slots of an entity, see {@link fr.inria.sniffer.detector.entities.Entity}.
+ * The keys are declared in the order the metrics are computed by {@link MetricsCalculator},
+ * which is the order of the properties of the database nodes.
+ */
+public enum MetricKey {
+    NUMBER_OF_CLASSES("number_of_classes", Type.INT),
+    NUMBER_OF_INTERFACES("number_of_interfaces", Type.INT),
+    NUMBER_OF_ACTIVITIES("number_of_activities", Type.INT),
+    IS_INTERFACE("is_interface", Type.BOOLEAN),
+    IS_INNER_CLASS("is_inner_class", Type.BOOLEAN),
+    IS_ACTIVITY("is_activity", Type.BOOLEAN),
+    IS_BROADCAST_RECEIVER("is_broadcast_receiver", Type.BOOLEAN),
+    IS_CONTENT_PROVIDER("is_content_provider", Type.BOOLEAN),
+    IS_SERVICE("is_service", Type.BOOLEAN),
+    IS_VIEW("is_view", Type.BOOLEAN),
+    IS_ASYNC_TASK("is_async_task", Type.BOOLEAN),
+    IS_APPLICATION("is_application", Type.BOOLEAN),
+    NUMBER_OF_ATTRIBUTES("number_of_attributes", Type.INT),
+    NUMBER_OF_METHODS("number_of_methods", Type.INT),
+    NUMBER_OF_VIEWS("number_of_views", Type.INT),
+    NUMBER_OF_SERVICES("number_of_services", Type.INT),
+    NUMBER_OF_BROADCAST_RECEIVERS("number_of_broadcast_receivers", Type.INT),
+    NUMBER_OF_INNER_CLASSES("number_of_inner_classes", Type.INT),
+    NUMBER_OF_ASYNC_TASKS("number_of_async_tasks", Type.INT),
+    NUMBER_OF_CONTENT_PROVIDERS("number_of_content_providers", Type.INT),
+    NUMBER_OF_VARIABLES("number_of_variables", Type.INT),
+    NUMBER_OF_IMPLEMENTED_INTERFACES("number_of_implemented_interfaces", Type.INT),
+    COUPLING_BETWEEN_OBJECT_CLASSES("coupling_between_object_classes", Type.INT),
+    DEPTH_OF_INHERITANCE("depth_of_inheritance", Type.INT),
+    LACK_OF_COHESION_IN_METHODS("lack_of_cohesion_in_methods", Type.INT),
+    CLASS_COMPLEXITY("class_complexity", Type.INT),
+    NPATH_COMPLEXITY("npath_complexity", Type.DOUBLE),
+    NUMBER_OF_PARAMETERS("number_of_parameters", Type.INT),
+    NUMBER_OF_DIRECT_CALLS("number_of_direct_calls", Type.INT),
+    IS_INIT("is_init", Type.BOOLEAN),
+    IS_GETTER("is_getter", Type.BOOLEAN),
+    IS_SETTER("is_setter", Type.BOOLEAN),
+    IS_STATIC("is_static", Type.BOOLEAN),
+    NUMBER_OF_CHILDREN("number_of_children", Type.INT),
+    IS_OVERRIDE("is_override", Type.BOOLEAN),
+    NUMBER_OF_LINES("number_of_lines", Type.INT),
+    CYCLOMATIC_COMPLEXITY("cyclomatic_complexity", Type.INT),
+    NUMBER_OF_CALLERS("number_of_callers", Type.INT),
+    NUMBER_OF_DECLARED_LOCALS("number_of_declared_locals", Type.INT),
+    NUMBER_OF_ABSTRACT_CLASSES("number_of_abstract_classes", Type.INT),
+    NUMBER_OF_ARGB_8888("number_of_argb_8888", Type.INT),
+    IS_ABSTRACT("is_abstract", Type.BOOLEAN),
+    IS_FINAL("is_final", Type.BOOLEAN),
+    IS_SYNCHRONIZED("is_synchronized", Type.BOOLEAN),
+    IS_BITMAP("is_bitmap", Type.BOOLEAN),
+    IS_ARGB_8888("is_argb_8888", Type.BOOLEAN);
+
+    /**
+     * Kind of slot holding the value of a metric.
+     */
+    public enum Type {
+        BOOLEAN, INT, DOUBLE
+    }
+
+    private static final List<MetricKey> KEYS = Collections.unmodifiableList(Arrays.asList(values()));
+    private static final Map<String, MetricKey> KEYS_BY_NAME = new HashMap<>();
+    private static final long[] TYPE_MASKS = new long[Type.values().length];
+
+    static {
+        if (KEYS.size() > Long.SIZE) {
+            throw new IllegalStateException("The metric keys must fit in a long");
+        }
+        for (MetricKey key : KEYS) {
+            KEYS_BY_NAME.put(key.name, key);
+            TYPE_MASKS[key.type.ordinal()] |= key.getMask();
+        }
+    }
+
+    private final String name;
+    private final Type type;
+
+    MetricKey(String name, Type type) {
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * @return Name of the metric, used as the property name in the database.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The bit of this key in a set of keys.
+     */
+    public long getMask() {
+        return 1L << ordinal();
+    }
+
+    /**
+     * @return The bits of all the keys of the given type.
+     */
+    public static long getMask(Type type) {
+        return TYPE_MASKS[type.ordinal()];
+    }
+
+    /**
+     * @return All the keys in declaration order, without copying them as {@link #values()} does.
+     */
+    public static List<MetricKey> getKeys() {
+        return KEYS;
+    }
+
+    /**
+     * @param name Name of a metric.
+     * @return The key of the metric, null if it is not stored in the primitive slots.
+     */
+    public static MetricKey fromName(String name) {
+        return KEYS_BY_NAME.get(name);
+    }
+
+    /**
+     * @return True if the value has the type of the slot of this key, so that it is stored back with the same type.
+     */
+    public boolean accepts(Object value) {
+        switch (type) {
+            case BOOLEAN:
+                return value instanceof Boolean;
+            case INT:
+                return value instanceof Integer;
+            default:
+                return value instanceof Double;
+        }
+    }
+}
@@ -32,7 +32,7 @@ public class MetricsCalculator {
 
         public static void calculateAppMetrics(PaprikaApp app)
         {
-            NumberOfClasses.createNumberOfClasses(app, app.getPaprikaClasses().size());
+            app.setMetric(MetricKey.NUMBER_OF_CLASSES, app.getPaprikaClasses().size());
             int numberOfInterfaces=0;
             int numberOfContentProviders =0 ;
             int numberOfAsyncTasks =0;
@@ -69,16 +69,16 @@ public class MetricsCalculator {
                 numberOfVariables += c.getPaprikaVariables().size();
                 numberOfMethods += c.getPaprikaMethods().size();
             }
-            NumberOfInterfaces.createNumberOfInterfaces(app,numberOfInterfaces);
-            NumberOfActivities.createNumberOfActivities(app,numberOfActivities);
-            NumberOfMethods.createNumberOfMethods(app,numberOfMethods);
-            NumberOfViews.createNumberOfViews(app,numberOfViews);
-            NumberOfServices.createNumberOfServices(app,numberOfServices);
-            NumberOfBroadcastReceivers.createNumberOfBroadcastReceivers(app,numberOfBroadcastReceivers);
-            NumberOfInnerClasses.createNumberOfInnerClasses(app,numberOfInnerClasses);
-            NumberOfAsyncTasks.createNumberOfAsyncTasks(app,numberOfAsyncTasks);
-            NumberOfContentProviders.createNumberOfContentProviders(app,numberOfContentProviders);
-            NumberOfVariables.createNumberOfVariables(app, numberOfVariables);
+            app.setMetric(MetricKey.NUMBER_OF_INTERFACES, numberOfInterfaces);
+            app.setMetric(MetricKey.NUMBER_OF_ACTIVITIES, numberOfActivities);
+            app.setMetric(MetricKey.NUMBER_OF_METHODS, numberOfMethods);
+            app.setMetric(MetricKey.NUMBER_OF_VIEWS, numberOfViews);
+            app.setMetric(MetricKey.NUMBER_OF_SERVICES, numberOfServices);
+            app.setMetric(MetricKey.NUMBER_OF_BROADCAST_RECEIVERS, numberOfBroadcastReceivers);
+            app.setMetric(MetricKey.NUMBER_OF_INNER_CLASSES, numberOfInnerClasses);
+            app.setMetric(MetricKey.NUMBER_OF_ASYNC_TASKS, numberOfAsyncTasks);
+            app.setMetric(MetricKey.NUMBER_OF_CONTENT_PROVIDERS, numberOfContentProviders);
+            app.setMetric(MetricKey.NUMBER_OF_VARIABLES, numberOfVariables);
             for(PaprikaClass paprikaClass: app.getPaprikaClasses()){
                 calculateClassMetrics(paprikaClass);
             }
@@ -88,70 +88,69 @@ public class MetricsCalculator {
 
         public static void calculateClassMetrics(PaprikaClass paprikaClass){
             if(paprikaClass.isInterface()){
-                IsInterface.createIsInterface(paprikaClass,true);
+                paprikaClass.setMetric(MetricKey.IS_INTERFACE, true);
             }
             if(paprikaClass.isInnerClass()){
-                IsInnerClass.createIsInnerClass(paprikaClass,true);
+                paprikaClass.setMetric(MetricKey.IS_INNER_CLASS, true);
             }
             if (paprikaClass.isActivity()){
-                IsActivity.createIsActivity(paprikaClass,true);
+                paprikaClass.setMetric(MetricKey.IS_ACTIVITY, true);
             }else if (paprikaClass.isBroadcastReceiver()){
-                IsBroadcastReceiver.createIsBroadcastReceiver(paprikaClass,true);
+                paprikaClass.setMetric(MetricKey.IS_BROADCAST_RECEIVER, true);
             }else if (paprikaClass.isContentProvider()){
-                IsContentProvider.createIsContentProvider(paprikaClass,true);
+                paprikaClass.setMetric(MetricKey.IS_CONTENT_PROVIDER, true);
             }else if (paprikaClass.isService()){
-                IsService.createIsService(paprikaClass,true);
+                paprikaClass.setMetric(MetricKey.IS_SERVICE, true);
             }else if (paprikaClass.isView()){
-                IsView.createIsView(paprikaClass,true);
+                paprikaClass.setMetric(MetricKey.IS_VIEW, true);
             }else if (paprikaClass.isAsyncTask()){
-                IsAsyncTask.createIsAsyncTask(paprikaClass,true);
+                paprikaClass.setMetric(MetricKey.IS_ASYNC_TASK, true);
             }else if (paprikaClass.isApplication()){
-                IsApplication.createIsApplication(paprikaClass,true);
+                paprikaClass.setMetric(MetricKey.IS_APPLICATION, true);
             }
-            NumberOfAttributes.createNumberOfAttributes(paprikaClass,paprikaClass.getPaprikaVariables().size());
-            NumberOfMethods.createNumberOfMethods(paprikaClass, paprikaClass.getPaprikaMethods().size());
-            NumberOfImplementedInterfaces.createNumberOfImplementedInterfaces(paprikaClass,
-                    paprikaClass.getInterfacesNames().size());
-            CouplingBetweenObjects.createCouplingBetweenObjects(paprikaClass);
-            DepthOfInheritance.createDepthOfInheritance(paprikaClass,paprikaClass.getDepthOfInheritance());
-            LackofCohesionInMethods.createLackofCohesionInMethods(paprikaClass);
-            ClassComplexity.createClassComplexity(paprikaClass);
-            NPathComplexity.createNPathComplexity(paprikaClass);
+            paprikaClass.setMetric(MetricKey.NUMBER_OF_ATTRIBUTES, paprikaClass.getPaprikaVariables().size());
+            paprikaClass.setMetric(MetricKey.NUMBER_OF_METHODS, paprikaClass.getPaprikaMethods().size());
+            paprikaClass.setMetric(MetricKey.NUMBER_OF_IMPLEMENTED_INTERFACES, paprikaClass.getInterfacesNames().size());
+            paprikaClass.setMetric(MetricKey.COUPLING_BETWEEN_OBJECT_CLASSES, paprikaClass.getCouplingValue());
+            paprikaClass.setMetric(MetricKey.DEPTH_OF_INHERITANCE, paprikaClass.getDepthOfInheritance());
+            paprikaClass.setMetric(MetricKey.LACK_OF_COHESION_IN_METHODS, paprikaClass.computeLCOM());
+            paprikaClass.setMetric(MetricKey.CLASS_COMPLEXITY, paprikaClass.computeComplexity());
+            paprikaClass.setMetric(MetricKey.NPATH_COMPLEXITY, paprikaClass.computeNPathComplexity());
             if(paprikaClass.isStatic())
             {
-                IsStatic.createIsStatic(paprikaClass,true);
+                paprikaClass.setMetric(MetricKey.IS_STATIC, true);
             }
-            NumberOfChildren.createNumberOfChildren(paprikaClass);
+            paprikaClass.setMetric(MetricKey.NUMBER_OF_CHILDREN, paprikaClass.getChildren());
             for(PaprikaMethod paprikaMethod: paprikaClass.getPaprikaMethods()){
                 calculateMethodMetrics(paprikaMethod);
             }
 
             for (PaprikaVariable paprikaVariable: paprikaClass.getPaprikaVariables()){
                 if(paprikaVariable.isStatic()){
-                    IsStatic.createIsStatic(paprikaVariable,true);
+                    paprikaVariable.setMetric(MetricKey.IS_STATIC, true);
                 }
             }
 
         }
 
         public static void calculateMethodMetrics(PaprikaMethod paprikaMethod){
-            NumberOfParameters.createNumberOfParameters(paprikaMethod, paprikaMethod.getArguments().size());
-            NumberOfDirectCalls.createNumberOfDirectCalls(paprikaMethod, paprikaMethod.getCalledMethods().size());
+            paprikaMethod.setMetric(MetricKey.NUMBER_OF_PARAMETERS, paprikaMethod.getArguments().size());
+            paprikaMethod.setMetric(MetricKey.NUMBER_OF_DIRECT_CALLS, paprikaMethod.getCalledMethods().size());
             if(paprikaMethod.isConstructor()){
-                IsInit.createIsInit(paprikaMethod,true);
+                paprikaMethod.setMetric(MetricKey.IS_INIT, true);
             }else if(paprikaMethod.isGetter()){
-                IsGetter.createIsGetter(paprikaMethod,true);
+                paprikaMethod.setMetric(MetricKey.IS_GETTER, true);
             }else if(paprikaMethod.isSetter()){
-                IsSetter.createIsSetter(paprikaMethod,true);
+                paprikaMethod.setMetric(MetricKey.IS_SETTER, true);
             }
             if(paprikaMethod.isStatic()){
-                IsStatic.createIsStatic(paprikaMethod,true);
+                paprikaMethod.setMetric(MetricKey.IS_STATIC, true);
             }
             if(paprikaMethod.isOverride()){
-                IsOverride.createIsOverride(paprikaMethod, true);
+                paprikaMethod.setMetric(MetricKey.IS_OVERRIDE, true);
             }
-            NumberOfLines.createNumberOfLines(paprikaMethod, paprikaMethod.getNumberOfLines());
-            CyclomaticComplexity.createCyclomaticComplexity(paprikaMethod, paprikaMethod.getComplexity());
+            paprikaMethod.setMetric(MetricKey.NUMBER_OF_LINES, paprikaMethod.getNumberOfLines());
+            paprikaMethod.setMetric(MetricKey.CYCLOMATIC_COMPLEXITY, paprikaMethod.getComplexity());
         }
 
         private static void calculateGraphMetrics(PaprikaApp app){
@@ -177,7 +176,7 @@ public class MetricsCalculator {
             for(PaprikaClass paprikaClass:app.getPaprikaClasses()){
                 //compute the number of callers
                 for(PaprikaMethod paprikaMethod: paprikaClass.getPaprikaMethods()){
-                    NumberOfCallers.createNumberOfCallers(paprikaMethod,numberOfCallers.get(paprikaMethod));
+                    paprikaMethod.setMetric(MetricKey.NUMBER_OF_CALLERS, numberOfCallers.get(paprikaMethod));
                 }
             }
         }
@@ -45,4 +45,16 @@ public class ARGB8888Query extends Query {
         return query;
     }
 
+    /**
+     * The external arguments are not matched from the apps, so the file is written again for any commit range.
+     */
+    @Override
+    protected String restrictToCommits(String query) {
+        return query;
+    }
+
+    @Override
+    protected boolean isAppending() {
+        return false;
+    }
 }
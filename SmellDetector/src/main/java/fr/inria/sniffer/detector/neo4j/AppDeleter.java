@@ -0,0 +1,170 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Delete apps with the entities they own.
+ * <p>
+ * The App nodes are found with the index on their key, and their entities by following the ownership relationships:
+ * classes, libraries, variables, methods and arguments. The external classes, which are not linked to the App node,
+ * are found with the index on their key, and own the external methods and arguments.
+ * The nodes are then detached and deleted in transactions of bounded size, so that the memory held by a transaction
+ * does not grow with the size of the app. The owned entities are deleted before their owners and the App node last,
+ * so that an interrupted deletion is completed by deleting the app again.
+ */
+public class AppDeleter {
+    private static final Logger logger = LoggerFactory.getLogger(AppDeleter.class.getName());
+    private static final Label appLabel = DynamicLabel.label("App");
+    private static final Label externalClassLabel = DynamicLabel.label("ExternalClass");
+    private static final RelationTypes[] OWNERSHIPS = {
+            RelationTypes.APP_OWNS_CLASS,
+            RelationTypes.APP_USES_LIBRARY,
+            RelationTypes.CLASS_OWNS_VARIABLE,
+            RelationTypes.CLASS_OWNS_METHOD,
+            RelationTypes.METHOD_OWNS_ARGUMENT
+    };
+
+    private final GraphDatabaseService graphDatabaseService;
+    private final SymbolTable symbolTable;
+    private int transactionSize = ModelToGraph.DEFAULT_TRANSACTION_SIZE;
+    private boolean ownedEntities = true;
+
+    /**
+     * @param symbolTable The symbols of a dictionary encoded database, to find the external classes by the id
+     *                    of the key, empty otherwise.
+     */
+    public AppDeleter(GraphDatabaseService graphDatabaseService, SymbolTable symbolTable) {
+        this.graphDatabaseService = graphDatabaseService;
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * @param transactionSize Number of nodes and relationships deleted per transaction.
+     */
+    public void setTransactionSize(int transactionSize) {
+        this.transactionSize = transactionSize;
+    }
+
+    /**
+     * @param ownedEntities If false, only the App nodes are deleted, e.g. on a versioned database
+     *                      where the entities are shared by several commits.
+     */
+    public void setOwnedEntities(boolean ownedEntities) {
+        this.ownedEntities = ownedEntities;
+    }
+
+    /**
+     * @return The number of deleted nodes.
+     */
+    public long delete(Collection<String> appKeys) {
+        long deleted = 0;
+        for (String appKey : appKeys) {
+            long start = System.currentTimeMillis();
+            Set<Long> nodes = collectNodes(appKey);
+            if (nodes.isEmpty()) {
+                logger.warn("No app with the key " + appKey);
+                continue;
+            }
+            deleteNodes(nodes);
+            deleted += nodes.size();
+            logger.info("App " + appKey + " deleted: " + nodes.size() + " nodes in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        }
+        return deleted;
+    }
+
+    /**
+     * @return The ids of the App nodes of the key and of the entities they own.
+     */
+    private Set<Long> collectNodes(String appKey) {
+        Set<Long> nodes = new LinkedHashSet<>();
+        try (Transaction tx = graphDatabaseService.beginTx()) {
+            try (ResourceIterator<Node> apps = graphDatabaseService.findNodes(appLabel, "app_key", appKey)) {
+                while (apps.hasNext()) {
+                    collectOwned(apps.next(), nodes);
+                }
+            }
+            if (ownedEntities) {
+                Object entityKey = appKey;
+                if (!symbolTable.isEmpty()) {
+                    entityKey = symbolTable.idOf(appKey);
+                }
+                try (ResourceIterator<Node> externalClasses = graphDatabaseService.findNodes(externalClassLabel, "app_key", entityKey)) {
+                    while (externalClasses.hasNext()) {
+                        collectOwned(externalClasses.next(), nodes);
+                    }
+                }
+            }
+            tx.success();
+        }
+        return nodes;
+    }
+
+    private void collectOwned(Node root, Set<Long> nodes) {
+        if (!nodes.add(root.getId()) || !ownedEntities) {
+            return;
+        }
+        for (Relationship relationship : root.getRelationships(Direction.OUTGOING, OWNERSHIPS)) {
+            collectOwned(relationship.getEndNode(), nodes);
+        }
+    }
+
+    /**
+     * Delete the collected nodes in the reverse order of their collection, owned entities first.
+     */
+    void deleteNodes(Set<Long> nodes) {
+        Long[] ids = nodes.toArray(new Long[nodes.size()]);
+        Transaction tx = graphDatabaseService.beginTx();
+        int operations = 0;
+        try {
+            for (int i = ids.length - 1; i >= 0; i--) {
+                Node node = graphDatabaseService.getNodeById(ids[i]);
+                for (Relationship relationship : node.getRelationships()) {
+                    relationship.delete();
+                    operations++;
+                }
+                node.delete();
+                operations++;
+                if (transactionSize > 0 && operations >= transactionSize) {
+                    tx.success();
+                    tx.close();
+                    tx = graphDatabaseService.beginTx();
+                    operations = 0;
+                }
+            }
+            tx.success();
+        } finally {
+            tx.close();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import fr.inria.sniffer.detector.entities.Entity;
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.entities.PaprikaArgument;
+import fr.inria.sniffer.detector.entities.PaprikaClass;
+import fr.inria.sniffer.detector.entities.PaprikaExternalArgument;
+import fr.inria.sniffer.detector.entities.PaprikaExternalClass;
+import fr.inria.sniffer.detector.entities.PaprikaExternalMethod;
+import fr.inria.sniffer.detector.entities.PaprikaLibrary;
+import fr.inria.sniffer.detector.entities.PaprikaMethod;
+import fr.inria.sniffer.detector.entities.PaprikaVariable;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Write the models straight to the store files with a Neo4j {@link BatchInserter},
+ * producing the same graph as {@link ModelToGraph} without transactions, with the nodes of {@link GraphLayout}.
+ * <p>
+ * The database must not be opened by another process during the load,
+ * and it is left unusable if the load is interrupted before {@link #shutDown()}.
+ * The schema indexes are built once, at shutdown.
+ * The repeated strings can be written as ids of a {@link SymbolTable}, as with {@link ModelToGraph}.
+ */
+public class BatchModelToGraph implements ModelWriter {
+    private static final Logger logger = LoggerFactory.getLogger(BatchModelToGraph.class.getName());
+
+    private static final Map<String, Object> NO_PROPERTIES = Collections.emptyMap();
+
+    private final BatchInserter inserter;
+    private final Map<Entity, Long> methodNodeMap = new HashMap<>();
+    private final Map<PaprikaClass, Long> classNodeMap = new HashMap<>();
+    private final Map<PaprikaVariable, Long> variableNodeMap = new HashMap<>();
+
+    private GraphLayout layout;
+    private final SymbolTable symbolTable;
+
+    public BatchModelToGraph(String databasePath) throws IOException {
+        this(databasePath, false);
+    }
+
+    /**
+     * @param dictionaryEncoding If true, the properties listed in {@link SymbolTable#ENCODED_PROPERTIES}
+     *                           are written as symbol ids and the entities do not repeat the app name.
+     */
+    public BatchModelToGraph(String databasePath, boolean dictionaryEncoding) throws IOException {
+        // The encoding and the symbols already stored must be read before the batch inserter locks the store
+        boolean exists = new File(databasePath, "neostore").exists();
+        SymbolTable storedSymbols = SymbolTable.checkEncoding(databasePath, dictionaryEncoding);
+        this.symbolTable = dictionaryEncoding ? storedSymbols : null;
+        this.inserter = BatchInserters.inserter(new File(databasePath));
+        if (!exists) {
+            inserter.createNode(SymbolTable.encodingMarker(dictionaryEncoding), SymbolTable.ENCODING_LABEL);
+        }
+    }
+
+    @Override
+    public void writeApp(PaprikaApp paprikaApp) {
+        methodNodeMap.clear();
+        classNodeMap.clear();
+        variableNodeMap.clear();
+        layout = GraphLayout.createGraphLayout(paprikaApp, symbolTable);
+        long appNode = inserter.createNode(layout.appProperties(paprikaApp), GraphLayout.APP_LABEL);
+
+        for (PaprikaClass paprikaClass : paprikaApp.getPaprikaClasses()) {
+            long classNode = insertClass(paprikaClass);
+            inserter.createRelationship(appNode, classNode, RelationTypes.APP_OWNS_CLASS, NO_PROPERTIES);
+        }
+        for (PaprikaExternalClass paprikaExternalClass : paprikaApp.getPaprikaExternalClasses()) {
+            insertExternalClass(paprikaExternalClass);
+        }
+        for (PaprikaLibrary paprikaLibrary : paprikaApp.getPaprikaLibraries()) {
+            inserter.createRelationship(appNode, insertLibrary(paprikaLibrary), RelationTypes.APP_USES_LIBRARY, NO_PROPERTIES);
+        }
+        createHierarchy(paprikaApp);
+        createCallGraph(paprikaApp);
+        if (symbolTable != null) {
+            for (Map<String, Object> symbol : symbolTable.pending()) {
+                inserter.createNode(symbol, SymbolTable.SYMBOL_LABEL);
+            }
+            symbolTable.written();
+        }
+    }
+
+    @Override
+    public void shutDown() {
+        long start = System.nanoTime();
+        IndexManager.createDeferredIndexes(inserter);
+        inserter.shutdown();
+        logger.info("Store flushed and indexes built in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    private long insertClass(PaprikaClass paprikaClass) {
+        // Reserve the node before its members, so that the ids follow the same order as in ModelToGraph
+        long classNode = inserter.createNode(layout.classProperties(paprikaClass), GraphLayout.CLASS_LABEL);
+        classNodeMap.put(paprikaClass, classNode);
+        for (PaprikaVariable paprikaVariable : paprikaClass.getPaprikaVariables()) {
+            inserter.createRelationship(classNode, insertVariable(paprikaVariable), RelationTypes.CLASS_OWNS_VARIABLE, NO_PROPERTIES);
+        }
+        for (PaprikaMethod paprikaMethod : paprikaClass.getPaprikaMethods()) {
+            inserter.createRelationship(classNode, insertMethod(paprikaMethod), RelationTypes.CLASS_OWNS_METHOD, NO_PROPERTIES);
+        }
+        return classNode;
+    }
+
+    private long insertLibrary(PaprikaLibrary paprikaLibrary) {
+        return inserter.createNode(layout.libraryProperties(paprikaLibrary), GraphLayout.LIBRARY_LABEL);
+    }
+
+    private long insertExternalClass(PaprikaExternalClass paprikaClass) {
+        long classNode = inserter.createNode(layout.externalClassProperties(paprikaClass), GraphLayout.EXTERNAL_CLASS_LABEL);
+        for (PaprikaExternalMethod paprikaExternalMethod : paprikaClass.getPaprikaExternalMethods()) {
+            inserter.createRelationship(classNode, insertExternalMethod(paprikaExternalMethod), RelationTypes.CLASS_OWNS_METHOD, NO_PROPERTIES);
+        }
+        return classNode;
+    }
+
+    private long insertVariable(PaprikaVariable paprikaVariable) {
+        long variableNode = inserter.createNode(layout.variableProperties(paprikaVariable), GraphLayout.VARIABLE_LABEL);
+        variableNodeMap.put(paprikaVariable, variableNode);
+        return variableNode;
+    }
+
+    private long insertMethod(PaprikaMethod paprikaMethod) {
+        long methodNode = inserter.createNode(layout.methodProperties(paprikaMethod), GraphLayout.METHOD_LABEL);
+        methodNodeMap.put(paprikaMethod, methodNode);
+        for (PaprikaVariable paprikaVariable : paprikaMethod.getUsedVariables()) {
+            Long variableNode = variableNodeMap.get(paprikaVariable);
+            if (variableNode != null) {
+                inserter.createRelationship(methodNode, variableNode, RelationTypes.USES, NO_PROPERTIES);
+            } else {
+                logger.warn("problem");
+            }
+        }
+        for (PaprikaArgument arg : paprikaMethod.getArguments()) {
+            inserter.createRelationship(methodNode, insertArgument(arg), RelationTypes.METHOD_OWNS_ARGUMENT, NO_PROPERTIES);
+        }
+        return methodNode;
+    }
+
+    private long insertExternalMethod(PaprikaExternalMethod paprikaMethod) {
+        long methodNode = inserter.createNode(layout.externalMethodProperties(paprikaMethod), GraphLayout.EXTERNAL_METHOD_LABEL);
+        methodNodeMap.put(paprikaMethod, methodNode);
+        for (PaprikaExternalArgument arg : paprikaMethod.getPaprikaExternalArguments()) {
+            inserter.createRelationship(methodNode, insertExternalArgument(arg), RelationTypes.METHOD_OWNS_ARGUMENT, NO_PROPERTIES);
+        }
+        return methodNode;
+    }
+
+    private long insertArgument(PaprikaArgument paprikaArgument) {
+        return inserter.createNode(layout.argumentProperties(paprikaArgument), GraphLayout.ARGUMENT_LABEL);
+    }
+
+    private long insertExternalArgument(PaprikaExternalArgument paprikaExternalArgument) {
+        return inserter.createNode(layout.externalArgumentProperties(paprikaExternalArgument),
+                GraphLayout.EXTERNAL_ARGUMENT_LABEL);
+    }
+
+    private void createHierarchy(PaprikaApp paprikaApp) {
+        for (PaprikaClass paprikaClass : paprikaApp.getPaprikaClasses()) {
+            PaprikaClass parent = paprikaClass.getParent();
+            if (parent != null) {
+                inserter.createRelationship(classNodeMap.get(paprikaClass), classNodeMap.get(parent), RelationTypes.EXTENDS, NO_PROPERTIES);
+            }
+            for (PaprikaClass pInterface : paprikaClass.getInterfaces()) {
+                inserter.createRelationship(classNodeMap.get(paprikaClass), classNodeMap.get(pInterface), RelationTypes.IMPLEMENTS, NO_PROPERTIES);
+            }
+        }
+    }
+
+    private void createCallGraph(PaprikaApp paprikaApp) {
+        for (PaprikaClass paprikaClass : paprikaApp.getPaprikaClasses()) {
+            for (PaprikaMethod paprikaMethod : paprikaClass.getPaprikaMethods()) {
+                for (Entity calledMethod : paprikaMethod.getCalledMethods()) {
+                    inserter.createRelationship(methodNodeMap.get(paprikaMethod), methodNodeMap.get(calledMethod), RelationTypes.CALLS, NO_PROPERTIES);
+                }
+            }
+        }
+    }
+}
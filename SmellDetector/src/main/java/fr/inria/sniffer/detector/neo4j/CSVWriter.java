@@ -0,0 +1,157 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Write rows to a CSV file one at a time, so that a result of any size is exported in constant memory.
+ * <p>
+ * Each row has a field per column, empty when the value is null, and the fields containing a separator,
+ * a quote or a line break are quoted as in RFC 4180. The lines end with a line feed, as the former exports.
+ * A file whose name ends with ".gz" is compressed with gzip.
+ */
+public class CSVWriter implements Closeable {
+    public static final String GZIP_EXTENSION = ".gz";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Writer writer;
+    private final List<String> columns;
+    private int rows;
+
+    private CSVWriter(Writer writer, List<String> columns) {
+        this.writer = writer;
+        this.columns = columns;
+    }
+
+    /**
+     * Create the file and write the header.
+     *
+     * @param name    Path of the file, compressed if it ends with {@link #GZIP_EXTENSION}.
+     * @param columns The columns of the rows, in the order of the fields.
+     */
+    public static CSVWriter createCSVWriter(String name, List<String> columns) throws IOException {
+        return createCSVWriter(name, columns, false);
+    }
+
+    /**
+     * Open the file, writing the header unless the rows are appended to an existing file.
+     * Appending to a compressed file adds a gzip member, which is read as the continuation of the file.
+     *
+     * @param append Append to the file if it exists, instead of replacing it.
+     */
+    public static CSVWriter createCSVWriter(String name, List<String> columns, boolean append) throws IOException {
+        boolean header = !append || new File(name).length() == 0;
+        OutputStream output = new FileOutputStream(name, append);
+        try {
+            if (name.endsWith(GZIP_EXTENSION)) {
+                output = new GZIPOutputStream(output, BUFFER_SIZE);
+            }
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+            CSVWriter csvWriter = new CSVWriter(writer, columns);
+            if (header) {
+                csvWriter.writeLine(columns);
+            }
+            return csvWriter;
+        } catch (IOException e) {
+            output.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Write the values of the columns of a row, the other values are ignored.
+     */
+    public void writeRow(Map<String, ?> row) throws IOException {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeField(row.get(columns.get(i)));
+        }
+        writer.write('\n');
+        rows++;
+    }
+
+    /**
+     * Write all the remaining rows.
+     */
+    public void writeRows(Iterator<? extends Map<String, ?>> rows) throws IOException {
+        while (rows.hasNext()) {
+            writeRow(rows.next());
+        }
+    }
+
+    /**
+     * @return The number of rows written, without the header.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    private void writeLine(List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeField(values.get(i));
+        }
+        writer.write('\n');
+    }
+
+    private void writeField(Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        if (!needsQuotes(text)) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static boolean needsQuotes(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -30,7 +30,8 @@ public class CommitSizeQuery extends Query {
 
     @Override
     protected String getQuery(boolean details) {
-        String query = "MATCH (a:App)-[:APP_OWNS_CLASS]->(cl:Class)-[:CLASS_OWNS_METHOD]->(m:Method) RETURN " +
+        String query = "MATCH " + appClass("(cl:Class)") + "-[:CLASS_OWNS_METHOD]->(m:Method)" +
+                presentInApp("cl", "m") + " RETURN " +
                 "a.app_key as sha1, " +
                 "a.number_of_classes as number_of_classes, " +
                 "a.number_of_methods as number_of_methods, " +
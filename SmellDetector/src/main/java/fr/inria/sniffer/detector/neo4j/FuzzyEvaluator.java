@@ -0,0 +1,168 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import net.sourceforge.jFuzzyLogic.FIS;
+import net.sourceforge.jFuzzyLogic.FunctionBlock;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Fuzzy evaluation of the candidates of a {@link FuzzyQuery}, shared by all the queries of the JVM.
+ * <p>
+ * Each FCL file is parsed once. The metrics of the candidates are small integers that repeat a lot,
+ * so the value of each tuple of inputs is computed once by jFuzzyLogic and then memoized. The memoized
+ * values are the exact values of the function block.
+ * The evaluation is thread safe, the function block being evaluated under a lock on a cache miss.
+ */
+public class FuzzyEvaluator {
+    /**
+     * Column of the fuzzy value added to the candidates.
+     */
+    public static final String FUZZY_VALUE = "fuzzy_value";
+    private static final ConcurrentMap<String, FuzzyEvaluator> evaluators = new ConcurrentHashMap<>();
+
+    private final FunctionBlock functionBlock;
+    private final String[] variables;
+    private final ConcurrentMap<Inputs, Double> values = new ConcurrentHashMap<>();
+
+    private FuzzyEvaluator(FunctionBlock functionBlock, List<String> variables) {
+        this.functionBlock = functionBlock;
+        this.variables = variables.toArray(new String[variables.size()]);
+    }
+
+    /**
+     * @param fclFile   Path of the FCL file, looked for in the working directory, then in the classpath.
+     * @param variables The input variables of the function block, in the order of the values to evaluate.
+     * @return The evaluator of the file and variables, loaded on the first call.
+     * @throws IOException If the file cannot be found or parsed.
+     */
+    public static FuzzyEvaluator forFile(String fclFile, List<String> variables) throws IOException {
+        String key = fclFile + variables;
+        FuzzyEvaluator evaluator = evaluators.get(key);
+        if (evaluator == null) {
+            synchronized (evaluators) {
+                evaluator = evaluators.get(key);
+                if (evaluator == null) {
+                    evaluator = new FuzzyEvaluator(load(fclFile), variables);
+                    evaluators.put(key, evaluator);
+                }
+            }
+        }
+        return evaluator;
+    }
+
+    private static FunctionBlock load(String fclFile) throws IOException {
+        File fcf = new File(fclFile);
+        //We look if the file is in a directory otherwise we look inside the jar
+        FIS fis;
+        if (fcf.exists() && !fcf.isDirectory()) {
+            fis = FIS.load(fclFile, false);
+        } else {
+            InputStream inputStream = FuzzyEvaluator.class.getResourceAsStream(fclFile);
+            if (inputStream == null) {
+                throw new FileNotFoundException("No fuzzy logic file " + fclFile + " in the working directory or the classpath");
+            }
+            try {
+                fis = FIS.load(inputStream, false);
+            } finally {
+                inputStream.close();
+            }
+        }
+        if (fis == null) {
+            throw new IOException("Could not parse the fuzzy logic file " + fclFile);
+        }
+        return fis.getFunctionBlock(null);
+    }
+
+    /**
+     * @param inputs The value of each variable, in the order given to {@link #forFile(String, List)}.
+     * @return The fuzzy value of the output variable "res".
+     */
+    public double evaluate(int... inputs) {
+        if (inputs.length != variables.length) {
+            throw new IllegalArgumentException("Expected " + variables.length + " inputs, got " + inputs.length);
+        }
+        Inputs key = new Inputs(inputs.clone());
+        Double value = values.get(key);
+        if (value == null) {
+            synchronized (functionBlock) {
+                for (int i = 0; i < variables.length; i++) {
+                    functionBlock.setVariable(variables[i], inputs[i]);
+                }
+                functionBlock.evaluate();
+                value = functionBlock.getVariable("res").getValue();
+            }
+            values.putIfAbsent(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * @param row            A candidate, with an integer value for each variable.
+     * @param veryHighValues The value of each variable over which the smell is certain.
+     * @return 1 if every variable is at least its very high value, otherwise the fuzzy value of the candidate.
+     */
+    public Object fuzzyValue(Map<String, ?> row, Map<String, Double> veryHighValues) {
+        int[] inputs = new int[variables.length];
+        boolean veryHigh = true;
+        for (int i = 0; i < variables.length; i++) {
+            inputs[i] = ((Number) row.get(variables[i])).intValue();
+            veryHigh &= inputs[i] >= veryHighValues.get(variables[i]);
+        }
+        if (veryHigh) {
+            return 1;
+        }
+        return evaluate(inputs);
+    }
+
+    /**
+     * @return The number of distinct tuples of inputs evaluated so far.
+     */
+    public int getEvaluations() {
+        return values.size();
+    }
+
+    private static final class Inputs {
+        private final int[] values;
+        private final int hashCode;
+
+        private Inputs(int[] values) {
+            this.values = values;
+            this.hashCode = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Inputs && Arrays.equals(values, ((Inputs) o).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
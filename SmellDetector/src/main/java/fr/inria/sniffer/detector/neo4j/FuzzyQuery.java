@@ -19,18 +19,83 @@
 package fr.inria.sniffer.detector.neo4j;
 
 import org.neo4j.cypher.CypherException;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by Geoffrey Hecht on 17/08/15.
  */
 public abstract class FuzzyQuery extends Query {
     protected String fclFile;
+    private final String fuzzyName;
 
     public FuzzyQuery(QueryEngine queryEngine, String smellName) {
+        this(queryEngine, smellName, smellName);
+    }
+
+    /**
+     * @param fuzzyName Name of the smell in the CSV file of the fuzzy results.
+     */
+    public FuzzyQuery(QueryEngine queryEngine, String smellName, String fuzzyName) {
         super(queryEngine, smellName);
+        this.fuzzyName = fuzzyName;
     }
 
-    public abstract void executeFuzzy(boolean details) throws CypherException, IOException;
+    /**
+     * Generate the query of the candidates to the fuzzy evaluation, returning the metrics of {@link #getVeryHighValues()}.
+     *
+     * @param details The specific query.
+     * @return The query String.
+     */
+    protected abstract String getFuzzyQuery(boolean details);
+
+    /**
+     * @return The very high value of each metric of the fuzzy evaluation, over which the smell is certain.
+     */
+    protected abstract Map<String, Double> getVeryHighValues();
+
+    public String getFuzzyName() {
+        return fuzzyName;
+    }
+
+    /**
+     * Evaluate the candidates of the fuzzy query and write them to the CSV file of the smell.
+     *
+     * @return The number of rows written.
+     */
+    public int executeFuzzy(boolean details) throws CypherException, IOException {
+        try (Transaction ignored = graphDatabaseService.beginTx()) {
+            Result result = graphDatabaseService.execute(restrictToCommits(getFuzzyQuery(details)));
+            return writeFuzzyResult(result.columns(), result);
+        }
+    }
+
+    /**
+     * Evaluate the fuzzy value of the candidates and stream them to the CSV file of the smell.
+     *
+     * @param columns The columns of the candidates, as returned by {@link #getFuzzyQuery(boolean)}.
+     * @param rows    The candidates.
+     * @return The number of rows written.
+     */
+    public int writeFuzzyResult(List<String> columns, Iterator<Map<String, Object>> rows) throws IOException {
+        List<String> fuzzyColumns = new ArrayList<>(columns);
+        fuzzyColumns.add(FuzzyEvaluator.FUZZY_VALUE);
+        Map<String, Double> veryHighValues = getVeryHighValues();
+        FuzzyEvaluator evaluator = FuzzyEvaluator.forFile(fclFile, new ArrayList<>(veryHighValues.keySet()));
+        try (CSVWriter writer = queryEngine.openCSV("_" + fuzzyName + ".csv", fuzzyColumns, isAppending())) {
+            while (rows.hasNext()) {
+                Map<String, Object> row = new HashMap<>(queryEngine.resolveSymbols(rows.next()));
+                row.put(FuzzyEvaluator.FUZZY_VALUE, evaluator.fuzzyValue(row, veryHighValues));
+                writer.writeRow(row);
+            }
+            return writer.getRows();
+        }
+    }
 }
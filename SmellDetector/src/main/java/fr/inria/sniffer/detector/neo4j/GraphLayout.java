@@ -0,0 +1,196 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import fr.inria.sniffer.detector.entities.Entity;
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.entities.PaprikaArgument;
+import fr.inria.sniffer.detector.entities.PaprikaClass;
+import fr.inria.sniffer.detector.entities.PaprikaExternalArgument;
+import fr.inria.sniffer.detector.entities.PaprikaExternalClass;
+import fr.inria.sniffer.detector.entities.PaprikaExternalMethod;
+import fr.inria.sniffer.detector.entities.PaprikaLibrary;
+import fr.inria.sniffer.detector.entities.PaprikaMethod;
+import fr.inria.sniffer.detector.entities.PaprikaVariable;
+import fr.inria.sniffer.detector.metrics.Metric;
+import fr.inria.sniffer.detector.metrics.MetricKey;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Labels and properties of the nodes of an app, shared by the {@link ModelWriter} implementations
+ * so that they all write the same graph.
+ * <p>
+ * The properties of an entity start with its name and app, followed by its own properties and its metrics.
+ * The properties listed in {@link SymbolTable#ENCODED_PROPERTIES} are symbol ids when a {@link SymbolTable} is given.
+ */
+final class GraphLayout {
+    static final Label APP_LABEL = DynamicLabel.label("App");
+    static final Label CLASS_LABEL = DynamicLabel.label("Class");
+    static final Label EXTERNAL_CLASS_LABEL = DynamicLabel.label("ExternalClass");
+    static final Label METHOD_LABEL = DynamicLabel.label("Method");
+    static final Label EXTERNAL_METHOD_LABEL = DynamicLabel.label("ExternalMethod");
+    static final Label VARIABLE_LABEL = DynamicLabel.label("Variable");
+    static final Label ARGUMENT_LABEL = DynamicLabel.label("Argument");
+    static final Label EXTERNAL_ARGUMENT_LABEL = DynamicLabel.label("ExternalArgument");
+    static final Label LIBRARY_LABEL = DynamicLabel.label("Library");
+
+    private final String key;
+    private final String appName;
+    private final SymbolTable symbolTable;
+    private final boolean keyed;
+
+    private GraphLayout(PaprikaApp paprikaApp, SymbolTable symbolTable, boolean keyed) {
+        this.key = paprikaApp.getKey();
+        this.appName = paprikaApp.getName();
+        this.symbolTable = symbolTable;
+        this.keyed = keyed;
+    }
+
+    /**
+     * @param symbolTable The dictionary of the encoded strings, null to write them as they are.
+     * @return The layout of the entities of an app, which hold its key and, without dictionary, its name.
+     */
+    static GraphLayout createGraphLayout(PaprikaApp paprikaApp, SymbolTable symbolTable) {
+        return new GraphLayout(paprikaApp, symbolTable, true);
+    }
+
+    /**
+     * @return The layout of the versions of the entities of an app, shared by its commits, which only hold its name.
+     */
+    static GraphLayout createVersionedGraphLayout(PaprikaApp paprikaApp) {
+        return new GraphLayout(paprikaApp, null, false);
+    }
+
+    Map<String, Object> appProperties(PaprikaApp paprikaApp) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("app_key", key);
+        properties.put("name", appName);
+        properties.put("commit_number", paprikaApp.getCommitNumber());
+        SimpleDateFormat simpleFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss.S");
+        properties.put("date_analysis", simpleFormat.format(new Date()));
+        putMetrics(paprikaApp, properties);
+        return properties;
+    }
+
+    Map<String, Object> classProperties(PaprikaClass paprikaClass) {
+        Map<String, Object> properties = entityProperties(paprikaClass.getName());
+        properties.put("modifier", paprikaClass.getModifier().toString().toLowerCase());
+        putText(properties, "file_path", paprikaClass.getPath());
+        if (paprikaClass.getParentName() != null) {
+            putText(properties, "parent_name", paprikaClass.getParentName());
+        }
+        putMetrics(paprikaClass, properties);
+        return properties;
+    }
+
+    Map<String, Object> externalClassProperties(PaprikaExternalClass paprikaClass) {
+        Map<String, Object> properties = entityProperties(paprikaClass.getName());
+        if (paprikaClass.getParentName() != null) {
+            putText(properties, "parent_name", paprikaClass.getParentName());
+        }
+        putMetrics(paprikaClass, properties);
+        return properties;
+    }
+
+    Map<String, Object> variableProperties(PaprikaVariable paprikaVariable) {
+        Map<String, Object> properties = entityProperties(paprikaVariable.getName());
+        properties.put("modifier", paprikaVariable.getModifier().toString().toLowerCase());
+        putText(properties, "type", paprikaVariable.getType());
+        putMetrics(paprikaVariable, properties);
+        return properties;
+    }
+
+    Map<String, Object> methodProperties(PaprikaMethod paprikaMethod) {
+        Map<String, Object> properties = entityProperties(paprikaMethod.getName());
+        properties.put("modifier", paprikaMethod.getModifier().toString().toLowerCase());
+        putText(properties, "full_name", paprikaMethod.toString());
+        putText(properties, "return_type", paprikaMethod.getReturnType());
+        putMetrics(paprikaMethod, properties);
+        return properties;
+    }
+
+    Map<String, Object> externalMethodProperties(PaprikaExternalMethod paprikaMethod) {
+        Map<String, Object> properties = entityProperties(paprikaMethod.getName());
+        putText(properties, "full_name", paprikaMethod.toString());
+        putText(properties, "return_type", paprikaMethod.getReturnType());
+        putMetrics(paprikaMethod, properties);
+        return properties;
+    }
+
+    Map<String, Object> argumentProperties(PaprikaArgument paprikaArgument) {
+        Map<String, Object> properties = entityProperties(paprikaArgument.getName());
+        properties.put("position", paprikaArgument.getPosition());
+        return properties;
+    }
+
+    Map<String, Object> externalArgumentProperties(PaprikaExternalArgument paprikaExternalArgument) {
+        Map<String, Object> properties = entityProperties(paprikaExternalArgument.getName());
+        properties.put("position", paprikaExternalArgument.getPosition());
+        putMetrics(paprikaExternalArgument, properties);
+        return properties;
+    }
+
+    Map<String, Object> libraryProperties(PaprikaLibrary paprikaLibrary) {
+        return entityProperties(paprikaLibrary.getName());
+    }
+
+    static void setProperties(Node node, Map<String, Object> properties) {
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            node.setProperty(property.getKey(), property.getValue());
+        }
+    }
+
+    private Map<String, Object> entityProperties(String name) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("name", name);
+        if (!keyed) {
+            properties.put("app_name", appName);
+        } else if (symbolTable == null) {
+            properties.put("app_key", key);
+            properties.put("app_name", appName);
+        } else {
+            properties.put("app_key", symbolTable.intern(key));
+        }
+        return properties;
+    }
+
+    /**
+     * Put a property listed in {@link SymbolTable#ENCODED_PROPERTIES}, as a symbol id when the strings are encoded.
+     */
+    private void putText(Map<String, Object> properties, String property, String value) {
+        properties.put(property, symbolTable == null ? value : symbolTable.intern(value));
+    }
+
+    private static void putMetrics(Entity entity, Map<String, Object> properties) {
+        for (MetricKey metricKey : MetricKey.getKeys()) {
+            if (entity.hasMetric(metricKey)) {
+                properties.put(metricKey.getName(), entity.getMetricValue(metricKey));
+            }
+        }
+        for (Metric metric : entity.getOtherMetrics()) {
+            properties.put(metric.getName(), metric.getValue());
+        }
+    }
+}
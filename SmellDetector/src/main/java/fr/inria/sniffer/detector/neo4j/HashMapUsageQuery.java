@@ -40,8 +40,8 @@ public class HashMapUsageQuery extends Query {
 
     @Override
     protected String getQuery(boolean details) {
-        String query = "MATCH (a:App)-[:APP_OWNS_CLASS]->(cl:Class)-[:CLASS_OWNS_METHOD]->(m:Method)-[:CALLS]->(e:ExternalMethod{full_name:'<init>#java.util.HashMap'})  " +
-                "return DISTINCT a.commit_number as commit_number, m.app_key as key, cl.file_path as file_path";
+        String query = "MATCH " + appClass("(cl:Class)") + "-[:CLASS_OWNS_METHOD]->(m:Method)-[:CALLS]->(e:ExternalMethod{full_name:" + text("<init>#java.util.HashMap") + "})  " +
+                presentInApp("cl", "m", "e") + " return DISTINCT a.commit_number as commit_number, a.app_key as key, cl.file_path as file_path";
         if (details) {
             query += ",m.full_name as instance";
         } else {
@@ -18,17 +18,7 @@
 
 package fr.inria.sniffer.detector.neo4j;
 
-import net.sourceforge.jFuzzyLogic.FIS;
-import net.sourceforge.jFuzzyLogic.FunctionBlock;
-import org.neo4j.cypher.CypherException;
-import org.neo4j.graphdb.Result;
-import org.neo4j.graphdb.Transaction;
-
-import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -42,7 +32,7 @@ public class HeavyServiceStartQuery extends FuzzyQuery {
 
 
     private HeavyServiceStartQuery(QueryEngine queryEngine) {
-        super(queryEngine, "HSS_NO_FUZZY");
+        super(queryEngine, "HSS_NO_FUZZY", "HSS");
         fclFile = "/HeavySomething.fcl";
     }
 
@@ -52,7 +42,7 @@ public class HeavyServiceStartQuery extends FuzzyQuery {
 
     @Override
     protected String getQuery(boolean details) {
-        String query = "MATCH (c:Class{is_service:true})-[:CLASS_OWNS_METHOD]->(m:Method{name:'onStartCommand'}) WHERE m.number_of_instructions > " + veryHigh_noi + " AND m.cyclomatic_complexity>" + veryHigh_cc + " return m.app_key as app_key";
+        String query = "MATCH " + appClass("(c:Class{is_service:true})") + "-[:CLASS_OWNS_METHOD]->(m:Method{name:'onStartCommand'}) WHERE m.number_of_instructions > " + veryHigh_noi + " AND m.cyclomatic_complexity>" + veryHigh_cc + presentInApp("c", "m") + " return a.app_key as app_key";
         if (details) {
             query += ",m.full_name as full_name";
         } else {
@@ -61,44 +51,20 @@ public class HeavyServiceStartQuery extends FuzzyQuery {
         return query;
     }
 
-    public void executeFuzzy(boolean details) throws CypherException, IOException {
-        Result result;
-        try (Transaction ignored = graphDatabaseService.beginTx()) {
-            String query = "MATCH (c:Class{is_service:true})-[:CLASS_OWNS_METHOD]->(m:Method{name:'onStartCommand'}) WHERE m.number_of_instructions > " + high_noi + " AND m.cyclomatic_complexity>" + high_cc + " return m.app_key as app_key,m.cyclomatic_complexity as cyclomatic_complexity, m.number_of_instructions as number_of_instructions";
-            if (details) {
-                query += ",m.full_name as full_name";
-            }
-            result = graphDatabaseService.execute(query);
-            List<String> columns = new ArrayList<>(result.columns());
-            columns.add("fuzzy_value");
-            int noi, cc;
-            List<Map> fuzzyResult = new ArrayList<>();
-            File fcf = new File(fclFile);
-            //We look if the file is in a directory otherwise we look inside the jar
-            FIS fis;
-            if (fcf.exists() && !fcf.isDirectory()) {
-                fis = FIS.load(fclFile, false);
-            } else {
-                fis = FIS.load(getClass().getResourceAsStream(fclFile), false);
-            }
-            FunctionBlock fb = fis.getFunctionBlock(null);
-            while (result.hasNext()) {
-                HashMap res = new HashMap(result.next());
-                cc = (int) res.get("cyclomatic_complexity");
-                noi = (int) res.get("number_of_instructions");
-                if (cc >= veryHigh_cc && noi >= veryHigh_noi) {
-                    res.put("fuzzy_value", 1);
-                } else {
-                    fb.setVariable("cyclomatic_complexity", cc);
-                    fb.setVariable("number_of_instructions", noi);
-                    fb.evaluate();
-                    res.put("fuzzy_value", fb.getVariable("res").getValue());
-                }
-                fuzzyResult.add(res);
-            }
-            queryEngine.resultToCSV(fuzzyResult, columns, "_HSS.csv");
+    @Override
+    protected String getFuzzyQuery(boolean details) {
+        String query = "MATCH " + appClass("(c:Class{is_service:true})") + "-[:CLASS_OWNS_METHOD]->(m:Method{name:'onStartCommand'}) WHERE m.number_of_instructions > " + high_noi + " AND m.cyclomatic_complexity>" + high_cc + presentInApp("c", "m") + " return a.app_key as app_key,m.cyclomatic_complexity as cyclomatic_complexity, m.number_of_instructions as number_of_instructions";
+        if (details) {
+            query += ",m.full_name as full_name";
         }
+        return query;
     }
 
-
+    @Override
+    protected Map<String, Double> getVeryHighValues() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        values.put("cyclomatic_complexity", veryHigh_cc);
+        values.put("number_of_instructions", veryHigh_noi);
+        return values;
+    }
 }
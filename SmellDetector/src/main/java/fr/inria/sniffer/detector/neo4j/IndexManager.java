@@ -18,63 +18,244 @@
 
 package fr.inria.sniffer.detector.neo4j;
 
+import org.neo4j.graphdb.ConstraintViolationException;
 import org.neo4j.graphdb.DynamicLabel;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.schema.ConstraintDefinition;
+import org.neo4j.graphdb.schema.IndexCreator;
+import org.neo4j.graphdb.schema.IndexDefinition;
 import org.neo4j.graphdb.schema.Schema;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Create the schema indexes and constraints used by the lookups and deletions on the Paprika graph.
+ * The creation is idempotent: only the missing indexes are created.
+ *
  * Created by Geoffrey Hecht on 12/01/15.
  */
 public class IndexManager {
+    private static final Logger logger = LoggerFactory.getLogger(IndexManager.class.getName());
+
+    /**
+     * Columns of the index status report.
+     */
+    public static final List<String> STATUS_COLUMNS = Arrays.asList("label", "properties", "type", "state", "progress", "failure");
+
+    /**
+     * Label followed by the properties of each schema index, composite indexes are only used
+     * by lookups on all their properties.
+     */
+    private static final String[][] INDEXES = {
+            {"App", "commit_number"},
+            {"Class", "app_key"},
+            {"Class", "app_key", "name"},
+            {"Class", "app_key", "file_path"},
+            {"Method", "app_key"},
+            {"Method", "app_key", "full_name"},
+            {"Method", "is_static"},
+            {"Variable", "app_key"},
+            {"Argument", "app_key"},
+            {"Library", "app_key"},
+            {"ExternalClass", "app_key"},
+            {"ExternalMethod", "app_key"},
+            {"ExternalArgument", "app_key"}
+    };
+
+    /**
+     * Label and property identifying a node, backed by a uniqueness constraint when the database allows it.
+     */
+    private static final String[][] UNIQUE_PROPERTIES = {
+            {"App", "app_key"}
+    };
+
+    private static final long ONLINE_TIMEOUT_MINUTES = 10;
+
     private GraphDatabaseService graphDatabaseService;
 
     public IndexManager(GraphDatabaseService graphDatabaseService) {
         this.graphDatabaseService = graphDatabaseService;
     }
 
+    /**
+     * Create the missing indexes and constraints, then wait for them to be online.
+     */
     public void createIndex() {
+        for (String[] unique : UNIQUE_PROPERTIES) {
+            createConstraint(unique[0], unique[1]);
+        }
         try (Transaction tx = graphDatabaseService.beginTx()) {
             Schema schema = graphDatabaseService.schema();
-            if (schema.getIndexes(DynamicLabel.label("Variable")).iterator().hasNext()) {
-                schema.indexFor(DynamicLabel.label("Variable"))
-                        .on("app_key")
-                        .create();
+            for (String[] index : INDEXES) {
+                String[] properties = Arrays.copyOfRange(index, 1, index.length);
+                if (findIndex(schema, index[0], properties) == null) {
+                    logger.debug("Creating index on :" + index[0] + Arrays.toString(properties));
+                    createIndex(schema, index[0], properties);
+                }
             }
-            if (schema.getIndexes(DynamicLabel.label("Method")).iterator().hasNext()) {
-                schema.indexFor(DynamicLabel.label("Method"))
-                        .on("app_key")
-                        .create();
-                schema.indexFor(DynamicLabel.label("Method"))
-                        .on("is_static")
-                        .create();
+            tx.success();
+        }
+        try (Transaction tx = graphDatabaseService.beginTx()) {
+            org.neo4j.graphdb.index.IndexManager index = graphDatabaseService.index();
+            if (!index.existsForRelationships("calls")) {
+                index.forRelationships("calls");
             }
-            if (schema.getIndexes(DynamicLabel.label("Argument")).iterator().hasNext()) {
-                schema.indexFor(DynamicLabel.label("Argument"))
-                        .on("app_key")
-                        .create();
-                schema.indexFor(DynamicLabel.label("Argument"))
-                        .on("app_key")
-                        .create();
+            tx.success();
+        }
+        awaitIndexesOnline();
+    }
+
+    /**
+     * Create a uniqueness constraint, replacing the plain index on the same property.
+     * The property is only indexed if the database already holds duplicated values.
+     */
+    private void createConstraint(String label, String property) {
+        try (Transaction tx = graphDatabaseService.beginTx()) {
+            for (ConstraintDefinition constraint : graphDatabaseService.schema().getConstraints(DynamicLabel.label(label))) {
+                if (toList(constraint.getPropertyKeys()).equals(Arrays.asList(property))) {
+                    return;
+                }
             }
-            if (schema.getIndexes(DynamicLabel.label("ExternalClass")).iterator().hasNext()) {
-                schema.indexFor(DynamicLabel.label("ExternalClass"))
-                        .on("app_key")
-                        .create();
+            tx.success();
+        }
+        long duplicates;
+        try (Transaction tx = graphDatabaseService.beginTx()) {
+            Result result = graphDatabaseService.execute("MATCH (n:" + label + ") WITH n." + property + " AS value, count(*) AS nodes " +
+                    "WHERE nodes > 1 RETURN count(value) AS duplicates");
+            duplicates = (Long) result.next().get("duplicates");
+            tx.success();
+        }
+        try (Transaction tx = graphDatabaseService.beginTx()) {
+            Schema schema = graphDatabaseService.schema();
+            IndexDefinition index = findIndex(schema, label, property);
+            if (duplicates > 0) {
+                logger.warn(duplicates + " values of " + label + "." + property + " are duplicated, the property is indexed without uniqueness constraint");
+                if (index == null) {
+                    createIndex(schema, label, property);
+                }
+            } else if (index != null) {
+                index.drop();
             }
-            if (schema.getIndexes(DynamicLabel.label("ExternalMethod")).iterator().hasNext()) {
-                schema.indexFor(DynamicLabel.label("ExternalMethod"))
-                        .on("app_key")
-                        .create();
+            tx.success();
+        }
+        if (duplicates == 0) {
+            try (Transaction tx = graphDatabaseService.beginTx()) {
+                logger.debug("Creating uniqueness constraint on :" + label + "(" + property + ")");
+                graphDatabaseService.schema().constraintFor(DynamicLabel.label(label)).assertPropertyIsUnique(property).create();
+                tx.success();
+            }
+        }
+    }
+
+    /**
+     * Wait for the indexes to be populated, logging those which failed.
+     */
+    public void awaitIndexesOnline() {
+        try (Transaction tx = graphDatabaseService.beginTx()) {
+            Schema schema = graphDatabaseService.schema();
+            try {
+                schema.awaitIndexesOnline(ONLINE_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            } catch (IllegalStateException e) {
+                for (IndexDefinition index : schema.getIndexes()) {
+                    if (schema.getIndexState(index) == Schema.IndexState.FAILED) {
+                        logger.error("Index on :" + index.getLabel() + index.getPropertyKeys() + " failed: "
+                                + schema.getIndexFailure(index));
+                    }
+                }
+                logger.warn(e.getMessage());
             }
             tx.success();
         }
+    }
+
+    /**
+     * One row per index of the database, with the columns of {@link #STATUS_COLUMNS}.
+     */
+    public List<Map> getIndexStatus() {
+        List<Map> rows = new ArrayList<>();
         try (Transaction tx = graphDatabaseService.beginTx()) {
-            org.neo4j.graphdb.index.IndexManager index = graphDatabaseService.index();
-            if (!index.existsForRelationships("calls")) {
-                index.forRelationships("calls");
+            Schema schema = graphDatabaseService.schema();
+            for (IndexDefinition index : schema.getIndexes()) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                Schema.IndexState state = schema.getIndexState(index);
+                row.put("label", index.getLabel().name());
+                row.put("properties", join(index.getPropertyKeys()));
+                row.put("type", index.isConstraintIndex() ? "UNIQUE" : "INDEX");
+                row.put("state", state);
+                row.put("progress", schema.getIndexPopulationProgress(index).getCompletedPercentage());
+                row.put("failure", state == Schema.IndexState.FAILED ? schema.getIndexFailure(index) : "");
+                rows.add(row);
             }
             tx.success();
         }
+        return rows;
+    }
+
+    /**
+     * Declare the schema indexes to a batch inserter, they are built when it shuts down.
+     * The indexes already present in the store are kept, and the unique properties are only indexed
+     * since a duplicate would leave the store unusable, their constraint is created on the next transactional write.
+     */
+    public static void createDeferredIndexes(BatchInserter inserter) {
+        List<String[]> indexes = new ArrayList<>(Arrays.asList(UNIQUE_PROPERTIES));
+        indexes.addAll(Arrays.asList(INDEXES));
+        for (String[] index : indexes) {
+            IndexCreator creator = inserter.createDeferredSchemaIndex(DynamicLabel.label(index[0]));
+            for (int i = 1; i < index.length; i++) {
+                creator = creator.on(index[i]);
+            }
+            try {
+                creator.create();
+            } catch (ConstraintViolationException e) {
+                // Already indexed
+            }
+        }
+    }
+
+    private static IndexDefinition findIndex(Schema schema, String label, String... properties) {
+        List<String> keys = Arrays.asList(properties);
+        for (IndexDefinition index : schema.getIndexes(DynamicLabel.label(label))) {
+            if (toList(index.getPropertyKeys()).equals(keys)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    private static void createIndex(Schema schema, String label, String... properties) {
+        IndexCreator creator = schema.indexFor(DynamicLabel.label(label));
+        for (String property : properties) {
+            creator = creator.on(property);
+        }
+        creator.create();
+    }
+
+    private static List<String> toList(Iterable<String> keys) {
+        List<String> list = new ArrayList<>();
+        for (String key : keys) {
+            list.add(key);
+        }
+        return list;
+    }
+
+    private static String join(Iterable<String> keys) {
+        StringBuilder builder = new StringBuilder();
+        for (String key : keys) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(key);
+        }
+        return builder.toString();
     }
 }
@@ -30,8 +30,13 @@ public class IsClassExistingQuery extends Query {
 
     @Override
     protected String getQuery(boolean details) {
+        if (queryEngine.isVersioned()) {
+            return "MATCH (a:App {app_key: '" + sha1 + "'}) MATCH (n:Class) WHERE " +
+                    "n.name ='" + classIdentifier + "'" + presentAt("n") + " " +
+                    "RETURN n";
+        }
         return "MATCH (n:Class) WHERE " +
-                "n.app_key='" + sha1 + "' AND n.name ='" + classIdentifier + "' " +
+                "n.app_key=" + text(sha1) + " AND n.name ='" + classIdentifier + "' " +
                 "RETURN n";
     }
 }
@@ -30,8 +30,13 @@ public class IsMethodExistingQuery extends Query {
 
     @Override
     protected String getQuery(boolean details) {
+        if (queryEngine.isVersioned()) {
+            return "MATCH (a:App {app_key: '" + sha1 + "'}) MATCH (n:Method) WHERE " +
+                    "n.full_name =" + text(methodIdentifier) + presentAt("n") + " " +
+                    "RETURN n";
+        }
         return "MATCH (n:Method) WHERE " +
-                "n.app_key='" + sha1 + "' AND n.full_name ='" + methodIdentifier + "' " +
+                "n.app_key=" + text(sha1) + " AND n.full_name =" + text(methodIdentifier) + " " +
                 "RETURN n";
     }
 }
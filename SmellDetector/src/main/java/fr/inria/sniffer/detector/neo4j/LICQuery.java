@@ -42,8 +42,8 @@ public class LICQuery extends Query {
 
     @Override
     protected String getQuery(boolean details) {
-        String query = "MATCH (a:App)-[:APP_OWNS_CLASS]->(cl:Class) WHERE exists(cl.is_inner_class) AND NOT exists(cl.is_static) " +
-                "RETURN DISTINCT a.commit_number as commit_number, cl.app_key as key, cl.file_path as file_path";
+        String query = "MATCH " + appClass("(cl:Class)") + " WHERE exists(cl.is_inner_class) AND NOT exists(cl.is_static) " +
+                presentInApp("cl") + " RETURN DISTINCT a.commit_number as commit_number, a.app_key as key, cl.file_path as file_path";
         if (details) {
             query += ",cl.name as instance";
         } else {
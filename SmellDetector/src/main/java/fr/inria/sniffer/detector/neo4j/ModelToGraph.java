@@ -27,8 +27,6 @@ import fr.inria.sniffer.detector.entities.PaprikaExternalMethod;
 import fr.inria.sniffer.detector.entities.PaprikaLibrary;
 import fr.inria.sniffer.detector.entities.PaprikaMethod;
 import fr.inria.sniffer.detector.entities.PaprikaVariable;
-import fr.inria.sniffer.detector.metrics.Metric;
-import org.neo4j.graphdb.DynamicLabel;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
@@ -36,35 +34,46 @@ import org.neo4j.graphdb.Transaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Created by Geoffrey Hecht on 05/06/14.
+ * <p>
+ * The model of an app is written in a single transaction, or optionally in transactions of a bounded number
+ * of nodes and relationships, so that the transaction state does not grow with the size of the app.
+ * Nodes are referred to by their ids between transactions, and the nodes already committed are deleted
+ * if the app cannot be written completely.
+ * <p>
+ * With {@link #setDictionaryEncoding(boolean)}, the repeated strings are written as ids of a {@link SymbolTable}.
  */
-public class ModelToGraph {
+public class ModelToGraph implements ModelWriter {
     private static final Logger logger = LoggerFactory.getLogger(ModelToGraph.class.getName());
+    /**
+     * Number of nodes and relationships per transaction for the deletions, and the suggested chunk for large apps.
+     */
+    public static final int DEFAULT_TRANSACTION_SIZE = 10000;
 
     private GraphDatabaseService graphDatabaseService;
     private DatabaseManager databaseManager;
-    private static final Label appLabel = DynamicLabel.label("App");
-    private static final Label classLabel = DynamicLabel.label("Class");
-    private static final Label externalClassLabel = DynamicLabel.label("ExternalClass");
-    private static final Label methodLabel = DynamicLabel.label("Method");
-    private static final Label externalMethodLabel = DynamicLabel.label("ExternalMethod");
-    private static final Label variableLabel = DynamicLabel.label("Variable");
-    private static final Label argumentLabel = DynamicLabel.label("Argument");
-    private static final Label externalArgumentLabel = DynamicLabel.label("ExternalArgument");
-    private static final Label libraryLabel = DynamicLabel.label("Library");
-
-    private Map<Entity, Node> methodNodeMap;
-    private Map<PaprikaClass, Node> classNodeMap;
-    private Map<PaprikaVariable, Node> variableNodeMap;
+
+    private Map<Entity, Long> methodNodeMap;
+    private Map<PaprikaClass, Long> classNodeMap;
+    private Map<PaprikaVariable, Long> variableNodeMap;
+
+    private int transactionSize = 0;
+    private Transaction transaction;
+    private int operations;
+    private final List<Long> createdNodes = new ArrayList<>();
+    private int committedNodes;
 
     private String key;
-    private String appName;
+    private GraphLayout layout;
+    private SymbolTable symbolTable;
+    private boolean encodingChecked;
 
     public ModelToGraph(String DatabasePath) {
         this.databaseManager = new DatabaseManager(DatabasePath);
@@ -77,181 +86,249 @@ public class ModelToGraph {
         indexManager.createIndex();
     }
 
+    @Override
+    public void writeApp(PaprikaApp paprikaApp) {
+        insertApp(paprikaApp);
+    }
+
+    /**
+     * @param transactionSize Number of nodes and relationships written per transaction,
+     *                        0 to write each app in a single transaction.
+     */
+    public void setTransactionSize(int transactionSize) {
+        this.transactionSize = Math.max(0, transactionSize);
+    }
+
+    /**
+     * @param dictionaryEncoding If true, the properties listed in {@link SymbolTable#ENCODED_PROPERTIES}
+     *                           are written as symbol ids and the entities do not repeat the app name.
+     * @throws IllegalStateException If the database is written with the other encoding.
+     */
+    public void setDictionaryEncoding(boolean dictionaryEncoding) {
+        SymbolTable.checkEncoding(graphDatabaseService, dictionaryEncoding);
+        encodingChecked = true;
+        symbolTable = dictionaryEncoding ? SymbolTable.load(graphDatabaseService) : null;
+    }
+
+    /**
+     * Write an app, committing every {@link #setTransactionSize(int)} nodes and relationships.
+     * If the insertion fails, the nodes of the transactions already committed are deleted,
+     * so that the app can be written again.
+     *
+     * @throws IllegalStateException If the database is written with the other encoding.
+     */
     public Node insertApp(PaprikaApp paprikaApp) {
+        if (!encodingChecked) {
+            SymbolTable.checkEncoding(graphDatabaseService, symbolTable != null);
+            encodingChecked = true;
+        }
+        // The same instance may be used for several apps in a row
+        methodNodeMap.clear();
+        classNodeMap.clear();
+        variableNodeMap.clear();
         this.key = paprikaApp.getKey();
-        this.appName = paprikaApp.getName();
+        layout = GraphLayout.createGraphLayout(paprikaApp, symbolTable);
         Node appNode;
-        try (Transaction tx = graphDatabaseService.beginTx()) {
-            appNode = graphDatabaseService.createNode(appLabel);
-            appNode.setProperty("app_key", key);
-            appNode.setProperty("name", appName);
-            //appNode.setProperty("version", paprikaApp.getVersion());
-            appNode.setProperty("commit_number", paprikaApp.getCommitNumber());
-            //appNode.setProperty("commit_status", paprikaApp.getStatus());
-            //appNode.setProperty("sdk_version", paprikaApp.getSdkVersion());
-            //appNode.setProperty("analyzed_module", paprikaApp.getModule());
-            Date date = new Date();
-            SimpleDateFormat simpleFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss.S");
-            appNode.setProperty("date_analysis", simpleFormat.format(date));
-            //appNode.setProperty("path", paprikaApp.getPath());
+        transaction = graphDatabaseService.beginTx();
+        operations = 0;
+        createdNodes.clear();
+        committedNodes = 0;
+        boolean written = false;
+        try {
+            appNode = createNode(GraphLayout.APP_LABEL);
+            GraphLayout.setProperties(appNode, layout.appProperties(paprikaApp));
 
             Node classNode;
             for (PaprikaClass paprikaClass : paprikaApp.getPaprikaClasses()) {
                 classNode = insertClass(paprikaClass);
-                appNode.createRelationshipTo(classNode, RelationTypes.APP_OWNS_CLASS);
+                createRelationship(appNode, classNode, RelationTypes.APP_OWNS_CLASS);
             }
             for (PaprikaExternalClass paprikaExternalClass : paprikaApp.getPaprikaExternalClasses()) {
                 insertExternalClass(paprikaExternalClass);
             }
-            for (Metric metric : paprikaApp.getMetrics()) {
-                insertMetric(metric, appNode);
-            }
-
             for (PaprikaLibrary paprikaLibrary : paprikaApp.getPaprikaLibraries()) {
-                appNode.createRelationshipTo(insertLibrary(paprikaLibrary), RelationTypes.APP_USES_LIBRARY);
+                createRelationship(appNode, insertLibrary(paprikaLibrary), RelationTypes.APP_USES_LIBRARY);
             }
-            tx.success();
-        }
-        try (Transaction tx = graphDatabaseService.beginTx()) {
             createHierarchy(paprikaApp);
             createCallGraph(paprikaApp);
-            tx.success();
+            commit();
+            closeTransaction();
+            written = true;
+        } finally {
+            if (transaction != null) {
+                transaction.close();
+                transaction = null;
+            }
+            if (symbolTable != null) {
+                symbolTable.discardPending();
+            }
+            if (!written) {
+                deleteCommittedNodes();
+            }
+            createdNodes.clear();
         }
         return appNode;
     }
 
-    private void insertMetric(Metric metric, Node node) {
-        node.setProperty(metric.getName(), metric.getValue());
+    /**
+     * Delete the nodes committed before the failure of an insertion, in transactions of bounded size.
+     * The symbols are kept, they may be used by other apps.
+     */
+    private void deleteCommittedNodes() {
+        if (committedNodes == 0) {
+            return;
+        }
+        try {
+            AppDeleter appDeleter = new AppDeleter(graphDatabaseService, symbolTable);
+            appDeleter.setTransactionSize(DEFAULT_TRANSACTION_SIZE);
+            appDeleter.deleteNodes(new LinkedHashSet<>(createdNodes.subList(0, committedNodes)));
+            logger.info("Partially written app " + key + " deleted: " + committedNodes + " nodes");
+        } catch (RuntimeException e) {
+            logger.error("Could not delete the partially written app " + key + ", delete it before writing it again", e);
+        }
     }
 
+    /**
+     * Count a node or a relationship about to be written, committing the current transaction first if it is full.
+     * The nodes created before can still be used, the handles only hold their ids.
+     */
+    private void countOperation() {
+        if (transactionSize > 0 && ++operations > transactionSize) {
+            commit();
+            closeTransaction();
+            committedNodes = createdNodes.size();
+            transaction = graphDatabaseService.beginTx();
+            operations = 1;
+        }
+    }
 
-    public Node insertClass(PaprikaClass paprikaClass) {
-        Node classNode = graphDatabaseService.createNode(classLabel);
-        classNodeMap.put(paprikaClass, classNode);
-        classNode.setProperty("app_key", key);
-        classNode.setProperty("name", paprikaClass.getName());
-        classNode.setProperty("modifier", paprikaClass.getModifier().toString().toLowerCase());
-        classNode.setProperty("file_path", paprikaClass.getPath());
-        classNode.setProperty("app_name", appName);
-        if (paprikaClass.getParentName() != null) {
-            classNode.setProperty("parent_name", paprikaClass.getParentName());
+    /**
+     * Close the current transaction, which commits it if it was marked as successful.
+     * The transaction is forgotten first, so that it is not closed again if its commit fails,
+     * and its symbols are only marked as stored once it is committed.
+     */
+    private void closeTransaction() {
+        Transaction closed = transaction;
+        transaction = null;
+        closed.close();
+        if (symbolTable != null) {
+            symbolTable.written();
+        }
+    }
+
+    /**
+     * Mark the current transaction as successful, with the symbols used by its nodes.
+     */
+    private void commit() {
+        if (symbolTable != null) {
+            for (Map<String, Object> properties : symbolTable.pending()) {
+                Node symbolNode = graphDatabaseService.createNode(SymbolTable.SYMBOL_LABEL);
+                for (Map.Entry<String, Object> property : properties.entrySet()) {
+                    symbolNode.setProperty(property.getKey(), property.getValue());
+                }
+            }
+        }
+        transaction.success();
+    }
+
+    private Node createNode(Label label) {
+        countOperation();
+        Node node = graphDatabaseService.createNode(label);
+        if (transactionSize > 0) {
+            createdNodes.add(node.getId());
         }
+        return node;
+    }
+
+    private void createRelationship(Node from, Node to, RelationTypes type) {
+        countOperation();
+        from.createRelationshipTo(to, type);
+    }
+
+    private Node getNode(long id) {
+        return graphDatabaseService.getNodeById(id);
+    }
+
+    @Override
+    public void shutDown() {
+        databaseManager.shutDown();
+    }
+
+    public Node insertClass(PaprikaClass paprikaClass) {
+        Node classNode = createNode(GraphLayout.CLASS_LABEL);
+        classNodeMap.put(paprikaClass, classNode.getId());
+        GraphLayout.setProperties(classNode, layout.classProperties(paprikaClass));
         for (PaprikaVariable paprikaVariable : paprikaClass.getPaprikaVariables()) {
-            classNode.createRelationshipTo(insertVariable(paprikaVariable), RelationTypes.CLASS_OWNS_VARIABLE);
+            createRelationship(classNode, insertVariable(paprikaVariable), RelationTypes.CLASS_OWNS_VARIABLE);
 
         }
         for (PaprikaMethod paprikaMethod : paprikaClass.getPaprikaMethods()) {
-            classNode.createRelationshipTo(insertMethod(paprikaMethod), RelationTypes.CLASS_OWNS_METHOD);
-        }
-        for (Metric metric : paprikaClass.getMetrics()) {
-            insertMetric(metric, classNode);
+            createRelationship(classNode, insertMethod(paprikaMethod), RelationTypes.CLASS_OWNS_METHOD);
         }
         return classNode;
     }
 
     public Node insertLibrary(PaprikaLibrary paprikaLibrary) {
-        Node libraryNode = graphDatabaseService.createNode(libraryLabel);
-        libraryNode.setProperty("app_key", key);
-        libraryNode.setProperty("name", paprikaLibrary.getName());
-        libraryNode.setProperty("app_name", appName);
+        Node libraryNode = createNode(GraphLayout.LIBRARY_LABEL);
+        GraphLayout.setProperties(libraryNode, layout.libraryProperties(paprikaLibrary));
         return libraryNode;
     }
 
     public Node insertExternalClass(PaprikaExternalClass paprikaClass) {
-        Node classNode = graphDatabaseService.createNode(externalClassLabel);
-        classNode.setProperty("app_key", key);
-        classNode.setProperty("name", paprikaClass.getName());
-        classNode.setProperty("app_name", appName);
-        if (paprikaClass.getParentName() != null) {
-            classNode.setProperty("parent_name", paprikaClass.getParentName());
-        }
+        Node classNode = createNode(GraphLayout.EXTERNAL_CLASS_LABEL);
+        GraphLayout.setProperties(classNode, layout.externalClassProperties(paprikaClass));
         for (PaprikaExternalMethod paprikaExternalMethod : paprikaClass.getPaprikaExternalMethods()) {
-            classNode.createRelationshipTo(insertExternalMethod(paprikaExternalMethod), RelationTypes.CLASS_OWNS_METHOD);
-        }
-        for (Metric metric : paprikaClass.getMetrics()) {
-            insertMetric(metric, classNode);
+            createRelationship(classNode, insertExternalMethod(paprikaExternalMethod), RelationTypes.CLASS_OWNS_METHOD);
         }
         return classNode;
     }
 
     public Node insertVariable(PaprikaVariable paprikaVariable) {
-        Node variableNode = graphDatabaseService.createNode(variableLabel);
-        variableNodeMap.put(paprikaVariable, variableNode);
-        variableNode.setProperty("app_key", key);
-        variableNode.setProperty("name", paprikaVariable.getName());
-        variableNode.setProperty("modifier", paprikaVariable.getModifier().toString().toLowerCase());
-        variableNode.setProperty("type", paprikaVariable.getType());
-        variableNode.setProperty("app_name", appName);
-        for (Metric metric : paprikaVariable.getMetrics()) {
-            insertMetric(metric, variableNode);
-        }
+        Node variableNode = createNode(GraphLayout.VARIABLE_LABEL);
+        variableNodeMap.put(paprikaVariable, variableNode.getId());
+        GraphLayout.setProperties(variableNode, layout.variableProperties(paprikaVariable));
         return variableNode;
     }
 
     public Node insertMethod(PaprikaMethod paprikaMethod) {
-        Node methodNode = graphDatabaseService.createNode(methodLabel);
-        methodNodeMap.put(paprikaMethod, methodNode);
-        methodNode.setProperty("app_key", key);
-        methodNode.setProperty("name", paprikaMethod.getName());
-        methodNode.setProperty("modifier", paprikaMethod.getModifier().toString().toLowerCase());
-        methodNode.setProperty("full_name", paprikaMethod.toString());
-        methodNode.setProperty("app_name", appName);
-        methodNode.setProperty("return_type", paprikaMethod.getReturnType());
-
-        for (Metric metric : paprikaMethod.getMetrics()) {
-            insertMetric(metric, methodNode);
-        }
-        Node variableNode;
+        Node methodNode = createNode(GraphLayout.METHOD_LABEL);
+        methodNodeMap.put(paprikaMethod, methodNode.getId());
+        GraphLayout.setProperties(methodNode, layout.methodProperties(paprikaMethod));
+        Long variableNode;
         for (PaprikaVariable paprikaVariable : paprikaMethod.getUsedVariables()) {
             variableNode = variableNodeMap.get(paprikaVariable);
             if (variableNode != null) {
-                methodNode.createRelationshipTo(variableNode, RelationTypes.USES);
+                createRelationship(methodNode, getNode(variableNode), RelationTypes.USES);
             } else {
                 logger.warn("problem");
             }
 
         }
         for (PaprikaArgument arg : paprikaMethod.getArguments()) {
-            methodNode.createRelationshipTo(insertArgument(arg), RelationTypes.METHOD_OWNS_ARGUMENT);
+            createRelationship(methodNode, insertArgument(arg), RelationTypes.METHOD_OWNS_ARGUMENT);
         }
         return methodNode;
     }
 
     public Node insertExternalMethod(PaprikaExternalMethod paprikaMethod) {
-        Node methodNode = graphDatabaseService.createNode(externalMethodLabel);
-        methodNodeMap.put(paprikaMethod, methodNode);
-        methodNode.setProperty("app_key", key);
-        methodNode.setProperty("name", paprikaMethod.getName());
-        methodNode.setProperty("full_name", paprikaMethod.toString());
-        methodNode.setProperty("return_type", paprikaMethod.getReturnType());
-        methodNode.setProperty("app_name", appName);
-        for (Metric metric : paprikaMethod.getMetrics()) {
-            insertMetric(metric, methodNode);
-        }
+        Node methodNode = createNode(GraphLayout.EXTERNAL_METHOD_LABEL);
+        methodNodeMap.put(paprikaMethod, methodNode.getId());
+        GraphLayout.setProperties(methodNode, layout.externalMethodProperties(paprikaMethod));
         for (PaprikaExternalArgument arg : paprikaMethod.getPaprikaExternalArguments()) {
-            methodNode.createRelationshipTo(insertExternalArgument(arg), RelationTypes.METHOD_OWNS_ARGUMENT);
+            createRelationship(methodNode, insertExternalArgument(arg), RelationTypes.METHOD_OWNS_ARGUMENT);
         }
         return methodNode;
     }
 
     public Node insertArgument(PaprikaArgument paprikaArgument) {
-        Node argNode = graphDatabaseService.createNode(argumentLabel);
-        argNode.setProperty("app_key", key);
-        argNode.setProperty("name", paprikaArgument.getName());
-        argNode.setProperty("position", paprikaArgument.getPosition());
-        argNode.setProperty("app_name", appName);
+        Node argNode = createNode(GraphLayout.ARGUMENT_LABEL);
+        GraphLayout.setProperties(argNode, layout.argumentProperties(paprikaArgument));
         return argNode;
     }
 
     public Node insertExternalArgument(PaprikaExternalArgument paprikaExternalArgument) {
-        Node argNode = graphDatabaseService.createNode(externalArgumentLabel);
-        argNode.setProperty("app_key", key);
-        argNode.setProperty("name", paprikaExternalArgument.getName());
-        argNode.setProperty("position", paprikaExternalArgument.getPosition());
-        argNode.setProperty("app_name", appName);
-        for (Metric metric : paprikaExternalArgument.getMetrics()) {
-            insertMetric(metric, argNode);
-        }
+        Node argNode = createNode(GraphLayout.EXTERNAL_ARGUMENT_LABEL);
+        GraphLayout.setProperties(argNode, layout.externalArgumentProperties(paprikaExternalArgument));
         return argNode;
     }
 
@@ -259,10 +336,10 @@ public class ModelToGraph {
         for (PaprikaClass paprikaClass : paprikaApp.getPaprikaClasses()) {
             PaprikaClass parent = paprikaClass.getParent();
             if (parent != null) {
-                classNodeMap.get(paprikaClass).createRelationshipTo(classNodeMap.get(parent), RelationTypes.EXTENDS);
+                createRelationship(getNode(classNodeMap.get(paprikaClass)), getNode(classNodeMap.get(parent)), RelationTypes.EXTENDS);
             }
             for (PaprikaClass pInterface : paprikaClass.getInterfaces()) {
-                classNodeMap.get(paprikaClass).createRelationshipTo(classNodeMap.get(pInterface), RelationTypes.IMPLEMENTS);
+                createRelationship(getNode(classNodeMap.get(paprikaClass)), getNode(classNodeMap.get(pInterface)), RelationTypes.IMPLEMENTS);
             }
         }
     }
@@ -271,7 +348,7 @@ public class ModelToGraph {
         for (PaprikaClass paprikaClass : paprikaApp.getPaprikaClasses()) {
             for (PaprikaMethod paprikaMethod : paprikaClass.getPaprikaMethods()) {
                 for (Entity calledMethod : paprikaMethod.getCalledMethods()) {
-                    methodNodeMap.get(paprikaMethod).createRelationshipTo(methodNodeMap.get(calledMethod), RelationTypes.CALLS);
+                    createRelationship(getNode(methodNodeMap.get(paprikaMethod)), getNode(methodNodeMap.get(calledMethod)), RelationTypes.CALLS);
                 }
             }
         }
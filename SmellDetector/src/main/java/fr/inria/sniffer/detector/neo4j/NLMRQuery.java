@@ -37,11 +37,11 @@ public class NLMRQuery extends Query {
 
     @Override
     protected String getQuery(boolean details) {
-        String query = "MATCH (a:App)-[:APP_OWNS_CLASS]->(cl:Class)" +
+        String query = "MATCH " + appClass("(cl:Class)") +
                 " WHERE exists(cl.is_activity) " +
                 "AND NOT (cl:Class)-[:CLASS_OWNS_METHOD]->(:Method { name: 'onLowMemory' }) " +
                 "AND NOT (cl)-[:EXTENDS]->(:Class) " +
-                "RETURN DISTINCT a.commit_number as commit_number, cl.app_key as key, cl.file_path as file_path";
+                presentInApp("cl") + " RETURN DISTINCT a.commit_number as commit_number, a.app_key as key, cl.file_path as file_path";
         if (details) {
             query += ",cl.name as instance";
         } else {
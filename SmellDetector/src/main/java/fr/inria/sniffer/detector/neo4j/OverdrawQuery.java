@@ -40,9 +40,9 @@ public class OverdrawQuery extends Query {
 
     @Override
     protected String getQuery(boolean details) {
-        String query = "MATCH (a:App)-[:APP_OWNS_CLASS]->(cl:Class{is_view:true})-[:CLASS_OWNS_METHOD]->(n:Method{name:\"onDraw\"})-[:METHOD_OWNS_ARGUMENT]->(:Argument{position:0,name:\"android.graphics.Canvas\"}) \n" +
-                "WHERE NOT (n)-[:CALLS]->(:ExternalMethod{full_name:\"clipRect#android.graphics.Canvas\"}) AND NOT (n)-[:CALLS]->(:ExternalMethod{full_name:\"quickReject#android.graphics.Canvas\"})\n" +
-                "  RETURN DISTINCT a.commit_number as commit_number, n.app_key as key, cl.file_path as file_path";
+        String query = "MATCH " + appClass("(cl:Class{is_view:true})") + "-[:CLASS_OWNS_METHOD]->(n:Method{name:\"onDraw\"})-[:METHOD_OWNS_ARGUMENT]->(:Argument{position:0,name:\"android.graphics.Canvas\"}) \n" +
+                "WHERE NOT (n)-[:CALLS]->(:ExternalMethod{full_name:" + text("clipRect#android.graphics.Canvas") + "}) AND NOT (n)-[:CALLS]->(:ExternalMethod{full_name:" + text("quickReject#android.graphics.Canvas") + "})\n" +
+                presentInApp("cl", "n") + "  RETURN DISTINCT a.commit_number as commit_number, a.app_key as key, cl.file_path as file_path";
         if (details) {
             query += ", n.full_name as instance";
         } else {
@@ -0,0 +1,283 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import org.neo4j.cypher.CypherException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run independent smell queries concurrently on a bounded pool of threads.
+ * <p>
+ * Each query runs in its own read transaction and writes its own CSV file, through {@link Query#execute(boolean)}
+ * or {@link FuzzyQuery#executeFuzzy(boolean)}, so the queries only share the database.
+ * The wall time and the rows of each query are reported in the order the queries were added.
+ */
+public class ParallelQueryExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(ParallelQueryExecutor.class.getName());
+
+    private final QueryEngine queryEngine;
+    private final int parallelism;
+    private final List<Query> queries = new ArrayList<>();
+    /**
+     * For each query, true if it is run through its fuzzy evaluation.
+     */
+    private final List<Boolean> fuzzy = new ArrayList<>();
+    private QueryWatermarks watermarks;
+    private Map<String, int[]> commitRanges;
+
+    private ParallelQueryExecutor(QueryEngine queryEngine, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must be at least 1, got " + parallelism);
+        }
+        this.queryEngine = queryEngine;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param parallelism Maximum number of queries running at once, 1 to run them one after another.
+     */
+    public static ParallelQueryExecutor createParallelQueryExecutor(QueryEngine queryEngine, int parallelism) {
+        return new ParallelQueryExecutor(queryEngine, parallelism);
+    }
+
+    /**
+     * @param request One of the groups of smells ALLAP, NONFUZZY, FUZZY, FORCENOFUZZY and ALLHEAVY.
+     * @return The executor of the queries of the request, null if the request is not a group of smells.
+     */
+    public static ParallelQueryExecutor forRequest(QueryEngine queryEngine, String request, int parallelism) {
+        ParallelQueryExecutor executor = new ParallelQueryExecutor(queryEngine, parallelism);
+        switch (request) {
+            case "ALLHEAVY":
+                executor.addHeavyQueries();
+                break;
+            case "NONFUZZY":
+                executor.addQuery(IGSQuery.createIGSQuery(queryEngine));
+                executor.addQuery(MIMQuery.createMIMQuery(queryEngine));
+                executor.addQuery(LICQuery.createLICQuery(queryEngine));
+                executor.addQuery(NLMRQuery.createNLMRQuery(queryEngine));
+                executor.addQuery(OverdrawQuery.createOverdrawQuery(queryEngine));
+                executor.addQuery(UnsuitedLRUCacheSizeQuery.createUnsuitedLRUCacheSizeQuery(queryEngine));
+                executor.addQuery(InitOnDrawQuery.createInitOnDrawQuery(queryEngine));
+                executor.addQuery(UnsupportedHardwareAccelerationQuery.createUnsupportedHardwareAccelerationQuery(queryEngine));
+                executor.addQuery(HashMapUsageQuery.createHashMapUsageQuery(queryEngine));
+                executor.addQuery(InvalidateWithoutRectQuery.createInvalidateWithoutRectQuery(queryEngine));
+                executor.addQuery(CommitSizeQuery.createCommitSize(queryEngine));
+                break;
+            case "FUZZY":
+                executor.addFuzzyClassQueries();
+                executor.addHeavyQueries();
+                break;
+            case "ALLAP":
+                executor.addQuery(ARGB8888Query.createARGB8888Query(queryEngine));
+                executor.addFuzzyClassQueries();
+                executor.addQuery(MIMQuery.createMIMQuery(queryEngine));
+                executor.addQuery(IGSQuery.createIGSQuery(queryEngine));
+                executor.addQuery(LICQuery.createLICQuery(queryEngine));
+                executor.addQuery(NLMRQuery.createNLMRQuery(queryEngine));
+                executor.addQuery(OverdrawQuery.createOverdrawQuery(queryEngine));
+                executor.addHeavyQueries();
+                executor.addQuery(UnsuitedLRUCacheSizeQuery.createUnsuitedLRUCacheSizeQuery(queryEngine));
+                executor.addQuery(InitOnDrawQuery.createInitOnDrawQuery(queryEngine));
+                executor.addQuery(UnsupportedHardwareAccelerationQuery.createUnsupportedHardwareAccelerationQuery(queryEngine));
+                executor.addQuery(HashMapUsageQuery.createHashMapUsageQuery(queryEngine));
+                executor.addQuery(InvalidateWithoutRectQuery.createInvalidateWithoutRectQuery(queryEngine));
+                executor.addQuery(TrackingHardwareIdQuery.createTrackingHardwareIdQuery(queryEngine));
+                break;
+            case "FORCENOFUZZY":
+                executor.addQuery(CCQuery.createCCQuery(queryEngine));
+                executor.addQuery(LMQuery.createLMQuery(queryEngine));
+                executor.addQuery(SAKQuery.createSAKQuery(queryEngine));
+                executor.addQuery(BLOBQuery.createBLOBQuery(queryEngine));
+                executor.addQuery(HeavyServiceStartQuery.createHeavyServiceStartQuery(queryEngine));
+                executor.addQuery(HeavyBroadcastReceiverQuery.createHeavyBroadcastReceiverQuery(queryEngine));
+                executor.addQuery(HeavyAsyncTaskStepsQuery.createHeavyAsyncTaskStepsQuery(queryEngine));
+                break;
+            default:
+                return null;
+        }
+        return executor;
+    }
+
+    private void addFuzzyClassQueries() {
+        addFuzzyQuery(CCQuery.createCCQuery(queryEngine));
+        addFuzzyQuery(LMQuery.createLMQuery(queryEngine));
+        addFuzzyQuery(SAKQuery.createSAKQuery(queryEngine));
+        addFuzzyQuery(BLOBQuery.createBLOBQuery(queryEngine));
+    }
+
+    private void addHeavyQueries() {
+        addFuzzyQuery(HeavyServiceStartQuery.createHeavyServiceStartQuery(queryEngine));
+        addFuzzyQuery(HeavyBroadcastReceiverQuery.createHeavyBroadcastReceiverQuery(queryEngine));
+        addFuzzyQuery(HeavyAsyncTaskStepsQuery.createHeavyAsyncTaskStepsQuery(queryEngine));
+    }
+
+    /**
+     * Run a query whose rows are written as they are.
+     */
+    public void addQuery(Query query) {
+        queries.add(query);
+        fuzzy.add(false);
+    }
+
+    /**
+     * Run a query through its fuzzy evaluation.
+     */
+    public void addFuzzyQuery(FuzzyQuery query) {
+        queries.add(query);
+        fuzzy.add(true);
+    }
+
+    /**
+     * Run the queries incrementally: each one only matches the commits of each app following its watermark,
+     * up to the last commit of the app, and appends their rows to its CSV file.
+     * The watermarks of a query are moved to the last commits once it is done.
+     *
+     * @param commitRanges The first and last commits of each app name, see {@link QueryEngine#getCommitRanges()}.
+     */
+    public void setWatermarks(QueryWatermarks watermarks, Map<String, int[]> commitRanges) {
+        this.watermarks = watermarks;
+        this.commitRanges = commitRanges;
+    }
+
+    /**
+     * Run the queries, at most {@link #parallelism} at once, and wait for all of them.
+     * A failing query does not stop the other ones, the first failure is thrown once they are all done.
+     */
+    public void execute(final boolean details) throws CypherException, IOException {
+        // The query engine lazily inspects the database, which is done once here rather than by each thread.
+        if (queryEngine.isVersioned()) {
+            queryEngine.getLastCommit();
+        }
+        queryEngine.isDictionaryEncoded();
+
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, queries.size())));
+        List<Future<long[]>> runs = new ArrayList<>(queries.size());
+        Throwable failure = null;
+        try {
+            for (int i = 0; i < queries.size(); i++) {
+                final Query query = queries.get(i);
+                final boolean isFuzzy = fuzzy.get(i);
+                final String name = resultName(i);
+                final File csvFile = new File(queryEngine.getCsvName("_" + name + ".csv"));
+                final Map<String, Integer> lastCommits = new LinkedHashMap<>();
+                if (watermarks != null && !restrictToNewCommits(query, name, csvFile, details, lastCommits)) {
+                    runs.add(null);
+                    continue;
+                }
+                runs.add(executor.submit(new Callable<long[]>() {
+                    @Override
+                    public long[] call() throws Exception {
+                        long queryStart = System.nanoTime();
+                        int rows = isFuzzy ? ((FuzzyQuery) query).executeFuzzy(details) : query.execute(details);
+                        if (watermarks != null) {
+                            watermarks.setLastCommits(name, lastCommits, csvFile.length(), details);
+                        }
+                        return new long[]{rows, System.nanoTime() - queryStart};
+                    }
+                }));
+            }
+            for (int i = 0; i < queries.size(); i++) {
+                String name = resultName(i);
+                if (runs.get(i) == null) {
+                    logger.info(name + ": up to date");
+                    continue;
+                }
+                try {
+                    long[] run = runs.get(i).get();
+                    logger.info(name + ": " + run[0] + " rows in " + TimeUnit.NANOSECONDS.toMillis(run[1]) + " ms");
+                } catch (ExecutionException e) {
+                    logger.error("Could not run the query of " + name, e.getCause());
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the queries", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.info(queries.size() + " queries in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                + " ms with a parallelism of " + parallelism);
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    /**
+     * Restrict a query to the commits of each app following its watermark, removing from its CSV file the rows
+     * written after the watermark.
+     *
+     * @param lastCommits Filled with the last commit of each app once the query is run.
+     * @return False if the CSV file is up to date.
+     */
+    private boolean restrictToNewCommits(Query query, String name, File csvFile, boolean details,
+                                         Map<String, Integer> lastCommits) throws IOException {
+        Map<String, Integer> exported = watermarks.getLastCommits(name, csvFile, details);
+        Map<String, int[]> newCommits = new LinkedHashMap<>();
+        for (Map.Entry<String, int[]> range : commitRanges.entrySet()) {
+            Integer afterCommit = exported == null ? null : exported.get(range.getKey());
+            int firstCommit = afterCommit == null ? range.getValue()[0] : afterCommit + 1;
+            if (firstCommit <= range.getValue()[1]) {
+                newCommits.put(range.getKey(), new int[]{firstCommit, range.getValue()[1]});
+            }
+        }
+        if (exported != null) {
+            if (newCommits.isEmpty()) {
+                return false;
+            }
+            lastCommits.putAll(exported);
+        }
+        for (Map.Entry<String, int[]> range : commitRanges.entrySet()) {
+            lastCommits.put(range.getKey(), range.getValue()[1]);
+        }
+        query.setCommitRanges(newCommits, exported != null);
+        if (query.isAppending()) {
+            watermarks.truncate(name, csvFile);
+        }
+        return true;
+    }
+
+    /**
+     * @return The name of the smell in the CSV file of the query.
+     */
+    private String resultName(int index) {
+        Query query = queries.get(index);
+        return fuzzy.get(index) ? ((FuzzyQuery) query).getFuzzyName() : query.getSmellName();
+    }
+}
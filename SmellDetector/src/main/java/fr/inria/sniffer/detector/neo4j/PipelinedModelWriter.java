@@ -0,0 +1,193 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hand the apps over to a single writer thread through a bounded queue,
+ * so that the next app can be analysed while the previous one is written.
+ * <p>
+ * The writer thread is the only one using the wrapped {@link ModelWriter} until {@link #finish()},
+ * and the analysis blocks when the queue is full, so that at most {@code capacity} apps wait in memory.
+ * A failed write is logged and counted, the next apps are still written.
+ * An {@link Error} stops the writer thread, and the next apps handed over are rejected with it.
+ */
+public class PipelinedModelWriter implements ModelWriter {
+    private static final Logger logger = LoggerFactory.getLogger(PipelinedModelWriter.class.getName());
+    private static final PaprikaApp END = PaprikaApp.createPaprikaApp("", -1, -1, "", "", "", -1, "");
+    private static final long POLL_MILLIS = 100;
+
+    private final ModelWriter modelWriter;
+    private final BlockingQueue<PaprikaApp> queue;
+    private final Thread writer;
+    private boolean finished;
+    private volatile Error writerError;
+
+    private volatile int written;
+    private volatile int failures;
+    private volatile long writeTime;
+    private volatile long idleTime;
+    private long blockedTime;
+    private long occupancy;
+    private int handedOver;
+    private int maxOccupancy;
+
+    /**
+     * @param modelWriter The destination of the apps, used by the writer thread only.
+     * @param capacity    Maximum number of apps waiting to be written.
+     */
+    public PipelinedModelWriter(ModelWriter modelWriter, int capacity) {
+        this.modelWriter = modelWriter;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "model-writer");
+        writer.start();
+    }
+
+    /**
+     * Queue an app, waiting for a free slot if the queue is full.
+     */
+    @Override
+    public void writeApp(PaprikaApp paprikaApp) {
+        if (finished || !writer.isAlive()) {
+            throw new IllegalStateException("The model writer thread is stopped", writerError);
+        }
+        int waiting = queue.size();
+        occupancy += waiting;
+        maxOccupancy = Math.max(maxOccupancy, waiting);
+        handedOver++;
+        long start = System.nanoTime();
+        try {
+            if (!enqueue(paprikaApp)) {
+                throw new IllegalStateException("The model writer thread is stopped", writerError);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the model writer", e);
+        } finally {
+            blockedTime += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Wait for a free slot as long as the writer thread is running, so that its death does not block the caller.
+     *
+     * @return false if the writer thread stopped before the app could be queued.
+     */
+    private boolean enqueue(PaprikaApp paprikaApp) throws InterruptedException {
+        while (!queue.offer(paprikaApp, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!writer.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write() {
+        while (true) {
+            long start = System.nanoTime();
+            PaprikaApp paprikaApp;
+            try {
+                paprikaApp = queue.take();
+            } catch (InterruptedException e) {
+                logger.warn("Model writer interrupted, " + queue.size() + " apps not written");
+                return;
+            }
+            long taken = System.nanoTime();
+            idleTime += taken - start;
+            if (paprikaApp == END) {
+                return;
+            }
+            try {
+                modelWriter.writeApp(paprikaApp);
+                written++;
+                logger.info("Commit " + paprikaApp.getKey() + " written in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - taken) + " ms, "
+                        + queue.size() + " commits waiting");
+            } catch (RuntimeException e) {
+                failures++;
+                logger.error("Could not write commit " + paprikaApp.getKey(), e);
+            } catch (Error e) {
+                failures++;
+                writerError = e;
+                logger.error("Model writer stopped while writing commit " + paprikaApp.getKey() + ", "
+                        + queue.size() + " apps not written", e);
+                return;
+            }
+            writeTime += System.nanoTime() - taken;
+        }
+    }
+
+    /**
+     * Wait for the queued apps to be written and stop the writer thread, the wrapped writer is left open.
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            enqueue(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            writer.interrupt();
+            Thread.currentThread().interrupt();
+        }
+        logStatistics();
+    }
+
+    @Override
+    public void shutDown() {
+        finish();
+        modelWriter.shutDown();
+    }
+
+    private void logStatistics() {
+        logger.info("Model writer: " + written + " apps written, " + failures + " failures, writing "
+                + TimeUnit.NANOSECONDS.toSeconds(writeTime) + " s, waiting for apps "
+                + TimeUnit.NANOSECONDS.toSeconds(idleTime) + " s; analysis blocked on the full queue "
+                + TimeUnit.NANOSECONDS.toSeconds(blockedTime) + " s; queue occupancy "
+                + String.format("%.1f", handedOver == 0 ? 0 : occupancy / (double) handedOver)
+                + " on average, " + maxOccupancy + " at most, of " + (queue.remainingCapacity() + queue.size()));
+    }
+
+    /**
+     * @return The number of apps whose writing failed.
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return The time spent by the writer thread writing the apps, in nanoseconds.
+     */
+    public long getWriteTime() {
+        return writeTime;
+    }
+}
@@ -34,9 +34,15 @@ public class QualifiedNameFromFileQuery extends Query {
 
     @Override
     protected String getQuery(boolean details) {
+        if (queryEngine.isVersioned()) {
+            return "MATCH (a:App {app_key: \"" + sha + "\"}) MATCH (n:Class) WHERE " +
+                    "n.file_path = " + text(file) + " AND " +
+                    "NOT EXISTS(n.is_inner_class)" + presentAt("n") + " " +
+                    "RETURN n.name as qualified_name;";
+        }
         return "MATCH (a:Class) WHERE " +
-                "a.app_key = \"" + sha + "\" AND " +
-                "a.file_path = \"" + file + "\" AND " +
+                "a.app_key = " + text(sha) + " AND " +
+                "a.file_path = " + text(file) + " AND " +
                 "NOT EXISTS(a.is_inner_class) " +
                 "RETURN a.name as qualified_name;";
     }
@@ -35,6 +35,11 @@ public abstract class Query {
     protected QueryEngine queryEngine;
     protected GraphDatabaseService graphDatabaseService;
     protected String smellName;
+    /**
+     * Commits of the matched apps, see {@link #setCommitRanges(Map, boolean)}.
+     */
+    private Map<String, int[]> commitRanges;
+    private boolean appending;
 
     public Query(QueryEngine queryEngine, String smellName) {
         this.queryEngine = queryEngine;
@@ -50,16 +55,25 @@ public abstract class Query {
      */
     protected abstract String getQuery(boolean details);
 
-    public void execute(boolean details) throws CypherException, IOException {
-        List<Map<String, Object>> result = fetchResult(details);
-        queryEngine.resultToCSV(result, "_" + smellName + ".csv");
-
+    /**
+     * Stream the result of the query to the CSV file of the smell, without holding the rows in memory.
+     *
+     * @return The number of rows written.
+     */
+    public int execute(boolean details) throws CypherException, IOException {
+        int rows;
+        try (Transaction tx = graphDatabaseService.beginTx()) {
+            rows = queryEngine.resultToCSV(graphDatabaseService.execute(restrictToCommits(getQuery(details))),
+                    "_" + smellName + ".csv", isAppending());
+            tx.success();
+        }
+        return rows;
     }
 
     public final List<Map<String, Object>> fetchResult(boolean details, boolean orderByCommit) throws CypherException {
         List<Map<String, Object>> result;
         try (Transaction ignored = graphDatabaseService.beginTx()) {
-            String query = getQuery(details);
+            String query = restrictToCommits(getQuery(details));
             if (orderByCommit) {
                 query += " ORDER BY commit_number";
             }
@@ -84,7 +98,7 @@ public abstract class Query {
      * @throws CypherException If anything goes wrong.
      */
     public Result streamResult(boolean details, boolean orderByCommit) throws CypherException {
-        String query = getQuery(details);
+        String query = restrictToCommits(getQuery(details));
         if (orderByCommit) {
             query += " ORDER BY commit_number";
         }
@@ -95,6 +109,139 @@ public abstract class Query {
         return streamResult(details, false);
     }
 
+    /**
+     * Only match the commits of the given ranges of each app, to export the commits added since a previous run.
+     *
+     * @param commitRanges The first and last commits to match of each app name, the other apps are not matched.
+     * @param append       Append the rows to the CSV file of a previous run instead of replacing it.
+     */
+    public void setCommitRanges(Map<String, int[]> commitRanges, boolean append) {
+        this.commitRanges = commitRanges;
+        this.appending = append;
+    }
+
+    /**
+     * @return True if the rows are appended to the CSV file of a previous run, see {@link #setCommitRanges(Map, boolean)}.
+     */
+    protected boolean isAppending() {
+        return appending;
+    }
+
+    /**
+     * Start the query from the apps of the commit ranges, found with the index on their commit number.
+     * On a versioned database the ranges are applied by {@link #presentInApp(String...)} instead.
+     */
+    protected String restrictToCommits(String query) {
+        if (commitRanges == null || queryEngine.isVersioned()) {
+            return query;
+        }
+        return "UNWIND " + commitRangesLiteral() + " AS commit_range MATCH (a:App)"
+                + " WHERE commit_range[1] <= a.commit_number <= commit_range[2] AND a.name = commit_range[0] WITH a "
+                + query;
+    }
+
+    /**
+     * @return The Cypher list of the commit ranges, as lists of the app name, the first and the last commit.
+     */
+    private String commitRangesLiteral() {
+        StringBuilder ranges = new StringBuilder("[");
+        for (Map.Entry<String, int[]> range : commitRanges.entrySet()) {
+            ranges.append(ranges.length() == 1 ? "" : ", ").append('[').append(queryEngine.stringLiteral(range.getKey()))
+                    .append(", ").append(range.getValue()[0]).append(", ").append(range.getValue()[1]).append(']');
+        }
+        return ranges.append(']').toString();
+    }
+
+    /**
+     * Pattern of a class owned by the app `a`, to complete with {@link #presentInApp(String...)}.
+     * On a versioned database the classes are matched regardless of the apps.
+     */
+    protected String appClass(String classPattern) {
+        if (queryEngine.isVersioned()) {
+            return classPattern;
+        }
+        return "(a:App)-[:APP_OWNS_CLASS]->" + classPattern;
+    }
+
+    /**
+     * On a versioned database, match the app `a` of each commit where all the given nodes are present,
+     * so that the pattern is matched once per version instead of once per commit.
+     * Nothing is needed on a database holding a copy of the graph per commit.
+     *
+     * @param nodes The variables of the nodes matched with {@link #appClass(String)}.
+     */
+    protected String presentInApp(String... nodes) {
+        if (!queryEngine.isVersioned()) {
+            return "";
+        }
+        StringBuilder firstCommits = new StringBuilder();
+        StringBuilder lastCommits = new StringBuilder();
+        for (String node : nodes) {
+            firstCommits.append(firstCommits.length() == 0 ? "" : ", ").append(node).append(".first_commit");
+            lastCommits.append(lastCommits.length() == 0 ? "" : ", ").append(lastCommit(node));
+        }
+        // The commit range of the app, if any, bounds the commits of the matched nodes.
+        String range = "";
+        String firstStart = "0";
+        String lastStart = lastCommit(nodes[0]);
+        if (commitRanges != null) {
+            range = " WITH *, [r IN " + commitRangesLiteral() + " WHERE r[0] = " + nodes[0] + ".app_name][0] AS commit_range"
+                    + " WHERE commit_range IS NOT NULL";
+            firstStart = "commit_range[1]";
+            lastStart = "CASE WHEN " + lastStart + " < commit_range[2] THEN " + lastStart + " ELSE commit_range[2] END";
+        }
+        return range + " WITH *, reduce(c = " + firstStart + ", f IN [" + firstCommits + "] | CASE WHEN f > c THEN f ELSE c END) AS first_commit," +
+                " reduce(c = " + lastStart + ", l IN [" + lastCommits + "] | CASE WHEN l < c THEN l ELSE c END) AS last_commit" +
+                " WHERE first_commit <= last_commit" +
+                " UNWIND range(first_commit, last_commit) AS present_commit" +
+                " MATCH (a:App {commit_number: present_commit}) WHERE a.name = " + nodes[0] + ".app_name";
+    }
+
+    /**
+     * On a versioned database, condition of the given nodes being present at the commit of the app `a`,
+     * to append to a WHERE clause. Nothing is needed on a database holding a copy of the graph per commit.
+     */
+    protected String presentAt(String... nodes) {
+        if (!queryEngine.isVersioned()) {
+            return "";
+        }
+        StringBuilder condition = new StringBuilder();
+        for (String node : nodes) {
+            condition.append(" AND ").append(node).append(".app_name = a.name")
+                    .append(" AND ").append(node).append(".first_commit <= a.commit_number")
+                    .append(" AND a.commit_number <= coalesce(").append(node).append(".last_commit, a.commit_number)");
+        }
+        return condition.toString();
+    }
+
+    /**
+     * @return The last commit of a version, the last commit of the database for a version still open.
+     */
+    private String lastCommit(String node) {
+        return "coalesce(" + node + ".last_commit, " + queryEngine.getLastCommit() + ")";
+    }
+
+    /**
+     * @return The literal to compare with an entity property listed in {@link SymbolTable#ENCODED_PROPERTIES},
+     * see {@link QueryEngine#textLiteral(String)}.
+     */
+    protected String text(String value) {
+        return queryEngine.textLiteral(value);
+    }
+
+    /**
+     * Concatenation of string properties to return. On a dictionary encoded database the properties are ids,
+     * so they are returned as a list, resolved to the concatenation of their strings in the results.
+     */
+    protected String concat(String... expressions) {
+        StringBuilder concatenation = new StringBuilder();
+        for (String expression : expressions) {
+            concatenation.append(concatenation.length() == 0 ? "" : queryEngine.isDictionaryEncoded() ? ", " : " + ")
+                    .append(expression);
+        }
+        return queryEngine.isDictionaryEncoded() ? "[" + concatenation + "]" : concatenation.toString();
+    }
+
     public String getSmellName() {
         return smellName;
     }
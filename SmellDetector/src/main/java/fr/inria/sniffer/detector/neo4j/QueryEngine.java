@@ -29,6 +29,10 @@ import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -40,6 +44,10 @@ public class QueryEngine {
     protected DatabaseManager databaseManager;
 
     protected String csvPrefix;
+    private Boolean versioned;
+    private Integer lastCommit;
+    private SymbolTable symbolTable;
+    private boolean compressCsv;
 
     public String getCsvPrefix() {
         return csvPrefix;
@@ -49,6 +57,13 @@ public class QueryEngine {
         this.csvPrefix = csvPrefix;
     }
 
+    /**
+     * @param compressCsv Compress the CSV files with gzip, adding ".gz" to their names.
+     */
+    public void setCompressCsv(boolean compressCsv) {
+        this.compressCsv = compressCsv;
+    }
+
     public GraphDatabaseService getGraphDatabaseService() {
         return graphDatabaseService;
     }
@@ -65,6 +80,141 @@ public class QueryEngine {
         databaseManager.shutDown();
     }
 
+    /**
+     * @return True if the database stores each version of an entity once, see {@link VersionedModelToGraph}.
+     */
+    public boolean isVersioned() {
+        if (versioned == null) {
+            try (Transaction ignored = graphDatabaseService.beginTx()) {
+                Result result = graphDatabaseService.execute("MATCH (a:App) WHERE a.versioned RETURN a LIMIT 1");
+                versioned = result.hasNext();
+                result.close();
+                ignored.success();
+            }
+        }
+        return versioned;
+    }
+
+    /**
+     * @return The symbols of the database, empty if the database is not dictionary encoded, see {@link SymbolTable}.
+     */
+    public SymbolTable getSymbolTable() {
+        if (symbolTable == null) {
+            symbolTable = SymbolTable.load(graphDatabaseService);
+        }
+        return symbolTable;
+    }
+
+    /**
+     * @return The lowest and highest commit numbers of each app name, empty if the database has no app.
+     */
+    public Map<String, int[]> getCommitRanges() {
+        Map<String, int[]> commitRanges = new LinkedHashMap<>();
+        try (Transaction ignored = graphDatabaseService.beginTx()) {
+            Result result = graphDatabaseService.execute("MATCH (a:App) RETURN a.name AS name," +
+                    " min(a.commit_number) AS first_commit, max(a.commit_number) AS last_commit ORDER BY name");
+            while (result.hasNext()) {
+                Map<String, Object> row = result.next();
+                commitRanges.put((String) row.get("name"), new int[]{
+                        ((Number) row.get("first_commit")).intValue(), ((Number) row.get("last_commit")).intValue()});
+            }
+            ignored.success();
+        }
+        return commitRanges;
+    }
+
+    /**
+     * @return The highest commit number of the apps, -1 if the database has no app.
+     */
+    public int getLastCommit() {
+        if (lastCommit == null) {
+            lastCommit = -1;
+            for (int[] commitRange : getCommitRanges().values()) {
+                lastCommit = Math.max(lastCommit, commitRange[1]);
+            }
+        }
+        return lastCommit;
+    }
+
+    public boolean isDictionaryEncoded() {
+        return !getSymbolTable().isEmpty();
+    }
+
+    /**
+     * @return The Cypher literal matching an entity property listed in {@link SymbolTable#ENCODED_PROPERTIES},
+     * the id of the string when the database is dictionary encoded.
+     */
+    public String textLiteral(String value) {
+        if (isDictionaryEncoded()) {
+            return String.valueOf(getSymbolTable().idOf(value));
+        }
+        return stringLiteral(value);
+    }
+
+    /**
+     * @return The Cypher literal of a string.
+     */
+    public String stringLiteral(String value) {
+        return "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
+    }
+
+    /**
+     * Replace the symbol ids of a result row by their strings, in the columns listed in
+     * {@link SymbolTable#RESOLVED_COLUMNS}. A list of ids is resolved to the concatenation of their strings.
+     *
+     * @return The row itself if the database is not dictionary encoded, a resolved copy otherwise.
+     */
+    public Map<String, Object> resolveSymbols(Map<String, Object> row) {
+        if (!isDictionaryEncoded()) {
+            return row;
+        }
+        Map<String, Object> resolved = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            Object value = entry.getValue();
+            resolved.put(entry.getKey(), SymbolTable.RESOLVED_COLUMNS.contains(entry.getKey()) ? resolveSymbol(value) : value);
+        }
+        return resolved;
+    }
+
+    private Object resolveSymbol(Object value) {
+        if (value instanceof Number) {
+            return getSymbolTable().valueOf(((Number) value).longValue());
+        }
+        if (value instanceof List) {
+            StringBuilder text = new StringBuilder();
+            for (Object element : (List) value) {
+                text.append(resolveSymbol(element));
+            }
+            return text.toString();
+        }
+        return value;
+    }
+
+    /**
+     * Stream the rows of a result with their symbols resolved, see {@link #resolveSymbols(Map)}.
+     */
+    public Iterator<Map<String, Object>> resolveSymbols(final Iterator<Map<String, Object>> rows) {
+        if (!isDictionaryEncoded()) {
+            return rows;
+        }
+        return new Iterator<Map<String, Object>>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                return resolveSymbols(rows.next());
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
     public void AnalyzedAppQuery() throws CypherException, IOException {
         Result result;
         try (Transaction ignored = graphDatabaseService.beginTx()) {
@@ -89,8 +239,21 @@ public class QueryEngine {
                             "a.number_of_inner_classes as number_of_inner_classes, " +
                             "a.number_of_async_tasks as number_of_async_tasks, " +
                             "a.number_of_lines as number_of_lines");
-            resultToCSV(toMap(result), "_ANALYZED.csv");
+            resultToCSV(result, "_ANALYZED.csv");
+        }
+    }
+
+    /**
+     * Create the missing indexes, then report the state of every index of the database.
+     */
+    public void indexesQuery() throws IOException {
+        IndexManager indexManager = new IndexManager(graphDatabaseService);
+        indexManager.createIndex();
+        List<Map> rows = indexManager.getIndexStatus();
+        for (Map row : rows) {
+            logger.info(row.get("label") + "(" + row.get("properties") + ") " + row.get("type") + " " + row.get("state"));
         }
+        resultToCSV(rows, IndexManager.STATUS_COLUMNS, "_INDEXES.csv");
     }
 
     public void getPropertyForAllApk(String nodeType, String property, String suffix) throws IOException {
@@ -98,7 +261,7 @@ public class QueryEngine {
         try (Transaction ignored = graphDatabaseService.beginTx()) {
             String query = "MATCH (n:" + nodeType + ") RETURN n.app_key as app_key, n.name as name, n." + property + " as " + property;
             result = graphDatabaseService.execute(query);
-            resultToCSV(toMap(result), suffix);
+            resultToCSV(result, suffix);
         }
     }
 
@@ -123,67 +286,80 @@ public class QueryEngine {
     }
 
 
+    /**
+     * Stream the rows of a result to a CSV file, with the columns in the order of the query, see {@link CSVWriter}.
+     * The result is consumed within the transaction it was executed in.
+     *
+     * @return The number of rows written.
+     */
+    public int resultToCSV(Result result, String csvSuffix) throws IOException {
+        return resultToCSV(result, csvSuffix, false);
+    }
+
+    /**
+     * @param append Append the rows to the CSV file if it exists, instead of replacing it.
+     */
+    public int resultToCSV(Result result, String csvSuffix, boolean append) throws IOException {
+        try (CSVWriter writer = openCSV(csvSuffix, result.columns(), append)) {
+            writer.writeRows(resolveSymbols(result));
+            return writer.getRows();
+        }
+    }
+
+    /**
+     * Write rows to a CSV file, with the columns in the order of the keys of the first row.
+     */
     public void resultToCSV(List<Map<String, Object>> result, String csvSuffix) throws IOException {
-        String name = csvPrefix + csvSuffix;
-        FileWriter fw = new FileWriter(name);
-        BufferedWriter writer = new BufferedWriter(fw);
         List<String> columns = result.isEmpty() ? new ArrayList<String>() : new ArrayList<>(result.get(0).keySet());
-        Object val;
-        int i;
-        int columns_size = columns.size() - 1;
-        for (i = 0; i < columns_size; i++) {
-            writer.write(columns.get(i));
-            writer.write(',');
+        try (CSVWriter writer = openCSV(csvSuffix, columns)) {
+            writer.writeRows(result.iterator());
         }
-        writer.write(columns.get(i));
-        writer.newLine();
-        for (Map<String, Object> row : result) {
-            for (i = 0; i < columns_size; i++) {
-                val = row.get(columns.get(i));
-                if (val != null) {
-                    writer.write(val.toString());
-                    writer.write(',');
-                }
-            }
-            val = row.get(columns.get(i));
-            if (val != null) {
-                writer.write(val.toString());
+    }
+
+    public void resultToCSV(List<? extends Map> rows, List<String> columns, String csvSuffix) throws IOException {
+        resultToCSV(rows, columns, csvSuffix, false);
+    }
+
+    /**
+     * @param append Append the rows to the CSV file if it exists, instead of replacing it.
+     */
+    public void resultToCSV(List<? extends Map> rows, List<String> columns, String csvSuffix, boolean append)
+            throws IOException {
+        try (CSVWriter writer = openCSV(csvSuffix, columns, append)) {
+            for (Map<String, Object> row : rows) {
+                writer.writeRow(resolveSymbols(row));
             }
-            writer.newLine();
         }
-        writer.close();
-        fw.close();
     }
 
-    public void resultToCSV(List<Map> rows, List<String> columns, String csvSuffix) throws IOException {
-        String name = csvPrefix + csvSuffix;
-        FileWriter fw = new FileWriter(name);
-        BufferedWriter writer = new BufferedWriter(fw);
-        Object val;
-        int i;
-        int columns_size = columns.size() - 1;
-        for (i = 0; i < columns_size; i++) {
-            writer.write(columns.get(i));
-            writer.write(',');
-        }
-        writer.write(columns.get(i));
-        writer.newLine();
-        for (Map<String, Object> row : rows) {
-            for (i = 0; i < columns_size; i++) {
-                val = row.get(columns.get(i));
-                if (val != null) {
-                    writer.write(val.toString());
-                    writer.write(',');
-                }
-            }
-            val = row.get(columns.get(i));
-            if (val != null) {
-                writer.write(val.toString());
-            }
-            writer.newLine();
+    /**
+     * @return A writer of the CSV file of the given suffix, compressed if {@link #setCompressCsv(boolean)}.
+     */
+    public CSVWriter openCSV(String csvSuffix, List<String> columns) throws IOException {
+        return openCSV(csvSuffix, columns, false);
+    }
+
+    /**
+     * @param append Append to the CSV file if it exists, see {@link CSVWriter#createCSVWriter(String, List, boolean)}.
+     */
+    public CSVWriter openCSV(String csvSuffix, List<String> columns, boolean append) throws IOException {
+        return CSVWriter.createCSVWriter(getCsvName(csvSuffix), columns, append);
+    }
+
+    /**
+     * @return The path of the CSV file of the given suffix.
+     */
+    public String getCsvName(String csvSuffix) {
+        return csvPrefix + csvSuffix + (compressCsv ? CSVWriter.GZIP_EXTENSION : "");
+    }
+
+    /**
+     * Write rows to a CSV file, with the given columns in this order.
+     */
+    public static void writeCSV(String name, List<Map<String, Object>> rows, List<String> columns) throws IOException {
+        try (CSVWriter writer = CSVWriter.createCSVWriter(name, columns)) {
+            writer.writeRows(rows.iterator());
         }
-        writer.close();
-        fw.close();
     }
 
     public void statsToCSV(Map<String, Double> stats, String csvSuffix) throws IOException {
@@ -204,112 +380,24 @@ public class QueryEngine {
         fw.close();
     }
 
-    public void deleteQuery(String appKey) throws CypherException, IOException {
-        Result result;
-        try (Transaction tx = graphDatabaseService.beginTx()) {
-            result = graphDatabaseService.execute("MATCH (n {app_key: '" + appKey + "'})-[r]-() DELETE n,r");
-            logger.debug(result.resultAsString());
-            tx.success();
-        }
-    }
-
-    private void deleteExternalClasses(String appKey) {
-        deleteEntityOut(appKey, "ExternalClass", "ExternalMethod", "CLASS_OWNS_METHOD");
-    }
-
-    private void deleteExternalMethods(String appKey) {
-        deleteEntityIn(appKey, "ExternalMethod", "Method", "CALLS");
-    }
-
-    private void deleteCalls(String appKey) {
-        deleteRelations(appKey, "Method", "Method", "CALLS");
-    }
-
-    private void deleteMethods(String appKey) {
-        deleteEntityIn(appKey, "Method", "Class", "CLASS_OWNS_METHOD");
-    }
-
-    private void deleteClasses(String appKey) {
-        deleteEntityIn(appKey, "Class", "App", "APP_OWNS_CLASS");
-    }
-
-    private void deleteVariables(String appKey) {
-        deleteEntityIn(appKey, "Variable", "Class", "CLASS_OWNS_VARIABLE");
-    }
-
-    private void deleteArguments(String appKey) {
-        deleteEntityIn(appKey, "Argument", "Method", "METHOD_OWNS_ARGUMENT");
-    }
-
-    private void deleteUses(String appKey) {
-        deleteRelations(appKey, "Method", "Variable", "USES");
-    }
-
-    private void deleteImplements(String appKey) {
-        deleteRelations(appKey, "Class", "Class", "IMPLEMENTS");
-    }
-
-    private void deleteExtends(String appKey) {
-        deleteRelations(appKey, "Class", "Class", "EXTENDS");
-    }
-
-    private void deleteApp(String appKey) {
-        Result result;
-        try (Transaction tx = graphDatabaseService.beginTx()) {
-            String request = "MATCH (n:App {app_key: '" + appKey + "'}) DELETE n";
-            logger.debug(request);
-            result = graphDatabaseService.execute(request);
-            logger.debug(result.resultAsString());
-            tx.success();
-        }
-    }
-
-    private void deleteRelations(String appKey, String nodeType1, String nodeType2, String reltype) {
-        Result result;
-        try (Transaction tx = graphDatabaseService.beginTx()) {
-            String request = "MATCH (n:" + nodeType1 + "  {app_key: '" + appKey + "'})-[r:" + reltype + "]->(m:" + nodeType2 + "{app_key: '" + appKey + "'}) DELETE r";
-            logger.debug(request);
-            result = graphDatabaseService.execute(request);
-            logger.debug(result.resultAsString());
-            tx.success();
-        }
-    }
-
-    private void deleteEntityIn(String appKey, String nodeType1, String nodeType2, String reltype) {
-        Result result;
-        try (Transaction tx = graphDatabaseService.beginTx()) {
-            String request = "MATCH (n:" + nodeType1 + " {app_key: '" + appKey + "'})<-[r:" + reltype + "]-(m:" + nodeType2 + "{app_key: '" + appKey + "'}) DELETE n,r";
-            logger.debug(request);
-            result = graphDatabaseService.execute(request);
-            logger.debug(result.resultAsString());
-            tx.success();
-        }
-    }
-
-    private void deleteEntityOut(String appKey, String nodeType1, String nodeType2, String reltype) {
-        Result result;
-        try (Transaction tx = graphDatabaseService.beginTx()) {
-            String request = "MATCH (n:" + nodeType1 + " {app_key: '" + appKey + "'})-[r:" + reltype + "]->(m:" + nodeType2 + "{app_key: '" + appKey + "'}) DELETE n,r";
-            logger.debug(request);
-            result = graphDatabaseService.execute(request);
-            logger.debug(result.resultAsString());
-            tx.success();
+    /**
+     * Delete apps with the entities they own, in transactions of bounded size, see {@link AppDeleter}.
+     * On a versioned database, the entities are shared by several commits and only the App nodes are deleted.
+     *
+     * @param appKeys The keys of the apps, e.g. the commits to analyse again.
+     */
+    public void deleteApps(Collection<String> appKeys) {
+        AppDeleter appDeleter = new AppDeleter(graphDatabaseService, getSymbolTable());
+        if (isVersioned()) {
+            logger.warn("The entities of a versioned database are shared by the commits, only the App nodes are deleted");
+            appDeleter.setOwnedEntities(false);
         }
+        long deleted = appDeleter.delete(appKeys);
+        logger.info(appKeys.size() + " apps deleted, " + deleted + " nodes");
     }
 
     public void deleteEntireApp(String appKey) {
-        //Delete have to be done in that order to ensure that relations are correctly deleted
-        deleteExternalClasses(appKey);
-        deleteExternalMethods(appKey);
-        deleteUses(appKey);
-        deleteCalls(appKey);
-        deleteVariables(appKey);
-        deleteArguments(appKey);
-        deleteMethods(appKey);
-        deleteImplements(appKey);
-        deleteExtends(appKey);
-        deleteClasses(appKey);
-        deleteApp(appKey);
+        deleteApps(Collections.singletonList(appKey));
     }
 
     public List<String> findKeysFromPackageName(String appName) throws CypherException, IOException {
@@ -326,18 +414,14 @@ public class QueryEngine {
 
     public void deleteEntireAppFromPackage(String name) throws IOException {
         logger.debug("Deleting app with package :" + name);
-        List<String> keys = findKeysFromPackageName(name);
-        for (String key : keys) {
-            logger.debug("Deleting app with app_key :" + key);
-            deleteEntireApp(key);
-        }
+        deleteApps(findKeysFromPackageName(name));
     }
 
     public void countVariables() throws CypherException, IOException {
         Result result;
         try (Transaction ignored = graphDatabaseService.beginTx()) {
             result = graphDatabaseService.execute("MATCH (n:Variable) return n.app_key as app_key, count(n) as nb_variables");
-            resultToCSV(toMap(result), "_COUNT_VARIABLE.csv");
+            resultToCSV(result, "_COUNT_VARIABLE.csv");
         }
     }
 
@@ -345,7 +429,7 @@ public class QueryEngine {
         Result result;
         try (Transaction ignored = graphDatabaseService.beginTx()) {
             result = graphDatabaseService.execute("MATCH (n:Class) WHERE exists(n.is_inner_class) return n.app_key as app_key,count(n) as nb_inner_classes");
-            resultToCSV(toMap(result), "_COUNT_INNER.csv");
+            resultToCSV(result, "_COUNT_INNER.csv");
         }
     }
 
@@ -353,7 +437,7 @@ public class QueryEngine {
         Result result;
         try (Transaction ignored = graphDatabaseService.beginTx()) {
             result = graphDatabaseService.execute("MATCH (n:Class{is_async_task:true}) return n.app_key as app_key,count(n) as number_of_async");
-            resultToCSV(toMap(result), "_COUNT_ASYNC.csv");
+            resultToCSV(result, "_COUNT_ASYNC.csv");
         }
     }
 
@@ -361,7 +445,7 @@ public class QueryEngine {
         Result result;
         try (Transaction ignored = graphDatabaseService.beginTx()) {
             result = graphDatabaseService.execute("MATCH (n:Class{is_view:true}) return n.app_key as app_key,count(n) as number_of_views");
-            resultToCSV(toMap(result), "_COUNT_VIEWS.csv");
+            resultToCSV(result, "_COUNT_VIEWS.csv");
         }
     }
 
@@ -369,7 +453,7 @@ public class QueryEngine {
         Result result;
         try (Transaction ignored = graphDatabaseService.beginTx()) {
             result = graphDatabaseService.execute(request);
-            resultToCSV(toMap(result), "_CUSTOM.csv");
+            resultToCSV(result, "_CUSTOM.csv");
         }
     }
 
@@ -377,7 +461,7 @@ public class QueryEngine {
         List<Map<String, Object>> output = new ArrayList<>();
         while (result.hasNext()) {
             Map<String, Object> entry = result.next();
-            output.add(entry);
+            output.add(resolveSymbols(entry));
         }
         return output;
     }
@@ -0,0 +1,123 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Last commit of each app exported to the CSV file of each smell by an incremental query run, so that the next run
+ * only matches the commits added since then, see {@link Query#setCommitRanges(Map, boolean)}.
+ * <p>
+ * The watermarks are kept in a properties file next to the CSV files they describe, and saved after each smell
+ * with the length of its CSV file. The rows appended after this length, by a run stopped before saving its
+ * watermarks, are removed by {@link #truncate(String, File)} before appending again.
+ * A watermark is only used while its CSV file exists, is at least this long and was written with the same details option.
+ */
+public class QueryWatermarks {
+    private static final String DETAILS = ".details";
+    private static final String LENGTH = ".length";
+    private static final String COMMIT = ".commit.";
+
+    private final File file;
+    private final Properties watermarks = new Properties();
+
+    private QueryWatermarks(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return The watermarks of the file, none if it does not exist yet.
+     */
+    public static QueryWatermarks load(File file) throws IOException {
+        QueryWatermarks queryWatermarks = new QueryWatermarks(file);
+        if (file.exists()) {
+            try (InputStream input = new FileInputStream(file)) {
+                queryWatermarks.watermarks.load(input);
+            }
+        }
+        return queryWatermarks;
+    }
+
+    /**
+     * @param name    Name of the smell in its CSV file.
+     * @param csvFile The CSV file of the smell.
+     * @return The last commit exported to the CSV file of each app name,
+     * null if the file has to be written from the first commits.
+     */
+    public synchronized Map<String, Integer> getLastCommits(String name, File csvFile, boolean details) {
+        String length = watermarks.getProperty(name + LENGTH);
+        if (length == null || !csvFile.exists() || csvFile.length() < Long.parseLong(length)
+                || details != Boolean.parseBoolean(watermarks.getProperty(name + DETAILS))) {
+            return null;
+        }
+        Map<String, Integer> lastCommits = new LinkedHashMap<>();
+        for (String key : watermarks.stringPropertyNames()) {
+            if (key.startsWith(name + COMMIT)) {
+                lastCommits.put(key.substring(name.length() + COMMIT.length()), Integer.valueOf(watermarks.getProperty(key)));
+            }
+        }
+        return lastCommits;
+    }
+
+    /**
+     * Remove the rows appended to the CSV file of a smell after its watermarks were saved.
+     */
+    public synchronized void truncate(String name, File csvFile) throws IOException {
+        long length = Long.parseLong(watermarks.getProperty(name + LENGTH));
+        if (csvFile.length() > length) {
+            try (RandomAccessFile csv = new RandomAccessFile(csvFile, "rw")) {
+                csv.setLength(length);
+            }
+        }
+    }
+
+    /**
+     * Record the last commit of each app exported to the CSV file of a smell, and save the watermarks.
+     *
+     * @param length The length of the CSV file once these commits are written.
+     */
+    public synchronized void setLastCommits(String name, Map<String, Integer> lastCommits, long length, boolean details)
+            throws IOException {
+        for (String key : watermarks.stringPropertyNames()) {
+            if (key.startsWith(name + COMMIT)) {
+                watermarks.remove(key);
+            }
+        }
+        for (Map.Entry<String, Integer> lastCommit : lastCommits.entrySet()) {
+            watermarks.setProperty(name + COMMIT + lastCommit.getKey(), String.valueOf(lastCommit.getValue()));
+        }
+        watermarks.setProperty(name + LENGTH, String.valueOf(length));
+        watermarks.setProperty(name + DETAILS, String.valueOf(details));
+        File saved = new File(file.getPath() + ".tmp");
+        try (OutputStream output = new FileOutputStream(saved)) {
+            watermarks.store(output, "Last commit exported per smell and app");
+        }
+        if (!saved.renameTo(file) && !(file.delete() && saved.renameTo(file))) {
+            throw new IOException("Could not save the watermarks to " + file);
+        }
+    }
+}
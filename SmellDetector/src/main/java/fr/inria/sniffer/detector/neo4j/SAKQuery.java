@@ -17,17 +17,7 @@
  */
 package fr.inria.sniffer.detector.neo4j;
 
-import net.sourceforge.jFuzzyLogic.FIS;
-import net.sourceforge.jFuzzyLogic.FunctionBlock;
-import org.neo4j.cypher.CypherException;
-import org.neo4j.graphdb.Result;
-import org.neo4j.graphdb.Transaction;
-
-import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -49,10 +39,10 @@ public class SAKQuery extends FuzzyQuery {
 
     @Override
     protected String getQuery(boolean details) {
-        String query = "MATCH (a:App)-[:APP_OWNS_CLASS]->(cl:Class) " +
+        String query = "MATCH " + appClass("(cl:Class)") + " " +
                 "WHERE exists(cl.is_interface) AND cl.number_of_methods > " + veryHigh +
-                " RETURN DISTINCT a.commit_number as commit_number," +
-                " cl.app_key as key, cl.file_path as file_path";
+                presentInApp("cl") + " RETURN DISTINCT a.commit_number as commit_number," +
+                " a.app_key as key, cl.file_path as file_path";
         if (details) {
             query += ",cl.name as instance";
         } else {
@@ -61,44 +51,23 @@ public class SAKQuery extends FuzzyQuery {
         return query;
     }
 
-    public void executeFuzzy(boolean details) throws CypherException, IOException {
-        Result result;
-        try (Transaction ignored = graphDatabaseService.beginTx()) {
-            String query = "MATCH (a:App)-[:APP_OWNS_CLASS]->(cl:Class) " +
-                    "WHERE exists(cl.is_interface) AND cl.number_of_methods > " + high +
-                    " RETURN DISTINCT a.commit_number as commit_number," +
-                    " cl.app_key AS key,cl.number_of_methods AS number_of_methods, " +
-                    "cl.file_path as file_path";
-            if (details) {
-                query += ",cl.name AS instance";
-            }
-            result = graphDatabaseService.execute(query);
-            List<String> columns = new ArrayList<>(result.columns());
-            columns.add("fuzzy_value");
-            int cc;
-            List<Map> fuzzyResult = new ArrayList<>();
-            File fcf = new File(fclFile);
-            //We look if the file is in a directory otherwise we look inside the jar
-            FIS fis;
-            if (fcf.exists() && !fcf.isDirectory()) {
-                fis = FIS.load(fclFile, false);
-            } else {
-                fis = FIS.load(getClass().getResourceAsStream(fclFile), false);
-            }
-            FunctionBlock fb = fis.getFunctionBlock(null);
-            while (result.hasNext()) {
-                HashMap res = new HashMap(result.next());
-                cc = (int) res.get("number_of_methods");
-                if (cc >= veryHigh) {
-                    res.put("fuzzy_value", 1);
-                } else {
-                    fb.setVariable("number_of_methods", cc);
-                    fb.evaluate();
-                    res.put("fuzzy_value", fb.getVariable("res").getValue());
-                }
-                fuzzyResult.add(res);
-            }
-            queryEngine.resultToCSV(fuzzyResult, columns, "_SAK.csv");
+    @Override
+    protected String getFuzzyQuery(boolean details) {
+        String query = "MATCH " + appClass("(cl:Class)") + " " +
+                "WHERE exists(cl.is_interface) AND cl.number_of_methods > " + high +
+                presentInApp("cl") + " RETURN DISTINCT a.commit_number as commit_number," +
+                " a.app_key AS key,cl.number_of_methods AS number_of_methods, " +
+                "cl.file_path as file_path";
+        if (details) {
+            query += ",cl.name AS instance";
         }
+        return query;
+    }
+
+    @Override
+    protected Map<String, Double> getVeryHighValues() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        values.put("number_of_methods", veryHigh);
+        return values;
     }
 }
@@ -0,0 +1,198 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import fr.inria.sniffer.detector.columnar.ColumnarModel;
+import fr.inria.sniffer.detector.columnar.ColumnarQueries;
+import fr.inria.sniffer.detector.columnar.ColumnarQuery;
+import fr.inria.sniffer.detector.columnar.GraphModelReader;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detect several smells in a single pass over the apps of a database, instead of one Cypher query per smell.
+ * <p>
+ * Each app is read once into a {@link ColumnarModel}, on which the {@link ColumnarQuery} of every smell is run.
+ * The rows of each smell are written to its CSV file as soon as an app is scanned, with the columns of the query
+ * of the smell, so that the CSV files are the same as the ones of {@link Query#execute(boolean)} and
+ * {@link FuzzyQuery#executeFuzzy(boolean)}. The rows of an app are distinct and counted by the {@link ColumnarQuery},
+ * which is enough as every row starts with the commit of its app.
+ * Only the databases holding a copy of the graph per commit, without dictionary encoding, can be scanned.
+ */
+public class SmellScanner {
+    private static final Logger logger = LoggerFactory.getLogger(SmellScanner.class.getName());
+    private static final Label appLabel = DynamicLabel.label("App");
+
+    private final QueryEngine queryEngine;
+    private final GraphDatabaseService graphDatabaseService;
+    /**
+     * The detections in the order of the per smell queries.
+     */
+    private final List<ColumnarQuery> queries = new ArrayList<>();
+
+    private SmellScanner(QueryEngine queryEngine) {
+        this.queryEngine = queryEngine;
+        this.graphDatabaseService = queryEngine.getGraphDatabaseService();
+    }
+
+    public static SmellScanner createSmellScanner(QueryEngine queryEngine) {
+        return new SmellScanner(queryEngine);
+    }
+
+    /**
+     * @return True if the database can be scanned, see {@link GraphModelReader}.
+     */
+    public static boolean canScan(QueryEngine queryEngine) {
+        return !queryEngine.isVersioned() && !queryEngine.isDictionaryEncoded();
+    }
+
+    /**
+     * @param request One of the groups of smells ALLAP, NONFUZZY, FUZZY, FORCENOFUZZY and ALLHEAVY.
+     * @return The scanner of the smells of the request, see {@link ColumnarQueries#forRequest(String)},
+     * null if the request is not a group of smells.
+     * ARGB8888, which is not matched per app, is left to its Cypher query.
+     * @throws IOException If the FCL file of a fuzzy smell cannot be loaded.
+     */
+    public static SmellScanner forRequest(QueryEngine queryEngine, String request) throws IOException {
+        switch (request) {
+            case "ALLHEAVY":
+            case "NONFUZZY":
+            case "FUZZY":
+            case "ALLAP":
+            case "FORCENOFUZZY":
+                break;
+            default:
+                return null;
+        }
+        SmellScanner scanner = new SmellScanner(queryEngine);
+        for (ColumnarQuery query : ColumnarQueries.forRequest(request)) {
+            if (!"ARGB8888".equals(query.getSmellName())) {
+                scanner.addQuery(query);
+            }
+        }
+        return scanner;
+    }
+
+    /**
+     * Detect a smell, written to the CSV file of its name.
+     */
+    public void addQuery(ColumnarQuery query) {
+        queries.add(query);
+    }
+
+    /**
+     * Scan the apps, writing the rows of each smell to its CSV file as each app is scanned.
+     */
+    public void execute(boolean details) throws IOException {
+        final List<CSVWriter> writers = new ArrayList<>(queries.size());
+        try {
+            for (ColumnarQuery query : queries) {
+                writers.add(queryEngine.openCSV("_" + query.getSmellName() + ".csv", query.getColumns(details)));
+            }
+            scan(details, new Rows() {
+                @Override
+                public void add(int query, List<Map<String, Object>> rows) throws IOException {
+                    for (Map<String, Object> row : rows) {
+                        writers.get(query).writeRow(row);
+                    }
+                }
+            });
+            StringBuilder counts = new StringBuilder();
+            for (int i = 0; i < queries.size(); i++) {
+                writers.get(i).close();
+                counts.append(i == 0 ? "" : ", ").append(queries.get(i).getSmellName()).append(' ')
+                        .append(writers.get(i).getRows());
+            }
+            logger.info("Rows written: " + counts);
+        } finally {
+            for (CSVWriter writer : writers) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    logger.error("Could not close a CSV file of the smells", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The rows of each smell, as returned by the query of the smell, all held in memory.
+     */
+    public List<List<Map<String, Object>>> fetchResults(boolean details) throws IOException {
+        final List<List<Map<String, Object>>> results = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            results.add(new ArrayList<Map<String, Object>>());
+        }
+        scan(details, new Rows() {
+            @Override
+            public void add(int query, List<Map<String, Object>> rows) {
+                results.get(query).addAll(rows);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Receive the rows of each smell in an app.
+     */
+    private interface Rows {
+        void add(int query, List<Map<String, Object>> rows) throws IOException;
+    }
+
+    private void scan(boolean details, Rows rows) throws IOException {
+        try (Transaction tx = graphDatabaseService.beginTx()) {
+            GraphModelReader reader = new GraphModelReader(graphDatabaseService);
+            int apps = 0;
+            // Scanning the label gives the apps in the order of the Cypher queries.
+            try (ResourceIterator<Node> appNodes = graphDatabaseService.findNodes(appLabel)) {
+                while (appNodes.hasNext()) {
+                    Node appNode = appNodes.next();
+                    ColumnarModel model = reader.read(appNode);
+                    for (int i = 0; i < queries.size(); i++) {
+                        List<Map<String, Object>> appRows = queries.get(i).fetchResult(model, details);
+                        markSmell(appNode, queries.get(i), appRows);
+                        rows.add(i, appRows);
+                    }
+                    apps++;
+                }
+            }
+            logger.info("Scanned " + apps + " apps for " + queries.size() + " smells");
+            tx.success();
+        }
+    }
+
+    /**
+     * The IGS query marks the apps having the smell, see {@link NoSmellsQuery}.
+     */
+    private void markSmell(Node appNode, ColumnarQuery query, List<Map<String, Object>> rows) {
+        if ("IGS".equals(query.getSmellName()) && !rows.isEmpty()) {
+            appNode.setProperty("has_IGS", true);
+        }
+    }
+}
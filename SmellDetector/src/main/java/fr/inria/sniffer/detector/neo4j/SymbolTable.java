@@ -0,0 +1,224 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dictionary of the strings repeated on the entity nodes of a dictionary encoded database.
+ * <p>
+ * The properties listed in {@link #ENCODED_PROPERTIES} hold the id of a {@code Symbol} node instead of the string,
+ * and the entities do not repeat the app name, which is on the App node.
+ * The ids are small integers given in the order of the first use of each string.
+ * The encoding of a database is recorded on an {@code Encoding} node, so that its apps are all written the same way.
+ */
+public class SymbolTable {
+    public static final Label SYMBOL_LABEL = DynamicLabel.label("Symbol");
+    public static final Label ENCODING_LABEL = DynamicLabel.label("Encoding");
+    private static final String DICTIONARY = "dictionary";
+
+    /**
+     * Properties of the entity nodes holding a symbol id in a dictionary encoded database.
+     */
+    public static final Set<String> ENCODED_PROPERTIES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "app_key", "full_name", "return_type", "file_path", "parent_name", "type")));
+
+    /**
+     * Result columns whose numbers are symbol ids, resolved when the results are written.
+     */
+    public static final Set<String> RESOLVED_COLUMNS;
+
+    static {
+        Set<String> columns = new HashSet<>(ENCODED_PROPERTIES);
+        columns.add("instance");
+        RESOLVED_COLUMNS = Collections.unmodifiableSet(columns);
+    }
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    private int written;
+
+    /**
+     * Load the symbols of a database, the table is empty if the database is not encoded.
+     */
+    public static SymbolTable load(GraphDatabaseService graphDatabaseService) {
+        SymbolTable symbolTable = new SymbolTable();
+        try (Transaction tx = graphDatabaseService.beginTx()) {
+            Result result = graphDatabaseService.execute("MATCH (s:Symbol) RETURN s.id AS id, s.value AS value");
+            while (result.hasNext()) {
+                Map<String, Object> row = result.next();
+                symbolTable.put(((Number) row.get("id")).intValue(), (String) row.get("value"));
+            }
+            tx.success();
+        }
+        symbolTable.written = symbolTable.values.size();
+        return symbolTable;
+    }
+
+    /**
+     * @return The properties of the node recording the encoding of a database.
+     */
+    public static Map<String, Object> encodingMarker(boolean dictionaryEncoding) {
+        return Collections.<String, Object>singletonMap(DICTIONARY, dictionaryEncoding);
+    }
+
+    /**
+     * Check that the apps to write use the encoding of the database, recording it if the database has none yet.
+     * A database written before the encoding was recorded is encoded if it holds symbols.
+     *
+     * @throws IllegalStateException If the apps of the database are written with the other encoding.
+     */
+    public static void checkEncoding(GraphDatabaseService graphDatabaseService, boolean dictionaryEncoding) {
+        Boolean encoded = null;
+        try (Transaction tx = graphDatabaseService.beginTx()) {
+            try (ResourceIterator<Node> markers = graphDatabaseService.findNodes(ENCODING_LABEL)) {
+                if (markers.hasNext()) {
+                    encoded = (Boolean) markers.next().getProperty(DICTIONARY);
+                }
+            }
+            if (encoded == null) {
+                if (hasNode(graphDatabaseService, SYMBOL_LABEL)) {
+                    encoded = true;
+                } else if (hasNode(graphDatabaseService, DynamicLabel.label("App"))) {
+                    encoded = false;
+                }
+                Node marker = graphDatabaseService.createNode(ENCODING_LABEL);
+                marker.setProperty(DICTIONARY, encoded == null ? dictionaryEncoding : encoded);
+            }
+            tx.success();
+        }
+        if (encoded != null && encoded != dictionaryEncoding) {
+            throw new IllegalStateException("The database is " + (encoded ? "" : "not ")
+                    + "dictionary encoded, its apps must be written " + (encoded ? "with" : "without") + " --dictionary");
+        }
+    }
+
+    /**
+     * Check the encoding of the database at the given path, if it exists, see {@link #checkEncoding(GraphDatabaseService, boolean)}.
+     * Used before opening a database in a way which cannot run queries, e.g. with a batch inserter.
+     *
+     * @return The symbols of the database, empty if the database is not encoded or does not exist yet.
+     */
+    public static SymbolTable checkEncoding(String databasePath, boolean dictionaryEncoding) {
+        if (!new File(databasePath, "neostore").exists()) {
+            return new SymbolTable();
+        }
+        DatabaseManager databaseManager = new DatabaseManager(databasePath);
+        databaseManager.start();
+        try {
+            checkEncoding(databaseManager.getGraphDatabaseService(), dictionaryEncoding);
+            return load(databaseManager.getGraphDatabaseService());
+        } finally {
+            databaseManager.shutDown();
+        }
+    }
+
+    private static boolean hasNode(GraphDatabaseService graphDatabaseService, Label label) {
+        try (ResourceIterator<Node> nodes = graphDatabaseService.findNodes(label)) {
+            return nodes.hasNext();
+        }
+    }
+
+    private void put(int id, String value) {
+        while (values.size() <= id) {
+            values.add(null);
+        }
+        values.set(id, value);
+        ids.put(value, id);
+    }
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    /**
+     * @return The id of the string, a new one if it has not been used yet.
+     */
+    public int intern(String value) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = values.size();
+            put(id, value);
+        }
+        return id;
+    }
+
+    /**
+     * @return The id of the string, -1 if it is not in the table.
+     */
+    public int idOf(String value) {
+        Integer id = ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return The string of the id, null if the id is unknown.
+     */
+    public String valueOf(long id) {
+        return id >= 0 && id < values.size() ? values.get((int) id) : null;
+    }
+
+    /**
+     * Symbols interned since the last call to {@link #written()} or {@link #discardPending()},
+     * to store in the database along with the nodes using them.
+     *
+     * @return The properties of the symbol nodes to create.
+     */
+    public List<Map<String, Object>> pending() {
+        List<Map<String, Object>> symbols = new ArrayList<>();
+        for (int id = written; id < values.size(); id++) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("id", id);
+            properties.put("value", values.get(id));
+            symbols.add(properties);
+        }
+        return symbols;
+    }
+
+    /**
+     * Mark the pending symbols as stored.
+     */
+    public void written() {
+        written = values.size();
+    }
+
+    /**
+     * Forget the pending symbols, when the nodes using them have not been stored.
+     */
+    public void discardPending() {
+        while (values.size() > written) {
+            ids.remove(values.remove(values.size() - 1));
+        }
+    }
+}
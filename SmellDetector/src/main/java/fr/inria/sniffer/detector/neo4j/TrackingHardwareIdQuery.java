@@ -40,7 +40,8 @@ public class TrackingHardwareIdQuery extends Query {
 
     @Override
     protected String getQuery(boolean details) {
-        String query = "MATCH (m1:Method)-[:CALLS]->(:ExternalMethod { full_name:'getDeviceId#android.telephony.TelephonyManager'}) RETURN m1.app_key as app_key";
+        String query = "MATCH " + appClass("(cl:Class)") + "-[:CLASS_OWNS_METHOD]->(m1:Method)-[:CALLS]->(e:ExternalMethod { full_name:" + text("getDeviceId#android.telephony.TelephonyManager") + "})" +
+                presentInApp("cl", "m1", "e") + " RETURN a.app_key as app_key";
         if (details) {
             query += ",m1.full_name as full_name";
         } else {
@@ -40,8 +40,8 @@ public class UnsuitedLRUCacheSizeQuery extends Query {
 
     @Override
     protected String getQuery(boolean details) {
-        String query = "Match (a:App)-[:APP_OWNS_CLASS]->(cl:Class)-[:CLASS_OWNS_METHOD]->(m:Method)-[:CALLS]->(e:ExternalMethod {full_name:'<init>#android.util.LruCache'}) WHERE NOT (m)-[:CALLS]->(:ExternalMethod {full_name:'getMemoryClass#android.app.ActivityManager'})  " +
-                "return DISTINCT a.commit_number as commit_number, m.app_key as key, cl.file_path as file_path";
+        String query = "MATCH " + appClass("(cl:Class)") + "-[:CLASS_OWNS_METHOD]->(m:Method)-[:CALLS]->(e:ExternalMethod {full_name:" + text("<init>#android.util.LruCache") + "}) WHERE NOT (m)-[:CALLS]->(:ExternalMethod {full_name:" + text("getMemoryClass#android.app.ActivityManager") + "})  " +
+                presentInApp("cl", "m", "e") + " return DISTINCT a.commit_number as commit_number, a.app_key as key, cl.file_path as file_path";
         if (details) {
             query += ",m.full_name as instance";
         } else {
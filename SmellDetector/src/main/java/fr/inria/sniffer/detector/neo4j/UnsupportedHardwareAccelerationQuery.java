@@ -53,11 +53,11 @@ public class UnsupportedHardwareAccelerationQuery extends Query {
                 "setRasterizer#android.graphics.Paint",
                 "setSubpixelText#android.graphics.Paint"
         };
-        StringBuilder query = new StringBuilder("MATCH (a:App)-[:APP_OWNS_CLASS]->(cl:Class)-[:CLASS_OWNS_METHOD]->(m:Method)-[:CALLS]->(e:ExternalMethod) WHERE e.full_name='" + uhas[0] + "'");
+        StringBuilder query = new StringBuilder("MATCH " + appClass("(cl:Class)") + "-[:CLASS_OWNS_METHOD]->(m:Method)-[:CALLS]->(e:ExternalMethod) WHERE e.full_name=" + text(uhas[0]));
         for (int i = 1; i < uhas.length; i++) {
-            query.append(" OR e.full_name='").append(uhas[i]).append("' ");
+            query.append(" OR e.full_name=").append(text(uhas[i])).append(" ");
         }
-        query.append(" return DISTINCT a.commit_number as commit_number, m.app_key as key, cl.file_path as file_path");
+        query.append(presentInApp("cl", "m", "e")).append(" return DISTINCT a.commit_number as commit_number, a.app_key as key, cl.file_path as file_path");
         if (details) {
             query.append(",m.full_name as instance");
         } else {
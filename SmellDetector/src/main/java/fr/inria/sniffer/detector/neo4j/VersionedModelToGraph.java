@@ -0,0 +1,390 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import fr.inria.sniffer.detector.entities.Entity;
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.entities.PaprikaArgument;
+import fr.inria.sniffer.detector.entities.PaprikaClass;
+import fr.inria.sniffer.detector.entities.PaprikaExternalArgument;
+import fr.inria.sniffer.detector.entities.PaprikaExternalClass;
+import fr.inria.sniffer.detector.entities.PaprikaExternalMethod;
+import fr.inria.sniffer.detector.entities.PaprikaLibrary;
+import fr.inria.sniffer.detector.entities.PaprikaMethod;
+import fr.inria.sniffer.detector.entities.PaprikaVariable;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write the history of an app storing each version of an entity once, instead of a copy per commit.
+ * <p>
+ * An entity is identified by its label and qualified name, and a new version is only written when
+ * the hash of its properties and of the identities of its outgoing relationships changes.
+ * Each version holds the numbers of the first and last commits it is present in,
+ * and a relationship holds while both its ends are present.
+ * The commits still get their own App node, linked to the classes and libraries they introduce.
+ * <p>
+ * The apps must be written in the order of their commit numbers, each in a single transaction.
+ * The versions still present in the last commit of their app have no last commit, they are open.
+ * Each version records its identity and hash, so that a later run, or a run restarted after a failure,
+ * goes on from the open versions of the app.
+ */
+public class VersionedModelToGraph implements ModelWriter {
+    private static final Logger logger = LoggerFactory.getLogger(VersionedModelToGraph.class.getName());
+
+    private static final Label[] versionedLabels = {GraphLayout.CLASS_LABEL, GraphLayout.EXTERNAL_CLASS_LABEL,
+            GraphLayout.METHOD_LABEL, GraphLayout.EXTERNAL_METHOD_LABEL, GraphLayout.VARIABLE_LABEL,
+            GraphLayout.ARGUMENT_LABEL, GraphLayout.EXTERNAL_ARGUMENT_LABEL, GraphLayout.LIBRARY_LABEL};
+    private static final String IDENTITY = "version_identity";
+    private static final String HASH = "version_hash";
+
+    private final DatabaseManager databaseManager;
+    private final GraphDatabaseService graphDatabaseService;
+    /**
+     * Version of each entity present in the last written commit of {@link #openApp}, by identity.
+     */
+    private Map<String, Version> versions = new HashMap<>();
+    private String openApp;
+    private int lastCommit = -1;
+    private long writtenVersions;
+    private long keptVersions;
+
+    private String appName;
+    private GraphLayout layout;
+    private Map<Object, Snapshot> snapshots;
+    private Map<String, Snapshot> identities;
+
+    public VersionedModelToGraph(String databasePath) {
+        this.databaseManager = new DatabaseManager(databasePath);
+        databaseManager.start();
+        this.graphDatabaseService = databaseManager.getGraphDatabaseService();
+        new IndexManager(graphDatabaseService).createIndex();
+        try {
+            SymbolTable.checkEncoding(graphDatabaseService, false);
+        } catch (IllegalStateException e) {
+            databaseManager.shutDown();
+            throw e;
+        }
+    }
+
+    @Override
+    public void writeApp(PaprikaApp paprikaApp) {
+        this.appName = paprikaApp.getName();
+        if (!appName.equals(openApp)) {
+            loadOpenVersions();
+        }
+        int commitNumber = paprikaApp.getCommitNumber();
+        if (commitNumber <= lastCommit) {
+            throw new IllegalStateException("Commit " + commitNumber + " written after commit " + lastCommit);
+        }
+        layout = GraphLayout.createVersionedGraphLayout(paprikaApp);
+        snapshots = new LinkedHashMap<>();
+        identities = new HashMap<>();
+        takeSnapshots(paprikaApp);
+
+        Map<String, Version> nextVersions = new HashMap<>();
+        try (Transaction tx = graphDatabaseService.beginTx()) {
+            Node appNode = graphDatabaseService.createNode(GraphLayout.APP_LABEL);
+            GraphLayout.setProperties(appNode, layout.appProperties(paprikaApp));
+            appNode.setProperty("versioned", true);
+
+            for (Snapshot snapshot : snapshots.values()) {
+                Version version = versions.get(snapshot.identity);
+                if (version != null && version.hash == snapshot.hash) {
+                    snapshot.node = version.node;
+                } else {
+                    if (version != null) {
+                        close(version);
+                    }
+                    snapshot.node = createVersion(snapshot, commitNumber);
+                    snapshot.created = true;
+                    if (snapshot.label == GraphLayout.CLASS_LABEL) {
+                        appNode.createRelationshipTo(graphDatabaseService.getNodeById(snapshot.node), RelationTypes.APP_OWNS_CLASS);
+                    } else if (snapshot.label == GraphLayout.LIBRARY_LABEL) {
+                        appNode.createRelationshipTo(graphDatabaseService.getNodeById(snapshot.node), RelationTypes.APP_USES_LIBRARY);
+                    }
+                }
+                nextVersions.put(snapshot.identity, new Version(snapshot.node, snapshot.hash));
+            }
+            for (Map.Entry<String, Version> entry : versions.entrySet()) {
+                if (!identities.containsKey(entry.getKey())) {
+                    close(entry.getValue());
+                }
+            }
+            int created = 0;
+            for (Snapshot snapshot : snapshots.values()) {
+                for (int i = 0; i < snapshot.targets.size(); i++) {
+                    Snapshot target = identities.get(snapshot.targets.get(i));
+                    if (snapshot.created || target.created) {
+                        graphDatabaseService.getNodeById(snapshot.node).createRelationshipTo(
+                                graphDatabaseService.getNodeById(target.node), snapshot.relationTypes.get(i));
+                    }
+                }
+                if (snapshot.created) {
+                    created++;
+                }
+            }
+            tx.success();
+            writtenVersions += created;
+            keptVersions += snapshots.size() - created;
+        } finally {
+            snapshots = null;
+            identities = null;
+        }
+        versions = nextVersions;
+        lastCommit = commitNumber;
+    }
+
+    /**
+     * Go on from the last commit of the app in the database and the versions it left open.
+     * The open versions written before their identity was recorded are closed, they are written again if present.
+     */
+    private void loadOpenVersions() {
+        versions = new HashMap<>();
+        lastCommit = -1;
+        Map<String, Object> parameters = Collections.<String, Object>singletonMap("name", appName);
+        try (Transaction tx = graphDatabaseService.beginTx()) {
+            Result result = graphDatabaseService.execute("MATCH (a:App {name: $name}) RETURN max(a.commit_number) AS last_commit",
+                    parameters);
+            Object last = result.next().get("last_commit");
+            result.close();
+            if (last != null) {
+                lastCommit = ((Number) last).intValue();
+                for (Label label : versionedLabels) {
+                    result = graphDatabaseService.execute("MATCH (n:" + label.name() + " {app_name: $name})"
+                            + " WHERE NOT exists(n.last_commit) RETURN id(n) AS node, n." + IDENTITY + " AS identity, n."
+                            + HASH + " AS hash", parameters);
+                    while (result.hasNext()) {
+                        Map<String, Object> row = result.next();
+                        Version version = new Version((Long) row.get("node"), row.get("hash") == null ? 0 : (Long) row.get("hash"));
+                        if (row.get("identity") == null) {
+                            close(version);
+                        } else {
+                            versions.put((String) row.get("identity"), version);
+                        }
+                    }
+                }
+            }
+            tx.success();
+        }
+        openApp = appName;
+        if (lastCommit >= 0) {
+            logger.info("App " + appName + " goes on after commit " + lastCommit + " with " + versions.size() + " open versions");
+        }
+    }
+
+    @Override
+    public void shutDown() {
+        if (writtenVersions + keptVersions > 0) {
+            logger.info(writtenVersions + " entity versions written, " + keptVersions + " entities kept from the previous commit");
+        }
+        databaseManager.shutDown();
+    }
+
+    private void close(Version version) {
+        graphDatabaseService.getNodeById(version.node).setProperty("last_commit", lastCommit);
+    }
+
+    private long createVersion(Snapshot snapshot, int commitNumber) {
+        Node node = graphDatabaseService.createNode(snapshot.label);
+        GraphLayout.setProperties(node, snapshot.properties);
+        node.setProperty("first_commit", commitNumber);
+        node.setProperty(IDENTITY, snapshot.identity);
+        node.setProperty(HASH, snapshot.hash);
+        return node.getId();
+    }
+
+    /**
+     * Build the properties and identity of every entity of the app, then their relationships and hashes.
+     */
+    private void takeSnapshots(PaprikaApp paprikaApp) {
+        for (PaprikaClass paprikaClass : paprikaApp.getPaprikaClasses()) {
+            snapshot(paprikaClass, GraphLayout.CLASS_LABEL, "Class " + paprikaClass.getName(),
+                    layout.classProperties(paprikaClass));
+            for (PaprikaVariable paprikaVariable : paprikaClass.getPaprikaVariables()) {
+                snapshot(paprikaVariable, GraphLayout.VARIABLE_LABEL,
+                        "Variable " + paprikaClass.getName() + "." + paprikaVariable.getName(),
+                        layout.variableProperties(paprikaVariable));
+            }
+            for (PaprikaMethod paprikaMethod : paprikaClass.getPaprikaMethods()) {
+                StringBuilder signature = new StringBuilder(paprikaMethod.toString()).append('(');
+                for (PaprikaArgument argument : paprikaMethod.getArguments()) {
+                    signature.append(argument.getName()).append(',');
+                }
+                signature.append(')');
+                snapshot(paprikaMethod, GraphLayout.METHOD_LABEL, "Method " + signature,
+                        layout.methodProperties(paprikaMethod));
+                for (PaprikaArgument argument : paprikaMethod.getArguments()) {
+                    snapshot(argument, GraphLayout.ARGUMENT_LABEL, "Argument " + signature + argument.getPosition(),
+                            layout.argumentProperties(argument));
+                }
+            }
+        }
+        for (PaprikaExternalClass paprikaClass : paprikaApp.getPaprikaExternalClasses()) {
+            snapshot(paprikaClass, GraphLayout.EXTERNAL_CLASS_LABEL, "ExternalClass " + paprikaClass.getName(),
+                    layout.externalClassProperties(paprikaClass));
+            for (PaprikaExternalMethod paprikaMethod : paprikaClass.getPaprikaExternalMethods()) {
+                StringBuilder signature = new StringBuilder(paprikaMethod.toString()).append('(');
+                for (PaprikaExternalArgument argument : paprikaMethod.getPaprikaExternalArguments()) {
+                    signature.append(argument.getName()).append(',');
+                }
+                signature.append(')');
+                snapshot(paprikaMethod, GraphLayout.EXTERNAL_METHOD_LABEL, "ExternalMethod " + signature,
+                        layout.externalMethodProperties(paprikaMethod));
+                for (PaprikaExternalArgument argument : paprikaMethod.getPaprikaExternalArguments()) {
+                    snapshot(argument, GraphLayout.EXTERNAL_ARGUMENT_LABEL,
+                            "ExternalArgument " + signature + argument.getPosition(),
+                            layout.externalArgumentProperties(argument));
+                }
+            }
+        }
+        for (PaprikaLibrary paprikaLibrary : paprikaApp.getPaprikaLibraries()) {
+            snapshot(paprikaLibrary, GraphLayout.LIBRARY_LABEL, "Library " + paprikaLibrary.getName(),
+                    layout.libraryProperties(paprikaLibrary));
+        }
+
+        for (PaprikaClass paprikaClass : paprikaApp.getPaprikaClasses()) {
+            Snapshot classSnapshot = snapshots.get(paprikaClass);
+            for (PaprikaVariable paprikaVariable : paprikaClass.getPaprikaVariables()) {
+                classSnapshot.relate(RelationTypes.CLASS_OWNS_VARIABLE, snapshots.get(paprikaVariable));
+            }
+            for (PaprikaMethod paprikaMethod : paprikaClass.getPaprikaMethods()) {
+                classSnapshot.relate(RelationTypes.CLASS_OWNS_METHOD, snapshots.get(paprikaMethod));
+                Snapshot methodSnapshot = snapshots.get(paprikaMethod);
+                for (PaprikaVariable paprikaVariable : paprikaMethod.getUsedVariables()) {
+                    if (snapshots.containsKey(paprikaVariable)) {
+                        methodSnapshot.relate(RelationTypes.USES, snapshots.get(paprikaVariable));
+                    }
+                }
+                for (PaprikaArgument argument : paprikaMethod.getArguments()) {
+                    methodSnapshot.relate(RelationTypes.METHOD_OWNS_ARGUMENT, snapshots.get(argument));
+                }
+                for (Entity calledMethod : paprikaMethod.getCalledMethods()) {
+                    methodSnapshot.relate(RelationTypes.CALLS, snapshots.get(calledMethod));
+                }
+            }
+            if (paprikaClass.getParent() != null) {
+                classSnapshot.relate(RelationTypes.EXTENDS, snapshots.get(paprikaClass.getParent()));
+            }
+            for (PaprikaClass pInterface : paprikaClass.getInterfaces()) {
+                classSnapshot.relate(RelationTypes.IMPLEMENTS, snapshots.get(pInterface));
+            }
+        }
+        for (PaprikaExternalClass paprikaClass : paprikaApp.getPaprikaExternalClasses()) {
+            Snapshot classSnapshot = snapshots.get(paprikaClass);
+            for (PaprikaExternalMethod paprikaMethod : paprikaClass.getPaprikaExternalMethods()) {
+                classSnapshot.relate(RelationTypes.CLASS_OWNS_METHOD, snapshots.get(paprikaMethod));
+                Snapshot methodSnapshot = snapshots.get(paprikaMethod);
+                for (PaprikaExternalArgument argument : paprikaMethod.getPaprikaExternalArguments()) {
+                    methodSnapshot.relate(RelationTypes.METHOD_OWNS_ARGUMENT, snapshots.get(argument));
+                }
+            }
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (Snapshot snapshot : snapshots.values()) {
+            snapshot.hash = snapshot.hash(digest);
+        }
+    }
+
+    /**
+     * Register the snapshot of an entity, the identities repeated in a commit are numbered.
+     */
+    private Snapshot snapshot(Object entity, Label label, String identity, Map<String, Object> properties) {
+        String unique = identity;
+        for (int occurrence = 2; identities.containsKey(unique); occurrence++) {
+            unique = identity + "#" + occurrence;
+        }
+        Snapshot snapshot = new Snapshot(unique, label, properties);
+        snapshots.put(entity, snapshot);
+        identities.put(unique, snapshot);
+        return snapshot;
+    }
+
+    private static final class Version {
+        private final long node;
+        private final long hash;
+
+        private Version(long node, long hash) {
+            this.node = node;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Content of an entity in the commit being written.
+     */
+    private static final class Snapshot {
+        private final String identity;
+        private final Label label;
+        private final Map<String, Object> properties;
+        private final List<RelationTypes> relationTypes = new ArrayList<>();
+        private final List<String> targets = new ArrayList<>();
+        private long hash;
+        private long node;
+        private boolean created;
+
+        private Snapshot(String identity, Label label, Map<String, Object> properties) {
+            this.identity = identity;
+            this.label = label;
+            this.properties = properties;
+        }
+
+        private void relate(RelationTypes type, Snapshot target) {
+            relationTypes.add(type);
+            targets.add(target.identity);
+        }
+
+        private long hash(MessageDigest digest) {
+            StringBuilder content = new StringBuilder(label.name());
+            for (Map.Entry<String, Object> property : properties.entrySet()) {
+                content.append('\n').append(property.getKey()).append('=').append(property.getValue());
+            }
+            List<String> relationships = new ArrayList<>(targets.size());
+            for (int i = 0; i < targets.size(); i++) {
+                relationships.add(relationTypes.get(i) + ">" + targets.get(i));
+            }
+            Collections.sort(relationships);
+            for (String relationship : relationships) {
+                content.append('\n').append(relationship);
+            }
+            return ByteBuffer.wrap(digest.digest(content.toString().getBytes(StandardCharsets.UTF_8))).getLong();
+        }
+    }
+}
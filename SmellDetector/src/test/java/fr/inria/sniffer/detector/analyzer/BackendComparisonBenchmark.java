@@ -0,0 +1,128 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import fr.inria.sniffer.detector.columnar.ColumnarQueries;
+import fr.inria.sniffer.detector.columnar.ColumnarQuery;
+import fr.inria.sniffer.detector.columnar.ColumnarQueryEngine;
+import fr.inria.sniffer.detector.neo4j.ARGB8888Query;
+import fr.inria.sniffer.detector.neo4j.BLOBQuery;
+import fr.inria.sniffer.detector.neo4j.CCQuery;
+import fr.inria.sniffer.detector.neo4j.CommitSizeQuery;
+import fr.inria.sniffer.detector.neo4j.HashMapUsageQuery;
+import fr.inria.sniffer.detector.neo4j.HeavyAsyncTaskStepsQuery;
+import fr.inria.sniffer.detector.neo4j.HeavyBroadcastReceiverQuery;
+import fr.inria.sniffer.detector.neo4j.HeavyServiceStartQuery;
+import fr.inria.sniffer.detector.neo4j.IGSQuery;
+import fr.inria.sniffer.detector.neo4j.InitOnDrawQuery;
+import fr.inria.sniffer.detector.neo4j.InvalidateWithoutRectQuery;
+import fr.inria.sniffer.detector.neo4j.LICQuery;
+import fr.inria.sniffer.detector.neo4j.LMQuery;
+import fr.inria.sniffer.detector.neo4j.MIMQuery;
+import fr.inria.sniffer.detector.neo4j.NLMRQuery;
+import fr.inria.sniffer.detector.neo4j.OverdrawQuery;
+import fr.inria.sniffer.detector.neo4j.Query;
+import fr.inria.sniffer.detector.neo4j.QueryEngine;
+import fr.inria.sniffer.detector.neo4j.SAKQuery;
+import fr.inria.sniffer.detector.neo4j.TrackingHardwareIdQuery;
+import fr.inria.sniffer.detector.neo4j.UnsuitedLRUCacheSizeQuery;
+import fr.inria.sniffer.detector.neo4j.UnsupportedHardwareAccelerationQuery;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time the smells detected on the same commits stored by the Neo4j backend and by the columnar one,
+ * e.g. two runs of analyse-history with and without {@code --backend columnar}:
+ * store size, query time and number of rows of each smell of ALLAP and SIZE, the fuzzy smells being run with their
+ * crisp query. The rows themselves are compared by {@code BackendComparisonTest}.
+ * <p>
+ * Usage: BackendComparisonBenchmark neo4jDatabase columnarDirectory [details]
+ */
+public class BackendComparisonBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        String database = args[0];
+        String directory = args[1];
+        boolean details = args.length > 2 && Boolean.parseBoolean(args[2]);
+        System.out.println("Neo4j store: " + size(new File(database)) / 1024 + " KB, columnar store: "
+                + size(new File(directory)) / 1024 + " KB");
+
+        QueryEngine queryEngine = new QueryEngine(database);
+        Query[] queries = {
+                ARGB8888Query.createARGB8888Query(queryEngine),
+                CCQuery.createCCQuery(queryEngine),
+                LMQuery.createLMQuery(queryEngine),
+                SAKQuery.createSAKQuery(queryEngine),
+                BLOBQuery.createBLOBQuery(queryEngine),
+                MIMQuery.createMIMQuery(queryEngine),
+                IGSQuery.createIGSQuery(queryEngine),
+                LICQuery.createLICQuery(queryEngine),
+                NLMRQuery.createNLMRQuery(queryEngine),
+                OverdrawQuery.createOverdrawQuery(queryEngine),
+                HeavyServiceStartQuery.createHeavyServiceStartQuery(queryEngine),
+                HeavyBroadcastReceiverQuery.createHeavyBroadcastReceiverQuery(queryEngine),
+                HeavyAsyncTaskStepsQuery.createHeavyAsyncTaskStepsQuery(queryEngine),
+                UnsuitedLRUCacheSizeQuery.createUnsuitedLRUCacheSizeQuery(queryEngine),
+                InitOnDrawQuery.createInitOnDrawQuery(queryEngine),
+                UnsupportedHardwareAccelerationQuery.createUnsupportedHardwareAccelerationQuery(queryEngine),
+                HashMapUsageQuery.createHashMapUsageQuery(queryEngine),
+                InvalidateWithoutRectQuery.createInvalidateWithoutRectQuery(queryEngine),
+                TrackingHardwareIdQuery.createTrackingHardwareIdQuery(queryEngine),
+                CommitSizeQuery.createCommitSize(queryEngine)
+        };
+        List<ColumnarQuery> columnarQueries = new ArrayList<>(ColumnarQueries.forRequest("ALLAP", false));
+        columnarQueries.addAll(ColumnarQueries.forRequest("SIZE", false));
+
+        long neo4jTime = 0;
+        List<List<Map<String, Object>>> neo4jResults = new ArrayList<>();
+        for (Query query : queries) {
+            long start = System.nanoTime();
+            neo4jResults.add(query.fetchResult(details));
+            neo4jTime += System.nanoTime() - start;
+        }
+        queryEngine.shutDown();
+        long start = System.nanoTime();
+        List<List<Map<String, Object>>> columnarResults = new ColumnarQueryEngine(directory).fetchResults(columnarQueries, details);
+        long columnarTime = System.nanoTime() - start;
+        System.out.println("Neo4j queries: " + TimeUnit.NANOSECONDS.toMillis(neo4jTime) + " ms, columnar queries: "
+                + TimeUnit.NANOSECONDS.toMillis(columnarTime) + " ms");
+        for (int i = 0; i < queries.length; i++) {
+            System.out.println("  " + queries[i].getSmellName() + ": " + neo4jResults.get(i).size() + " / "
+                    + columnarResults.get(i).size() + " rows");
+        }
+    }
+
+    private static long size(File file) {
+        if (file.isFile()) {
+            return file.length();
+        }
+        long size = 0;
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                size += size(child);
+            }
+        }
+        return size;
+    }
+}
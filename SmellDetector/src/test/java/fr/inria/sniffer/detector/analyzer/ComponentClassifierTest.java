@@ -0,0 +1,104 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.entities.PaprikaClass;
+import fr.inria.sniffer.detector.entities.PaprikaModifiers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class ComponentClassifierTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final PaprikaApp paprikaApp = PaprikaApp.createPaprikaApp("app", 1, 1, "", "key", "", 0, "");
+
+    static class BaseActivity {
+    }
+
+    static class Custom extends BaseActivity {
+    }
+
+    interface Listener {
+    }
+
+    @Test
+    public void testIndexMatchesReflection() throws Exception {
+        File jar = folder.newFile("framework.jar");
+        try (JarOutputStream output = new JarOutputStream(new FileOutputStream(jar))) {
+            for (Class<?> type : new Class<?>[]{BaseActivity.class, Custom.class, Listener.class}) {
+                String entryName = type.getName().replace('.', '/') + ".class";
+                output.putNextEntry(new JarEntry(entryName));
+                try (InputStream input = getClass().getClassLoader().getResourceAsStream(entryName)) {
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = input.read(buffer)) > 0) {
+                        output.write(buffer, 0, read);
+                    }
+                }
+            }
+        }
+        FrameworkIndex frameworkIndex = FrameworkIndex.createFrameworkIndex(jar);
+        assertEquals("Custom", frameworkIndex.getType(Custom.class.getName()).getSimpleName());
+        assertEquals(null, frameworkIndex.getType(Listener.class.getName()).getSuperClassName());
+
+        // The classes of the jar cannot be loaded, they are only known from the index
+        ComponentClassifier indexed = new ComponentClassifier(new URLClassLoader(new URL[0], null), frameworkIndex);
+        ComponentClassifier reflected = new ComponentClassifier(getClass().getClassLoader());
+        for (Class<?> type : new Class<?>[]{BaseActivity.class, Custom.class, Listener.class}) {
+            PaprikaClass fromIndex = classify(indexed, "a.Main", type.getName());
+            PaprikaClass fromClass = classify(reflected, "a.Main", type.getName());
+            assertEquals(fromClass.isActivity(), fromIndex.isActivity());
+            assertEquals(fromClass.getDepthOfInheritance(), fromIndex.getDepthOfInheritance());
+        }
+        PaprikaClass custom = classify(indexed, "a.Main", Custom.class.getName());
+        assertEquals(true, custom.isActivity());
+        assertEquals(2, custom.getDepthOfInheritance());
+    }
+
+    @Test
+    public void testHeuristicWhenRootIsMissing() {
+        ComponentClassifier classifier = new ComponentClassifier(getClass().getClassLoader());
+        PaprikaClass service = classify(classifier, "a.MainService", "b.Missing");
+        assertEquals(true, service.isService());
+        assertEquals(0, service.getDepthOfInheritance());
+        // The suffixes are tested in order on both names, Activity comes before View
+        PaprikaClass view = classify(classifier, "a.MyView", "b.MissingActivity");
+        assertEquals(true, view.isActivity());
+        assertEquals(false, view.isView());
+    }
+
+    private PaprikaClass classify(ComponentClassifier classifier, String name, String root) {
+        PaprikaClass paprikaClass = PaprikaClass.createPaprikaClass(name, paprikaApp, PaprikaModifiers.PUBLIC);
+        paprikaClass.setSimpleName(name.substring(name.lastIndexOf('.') + 1));
+        classifier.classify(paprikaClass, root, root);
+        return paprikaClass;
+    }
+}
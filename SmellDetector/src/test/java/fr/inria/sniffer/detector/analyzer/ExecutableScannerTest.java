@@ -0,0 +1,249 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.entities.PaprikaClass;
+import fr.inria.sniffer.detector.entities.PaprikaMethod;
+import fr.inria.sniffer.detector.entities.PaprikaModifiers;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import spoon.Launcher;
+import spoon.reflect.code.BinaryOperatorKind;
+import spoon.reflect.code.CtAbstractInvocation;
+import spoon.reflect.code.CtBinaryOperator;
+import spoon.reflect.code.CtBreak;
+import spoon.reflect.code.CtCase;
+import spoon.reflect.code.CtCatch;
+import spoon.reflect.code.CtConditional;
+import spoon.reflect.code.CtContinue;
+import spoon.reflect.code.CtFieldAccess;
+import spoon.reflect.code.CtIf;
+import spoon.reflect.code.CtLocalVariable;
+import spoon.reflect.code.CtLoop;
+import spoon.reflect.code.CtReturn;
+import spoon.reflect.code.CtThrow;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtConstructor;
+import spoon.reflect.declaration.CtExecutable;
+import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtTypeMember;
+import spoon.reflect.visitor.filter.TypeFilter;
+import spoon.support.compiler.VirtualFile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExecutableScannerTest {
+    private static final String SOURCE = "package sample;\n" +
+            "public class Sample {\n" +
+            "    private int count;\n" +
+            "    private Sample next;\n" +
+            "    public Sample(int count) {\n" +
+            "        this.count = count;\n" +
+            "        next = new Sample(count - 1);\n" +
+            "    }\n" +
+            "    public int branches(int[] values, boolean flag) {\n" +
+            "        int total = 0;\n" +
+            "        for (int value : values) {\n" +
+            "            if (value < 0 && flag || value > 10) {\n" +
+            "                continue;\n" +
+            "            }\n" +
+            "            switch (value) {\n" +
+            "                case 1:\n" +
+            "                    total += flag ? 1 : 2;\n" +
+            "                    break;\n" +
+            "                default:\n" +
+            "                    total += value;\n" +
+            "            }\n" +
+            "        }\n" +
+            "        while (total > 100) {\n" +
+            "            total = total / 2;\n" +
+            "        }\n" +
+            "        return total;\n" +
+            "    }\n" +
+            "    public void calls(String text) {\n" +
+            "        try {\n" +
+            "            int length = text.length();\n" +
+            "            String copy = text.substring(length / 2);\n" +
+            "            unknown.Helper.call(copy);\n" +
+            "            next.branches(new int[]{count, next.count}, copy.isEmpty());\n" +
+            "        } catch (IllegalStateException exception) {\n" +
+            "            throw new IllegalArgumentException(exception);\n" +
+            "        }\n" +
+            "    }\n" +
+            "    public abstract static class Nested {\n" +
+            "        abstract void empty();\n" +
+            "    }\n" +
+            "}\n";
+
+    private static CtClass<?> sample;
+
+    @BeforeClass
+    public static void buildModel() {
+        Launcher launcher = new Launcher();
+        launcher.addInputResource(new VirtualFile(SOURCE, "sample/Sample.java"));
+        launcher.getEnvironment().setNoClasspath(true);
+        launcher.getEnvironment().setCommentEnabled(false);
+        launcher.buildModel();
+        sample = launcher.getFactory().Class().get("sample.Sample");
+    }
+
+    private static List<CtExecutable<?>> executables() {
+        List<CtExecutable<?>> executables = new ArrayList<>();
+        executables.addAll(sample.getConstructors());
+        executables.addAll(sample.getMethods());
+        executables.addAll(sample.getNestedType("Nested").getMethods());
+        return executables;
+    }
+
+    @Test
+    public void testComplexity() {
+        assertEquals(12, ExecutableScanner.scanExecutable(method("branches")).getComplexity());
+        for (CtExecutable<?> executable : executables()) {
+            assertEquals(executable.getSimpleName(), referenceComplexity(executable),
+                    ExecutableScanner.scanExecutable(executable).getComplexity());
+        }
+    }
+
+    @Test
+    public void testDeclaredLocals() {
+        assertEquals(2, ExecutableScanner.scanExecutable(method("branches")).getNumberOfDeclaredLocals());
+        for (CtExecutable<?> executable : executables()) {
+            assertEquals(executable.getSimpleName(),
+                    executable.getElements(new TypeFilter<>(CtLocalVariable.class)).size(),
+                    ExecutableScanner.scanExecutable(executable).getNumberOfDeclaredLocals());
+        }
+    }
+
+    @Test
+    public void testUsedVariables() {
+        for (CtExecutable<?> executable : executables()) {
+            List<VariableData> expected = referenceUsedVariables(executable);
+            List<VariableData> actual = ExecutableScanner.scanExecutable(executable).getUsedVariablesData();
+            assertEquals(executable.getSimpleName(), toString(expected), toString(actual));
+        }
+        assertEquals("sample.Sample.next sample.Sample.count sample.Sample.count sample.Sample.next ",
+                toString(ExecutableScanner.scanExecutable(method("calls")).getUsedVariablesData()));
+    }
+
+    @Test
+    public void testInvocations() {
+        for (CtExecutable<?> executable : executables()) {
+            List<InvocationData> expected = referenceInvocations(executable);
+            List<InvocationData> actual = ExecutableScanner.scanExecutable(executable).getInvocationData();
+            assertEquals(executable.getSimpleName(), invocationsToString(expected), invocationsToString(actual));
+        }
+        assertEquals(6, ExecutableScanner.scanExecutable(method("calls")).getInvocationData().size());
+    }
+
+    @Test
+    public void testNumberOfLines() {
+        CtConstructor<?> constructor = sample.getConstructors().iterator().next();
+        assertEquals(constructor.getBody().toString().split("\n").length, ExecutableProcessor.countEffectiveCodeLines(constructor));
+        assertEquals(4, ExecutableProcessor.countEffectiveCodeLines(constructor));
+        assertEquals(19, ExecutableProcessor.countEffectiveCodeLines(method("branches")));
+        assertEquals(10, ExecutableProcessor.countEffectiveCodeLines(method("calls")));
+    }
+
+    @Test
+    public void testProcessedMethod() {
+        PaprikaApp paprikaApp = PaprikaApp.createPaprikaApp("sample", 1, 1, "", "key", "", 0, "");
+        PaprikaClass paprikaClass = PaprikaClass.createPaprikaClass("sample.Sample", paprikaApp, PaprikaModifiers.PUBLIC);
+        new MethodProcessor(paprikaClass).process((CtMethod) method("calls"));
+        PaprikaMethod paprikaMethod = paprikaClass.getPaprikaMethods().iterator().next();
+        assertEquals(3, paprikaMethod.getComplexity());
+        assertEquals(2, paprikaMethod.getNumberOfDeclaredLocals());
+        assertEquals(10, paprikaMethod.getNumberOfLines());
+        assertEquals(4, paprikaMethod.getUsedVariablesData().size());
+        assertEquals(6, paprikaMethod.getInvocationData().size());
+    }
+
+    private static CtExecutable<?> method(String name) {
+        return sample.getMethodsByName(name).get(0);
+    }
+
+    private static String toString(List<VariableData> variables) {
+        StringBuilder builder = new StringBuilder();
+        for (VariableData variable : variables) {
+            builder.append(variable.getClassName()).append('.').append(variable.getVariableName()).append(' ');
+        }
+        return builder.toString();
+    }
+
+    private static String invocationsToString(List<InvocationData> invocations) {
+        StringBuilder builder = new StringBuilder();
+        for (InvocationData invocation : invocations) {
+            builder.append(invocation.getTarget()).append('#').append(invocation.getMethod())
+                    .append(':').append(invocation.getType()).append(' ');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The complexity as computed before the single traversal, with one query per element type.
+     */
+    private static int referenceComplexity(CtExecutable<?> executable) {
+        int numberOfOperators = 0;
+        for (CtBinaryOperator<?> operator : executable.getElements(new TypeFilter<>(CtBinaryOperator.class))) {
+            if (operator.getKind() == BinaryOperatorKind.AND || operator.getKind() == BinaryOperatorKind.OR) {
+                numberOfOperators++;
+            }
+        }
+        return executable.getElements(new TypeFilter<>(CtConditional.class)).size()
+                + executable.getElements(new TypeFilter<>(CtIf.class)).size()
+                + executable.getElements(new TypeFilter<>(CtCase.class)).size()
+                + executable.getElements(new TypeFilter<>(CtReturn.class)).size()
+                + executable.getElements(new TypeFilter<>(CtLoop.class)).size()
+                + executable.getElements(new TypeFilter<>(CtCatch.class)).size()
+                + executable.getElements(new TypeFilter<>(CtThrow.class)).size()
+                + executable.getElements(new TypeFilter<>(CtBreak.class)).size()
+                + executable.getElements(new TypeFilter<>(CtContinue.class)).size()
+                + numberOfOperators + 1;
+    }
+
+    private static List<VariableData> referenceUsedVariables(CtExecutable<?> executable) {
+        List<VariableData> variables = new ArrayList<>();
+        CtTypeMember member = executable instanceof CtTypeMember ? (CtTypeMember) executable : null;
+        for (CtFieldAccess<?> fieldAccess : executable.getElements(new TypeFilter<>(CtFieldAccess.class))) {
+            if (fieldAccess.getTarget() != null && fieldAccess.getTarget().getType() != null && member != null
+                    && fieldAccess.getTarget().getType().getDeclaration() == member.getDeclaringType()) {
+                variables.add(new VariableData(fieldAccess.getTarget().getType().getQualifiedName(),
+                        fieldAccess.getVariable().getSimpleName()));
+            }
+        }
+        return variables;
+    }
+
+    private static List<InvocationData> referenceInvocations(CtExecutable<?> executable) {
+        List<InvocationData> invocations = new ArrayList<>();
+        String type = "Unknown";
+        for (CtAbstractInvocation<?> invocation : executable.getElements(new TypeFilter<>(CtAbstractInvocation.class))) {
+            if (invocation.getExecutable().getType() != null) {
+                type = invocation.getExecutable().getType().getQualifiedName();
+            }
+            if (invocation.getExecutable().getDeclaringType() != null) {
+                invocations.add(new InvocationData(invocation.getExecutable().getDeclaringType().getQualifiedName(),
+                        invocation.getExecutable().getSimpleName(), type));
+            }
+        }
+        return invocations;
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.entities.PaprikaClass;
+import fr.inria.sniffer.detector.entities.PaprikaMethod;
+import fr.inria.sniffer.detector.entities.PaprikaModifiers;
+import fr.inria.sniffer.detector.entities.PaprikaVariable;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the linking of a synthetic app by the {@link GraphCreator}.
+ * <p>
+ * Usage: GraphCreatorBenchmark [classes] [methodsPerClass] [invocationsPerMethod]
+ */
+public class GraphCreatorBenchmark {
+    static final int FIELDS_PER_CLASS = 5;
+    private static final int OVERLOADS = 3;
+
+    public static void main(String[] args) {
+        int classes = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int methods = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int invocations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        for (int run = 1; run <= 3; run++) {
+            PaprikaApp paprikaApp = createApp(classes, methods, invocations, new Random(42));
+            GraphCreator graphCreator = new GraphCreator(paprikaApp);
+            long start = System.nanoTime();
+            graphCreator.createClassHierarchy();
+            long hierarchy = System.nanoTime();
+            graphCreator.createCallGraph();
+            long callGraph = System.nanoTime();
+            System.out.println("Run " + run + ": " + classes + " classes, " + classes * methods + " methods, "
+                    + classes * methods * invocations + " invocations: hierarchy in "
+                    + TimeUnit.NANOSECONDS.toMillis(hierarchy - start) + " ms, call graph in "
+                    + TimeUnit.NANOSECONDS.toMillis(callGraph - hierarchy) + " ms");
+        }
+    }
+
+    /**
+     * Build an app whose classes extend and call random other classes, a tenth of the calls
+     * targeting external classes.
+     */
+    static PaprikaApp createApp(int classes, int methods, int invocations, Random random) {
+        return fillApp(PaprikaApp.createPaprikaApp("benchmark", 1, 1, "", "key", "", 0, ""), classes, methods, invocations, random);
+    }
+
+    static PaprikaApp fillApp(PaprikaApp paprikaApp, int classes, int methods, int invocations, Random random) {
+        for (int i = 0; i < classes; i++) {
+            PaprikaClass paprikaClass = PaprikaClass.createPaprikaClass(className(i), paprikaApp, PaprikaModifiers.PUBLIC,
+                    className(i).replace('.', '/') + ".java");
+            if (i > 0) {
+                paprikaClass.setParentName(className(random.nextInt(i)));
+            }
+            for (int field = 0; field < FIELDS_PER_CLASS; field++) {
+                PaprikaVariable.createPaprikaVariable("field" + field, "int", PaprikaModifiers.PRIVATE, paprikaClass);
+            }
+            for (int method = 0; method < methods; method++) {
+                PaprikaMethod paprikaMethod = PaprikaMethod.createPaprikaMethod("method" + method % (methods / OVERLOADS + 1),
+                        PaprikaModifiers.PUBLIC, "void", paprikaClass);
+                for (int invocation = 0; invocation < invocations; invocation++) {
+                    String target = random.nextInt(10) == 0 ? "external.Library" + random.nextInt(100) : className(random.nextInt(classes));
+                    paprikaMethod.getInvocationData().add(new InvocationData(target, "method" + random.nextInt(methods), "void"));
+                }
+                paprikaMethod.getUsedVariablesData().add(new VariableData(className(i), "field" + random.nextInt(FIELDS_PER_CLASS)));
+            }
+        }
+        return paprikaApp;
+    }
+
+    private static String className(int index) {
+        return "com.example.package" + index % 100 + ".Class" + index;
+    }
+}
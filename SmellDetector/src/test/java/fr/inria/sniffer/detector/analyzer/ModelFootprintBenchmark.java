@@ -0,0 +1,59 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.metrics.MetricsCalculator;
+
+import java.util.Random;
+
+/**
+ * Measure the heap retained by the model of a synthetic app, before and after the computation of its metrics.
+ * Run with a fixed heap, e.g. -Xms2G -Xmx2G, so that the measures are stable.
+ * <p>
+ * Usage: ModelFootprintBenchmark [classes] [methodsPerClass] [invocationsPerMethod]
+ */
+public class ModelFootprintBenchmark {
+
+    public static void main(String[] args) {
+        int classes = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int methods = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int invocations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        long empty = usedHeap();
+        PaprikaApp paprikaApp = GraphCreatorBenchmark.createApp(classes, methods, invocations, new Random(42));
+        GraphCreator graphCreator = new GraphCreator(paprikaApp);
+        graphCreator.createClassHierarchy();
+        graphCreator.createCallGraph();
+        long linked = usedHeap();
+        MetricsCalculator.calculateAppMetrics(paprikaApp);
+        long measured = usedHeap();
+        System.out.println(classes + " classes, " + classes * methods + " methods: model "
+                + (linked - empty) / 1024 / 1024 + " MB, metrics " + (measured - linked) / 1024 / 1024 + " MB ("
+                + (measured - linked) / (classes * (methods + GraphCreatorBenchmark.FIELDS_PER_CLASS + 1)) + " bytes per entity)");
+        // Keep the app reachable until the last measure
+        System.out.println(paprikaApp.getPaprikaClasses().size() + " classes kept");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.metrics.MetricsCalculator;
+import fr.inria.sniffer.detector.neo4j.BatchModelToGraph;
+import fr.inria.sniffer.detector.neo4j.ModelToGraph;
+import fr.inria.sniffer.detector.neo4j.ModelWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the time and the peak heap of the insertion of a synthetic app in a new database,
+ * with one transaction per app, with bounded transactions, and in bulk.
+ * <p>
+ * Usage: ModelWriterBenchmark [classes] [methodsPerClass] [invocationsPerMethod] [transactionSize]
+ */
+public class ModelWriterBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int classes = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int methods = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int invocations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int transactionSize = args.length > 3 ? Integer.parseInt(args[3]) : ModelToGraph.DEFAULT_TRANSACTION_SIZE;
+        PaprikaApp paprikaApp = GraphCreatorBenchmark.createApp(classes, methods, invocations, new Random(42));
+        GraphCreator graphCreator = new GraphCreator(paprikaApp);
+        graphCreator.createClassHierarchy();
+        graphCreator.createCallGraph();
+        MetricsCalculator.calculateAppMetrics(paprikaApp);
+
+        write("single transaction", paprikaApp, 0, false);
+        write("transactions of " + transactionSize, paprikaApp, transactionSize, false);
+        write("bulk", paprikaApp, 0, true);
+    }
+
+    private static void write(String mode, PaprikaApp paprikaApp, int transactionSize, boolean bulk) throws IOException {
+        File database = Files.createTempDirectory("benchmark").toFile();
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        long start = System.nanoTime();
+        ModelWriter modelWriter;
+        if (bulk) {
+            modelWriter = new BatchModelToGraph(database.getPath());
+        } else {
+            ModelToGraph modelToGraph = new ModelToGraph(database.getPath());
+            modelToGraph.setTransactionSize(transactionSize);
+            modelWriter = modelToGraph;
+        }
+        modelWriter.writeApp(paprikaApp);
+        modelWriter.shutDown();
+        long elapsed = System.nanoTime() - start;
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.println(mode + ": " + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms, peak heap "
+                + peak / 1024 / 1024 + " MB");
+    }
+}
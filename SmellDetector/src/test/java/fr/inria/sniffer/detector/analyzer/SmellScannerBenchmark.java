@@ -0,0 +1,149 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import fr.inria.sniffer.detector.columnar.ColumnarQueries;
+import fr.inria.sniffer.detector.columnar.ColumnarQuery;
+import fr.inria.sniffer.detector.neo4j.BLOBQuery;
+import fr.inria.sniffer.detector.neo4j.CCQuery;
+import fr.inria.sniffer.detector.neo4j.CommitSizeQuery;
+import fr.inria.sniffer.detector.neo4j.HashMapUsageQuery;
+import fr.inria.sniffer.detector.neo4j.HeavyAsyncTaskStepsQuery;
+import fr.inria.sniffer.detector.neo4j.HeavyBroadcastReceiverQuery;
+import fr.inria.sniffer.detector.neo4j.HeavyServiceStartQuery;
+import fr.inria.sniffer.detector.neo4j.IGSQuery;
+import fr.inria.sniffer.detector.neo4j.InitOnDrawQuery;
+import fr.inria.sniffer.detector.neo4j.InvalidateWithoutRectQuery;
+import fr.inria.sniffer.detector.neo4j.LICQuery;
+import fr.inria.sniffer.detector.neo4j.LMQuery;
+import fr.inria.sniffer.detector.neo4j.MIMQuery;
+import fr.inria.sniffer.detector.neo4j.NLMRQuery;
+import fr.inria.sniffer.detector.neo4j.OverdrawQuery;
+import fr.inria.sniffer.detector.neo4j.Query;
+import fr.inria.sniffer.detector.neo4j.QueryEngine;
+import fr.inria.sniffer.detector.neo4j.SAKQuery;
+import fr.inria.sniffer.detector.neo4j.SmellScanner;
+import fr.inria.sniffer.detector.neo4j.TrackingHardwareIdQuery;
+import fr.inria.sniffer.detector.neo4j.UnsuitedLRUCacheSizeQuery;
+import fr.inria.sniffer.detector.neo4j.UnsupportedHardwareAccelerationQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the crisp smells of a database detected by one Cypher query per smell and by a single {@link SmellScanner} pass:
+ * time of each way and rows of each smell, with the columns in the order of the result maps.
+ * The rows are compared regardless of their order, which Cypher leaves to the planner.
+ * <p>
+ * Usage: SmellScannerBenchmark database [details] [cypher|scan], the last argument runs only one way,
+ * so that each one can be timed on a cold database.
+ */
+public class SmellScannerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String database = args[0];
+        boolean details = args.length > 1 && Boolean.parseBoolean(args[1]);
+        String only = args.length > 2 ? args[2] : null;
+
+        QueryEngine queryEngine = new QueryEngine(database);
+        Query[] queries = {
+                CCQuery.createCCQuery(queryEngine),
+                LMQuery.createLMQuery(queryEngine),
+                SAKQuery.createSAKQuery(queryEngine),
+                BLOBQuery.createBLOBQuery(queryEngine),
+                MIMQuery.createMIMQuery(queryEngine),
+                IGSQuery.createIGSQuery(queryEngine),
+                LICQuery.createLICQuery(queryEngine),
+                NLMRQuery.createNLMRQuery(queryEngine),
+                OverdrawQuery.createOverdrawQuery(queryEngine),
+                HeavyServiceStartQuery.createHeavyServiceStartQuery(queryEngine),
+                HeavyBroadcastReceiverQuery.createHeavyBroadcastReceiverQuery(queryEngine),
+                HeavyAsyncTaskStepsQuery.createHeavyAsyncTaskStepsQuery(queryEngine),
+                UnsuitedLRUCacheSizeQuery.createUnsuitedLRUCacheSizeQuery(queryEngine),
+                InitOnDrawQuery.createInitOnDrawQuery(queryEngine),
+                UnsupportedHardwareAccelerationQuery.createUnsupportedHardwareAccelerationQuery(queryEngine),
+                HashMapUsageQuery.createHashMapUsageQuery(queryEngine),
+                InvalidateWithoutRectQuery.createInvalidateWithoutRectQuery(queryEngine),
+                TrackingHardwareIdQuery.createTrackingHardwareIdQuery(queryEngine),
+                CommitSizeQuery.createCommitSize(queryEngine)
+        };
+        List<ColumnarQuery> scannedQueries = new ArrayList<>(ColumnarQueries.forRequest("FORCENOFUZZY", false));
+        scannedQueries.addAll(ColumnarQueries.forRequest("ALLAP", false));
+        scannedQueries.addAll(ColumnarQueries.forRequest("SIZE", false));
+        SmellScanner scanner = SmellScanner.createSmellScanner(queryEngine);
+        for (Query query : queries) {
+            scanner.addQuery(find(scannedQueries, query.getSmellName()));
+        }
+
+        List<List<Map<String, Object>>> cypherResults = new ArrayList<>();
+        if (!"scan".equals(only)) {
+            long start = System.nanoTime();
+            for (Query query : queries) {
+                cypherResults.add(query.fetchResult(details));
+            }
+            System.out.println("Cypher queries: " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        }
+        List<List<Map<String, Object>>> scanResults = null;
+        if (!"cypher".equals(only)) {
+            long start = System.nanoTime();
+            scanResults = scanner.fetchResults(details);
+            System.out.println("Scan: " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        }
+        queryEngine.shutDown();
+        if (only != null) {
+            return;
+        }
+
+        int differences = 0;
+        for (int i = 0; i < queries.length; i++) {
+            List<String> cypherRows = toLines(cypherResults.get(i));
+            List<String> scanRows = toLines(scanResults.get(i));
+            boolean same = cypherRows.equals(scanRows);
+            if (!same) {
+                differences++;
+            }
+            System.out.println("  " + queries[i].getSmellName() + ": " + cypherRows.size() + " / " + scanRows.size()
+                    + " rows" + (same ? "" : ", DIFFERENT"));
+        }
+        System.out.println(differences == 0 ? "Same results" : differences + " smells with different results");
+    }
+
+    private static ColumnarQuery find(List<ColumnarQuery> queries, String smellName) {
+        for (ColumnarQuery query : queries) {
+            if (query.getSmellName().equals(smellName)) {
+                return query;
+            }
+        }
+        throw new IllegalArgumentException("No columnar query for " + smellName);
+    }
+
+    /**
+     * @return The rows as sorted lines of their columns, in the order of the keys of the maps.
+     */
+    private static List<String> toLines(List<Map<String, Object>> rows) {
+        List<String> lines = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            lines.add(row.keySet() + "=" + row.values());
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+}
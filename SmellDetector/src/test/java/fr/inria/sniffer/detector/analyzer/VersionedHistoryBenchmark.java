@@ -0,0 +1,123 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.analyzer;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.entities.PaprikaClass;
+import fr.inria.sniffer.detector.entities.PaprikaModifiers;
+import fr.inria.sniffer.detector.entities.PaprikaVariable;
+import fr.inria.sniffer.detector.metrics.MetricsCalculator;
+import fr.inria.sniffer.detector.neo4j.CCQuery;
+import fr.inria.sniffer.detector.neo4j.CommitSizeQuery;
+import fr.inria.sniffer.detector.neo4j.IGSQuery;
+import fr.inria.sniffer.detector.neo4j.MIMQuery;
+import fr.inria.sniffer.detector.neo4j.ModelToGraph;
+import fr.inria.sniffer.detector.neo4j.ModelWriter;
+import fr.inria.sniffer.detector.neo4j.Query;
+import fr.inria.sniffer.detector.neo4j.QueryEngine;
+import fr.inria.sniffer.detector.neo4j.VersionedModelToGraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the storage of a synthetic history with a copy of the graph per commit and with versioned entities:
+ * writing time, store size, and time of a few queries.
+ * Each commit adds a field to some classes, the other entities are unchanged.
+ * <p>
+ * Usage: VersionedHistoryBenchmark [classes] [commits] [changedClassesPerCommit]
+ */
+public class VersionedHistoryBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int classes = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int commits = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int changes = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        run("copy per commit", false, classes, commits, changes);
+        run("versioned", true, classes, commits, changes);
+    }
+
+    private static void run(String mode, boolean versioned, int classes, int commits, int changes) throws IOException {
+        File database = Files.createTempDirectory("benchmark").toFile();
+        ModelWriter modelWriter = versioned ? new VersionedModelToGraph(database.getPath()) : new ModelToGraph(database.getPath());
+        int[] revisions = new int[classes];
+        long writing = 0;
+        for (int commit = 1; commit <= commits; commit++) {
+            for (int change = 0; change < changes; change++) {
+                revisions[(commit * changes + change) % classes]++;
+            }
+            PaprikaApp paprikaApp = createCommit(commit, classes, revisions);
+            long start = System.nanoTime();
+            modelWriter.writeApp(paprikaApp);
+            writing += System.nanoTime() - start;
+        }
+        long start = System.nanoTime();
+        modelWriter.shutDown();
+        writing += System.nanoTime() - start;
+        System.out.println(mode + ": " + commits + " commits written in " + TimeUnit.NANOSECONDS.toMillis(writing)
+                + " ms, store of " + size(database) / 1024 / 1024 + " MB");
+
+        QueryEngine queryEngine = new QueryEngine(database.getPath());
+        Query[] queries = {
+                CCQuery.createCCQuery(queryEngine),
+                MIMQuery.createMIMQuery(queryEngine),
+                IGSQuery.createIGSQuery(queryEngine),
+                CommitSizeQuery.createCommitSize(queryEngine)
+        };
+        for (Query query : queries) {
+            start = System.nanoTime();
+            int rows = query.fetchResult(false).size();
+            System.out.println("  " + query.getSmellName() + ": " + rows + " rows in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        }
+        queryEngine.shutDown();
+    }
+
+    private static PaprikaApp createCommit(int commit, int classes, int[] revisions) {
+        PaprikaApp paprikaApp = PaprikaApp.createPaprikaApp("benchmark", 1, commit, "", "commit" + commit, "", 0, "");
+        GraphCreatorBenchmark.fillApp(paprikaApp, classes, 10, 5, new Random(42));
+        for (int i = 0; i < classes; i++) {
+            PaprikaClass paprikaClass = paprikaApp.getPaprikaClasses().get(i);
+            for (int revision = 0; revision < revisions[i]; revision++) {
+                PaprikaVariable.createPaprikaVariable("revision" + revision, "int", PaprikaModifiers.PRIVATE, paprikaClass);
+            }
+        }
+        GraphCreator graphCreator = new GraphCreator(paprikaApp);
+        graphCreator.createClassHierarchy();
+        graphCreator.createCallGraph();
+        MetricsCalculator.calculateAppMetrics(paprikaApp);
+        return paprikaApp;
+    }
+
+    private static long size(File file) {
+        if (file.isFile()) {
+            return file.length();
+        }
+        long size = 0;
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                size += size(child);
+            }
+        }
+        return size;
+    }
+}
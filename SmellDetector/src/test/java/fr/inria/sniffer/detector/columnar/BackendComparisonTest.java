@@ -0,0 +1,172 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.columnar;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.entities.SmellyApps;
+import fr.inria.sniffer.detector.neo4j.ARGB8888Query;
+import fr.inria.sniffer.detector.neo4j.BLOBQuery;
+import fr.inria.sniffer.detector.neo4j.CCQuery;
+import fr.inria.sniffer.detector.neo4j.CommitSizeQuery;
+import fr.inria.sniffer.detector.neo4j.HashMapUsageQuery;
+import fr.inria.sniffer.detector.neo4j.HeavyAsyncTaskStepsQuery;
+import fr.inria.sniffer.detector.neo4j.HeavyBroadcastReceiverQuery;
+import fr.inria.sniffer.detector.neo4j.HeavyServiceStartQuery;
+import fr.inria.sniffer.detector.neo4j.IGSQuery;
+import fr.inria.sniffer.detector.neo4j.InitOnDrawQuery;
+import fr.inria.sniffer.detector.neo4j.InvalidateWithoutRectQuery;
+import fr.inria.sniffer.detector.neo4j.LICQuery;
+import fr.inria.sniffer.detector.neo4j.LMQuery;
+import fr.inria.sniffer.detector.neo4j.MIMQuery;
+import fr.inria.sniffer.detector.neo4j.ModelToGraph;
+import fr.inria.sniffer.detector.neo4j.NLMRQuery;
+import fr.inria.sniffer.detector.neo4j.OverdrawQuery;
+import fr.inria.sniffer.detector.neo4j.Query;
+import fr.inria.sniffer.detector.neo4j.QueryEngine;
+import fr.inria.sniffer.detector.neo4j.SAKQuery;
+import fr.inria.sniffer.detector.neo4j.TrackingHardwareIdQuery;
+import fr.inria.sniffer.detector.neo4j.UnsuitedLRUCacheSizeQuery;
+import fr.inria.sniffer.detector.neo4j.UnsupportedHardwareAccelerationQuery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class BackendComparisonTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private QueryEngine queryEngine;
+    private String directory;
+
+    /**
+     * Store the same commits in a Neo4j database and as columnar files.
+     */
+    @Before
+    public void setUp() throws IOException {
+        String database = folder.newFolder("db").getPath();
+        File columnar = folder.newFolder("columnar");
+        directory = columnar.getPath();
+        ModelToGraph modelToGraph = new ModelToGraph(database);
+        try {
+            for (int commit = 1; commit <= 2; commit++) {
+                PaprikaApp paprikaApp = SmellyApps.createApp("sha" + commit, commit);
+                modelToGraph.insertApp(paprikaApp);
+                ColumnarModel model = ColumnarModel.createColumnarModel(paprikaApp);
+                model.write(new File(columnar, ColumnarModel.fileName(model.getCommitNumber(), model.getKey())));
+            }
+        } finally {
+            modelToGraph.shutDown();
+        }
+        queryEngine = new QueryEngine(database);
+    }
+
+    @After
+    public void tearDown() {
+        queryEngine.shutDown();
+    }
+
+    @Test
+    public void backendsFindTheSameSmells() throws IOException {
+        assertSameRows(false);
+    }
+
+    @Test
+    public void backendsFindTheSameSmellsWithDetails() throws IOException {
+        assertSameRows(true);
+    }
+
+    /**
+     * Compare the rows of each smell of ALLAP and SIZE, the fuzzy smells being run with their crisp query.
+     * The rows of ARGB8888 return the Neo4j nodes, only their number is compared.
+     */
+    private void assertSameRows(boolean details) throws IOException {
+        Query[] queries = {
+                ARGB8888Query.createARGB8888Query(queryEngine),
+                CCQuery.createCCQuery(queryEngine),
+                LMQuery.createLMQuery(queryEngine),
+                SAKQuery.createSAKQuery(queryEngine),
+                BLOBQuery.createBLOBQuery(queryEngine),
+                MIMQuery.createMIMQuery(queryEngine),
+                IGSQuery.createIGSQuery(queryEngine),
+                LICQuery.createLICQuery(queryEngine),
+                NLMRQuery.createNLMRQuery(queryEngine),
+                OverdrawQuery.createOverdrawQuery(queryEngine),
+                HeavyServiceStartQuery.createHeavyServiceStartQuery(queryEngine),
+                HeavyBroadcastReceiverQuery.createHeavyBroadcastReceiverQuery(queryEngine),
+                HeavyAsyncTaskStepsQuery.createHeavyAsyncTaskStepsQuery(queryEngine),
+                UnsuitedLRUCacheSizeQuery.createUnsuitedLRUCacheSizeQuery(queryEngine),
+                InitOnDrawQuery.createInitOnDrawQuery(queryEngine),
+                UnsupportedHardwareAccelerationQuery.createUnsupportedHardwareAccelerationQuery(queryEngine),
+                HashMapUsageQuery.createHashMapUsageQuery(queryEngine),
+                InvalidateWithoutRectQuery.createInvalidateWithoutRectQuery(queryEngine),
+                TrackingHardwareIdQuery.createTrackingHardwareIdQuery(queryEngine),
+                CommitSizeQuery.createCommitSize(queryEngine)
+        };
+        List<ColumnarQuery> columnarQueries = new ArrayList<>(ColumnarQueries.forRequest("ALLAP", false));
+        columnarQueries.addAll(ColumnarQueries.forRequest("SIZE", false));
+        assertEquals(queries.length, columnarQueries.size());
+        List<List<Map<String, Object>>> columnarResults = new ColumnarQueryEngine(directory)
+                .fetchResults(columnarQueries, details);
+
+        int smells = 0;
+        for (int i = 0; i < queries.length; i++) {
+            ColumnarQuery columnarQuery = columnarQueries.get(i);
+            assertEquals(queries[i].getSmellName(), columnarQuery.getSmellName());
+            List<String> columns = columnarQuery.getColumns(details);
+            List<String> neo4jRows = toLines(queries[i].fetchResult(details), columns);
+            List<String> columnarRows = toLines(columnarResults.get(i), columns);
+            if ("ARGB8888".equals(columnarQuery.getSmellName())) {
+                assertEquals(neo4jRows.size(), columnarRows.size());
+            } else {
+                assertEquals(columnarQuery.getSmellName(), neo4jRows, columnarRows);
+            }
+            if (!neo4jRows.isEmpty()) {
+                smells++;
+            }
+        }
+        // Only the smells on the number of instructions, which the model does not hold, are not found.
+        assertEquals(queries.length - 4, smells);
+    }
+
+    /**
+     * @return The rows as sorted lines of the given columns, a missing column being null as in the CSV files.
+     */
+    private static List<String> toLines(List<Map<String, Object>> rows, List<String> columns) {
+        List<String> lines = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            StringBuilder line = new StringBuilder();
+            for (String column : columns) {
+                line.append(row.get(column)).append(',');
+            }
+            lines.add(line.toString());
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.columnar;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.entities.PaprikaArgument;
+import fr.inria.sniffer.detector.entities.PaprikaClass;
+import fr.inria.sniffer.detector.entities.PaprikaExternalClass;
+import fr.inria.sniffer.detector.entities.PaprikaExternalMethod;
+import fr.inria.sniffer.detector.entities.PaprikaMethod;
+import fr.inria.sniffer.detector.entities.PaprikaModifiers;
+import fr.inria.sniffer.detector.metrics.IsActivity;
+import fr.inria.sniffer.detector.metrics.IsView;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class ColumnarModelTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A view drawing without clipping and invalidating without rectangle, and an activity without onLowMemory.
+     */
+    private static PaprikaApp createApp() {
+        PaprikaApp paprikaApp = PaprikaApp.createPaprikaApp("app", 1, 3, "", "sha3", "", 0, "");
+        PaprikaClass view = PaprikaClass.createPaprikaClass("sample.CustomView", paprikaApp, PaprikaModifiers.PUBLIC,
+                "sample/CustomView.java");
+        IsView.createIsView(view, true);
+        PaprikaMethod onDraw = PaprikaMethod.createPaprikaMethod("onDraw", PaprikaModifiers.PUBLIC, "void", view);
+        PaprikaArgument.createPaprikaArgument("android.graphics.Canvas", 0, onDraw);
+        PaprikaExternalClass externalView = PaprikaExternalClass.createPaprikaExternalClass("android.view.View", paprikaApp);
+        onDraw.callMethod(PaprikaExternalMethod.createPaprikaExternalMethod("invalidate", "void", externalView));
+        PaprikaClass activity = PaprikaClass.createPaprikaClass("sample.MainActivity", paprikaApp, PaprikaModifiers.PUBLIC,
+                "sample/MainActivity.java");
+        IsActivity.createIsActivity(activity, true);
+        PaprikaMethod.createPaprikaMethod("onCreate", PaprikaModifiers.PUBLIC, "void", activity);
+        return paprikaApp;
+    }
+
+    @Test
+    public void modelIsReadBackFromItsFile() throws IOException {
+        ColumnarModel model = ColumnarModel.createColumnarModel(createApp());
+        File file = new File(folder.getRoot(), ColumnarModel.fileName(model.getCommitNumber(), model.getKey()));
+        model.write(file);
+        ColumnarModel read = ColumnarModel.read(file);
+
+        assertEquals("00000003_sha3.cols", file.getName());
+        assertEquals("sha3", read.getKey());
+        assertEquals(3, read.getCommitNumber());
+        assertEquals(2, read.getClasses().size());
+        assertEquals(2, read.getMethods().size());
+        assertEquals("onDraw#sample.CustomView", read.string(read.getMethods(), ColumnarModel.FULL_NAME, 0));
+        assertEquals(1, read.getExternalCalls().end(0) - read.getExternalCalls().start(0));
+        assertEquals(0, read.getCalls().end(1) - read.getCalls().start(1));
+        for (ColumnarQuery query : ColumnarQueries.forRequest("ALLAP", false)) {
+            assertEquals(query.getSmellName(), query.fetchResult(model, true), query.fetchResult(read, true));
+        }
+    }
+
+    @Test
+    public void drawingSmellsAreDetectedPerFile() {
+        ColumnarModel model = ColumnarModel.createColumnarModel(createApp());
+
+        List<Map<String, Object>> overdraw = ColumnarQueries.createOverdrawQuery().fetchResult(model, true);
+        assertEquals(1, overdraw.size());
+        assertEquals("sample/CustomView.java", overdraw.get(0).get("file_path"));
+        assertEquals("onDraw#sample.CustomView", overdraw.get(0).get("instance"));
+        List<Map<String, Object>> invalidate = ColumnarQueries.createInvalidateWithoutRectQuery().fetchResult(model, false);
+        assertEquals(1, invalidate.size());
+        assertEquals(1L, invalidate.get(0).get("IWR"));
+        assertEquals(0, ColumnarQueries.createInitOnDrawQuery().fetchResult(model, true).size());
+    }
+
+    @Test
+    public void activityWithoutOnLowMemoryIsDetected() {
+        ColumnarModel model = ColumnarModel.createColumnarModel(createApp());
+
+        List<Map<String, Object>> nlmr = ColumnarQueries.createNLMRQuery().fetchResult(model, true);
+        assertEquals(1, nlmr.size());
+        assertEquals("sample.MainActivity", nlmr.get(0).get("instance"));
+        assertEquals(3, nlmr.get(0).get("commit_number"));
+        assertEquals("sha3", nlmr.get(0).get("key"));
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.entities;
+
+import fr.inria.sniffer.detector.metrics.DumbUnaryMetric;
+import fr.inria.sniffer.detector.metrics.IsStatic;
+import fr.inria.sniffer.detector.metrics.Metric;
+import fr.inria.sniffer.detector.metrics.MetricKey;
+import fr.inria.sniffer.detector.metrics.NumberOfLines;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class EntityTest {
+    private final PaprikaApp paprikaApp = PaprikaApp.createPaprikaApp("app", 1, 1, "", "key", "", 0, "");
+
+    @Test
+    public void testMetricSlots() {
+        PaprikaClass paprikaClass = PaprikaClass.createPaprikaClass("a.A", paprikaApp, PaprikaModifiers.PUBLIC);
+        // Set out of the keys order, so that the packed values are shifted
+        paprikaClass.setMetric(MetricKey.NUMBER_OF_CHILDREN, 3);
+        paprikaClass.setMetric(MetricKey.NUMBER_OF_ATTRIBUTES, 1);
+        paprikaClass.setMetric(MetricKey.IS_STATIC, true);
+        paprikaClass.setMetric(MetricKey.DEPTH_OF_INHERITANCE, 2);
+        paprikaClass.setMetric(MetricKey.NPATH_COMPLEXITY, 4.5);
+        paprikaClass.setMetric(MetricKey.NUMBER_OF_ATTRIBUTES, 5);
+
+        assertEquals(5, paprikaClass.getIntMetric(MetricKey.NUMBER_OF_ATTRIBUTES));
+        assertEquals(2, paprikaClass.getIntMetric(MetricKey.DEPTH_OF_INHERITANCE));
+        assertEquals(3, paprikaClass.getIntMetric(MetricKey.NUMBER_OF_CHILDREN));
+        assertEquals(0, paprikaClass.getIntMetric(MetricKey.CLASS_COMPLEXITY));
+        assertEquals(4.5, paprikaClass.getDoubleMetric(MetricKey.NPATH_COMPLEXITY), 0);
+        assertEquals(true, paprikaClass.getBooleanMetric(MetricKey.IS_STATIC));
+        assertEquals(null, paprikaClass.getMetricValue(MetricKey.IS_INTERFACE));
+
+        List<Metric> metrics = paprikaClass.getMetrics();
+        assertEquals(5, metrics.size());
+        assertEquals("number_of_attributes", metrics.get(0).getName());
+        assertEquals(5, metrics.get(0).getValue());
+        assertEquals("number_of_children", metrics.get(4).getName());
+    }
+
+    @Test
+    public void testMetricObjectsAreStored() {
+        PaprikaClass paprikaClass = PaprikaClass.createPaprikaClass("a.A", paprikaApp, PaprikaModifiers.PUBLIC);
+        PaprikaMethod paprikaMethod = PaprikaMethod.createPaprikaMethod("m", PaprikaModifiers.PUBLIC, "void", paprikaClass);
+        NumberOfLines.createNumberOfLines(paprikaMethod, 12);
+        IsStatic.createIsStatic(paprikaMethod, true);
+        DumbUnaryMetric.createDumbMetric(paprikaMethod, "value", "description");
+
+        assertEquals(12, paprikaMethod.getIntMetric(MetricKey.NUMBER_OF_LINES));
+        assertEquals(true, paprikaMethod.getBooleanMetric(MetricKey.IS_STATIC));
+        assertEquals(1, paprikaMethod.getOtherMetrics().size());
+        assertEquals(3, paprikaMethod.getMetrics().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMetricType() {
+        PaprikaClass paprikaClass = PaprikaClass.createPaprikaClass("a.A", paprikaApp, PaprikaModifiers.PUBLIC);
+        paprikaClass.setMetric(MetricKey.IS_STATIC, 1);
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.entities;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PaprikaClassTest {
+    private PaprikaApp paprikaApp;
+
+    @Before
+    public void setUp() {
+        paprikaApp = PaprikaApp.createPaprikaApp("app", 1, 1, "", "key", "", 0, "");
+    }
+
+    @Test
+    public void testLCOM() {
+        PaprikaClass paprikaClass = PaprikaClass.createPaprikaClass("a.A", paprikaApp, PaprikaModifiers.PUBLIC);
+        PaprikaVariable first = PaprikaVariable.createPaprikaVariable("first", "int", PaprikaModifiers.PRIVATE, paprikaClass);
+        PaprikaVariable second = PaprikaVariable.createPaprikaVariable("second", "int", PaprikaModifiers.PRIVATE, paprikaClass);
+        method(paprikaClass, "a").useVariable(first);
+        method(paprikaClass, "b").useVariable(first);
+        method(paprikaClass, "c").useVariable(second);
+        method(paprikaClass, "d");
+        // 6 pairs, only (a, b) share a field
+        assertEquals(4, paprikaClass.computeLCOM());
+    }
+
+    @Test
+    public void testLCOMIsNeverNegative() {
+        PaprikaClass paprikaClass = PaprikaClass.createPaprikaClass("a.A", paprikaApp, PaprikaModifiers.PUBLIC);
+        PaprikaVariable field = PaprikaVariable.createPaprikaVariable("field", "int", PaprikaModifiers.PRIVATE, paprikaClass);
+        for (int i = 0; i < 3; i++) {
+            method(paprikaClass, "m" + i).useVariable(field);
+        }
+        assertEquals(0, paprikaClass.computeLCOM());
+        assertEquals(0, PaprikaClass.createPaprikaClass("a.Empty", paprikaApp, PaprikaModifiers.PUBLIC).computeLCOM());
+    }
+
+    @Test
+    public void testLCOMMatchesPairwiseComparison() {
+        Random random = new Random(7);
+        for (int run = 0; run < 50; run++) {
+            PaprikaClass paprikaClass = PaprikaClass.createPaprikaClass("a.C" + run, paprikaApp, PaprikaModifiers.PUBLIC);
+            List<PaprikaVariable> fields = new ArrayList<>();
+            int fieldCount = 1 + random.nextInt(150);
+            for (int i = 0; i < fieldCount; i++) {
+                fields.add(PaprikaVariable.createPaprikaVariable("f" + i, "int", PaprikaModifiers.PRIVATE, paprikaClass));
+            }
+            int methodCount = random.nextInt(60);
+            for (int i = 0; i < methodCount; i++) {
+                PaprikaMethod paprikaMethod = method(paprikaClass, "m" + i);
+                int used = random.nextInt(4);
+                for (int j = 0; j < used; j++) {
+                    paprikaMethod.useVariable(fields.get(random.nextInt(fieldCount)));
+                }
+            }
+            assertEquals(pairwiseLCOM(paprikaClass), paprikaClass.computeLCOM());
+        }
+    }
+
+    @Test
+    public void testSettersRebuildTheNameIndexes() {
+        PaprikaClass paprikaClass = PaprikaClass.createPaprikaClass("a.A", paprikaApp, PaprikaModifiers.PUBLIC);
+        PaprikaClass other = PaprikaClass.createPaprikaClass("a.B", paprikaApp, PaprikaModifiers.PUBLIC);
+        method(paprikaClass, "old");
+        PaprikaVariable.createPaprikaVariable("oldField", "int", PaprikaModifiers.PRIVATE, paprikaClass);
+        PaprikaMethod moved = method(other, "moved");
+        PaprikaVariable movedField = PaprikaVariable.createPaprikaVariable("movedField", "int", PaprikaModifiers.PRIVATE, other);
+
+        paprikaClass.setPaprikaMethods(new LinkedHashSet<>(Collections.singleton(moved)));
+        paprikaClass.setPaprikaVariables(new LinkedHashSet<>(Collections.singleton(movedField)));
+
+        assertTrue(paprikaClass.getPaprikaMethods("old").isEmpty());
+        assertEquals(Collections.singletonList(moved), paprikaClass.getPaprikaMethods("moved"));
+        assertNull(paprikaClass.findVariable("oldField"));
+        assertSame(movedField, paprikaClass.findVariable("movedField"));
+    }
+
+    private static PaprikaMethod method(PaprikaClass paprikaClass, String name) {
+        return PaprikaMethod.createPaprikaMethod(name, PaprikaModifiers.PUBLIC, "void", paprikaClass);
+    }
+
+    /**
+     * The LCOM as computed before the bitsets, comparing the fields of every pair of methods.
+     */
+    private static int pairwiseLCOM(PaprikaClass paprikaClass) {
+        List<PaprikaMethod> methods = new ArrayList<>(paprikaClass.getPaprikaMethods());
+        int haveFieldInCommon = 0;
+        int noFieldInCommon = 0;
+        for (int i = 0; i < methods.size(); i++) {
+            for (int j = i + 1; j < methods.size(); j++) {
+                if (methods.get(i).haveCommonFields(methods.get(j))) {
+                    haveFieldInCommon++;
+                } else {
+                    noFieldInCommon++;
+                }
+            }
+        }
+        return Math.max(0, noFieldInCommon - haveFieldInCommon);
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.entities;
+
+import fr.inria.sniffer.detector.metrics.IsARGB8888;
+import fr.inria.sniffer.detector.metrics.MetricsCalculator;
+
+/**
+ * Apps holding most of the smells, to compare the ways of detecting them.
+ */
+public class SmellyApps {
+
+    private SmellyApps() {
+    }
+
+    /**
+     * @return An app with its metrics, holding a complex blob, a swiss army knife, a leaking inner class,
+     * an activity without onLowMemory, a view drawing with allocations, without clipping nor invalidation rectangle,
+     * and the calls of the other smells.
+     */
+    public static PaprikaApp createApp(String key, int commitNumber) {
+        PaprikaApp paprikaApp = PaprikaApp.createPaprikaApp("app", 1, commitNumber, "", key, "", 0, "");
+
+        PaprikaClass blob = PaprikaClass.createPaprikaClass("sample.Blob", paprikaApp, PaprikaModifiers.PUBLIC,
+                "sample/Blob.java");
+        PaprikaVariable[] fields = new PaprikaVariable[14];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = PaprikaVariable.createPaprikaVariable("field" + i, "int", PaprikaModifiers.PRIVATE, blob);
+        }
+        for (int i = 0; i < 23; i++) {
+            PaprikaMethod paprikaMethod = PaprikaMethod.createPaprikaMethod("method" + i, PaprikaModifiers.PUBLIC, "void", blob);
+            paprikaMethod.setComplexity(2);
+            paprikaMethod.useVariable(fields[i % fields.length]);
+        }
+
+        PaprikaClass knife = PaprikaClass.createPaprikaClass("sample.Knife", paprikaApp, PaprikaModifiers.PUBLIC,
+                "sample/Knife.java");
+        knife.setInterface(true);
+        for (int i = 0; i < 14; i++) {
+            PaprikaMethod.createPaprikaMethod("tool" + i, PaprikaModifiers.PUBLIC, "void", knife);
+        }
+
+        PaprikaClass helper = PaprikaClass.createPaprikaClass("sample.Helper", paprikaApp, PaprikaModifiers.PUBLIC,
+                "sample/Helper.java");
+        PaprikaVariable value = PaprikaVariable.createPaprikaVariable("value", "int", PaprikaModifiers.PRIVATE, helper);
+        PaprikaMethod getValue = PaprikaMethod.createPaprikaMethod("getValue", PaprikaModifiers.PUBLIC, "int", helper);
+        getValue.setGetter(true);
+        getValue.useVariable(value);
+        PaprikaMethod compute = PaprikaMethod.createPaprikaMethod("compute", PaprikaModifiers.PUBLIC, "int", helper);
+        PaprikaMethod run = PaprikaMethod.createPaprikaMethod("run", PaprikaModifiers.PUBLIC, "void", helper);
+        run.callMethod(getValue);
+        run.callMethod(compute);
+
+        PaprikaClass activity = PaprikaClass.createPaprikaClass("sample.MainActivity", paprikaApp, PaprikaModifiers.PUBLIC,
+                "sample/MainActivity.java");
+        activity.setActivity(true);
+        PaprikaMethod onCreate = PaprikaMethod.createPaprikaMethod("onCreate", PaprikaModifiers.PUBLIC, "void", activity);
+        onCreate.callMethod(externalMethod(paprikaApp, "<init>", "java.util.HashMap"));
+        onCreate.callMethod(externalMethod(paprikaApp, "<init>", "android.util.LruCache"));
+        onCreate.callMethod(externalMethod(paprikaApp, "getDeviceId", "android.telephony.TelephonyManager"));
+        PaprikaExternalMethod createBitmap = externalMethod(paprikaApp, "createBitmap", "android.graphics.Bitmap");
+        IsARGB8888.createIsARGB8888(PaprikaExternalArgument.createPaprikaExternalArgument(
+                "android.graphics.Bitmap$Config", 0, createBitmap), true);
+        onCreate.callMethod(createBitmap);
+        PaprikaClass task = PaprikaClass.createPaprikaClass("sample.MainActivity$Task", paprikaApp, PaprikaModifiers.PRIVATE,
+                "sample/MainActivity.java");
+        task.setInnerClass(true);
+
+        PaprikaClass view = PaprikaClass.createPaprikaClass("sample.CustomView", paprikaApp, PaprikaModifiers.PUBLIC,
+                "sample/CustomView.java");
+        view.setView(true);
+        PaprikaMethod onDraw = PaprikaMethod.createPaprikaMethod("onDraw", PaprikaModifiers.PUBLIC, "void", view);
+        PaprikaArgument.createPaprikaArgument("android.graphics.Canvas", 0, onDraw);
+        onDraw.callMethod(externalMethod(paprikaApp, "<init>", "android.graphics.Paint"));
+        onDraw.callMethod(externalMethod(paprikaApp, "drawPath", "android.graphics.Canvas"));
+        onDraw.callMethod(externalMethod(paprikaApp, "invalidate", "android.view.View"));
+
+        MetricsCalculator.calculateAppMetrics(paprikaApp);
+        return paprikaApp;
+    }
+
+    private static PaprikaExternalMethod externalMethod(PaprikaApp paprikaApp, String name, String className) {
+        PaprikaExternalClass externalClass = PaprikaExternalClass.createPaprikaExternalClass(className, paprikaApp);
+        return PaprikaExternalMethod.createPaprikaExternalMethod(name, "void", externalClass);
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import fr.inria.sniffer.detector.entities.PaprikaClass;
+import fr.inria.sniffer.detector.entities.PaprikaLibrary;
+import fr.inria.sniffer.detector.entities.PaprikaModifiers;
+import fr.inria.sniffer.detector.entities.SmellyApps;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatchModelToGraphTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void batchInserterWritesTheGraphOfTransactions() throws IOException {
+        assertSameGraphs(false);
+    }
+
+    @Test
+    public void batchInserterWritesTheSymbolsOfTransactions() throws IOException {
+        assertSameGraphs(true);
+    }
+
+    /**
+     * @return An app holding every kind of node and relationship.
+     */
+    private static PaprikaApp createApp(String key, int commitNumber) {
+        PaprikaApp paprikaApp = SmellyApps.createApp(key, commitNumber);
+        PaprikaLibrary.createPaprikaLibrary("com.library", paprikaApp);
+        PaprikaClass helper = paprikaApp.getPaprikaInternalClass("sample.Helper");
+        PaprikaClass tool = PaprikaClass.createPaprikaClass("sample.Tool", paprikaApp, PaprikaModifiers.PUBLIC,
+                "sample/Tool.java");
+        tool.setParentName(helper.getName());
+        tool.setParent(helper);
+        tool.implement(paprikaApp.getPaprikaInternalClass("sample.Knife"));
+        return paprikaApp;
+    }
+
+    private void assertSameGraphs(boolean dictionaryEncoding) throws IOException {
+        String transactional = folder.newFolder("transactional").getPath();
+        ModelToGraph modelToGraph = new ModelToGraph(transactional);
+        try {
+            modelToGraph.setDictionaryEncoding(dictionaryEncoding);
+            modelToGraph.writeApp(createApp("sha1", 1));
+            modelToGraph.writeApp(createApp("sha2", 2));
+        } finally {
+            modelToGraph.shutDown();
+        }
+        String batch = folder.newFolder("batch").getPath();
+        BatchModelToGraph batchModelToGraph = new BatchModelToGraph(batch, dictionaryEncoding);
+        batchModelToGraph.writeApp(createApp("sha1", 1));
+        batchModelToGraph.writeApp(createApp("sha2", 2));
+        batchModelToGraph.shutDown();
+
+        List<String> expected = describe(transactional);
+        assertEquals(expected, describe(batch));
+    }
+
+    /**
+     * @return The sorted descriptions of the nodes of a database, by their labels and properties,
+     * and of its relationships, by their type and the descriptions of their ends.
+     * The date of analysis of the apps is left out.
+     */
+    private static List<String> describe(String database) {
+        QueryEngine queryEngine = new QueryEngine(database);
+        List<String> descriptions = new ArrayList<>();
+        try {
+            GraphDatabaseService graphDatabaseService = queryEngine.getGraphDatabaseService();
+            try (Transaction ignored = graphDatabaseService.beginTx()) {
+                for (Node node : graphDatabaseService.getAllNodes()) {
+                    descriptions.add(describe(node));
+                }
+                for (Relationship relationship : graphDatabaseService.getAllRelationships()) {
+                    descriptions.add(describe(relationship.getStartNode()) + " -" + relationship.getType().name()
+                            + "-> " + describe(relationship.getEndNode()));
+                }
+            }
+        } finally {
+            queryEngine.shutDown();
+        }
+        Collections.sort(descriptions);
+        return descriptions;
+    }
+
+    private static String describe(Node node) {
+        List<String> labels = new ArrayList<>();
+        for (Label label : node.getLabels()) {
+            labels.add(label.name());
+        }
+        Collections.sort(labels);
+        Map<String, Object> properties = new TreeMap<>(node.getAllProperties());
+        properties.remove("date_analysis");
+        return labels + String.valueOf(properties);
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class CSVWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void fieldsAreQuotedOnlyWhenNeeded() throws IOException {
+        File file = folder.newFile("smells.csv");
+        Map<String, Object> row = new HashMap<>();
+        row.put("app_key", "a1");
+        row.put("full_name", "onDraw#com.example.View");
+        row.put("arguments", "java.lang.String, int");
+        row.put("message", "say \"hi\"\nnow");
+        try (CSVWriter writer = CSVWriter.createCSVWriter(file.getPath(),
+                Arrays.asList("app_key", "full_name", "arguments", "message"))) {
+            writer.writeRow(row);
+            assertEquals(1, writer.getRows());
+        }
+
+        assertEquals("app_key,full_name,arguments,message\n"
+                        + "a1,onDraw#com.example.View,\"java.lang.String, int\",\"say \"\"hi\"\"\nnow\"\n",
+                read(new FileInputStream(file)));
+    }
+
+    @Test
+    public void nullValuesKeepTheirField() throws IOException {
+        File file = folder.newFile("counts.csv");
+        Map<String, Object> row = new HashMap<>();
+        row.put("app_key", "a1");
+        row.put("nb", 3);
+        try (CSVWriter writer = CSVWriter.createCSVWriter(file.getPath(), Arrays.asList("app_key", "name", "nb"))) {
+            writer.writeRow(row);
+        }
+
+        assertEquals("app_key,name,nb\na1,,3\n", read(new FileInputStream(file)));
+    }
+
+    @Test
+    public void gzipFilesAreCompressed() throws IOException {
+        File file = new File(folder.getRoot(), "smells.csv.gz");
+        try (CSVWriter writer = CSVWriter.createCSVWriter(file.getPath(), Collections.singletonList("app_key"))) {
+            writer.writeRow(Collections.singletonMap("app_key", "a1"));
+        }
+
+        assertEquals("app_key\na1\n", read(new GZIPInputStream(new FileInputStream(file))));
+    }
+
+    private static String read(InputStream input) throws IOException {
+        try (InputStream in = input) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
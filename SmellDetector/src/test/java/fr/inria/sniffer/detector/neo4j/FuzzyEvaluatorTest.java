@@ -0,0 +1,123 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import net.sourceforge.jFuzzyLogic.FIS;
+import net.sourceforge.jFuzzyLogic.FunctionBlock;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class FuzzyEvaluatorTest {
+    private static final String FCL = "FUNCTION_BLOCK heavy\n"
+            + "VAR_INPUT\n"
+            + "  cyclomatic_complexity : REAL;\n"
+            + "  number_of_instructions : REAL;\n"
+            + "END_VAR\n"
+            + "VAR_OUTPUT\n"
+            + "  res : REAL;\n"
+            + "END_VAR\n"
+            + "FUZZIFY cyclomatic_complexity\n"
+            + "  TERM high := (2, 0) (3.5, 1) (5, 1);\n"
+            + "  TERM veryHigh := (3.5, 0) (5, 1);\n"
+            + "END_FUZZIFY\n"
+            + "FUZZIFY number_of_instructions\n"
+            + "  TERM high := (10, 0) (17, 1) (26, 1);\n"
+            + "  TERM veryHigh := (17, 0) (26, 1);\n"
+            + "END_FUZZIFY\n"
+            + "DEFUZZIFY res\n"
+            + "  TERM high := (0, 0) (0.5, 1) (1, 0);\n"
+            + "  TERM veryHigh := (0.5, 0) (1, 1);\n"
+            + "  METHOD : COG;\n"
+            + "  DEFAULT := 0;\n"
+            + "END_DEFUZZIFY\n"
+            + "RULEBLOCK rules\n"
+            + "  AND : MIN;\n"
+            + "  ACT : MIN;\n"
+            + "  ACCU : MAX;\n"
+            + "  RULE 1 : IF cyclomatic_complexity IS veryHigh AND number_of_instructions IS veryHigh THEN res IS veryHigh;\n"
+            + "  RULE 2 : IF cyclomatic_complexity IS high OR number_of_instructions IS high THEN res IS high;\n"
+            + "END_RULEBLOCK\n"
+            + "END_FUNCTION_BLOCK\n";
+    private static final List<String> VARIABLES = Arrays.asList("cyclomatic_complexity", "number_of_instructions");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void memoizedValuesAreTheValuesOfTheFunctionBlock() throws IOException {
+        String fclFile = writeFcl();
+        FuzzyEvaluator evaluator = FuzzyEvaluator.forFile(fclFile, VARIABLES);
+        FunctionBlock functionBlock = FIS.load(fclFile, false).getFunctionBlock(null);
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (int cc = 0; cc <= 6; cc++) {
+                for (int noi = 8; noi <= 30; noi += 2) {
+                    functionBlock.setVariable("cyclomatic_complexity", cc);
+                    functionBlock.setVariable("number_of_instructions", noi);
+                    functionBlock.evaluate();
+                    assertEquals(functionBlock.getVariable("res").getValue(), evaluator.evaluate(cc, noi), 0);
+                }
+            }
+        }
+        assertEquals(7 * 12, evaluator.getEvaluations());
+        assertSame(evaluator, FuzzyEvaluator.forFile(fclFile, VARIABLES));
+    }
+
+    @Test
+    public void veryHighCandidatesAreCertain() throws IOException {
+        FuzzyEvaluator evaluator = FuzzyEvaluator.forFile(writeFcl(), VARIABLES);
+        Map<String, Double> veryHighValues = new LinkedHashMap<>();
+        veryHighValues.put("cyclomatic_complexity", 5.0);
+        veryHighValues.put("number_of_instructions", 26.0);
+        Map<String, Object> row = new HashMap<>();
+        row.put("cyclomatic_complexity", 5L);
+        row.put("number_of_instructions", 30L);
+
+        assertEquals(1, evaluator.fuzzyValue(row, veryHighValues));
+        row.put("number_of_instructions", 20L);
+        assertEquals(evaluator.evaluate(5, 20), evaluator.fuzzyValue(row, veryHighValues));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void missingFilesAreReported() throws IOException {
+        FuzzyEvaluator.forFile("/Missing.fcl", VARIABLES);
+    }
+
+    private String writeFcl() throws IOException {
+        File file = folder.newFile("Heavy.fcl");
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(FCL);
+        }
+        return file.getPath();
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedModelWriterTest {
+
+    /**
+     * Record the keys of the written apps, failing on the key "fail".
+     */
+    private static class RecordingWriter implements ModelWriter {
+        private final List<String> keys = new ArrayList<>();
+        private final List<String> threads = new ArrayList<>();
+        private boolean shutDown;
+
+        @Override
+        public void writeApp(PaprikaApp paprikaApp) {
+            threads.add(Thread.currentThread().getName());
+            if (paprikaApp.getKey().equals("fail")) {
+                throw new IllegalStateException("write failure");
+            }
+            if (paprikaApp.getKey().equals("error")) {
+                throw new StackOverflowError("write error");
+            }
+            keys.add(paprikaApp.getKey());
+        }
+
+        @Override
+        public void shutDown() {
+            shutDown = true;
+        }
+    }
+
+    private static PaprikaApp app(String key, int commitNumber) {
+        return PaprikaApp.createPaprikaApp("app", 1, commitNumber, "", key, "", 0, "");
+    }
+
+    @Test
+    public void appsAreWrittenInOrderByOneThread() {
+        RecordingWriter recordingWriter = new RecordingWriter();
+        PipelinedModelWriter pipeline = new PipelinedModelWriter(recordingWriter, 1);
+        for (int i = 1; i <= 5; i++) {
+            pipeline.writeApp(app("commit" + i, i));
+        }
+        pipeline.finish();
+
+        assertEquals(5, recordingWriter.keys.size());
+        for (int i = 1; i <= 5; i++) {
+            assertEquals("commit" + i, recordingWriter.keys.get(i - 1));
+            assertEquals("model-writer", recordingWriter.threads.get(i - 1));
+        }
+        assertEquals(0, pipeline.getFailures());
+    }
+
+    @Test
+    public void failedWritesAreCountedAndSkipped() {
+        RecordingWriter recordingWriter = new RecordingWriter();
+        PipelinedModelWriter pipeline = new PipelinedModelWriter(recordingWriter, 2);
+        pipeline.writeApp(app("commit1", 1));
+        pipeline.writeApp(app("fail", 2));
+        pipeline.writeApp(app("commit3", 3));
+        pipeline.shutDown();
+
+        assertEquals(1, pipeline.getFailures());
+        assertEquals(2, recordingWriter.keys.size());
+        assertEquals("commit3", recordingWriter.keys.get(1));
+        assertTrue(recordingWriter.shutDown);
+    }
+
+    @Test(timeout = 10000)
+    public void anErrorStopsTheWriterWithoutBlockingTheAnalysis() {
+        RecordingWriter recordingWriter = new RecordingWriter();
+        PipelinedModelWriter pipeline = new PipelinedModelWriter(recordingWriter, 1);
+        IllegalStateException rejection = null;
+        try {
+            pipeline.writeApp(app("error", 1));
+            for (int i = 2; i <= 5; i++) {
+                pipeline.writeApp(app("commit" + i, i));
+            }
+        } catch (IllegalStateException e) {
+            rejection = e;
+        }
+        pipeline.finish();
+
+        assertNotNull(rejection);
+        assertTrue(rejection.getCause() instanceof StackOverflowError);
+        assertEquals(1, pipeline.getFailures());
+        assertTrue(recordingWriter.keys.isEmpty());
+    }
+}
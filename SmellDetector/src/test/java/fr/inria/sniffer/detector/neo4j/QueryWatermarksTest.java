@@ -0,0 +1,72 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class QueryWatermarksTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void lastCommitsAreKeptPerApp() throws IOException {
+        File csvFile = write(folder.newFile("CC.csv"), "header\n");
+        Map<String, Integer> lastCommits = new LinkedHashMap<>();
+        lastCommits.put("alpha", 20);
+        lastCommits.put("beta", 10);
+        QueryWatermarks.load(new File(folder.getRoot(), "watermarks.properties"))
+                .setLastCommits("CC", lastCommits, csvFile.length(), true);
+
+        QueryWatermarks watermarks = QueryWatermarks.load(new File(folder.getRoot(), "watermarks.properties"));
+        assertEquals(lastCommits, watermarks.getLastCommits("CC", csvFile, true));
+        assertNull(watermarks.getLastCommits("CC", csvFile, false));
+        assertNull(watermarks.getLastCommits("LM", csvFile, true));
+    }
+
+    @Test
+    public void rowsAppendedAfterTheWatermarksAreTruncated() throws IOException {
+        File csvFile = write(folder.newFile("CC.csv"), "header\n");
+        QueryWatermarks watermarks = QueryWatermarks.load(new File(folder.getRoot(), "watermarks.properties"));
+        watermarks.setLastCommits("CC", new LinkedHashMap<String, Integer>(), csvFile.length(), true);
+        write(csvFile, "header\nrow\n");
+
+        watermarks.truncate("CC", csvFile);
+        assertEquals("header\n".length(), csvFile.length());
+        csvFile.delete();
+        assertNull(watermarks.getLastCommits("CC", csvFile, true));
+    }
+
+    private static File write(File file, String content) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(content);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import fr.inria.sniffer.detector.columnar.ColumnarQueries;
+import fr.inria.sniffer.detector.columnar.ColumnarQuery;
+import fr.inria.sniffer.detector.entities.SmellyApps;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SmellScannerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private QueryEngine queryEngine;
+
+    @Before
+    public void setUp() throws IOException {
+        String database = folder.newFolder("db").getPath();
+        ModelToGraph modelToGraph = new ModelToGraph(database);
+        try {
+            modelToGraph.insertApp(SmellyApps.createApp("sha1", 1));
+            modelToGraph.insertApp(SmellyApps.createApp("sha2", 2));
+        } finally {
+            modelToGraph.shutDown();
+        }
+        queryEngine = new QueryEngine(database);
+    }
+
+    @After
+    public void tearDown() {
+        queryEngine.shutDown();
+    }
+
+    @Test
+    public void scannedSmellsAreTheCypherOnes() throws IOException {
+        assertSameFiles(false);
+    }
+
+    @Test
+    public void scannedSmellsAreTheCypherOnesWithDetails() throws IOException {
+        assertSameFiles(true);
+    }
+
+    /**
+     * Write the smells with their Cypher query and with a single scan, the files of each smell having the same bytes
+     * once their rows are sorted, as Cypher leaves their order to the planner.
+     */
+    private void assertSameFiles(boolean details) throws IOException {
+        Query[] queries = {
+                CCQuery.createCCQuery(queryEngine),
+                LMQuery.createLMQuery(queryEngine),
+                SAKQuery.createSAKQuery(queryEngine),
+                BLOBQuery.createBLOBQuery(queryEngine),
+                MIMQuery.createMIMQuery(queryEngine),
+                IGSQuery.createIGSQuery(queryEngine),
+                LICQuery.createLICQuery(queryEngine),
+                NLMRQuery.createNLMRQuery(queryEngine),
+                OverdrawQuery.createOverdrawQuery(queryEngine),
+                HeavyServiceStartQuery.createHeavyServiceStartQuery(queryEngine),
+                HeavyBroadcastReceiverQuery.createHeavyBroadcastReceiverQuery(queryEngine),
+                HeavyAsyncTaskStepsQuery.createHeavyAsyncTaskStepsQuery(queryEngine),
+                UnsuitedLRUCacheSizeQuery.createUnsuitedLRUCacheSizeQuery(queryEngine),
+                InitOnDrawQuery.createInitOnDrawQuery(queryEngine),
+                UnsupportedHardwareAccelerationQuery.createUnsupportedHardwareAccelerationQuery(queryEngine),
+                HashMapUsageQuery.createHashMapUsageQuery(queryEngine),
+                InvalidateWithoutRectQuery.createInvalidateWithoutRectQuery(queryEngine),
+                TrackingHardwareIdQuery.createTrackingHardwareIdQuery(queryEngine),
+                CommitSizeQuery.createCommitSize(queryEngine)
+        };
+        List<ColumnarQuery> scannedQueries = new ArrayList<>(ColumnarQueries.forRequest("FORCENOFUZZY", false));
+        scannedQueries.addAll(ColumnarQueries.forRequest("ALLAP", false));
+        scannedQueries.addAll(ColumnarQueries.forRequest("SIZE", false));
+        SmellScanner scanner = SmellScanner.createSmellScanner(queryEngine);
+        for (Query query : queries) {
+            scanner.addQuery(find(scannedQueries, query.getSmellName()));
+        }
+
+        File cypher = folder.newFolder("cypher");
+        queryEngine.setCsvPrefix(cypher.getPath() + File.separator);
+        for (Query query : queries) {
+            query.execute(details);
+        }
+        File scan = folder.newFolder("scan");
+        queryEngine.setCsvPrefix(scan.getPath() + File.separator);
+        scanner.execute(details);
+
+        int smells = 0;
+        for (Query query : queries) {
+            String name = "_" + query.getSmellName() + ".csv";
+            List<String> cypherLines = sortedLines(new File(cypher, name));
+            assertEquals(query.getSmellName(), cypherLines, sortedLines(new File(scan, name)));
+            if (cypherLines.size() > 1) {
+                smells++;
+            }
+        }
+        // Only the smells on the number of instructions, which the model does not hold, are not found.
+        assertEquals(queries.length - 4, smells);
+    }
+
+    private static ColumnarQuery find(List<ColumnarQuery> queries, String smellName) {
+        for (ColumnarQuery query : queries) {
+            if (query.getSmellName().equals(smellName)) {
+                return query;
+            }
+        }
+        throw new IllegalArgumentException("No columnar query for " + smellName);
+    }
+
+    /**
+     * @return The header of the file, followed by its rows in order.
+     */
+    private static List<String> sortedLines(File file) throws IOException {
+        assertTrue(file.getName(), file.isFile());
+        List<String> lines = new ArrayList<>(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+        Collections.sort(lines.subList(1, lines.size()));
+        return lines;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.detector.neo4j;
+
+import fr.inria.sniffer.detector.entities.PaprikaApp;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SymbolTableTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void internGivesOneIdPerString() {
+        SymbolTable symbolTable = new SymbolTable();
+        int first = symbolTable.intern("onDraw#sample.View");
+        int second = symbolTable.intern("java.lang.String");
+
+        assertEquals(0, first);
+        assertEquals(1, second);
+        assertEquals(first, symbolTable.intern("onDraw#sample.View"));
+        assertEquals("java.lang.String", symbolTable.valueOf(second));
+        assertEquals(-1, symbolTable.idOf("unknown"));
+        assertNull(symbolTable.valueOf(2));
+    }
+
+    @Test
+    public void pendingSymbolsAreWrittenOnce() {
+        SymbolTable symbolTable = new SymbolTable();
+        symbolTable.intern("a");
+        symbolTable.intern("b");
+        List<Map<String, Object>> pending = symbolTable.pending();
+
+        assertEquals(2, pending.size());
+        assertEquals(1, pending.get(1).get("id"));
+        assertEquals("b", pending.get(1).get("value"));
+
+        symbolTable.written();
+        symbolTable.intern("a");
+        assertTrue(symbolTable.pending().isEmpty());
+        symbolTable.intern("c");
+        assertEquals(1, symbolTable.pending().size());
+    }
+
+    @Test
+    public void discardedSymbolsGetNewIds() {
+        SymbolTable symbolTable = new SymbolTable();
+        symbolTable.intern("a");
+        symbolTable.written();
+        symbolTable.intern("b");
+        symbolTable.discardPending();
+
+        assertEquals(-1, symbolTable.idOf("b"));
+        assertEquals(1, symbolTable.intern("c"));
+        assertEquals(0, symbolTable.intern("a"));
+    }
+
+    @Test
+    public void databasesKeepTheEncodingOfTheirFirstApp() throws Exception {
+        String database = folder.newFolder("db").getPath();
+        ModelToGraph modelToGraph = new ModelToGraph(database);
+        try {
+            modelToGraph.insertApp(PaprikaApp.createPaprikaApp("app", 1, 1, "", "sha1", "", 0, ""));
+            modelToGraph.setDictionaryEncoding(false);
+            modelToGraph.setDictionaryEncoding(true);
+            fail("A plain database was written with symbols");
+        } catch (IllegalStateException e) {
+            assertEquals("The database is not dictionary encoded, its apps must be written without --dictionary",
+                    e.getMessage());
+        } finally {
+            modelToGraph.shutDown();
+        }
+    }
+}
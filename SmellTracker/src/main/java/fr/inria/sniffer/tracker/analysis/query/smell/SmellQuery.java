@@ -92,7 +92,7 @@ public class SmellQuery implements Query {
             Result result = query.streamResult(true, true);
             logger.trace("[" + projectId + "]   ==> Found smells: " + result);
 
-            new BranchAwareSmellTypeAnalysis(projectId, persistence, result, query.getSmellName(), duplicationChecker, commitQueries, smellQueries, branchQueries).query();
+            new BranchAwareSmellTypeAnalysis(projectId, persistence, queryEngine.resolveSymbols(result), query.getSmellName(), duplicationChecker, commitQueries, smellQueries, branchQueries).query();
 
             // Calling commit for each smell type to avoid too big request.
             persistence.commit();